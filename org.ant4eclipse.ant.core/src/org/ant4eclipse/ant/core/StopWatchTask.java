@@ -37,6 +37,11 @@ public class StopWatchTask extends AbstractAnt4EclipseTask {
       getStopWatchService().getOrCreateStopWatch(getName()).start();
     } else if (isCommand("stop")) {
       StopWatch stopWatch = getStopWatchService().getOrCreateStopWatch(getName());
+      if (!stopWatch.isRunning()) {
+        // stop watches are maintained per thread, so they have to be stopped by the thread that started them
+        log(String.format("Watch '%s' has not been started by this thread", stopWatch.getName()), Project.MSG_WARN);
+        return;
+      }
       long elapsedTime = stopWatch.stop();
       log(String.format("Stopped watch '%s' after '%d' ms", stopWatch.getName(), elapsedTime), this._logLevel);
     } else if (isCommand("reset-all")) {
@@ -0,0 +1,186 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.ant.core;
+
+import java.io.File;
+
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.PerformanceLogging;
+import org.ant4eclipse.lib.core.util.StopWatchService;
+import org.ant4eclipse.lib.core.util.TraceRecorder;
+import org.apache.tools.ant.BuildEvent;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.BuildListener;
+import org.apache.tools.ant.Project;
+
+/**
+ * <p>
+ * Records a trace of the build: the runs of all ant4eclipse stop watches (classpath resolution, class file loader
+ * creation, compiler phases, ...) and the builds of the projects and macro scopes of the <code>forEachProject</code>
+ * tasks. Starting a trace enables the performance logging.
+ * </p>
+ * <p>
+ * The trace is written to <code>file</code> in the Chrome Trace Event format (viewable in chrome://tracing or
+ * Perfetto), a JSON summary with the times per project and the statistics of the stop watches is written to
+ * <code>summaryFile</code>. The files are written when the trace is stopped (<code>command="stop"</code>) or, if the
+ * trace is still running, when the build has finished.
+ * </p>
+ *
+ * <pre>
+ * &lt;ant4eclipse:trace file=&quot;${build.dir}/trace.json&quot; summaryFile=&quot;${build.dir}/trace-summary.json&quot; /&gt;
+ * </pre>
+ */
+public class TraceTask extends AbstractAnt4EclipseTask {
+
+  /** the command (start or stop) */
+  private String _command = "start";
+
+  /** the file the chrome trace is written to */
+  private File   _file;
+
+  /** the file the summary is written to */
+  private File   _summaryFile;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void preconditions() throws BuildException {
+    super.preconditions();
+    if ((this._file == null) && (this._summaryFile == null)) {
+      throw new BuildException("At least one of the attributes 'file' and 'summaryFile' has to be set");
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void doExecute() {
+    if (isCommand("start")) {
+      PerformanceLogging.setEnabled(true);
+      getStopWatchService().startTrace();
+      getProject().addBuildListener(new TraceWriter(this._file, this._summaryFile));
+    } else if (isCommand("stop")) {
+      TraceRecorder traceRecorder = getStopWatchService().stopTrace();
+      if (traceRecorder == null) {
+        log("No trace is running", Project.MSG_WARN);
+        return;
+      }
+      writeTrace(traceRecorder, this._file, this._summaryFile);
+    } else {
+      throw new BuildException("Unkown command: '" + this._command + "'");
+    }
+  }
+
+  /**
+   * Sets the command (<code>start</code> (default) or <code>stop</code>).
+   *
+   * @param command
+   *          the command
+   */
+  public void setCommand(String command) {
+    this._command = command;
+  }
+
+  /**
+   * Sets the file the trace is written to (in the Chrome Trace Event format).
+   *
+   * @param file
+   *          the file
+   */
+  public void setFile(File file) {
+    this._file = file;
+  }
+
+  /**
+   * Sets the file the JSON summary is written to.
+   *
+   * @param summaryFile
+   *          the file
+   */
+  public void setSummaryFile(File summaryFile) {
+    this._summaryFile = summaryFile;
+  }
+
+  private boolean isCommand(String expected) {
+    return (this._command != null && expected.equalsIgnoreCase(this._command.trim()));
+  }
+
+  private static StopWatchService getStopWatchService() {
+    return ServiceRegistryAccess.instance().getService(StopWatchService.class);
+  }
+
+  /**
+   * Writes the given trace to the given files.
+   *
+   * @param traceRecorder
+   *          the recorded trace
+   * @param file
+   *          the file for the chrome trace (might be <code>null</code>)
+   * @param summaryFile
+   *          the file for the summary (might be <code>null</code>)
+   */
+  private static void writeTrace(TraceRecorder traceRecorder, File file, File summaryFile) {
+    if (file != null) {
+      traceRecorder.writeChromeTrace(file);
+    }
+    if (summaryFile != null) {
+      traceRecorder.writeSummary(summaryFile, getStopWatchService().getStopWatches());
+    }
+  }
+
+  /**
+   * Writes the trace when the build has finished (if it hasn't been stopped before).
+   */
+  private static class TraceWriter implements BuildListener {
+
+    /** the file for the chrome trace */
+    private File _file;
+
+    /** the file for the summary */
+    private File _summaryFile;
+
+    public TraceWriter(File file, File summaryFile) {
+      this._file = file;
+      this._summaryFile = summaryFile;
+    }
+
+    public void buildFinished(BuildEvent event) {
+      if (!ServiceRegistryAccess.isConfigured()) {
+        return;
+      }
+      TraceRecorder traceRecorder = getStopWatchService().stopTrace();
+      if (traceRecorder != null) {
+        writeTrace(traceRecorder, this._file, this._summaryFile);
+      }
+    }
+
+    public void buildStarted(BuildEvent event) {
+    }
+
+    public void targetStarted(BuildEvent event) {
+    }
+
+    public void targetFinished(BuildEvent event) {
+    }
+
+    public void taskStarted(BuildEvent event) {
+    }
+
+    public void taskFinished(BuildEvent event) {
+    }
+
+    public void messageLogged(BuildEvent event) {
+    }
+  }
+}
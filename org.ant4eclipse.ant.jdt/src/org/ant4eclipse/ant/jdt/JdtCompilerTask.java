@@ -13,11 +13,15 @@ package org.ant4eclipse.ant.jdt;
 
 import java.io.File;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.ant4eclipse.ant.jdt.ecj.A4ECompilerAdapter;
 import org.ant4eclipse.ant.jdt.ecj.EcjCompilerAdapter;
 import org.ant4eclipse.ant.jdt.ecj.JavacCompilerAdapter;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.jdt.ecj.PipelineConfiguration;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.taskdefs.Javac;
 import org.apache.tools.ant.taskdefs.compilers.CompilerAdapter;
@@ -33,22 +37,28 @@ import org.apache.tools.ant.taskdefs.compilers.CompilerAdapter;
  */
 public class JdtCompilerTask extends Javac {
 
-  private static final String MSG_INVALID_ATTRIBUTE = "The attribute 'compiler' for the task '%s' is not allowed to be used.";
+  private static final String   MSG_INVALID_ATTRIBUTE  = "The attribute 'compiler' for the task '%s' is not allowed to be used.";
 
-  private static final String MSG_FAILURE           = "The compilation failed. Check the output for more information.";
+  private static final String   MSG_FAILURE            = "The compilation failed. Check the output for more information.";
 
-  private String              _errprop              = null;
+  private String                _errprop               = null;
 
-  private String              _updateprop           = null;
+  private String                _updateprop            = null;
 
-  private boolean             _useecj               = true;
+  private boolean               _useecj                = true;
 
-  private boolean             _warnings             = true;
+  private boolean               _warnings              = true;
+
+  private boolean               _incremental           = false;
+
+  private File                  _dependencyDatabase    = null;
+
+  private PipelineConfiguration _pipelineConfiguration = PipelineConfiguration.createDefault();
 
   /**
    * The CompilerAdapter for this compilation
    */
-  private A4ECompilerAdapter  _a4eCompilerAdapter;
+  private A4ECompilerAdapter    _a4eCompilerAdapter;
 
   /**
    * Enables/disables the generation of warn messages.
@@ -60,6 +70,73 @@ public class JdtCompilerTask extends Javac {
     this._warnings = enable;
   }
 
+  /**
+   * Enables/disables the incremental compilation. If enabled, the source files that have to be compiled are determined
+   * using a dependency database instead of comparing the time stamps of the source and class files. Incremental
+   * compilation is only supported by the ecj compiler.
+   * 
+   * @param enable
+   *          <code>true</code> <=> Enables the incremental compilation.
+   */
+  public void setIncremental(boolean enable) {
+    this._incremental = enable;
+  }
+
+  /**
+   * Changes the location of the dependency database used for the incremental compilation. Defaults to the file
+   * <code>.&lt;destdir-name&gt;.dependencies</code> next to the destination directory.
+   * 
+   * @param dependencyDatabase
+   *          The location of the dependency database. Maybe <code>null</code>.
+   */
+  public void setDependencyDatabase(File dependencyDatabase) {
+    this._dependencyDatabase = dependencyDatabase;
+  }
+
+  /**
+   * Enables/disables reading the source files in parallel before they are parsed. Only supported by the ecj compiler.
+   * 
+   * @param enable
+   *          <code>true</code> <=> Read the source files in parallel.
+   */
+  public void setParallelRead(boolean enable) {
+    this._pipelineConfiguration.setParallelRead(enable);
+  }
+
+  /**
+   * Enables/disables processing (resolving, analysing and generating) the source files in a separate thread, while the
+   * compiler thread writes the class files. Only supported by the ecj compiler.
+   * 
+   * @param enable
+   *          <code>true</code> <=> Process the source files in a separate thread.
+   */
+  public void setParallelProcessing(boolean enable) {
+    this._pipelineConfiguration.setParallelProcessing(enable);
+  }
+
+  /**
+   * Changes the maximum number of threads used to read source files and to write class files. Defaults to the number of
+   * available processors. Only supported by the ecj compiler.
+   * 
+   * @param maxThreads
+   *          The maximum number of threads.
+   */
+  public void setMaxThreads(int maxThreads) {
+    this._pipelineConfiguration.setMaxThreads(maxThreads);
+  }
+
+  /**
+   * Changes the maximum number of source files that are compiled at once. If set, the source files are compiled in
+   * chunks of the given size (the source files of a package are always compiled in the same chunk), which limits the
+   * memory needed to compile large projects. Only supported by the ecj compiler.
+   * 
+   * @param chunkSize
+   *          The maximum number of source files per chunk or 0 to compile all source files at once.
+   */
+  public void setChunkSize(int chunkSize) {
+    this._pipelineConfiguration.setChunkSize(chunkSize);
+  }
+
   /**
    * Enables/disables the use of the ecj compiler.
    * 
@@ -106,6 +183,9 @@ public class JdtCompilerTask extends Javac {
         this._a4eCompilerAdapter = new JavacCompilerAdapter();
       }
       this._a4eCompilerAdapter.setWarnings(this._warnings);
+      this._a4eCompilerAdapter.setIncremental(this._incremental);
+      this._a4eCompilerAdapter.setDependencyDatabase(this._dependencyDatabase);
+      this._a4eCompilerAdapter.setPipelineConfiguration(this._pipelineConfiguration);
     }
     return this._a4eCompilerAdapter;
   }
@@ -163,6 +243,29 @@ public class JdtCompilerTask extends Javac {
 
   }
 
+  /**
+   * If the compilation is incremental, all source files are passed to the compiler adapter which determines the files
+   * that have to be compiled using its dependency database. Otherwise the time stamps of the source and class files
+   * are compared.
+   * 
+   * {@inheritDoc}
+   */
+  @Override
+  protected void scanDir(File srcDir, File destDir, String[] files) {
+    if (!(this._incremental && this._useecj)) {
+      super.scanDir(srcDir, destDir, files);
+      return;
+    }
+    List<File> newFiles = new ArrayList<File>(this.compileList.length + files.length);
+    newFiles.addAll(Arrays.asList(this.compileList));
+    for (String file : files) {
+      if (file.endsWith(".java")) {
+        newFiles.add(new File(srcDir, file));
+      }
+    }
+    this.compileList = newFiles.toArray(new File[newFiles.size()]);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -12,15 +12,21 @@
 package org.ant4eclipse.ant.jdt.ecj;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.ant4eclipse.ant.core.AntConfigurator;
 import org.ant4eclipse.ant.jdt.EcjAdditionalCompilerArguments;
@@ -30,15 +36,19 @@ import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.util.PerformanceLogging;
 import org.ant4eclipse.lib.core.util.StringMap;
 import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.AbiDigest;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
 import org.ant4eclipse.lib.jdt.ecj.DefaultCompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.DependencyDatabase;
 import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
 import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
+import org.ant4eclipse.lib.jdt.ecj.PipelineConfiguration;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
 import org.ant4eclipse.lib.jdt.ecj.SourceFileFactory;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCache;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.taskdefs.compilers.DefaultCompilerAdapter;
 import org.apache.tools.ant.taskdefs.condition.Os;
@@ -56,21 +66,21 @@ import org.eclipse.jdt.core.compiler.CategorizedProblem;
  */
 public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
 
-  private static final String ANT4ECLIPSE_DEFAULT_FILE_ENCODING = "ant4eclipse.default.file.encoding";
+  private static final String   ANT4ECLIPSE_DEFAULT_FILE_ENCODING = "ant4eclipse.default.file.encoding";
 
-  private static final String ANT4ECLIPSE_COMPILE_ERRORS_FILE   = "ant4eclipse.compile.errors.file";
+  private static final String   ANT4ECLIPSE_COMPILE_ERRORS_FILE   = "ant4eclipse.compile.errors.file";
 
   /** format of the compile problem message */
-  private static final String COMPILE_PROBLEM_MESSAGE           = "----------\n%s. %s in %s (at line %s)\n%s\n%s\n%s\n";
+  private static final String   COMPILE_PROBLEM_MESSAGE           = "----------\n%s. %s in %s (at line %s)\n%s\n%s\n%s\n";
 
   /** the compiler argument separator */
-  private static final String COMPILER_ARGS_SEPARATOR           = "=";
+  private static final String   COMPILER_ARGS_SEPARATOR           = "=";
 
   /** the refid key for the additional compiler arguments */
-  private static final String COMPILER_ARGS_REFID_KEY           = "compiler.args.refid";
+  private static final String   COMPILER_ARGS_REFID_KEY           = "compiler.args.refid";
 
   /** the refid key for compiler.options.file */
-  private static final String COMPILER_OPTIONS_FILE             = "compiler.options.file";
+  private static final String   COMPILER_OPTIONS_FILE             = "compiler.options.file";
 
   /**
    * the refid key for default compiler options file.
@@ -79,9 +89,15 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
    * If not set or set to an empty string no default compiler settings will be used
    * </p>
    */
-  private static final String DEFAULT_COMPILER_OPTIONS_FILE     = "default.compiler.options.file";
+  private static final String   DEFAULT_COMPILER_OPTIONS_FILE     = "default.compiler.options.file";
 
-  private boolean             _warnings                         = true;
+  private boolean               _warnings                         = true;
+
+  private boolean               _incremental                      = false;
+
+  private File                  _dependencyDatabase               = null;
+
+  private PipelineConfiguration _pipelineConfiguration            = PipelineConfiguration.createDefault();
 
   /**
    * Enables/disables the generation of warn messages.
@@ -93,6 +109,49 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
     this._warnings = newwarnings;
   }
 
+  /**
+   * Enables/disables the incremental compilation.
+   * 
+   * @param newincremental
+   *          <code>true</code> <=> Only compile the source files that have been changed or that depend on changed
+   *          types.
+   */
+  public void setIncremental(boolean newincremental) {
+    this._incremental = newincremental;
+  }
+
+  /**
+   * Changes the location of the dependency database used for the incremental compilation.
+   * 
+   * @param newdependencydatabase
+   *          The location of the dependency database. If <code>null</code> the default location next to the
+   *          destination directory is used.
+   */
+  public void setDependencyDatabase(File newdependencydatabase) {
+    this._dependencyDatabase = newdependencydatabase;
+  }
+
+  /**
+   * Changes the configuration that specifies how the ecj compiler processes the source files.
+   * 
+   * @param newpipelineconfiguration
+   *          The pipeline configuration. Not <code>null</code>.
+   */
+  public void setPipelineConfiguration(PipelineConfiguration newpipelineconfiguration) {
+    Assure.notNull("newpipelineconfiguration", newpipelineconfiguration);
+    this._pipelineConfiguration = newpipelineconfiguration;
+  }
+
+  /**
+   * Returns <code>true</code> if this compiler adapter is able to record the dependencies of the compiled source files
+   * which is necessary for the incremental compilation.
+   * 
+   * @return <code>true</code> <=> Incremental compilation is supported.
+   */
+  protected boolean isIncrementalCompilationSupported() {
+    return false;
+  }
+
   /**
    * <p>
    * Checks the preconditions of the A4ECompilerAdapter
@@ -121,14 +180,15 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
     // anymore.
     AntConfigurator.configureAnt4Eclipse(getProject());
 
+    // previous compile jobs might have changed class path entries, so cached class file loaders have to be checked
+    ClassFileLoaderCache.getInstance().beginCompileJob();
+
     // Step 3: Fetch compiler arguments
     EcjAdditionalCompilerArguments ecjAdditionalCompilerArguments = fetchEcjAdditionalCompilerArguments();
 
     // Step 4: create CompileJobDescription
     DefaultCompileJobDescription compileJobDescription = new DefaultCompileJobDescription();
     SourceFile[] sourceFiles = getSourceFilesToCompile(ecjAdditionalCompilerArguments);
-    compileJobDescription.setSourceFiles(sourceFiles);
-    compileJobDescription.setClassFileLoader(createClassFileLoader(ecjAdditionalCompilerArguments));
 
     // Step 5: set the compiler options
     String compilerOptionsFileName = extractJavacCompilerArg(COMPILER_OPTIONS_FILE, null);
@@ -137,14 +197,39 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
         defaultCompilerOptionsFileName);
     compileJobDescription.setCompilerOptions(compilerOptions);
 
+    // Step 6: restrict the source files if the compilation is incremental
+    File[] outputFolders = new File[0];
+    File dependencyDatabaseFile = getDependencyDatabaseFile();
+    DependencyDatabase dependencyDatabase = null;
+    if (dependencyDatabaseFile != null) {
+      outputFolders = getDestinationFolders(sourceFiles);
+      dependencyDatabase = DependencyDatabase.read(dependencyDatabaseFile);
+      String fingerprint = DependencyDatabase.computeFingerprint(compilerOptions, getClasspathFiles(outputFolders));
+      int count = sourceFiles.length;
+      sourceFiles = dependencyDatabase.getSourceFilesToCompile(sourceFiles, fingerprint);
+      A4ELogging.info("Incremental compilation: %d of %d source files have been changed or are affected by changes.",
+          Integer.valueOf(sourceFiles.length), Integer.valueOf(count));
+      if (sourceFiles.length == 0) {
+        writeDependencyDatabase(dependencyDatabase, dependencyDatabaseFile, outputFolders);
+        return true;
+      }
+    }
+    compileJobDescription.setSourceFiles(sourceFiles);
+    compileJobDescription.setClassFileLoader(createClassFileLoader(ecjAdditionalCompilerArguments, outputFolders));
+    compileJobDescription.setRecordDependencies(dependencyDatabase != null);
+    compileJobDescription.setPipelineConfiguration(this._pipelineConfiguration);
+
     if (A4ELogging.isTraceingEnabled()) {
       A4ELogging.trace("CompileJobDescription: %s", compileJobDescription);
     }
 
-    // Step 6: Compile
+    // Step 7: Compile
     CompileJobResult compileJobResult = compile(compileJobDescription);
+    if (compileJobResult.getStatistics().getChunks() > 0) {
+      A4ELogging.info("Compiled %s", compileJobResult.getStatistics());
+    }
 
-    // Step 7: dump result
+    // Step 8: dump result
     CategorizedProblem[] categorizedProblems = compileJobResult.getCategorizedProblems();
 
     // Buffer for messages
@@ -213,13 +298,116 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
       throw new Ant4EclipseException(EcjExceptionCodes.COMPILATION_WAS_NOT_SUCCESFUL);
     }
 
-    // Step 8: Return
+    // Step 9: update the dependency database. If the compilation failed, the database is left untouched, so all
+    // source files that have been scheduled will be compiled again next time.
+    if (dependencyDatabase != null) {
+      dependencyDatabase.update(compileJobResult);
+      writeDependencyDatabase(dependencyDatabase, dependencyDatabaseFile, outputFolders);
+    }
+
+    // Step 10: Return
     return true;
 
   }
 
   /**
-   * Clones all generated class files while copying them into the user specified directory.
+   * <p>
+   * Returns the location of the dependency database or <code>null</code> if the compilation isn't incremental.
+   * </p>
+   * 
+   * @return the location of the dependency database or <code>null</code>.
+   */
+  private File getDependencyDatabaseFile() {
+    if (!this._incremental) {
+      return null;
+    }
+    if (!isIncrementalCompilationSupported()) {
+      A4ELogging.warn("Incremental compilation is not supported by '%s', compiling all source files.", getClass()
+          .getName());
+      return null;
+    }
+    if (this._dependencyDatabase != null) {
+      return this._dependencyDatabase;
+    }
+    File destdir = getJavac().getDestdir();
+    if (destdir == null) {
+      A4ELogging.warn("Incremental compilation requires a destination directory, compiling all source files.");
+      return null;
+    }
+    destdir = destdir.getAbsoluteFile();
+    return new File(destdir.getParentFile(), "." + destdir.getName() + ".dependencies");
+  }
+
+  /**
+   * <p>
+   * Writes the dependency database and the api digests of the given output folders. Dependent projects use the api
+   * digests to decide whether they have to be recompiled.
+   * </p>
+   * 
+   * @param dependencyDatabase
+   *          the dependency database
+   * @param dependencyDatabaseFile
+   *          the location of the dependency database
+   * @param outputFolders
+   *          the output folders of the compilation
+   */
+  private void writeDependencyDatabase(DependencyDatabase dependencyDatabase, File dependencyDatabaseFile,
+      File[] outputFolders) {
+    dependencyDatabase.write(dependencyDatabaseFile);
+    for (File outputFolder : outputFolders) {
+      if (outputFolder.isDirectory()) {
+        AbiDigest.write(outputFolder, dependencyDatabase.getAbiDigest(outputFolder));
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the (distinct) destination folders of the given source files.
+   * </p>
+   * 
+   * @param sourceFiles
+   *          the source files
+   * @return the destination folders of the given source files.
+   */
+  private File[] getDestinationFolders(SourceFile[] sourceFiles) {
+    Set<File> result = new LinkedHashSet<File>();
+    for (SourceFile sourceFile : sourceFiles) {
+      result.add(sourceFile.getDestinationFolder().getAbsoluteFile());
+    }
+    return result.toArray(new File[result.size()]);
+  }
+
+  /**
+   * <p>
+   * Returns the entries of the boot class path and the class path of the javac task, without the given output folders.
+   * </p>
+   * 
+   * @param outputFolders
+   *          the output folders of the compilation
+   * @return the entries of the boot class path and the class path.
+   */
+  private File[] getClasspathFiles(File[] outputFolders) {
+    Set<File> excluded = new HashSet<File>(Arrays.asList(outputFolders));
+    List<File> result = new LinkedList<File>();
+    for (Path path : new Path[] { getJavac().getBootclasspath(), getJavac().getClasspath() }) {
+      if (path == null) {
+        continue;
+      }
+      for (String entry : path.list()) {
+        File file = new File(entry).getAbsoluteFile();
+        if (!excluded.contains(file)) {
+          result.add(file);
+        }
+      }
+    }
+    return result.toArray(new File[result.size()]);
+  }
+
+  /**
+   * Clones all generated class files while copying them into the user specified directory. Class files that already
+   * have been written to the user specified directory are not copied. The destination folders of the class files are
+   * only canonicalized once.
    * 
    * @param destdir
    *          The destination director to save the classes to. Not <code>null</code>.
@@ -227,15 +415,29 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
    *          A map which provides all compiled classes. Not <code>null</code>.
    */
   private void cloneClasses(File destdir, Map<String, File> compiledclasses) {
-    if (!destdir.isAbsolute()) {
-      destdir = destdir.getAbsoluteFile();
-    }
+    destdir = Utilities.getCanonicalFile(destdir.getAbsoluteFile());
+    Map<String, Boolean> destinationFolders = new HashMap<String, Boolean>();
+    Set<File> directories = new HashSet<File>();
     for (Map.Entry<String, File> entry : compiledclasses.entrySet()) {
-      File destfile = Utilities.getCanonicalFile(new File(destdir, entry.getKey()));
-      Utilities.mkdirs(destfile.getParentFile());
-      if (!destfile.equals(entry.getValue())) {
-        Utilities.copy(entry.getValue(), destfile);
+
+      // check whether the class file has been written to the destination directory
+      String path = entry.getValue().getPath();
+      String destinationFolder = path.substring(0, path.length() - entry.getKey().length());
+      Boolean written = destinationFolders.get(destinationFolder);
+      if (written == null) {
+        written = Boolean.valueOf(Utilities.getCanonicalFile(new File(destinationFolder)).equals(destdir));
+        destinationFolders.put(destinationFolder, written);
+      }
+      if (written.booleanValue() || !entry.getValue().isFile()) {
+        // the class file either doesn't need to be copied or has been written to an archive
+        continue;
       }
+
+      File destfile = new File(destdir, entry.getKey());
+      if (directories.add(destfile.getParentFile())) {
+        Utilities.mkdirs(destfile.getParentFile());
+      }
+      Utilities.copy(entry.getValue(), destfile);
     }
   }
 
@@ -412,10 +614,14 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
    * 
    * @param compilerArguments
    *          the compiler arguments, can be <code>null</code>.
+   * @param outputFolders
+   *          the output folders that contain the classes of the source files that are not compiled (only used for
+   *          incremental compilation)
    * @return the class file loader.
    */
   @SuppressWarnings("unchecked")
-  private ClassFileLoader createClassFileLoader(EcjAdditionalCompilerArguments compilerArguments) {
+  private ClassFileLoader createClassFileLoader(EcjAdditionalCompilerArguments compilerArguments,
+      File[] outputFolders) {
 
     // Step 1: create class file loader list
     List<ClassFileLoader> classFileLoaderList = new LinkedList<ClassFileLoader>();
@@ -423,6 +629,14 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
     // Step 2: add boot class loader
     classFileLoaderList.add(createBootClassLoader(compilerArguments));
 
+    // Step 2a: add the output folders (incremental compilation only)
+    for (File outputFolder : outputFolders) {
+      if (outputFolder.isDirectory()) {
+        classFileLoaderList.add(ClassFileLoaderFactory.createClasspathClassFileLoader(outputFolder,
+            EcjAdapter.PROJECT, new File[] { outputFolder }, new File[] {}));
+      }
+    }
+
     // Step 3: add class loader for class path entries
     Iterator<FileResource> iterator = getJavac().getClasspath().iterator();
     while (iterator.hasNext()) {
@@ -652,7 +866,7 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
         }
         strLine = newLine;
       }
-      Utilities.close(in);
+      Utilities.close((Closeable) in);
       StringBuilder underscoreLine = new StringBuilder();
       for (int i = lineStart; i < sourceStart; i++) {
         if (strLine.charAt(i - lineStart) == '\t') {
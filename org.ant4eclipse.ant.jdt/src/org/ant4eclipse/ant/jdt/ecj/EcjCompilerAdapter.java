@@ -53,4 +53,12 @@ public class EcjCompilerAdapter extends A4ECompilerAdapter {
     return result;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected boolean isIncrementalCompilationSupported() {
+    return true;
+  }
+
 } /* ENDCALSS */
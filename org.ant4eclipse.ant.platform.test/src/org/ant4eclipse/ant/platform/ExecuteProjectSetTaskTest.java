@@ -16,6 +16,11 @@ import org.ant4eclipse.platform.test.AbstractWorkspaceBasedBuildFileTest;
 import org.ant4eclipse.testframework.EclipseProjectBuilder;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
 
 public class ExecuteProjectSetTaskTest extends AbstractWorkspaceBasedBuildFileTest {
 
@@ -25,6 +30,22 @@ public class ExecuteProjectSetTaskTest extends AbstractWorkspaceBasedBuildFileTe
       "org.ant4eclipse.lib.platform.test", "org.ant4eclipse.lib.pde", "org.ant4eclipse.lib.pde.test",
       "org.ant4eclipse.lib.pydt", "org.ant4eclipse.lib.pydt.test" };
 
+  /** the references between the projects (dependent first, followed by its dependencies) */
+  private static final String[][] PROJECTREFERENCES = new String[][] {
+      { "org.ant4eclipse.lib.core", "org.ant4eclipse.external" },
+      { "org.ant4eclipse.lib.core.test", "org.ant4eclipse.lib.core" },
+      { "org.ant4eclipse.lib.platform", "org.ant4eclipse.lib.core" },
+      { "org.ant4eclipse.lib.platform.test", "org.ant4eclipse.lib.platform",
+          "org.ant4eclipse.lib.core.test" },
+      { "org.ant4eclipse.lib.jdt", "org.ant4eclipse.lib.platform" },
+      { "org.ant4eclipse.lib.jdt.ecj", "org.ant4eclipse.lib.jdt" },
+      { "org.ant4eclipse.lib.jdt.test", "org.ant4eclipse.lib.jdt.ecj", "org.ant4eclipse.lib.platform.test" },
+      { "org.ant4eclipse.lib.pde", "org.ant4eclipse.lib.jdt" },
+      { "org.ant4eclipse.lib.pde.test", "org.ant4eclipse.lib.pde", "org.ant4eclipse.lib.jdt.test" },
+      { "org.ant4eclipse.lib.pydt", "org.ant4eclipse.lib.platform" },
+      { "org.ant4eclipse.lib.pydt.test", "org.ant4eclipse.lib.pydt",
+          "org.ant4eclipse.lib.platform.test" } };
+
   /**
    * {@inheritDoc}
    */
@@ -79,6 +100,7 @@ public class ExecuteProjectSetTaskTest extends AbstractWorkspaceBasedBuildFileTe
    */
   @Override
   public void tearDown() throws Exception {
+    super.tearDown();
   }
 
   public void testExecuteProjectSet() {
@@ -125,4 +147,59 @@ public class ExecuteProjectSetTaskTest extends AbstractWorkspaceBasedBuildFileTe
     expectLog("executeInvalidProjectSetFiltered", expected.toString());
   }
 
+  public void testExecuteProjectSetParallel() throws Exception {
+    executeTarget("executeProjectSetParallel");
+    for (String projectname : PROJECTNAMES_VALID) {
+      assertLogContaining(String.format("%s%s%s~", getTestWorkspaceDirectory().getAbsolutePath(), File.separator,
+          projectname));
+    }
+
+    // the durations of the projects are stored for the next run
+    Properties timings = new Properties();
+    FileInputStream input = new FileInputStream(new File(getTestWorkspaceDirectory(), "timings.properties"));
+    try {
+      timings.load(input);
+    } finally {
+      input.close();
+    }
+    assertEquals(PROJECTNAMES_VALID.length, timings.size());
+
+    // the second run uses the durations of the first run
+    executeTarget("executeProjectSetParallel");
+  }
+
+  public void testExecuteProjectSetParallelBuildOrder() throws Exception {
+
+    // the references contradict the order of the team project set
+    for (String[] references : PROJECTREFERENCES) {
+      EclipseProjectBuilder builder = new EclipseProjectBuilder(references[0]);
+      for (int i = 1; i < references.length; i++) {
+        builder.withProjectReference(references[i]);
+      }
+      builder.createIn(getTestWorkspaceDirectory());
+    }
+
+    executeTarget("executeProjectSetParallelBuildOrder");
+
+    // the log also contains the utilization of the worker threads
+    List<String> executed = new ArrayList<String>();
+    for (String entry : getLog().split("~")) {
+      if (Arrays.asList(PROJECTNAMES_VALID).contains(entry)) {
+        executed.add(entry);
+      }
+    }
+    assertEquals(PROJECTNAMES_VALID.length, executed.size());
+    for (String projectname : PROJECTNAMES_VALID) {
+      assertTrue(projectname, executed.contains(projectname));
+    }
+
+    // each project has been executed after the projects it refers to
+    for (String[] references : PROJECTREFERENCES) {
+      for (int i = 1; i < references.length; i++) {
+        assertTrue(references[i] + " < " + references[0], executed.indexOf(references[i]) < executed
+            .indexOf(references[0]));
+      }
+    }
+  }
+
 }
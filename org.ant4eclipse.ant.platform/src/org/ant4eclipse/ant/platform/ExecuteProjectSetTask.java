@@ -11,13 +11,19 @@
  **********************************************************************/
 package org.ant4eclipse.ant.platform;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.FutureTask;
+import java.util.Properties;
 
 import org.ant4eclipse.ant.platform.core.MacroExecutionComponent;
 import org.ant4eclipse.ant.platform.core.MacroExecutionValues;
@@ -29,9 +35,15 @@ import org.ant4eclipse.ant.platform.core.delegate.MacroExecutionValuesProvider;
 import org.ant4eclipse.ant.platform.core.delegate.ProjectReferenceAwareDelegate;
 import org.ant4eclipse.ant.platform.core.delegate.SubElementAndAttributesDelegate;
 import org.ant4eclipse.ant.platform.core.task.AbstractProjectSetPathBasedTask;
+import org.ant4eclipse.lib.core.dependencygraph.DependencyGraph;
+import org.ant4eclipse.lib.core.dependencygraph.DependencyGraphExecutor;
+import org.ant4eclipse.lib.core.dependencygraph.VertexAction;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.PerformanceLogging;
 import org.ant4eclipse.lib.core.util.StopWatchService;
+import org.ant4eclipse.lib.core.util.TraceRecorder;
+import org.ant4eclipse.lib.core.util.Utilities;
 import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 import org.ant4eclipse.lib.platform.tools.BuildOrderResolver;
 import org.apache.tools.ant.BuildException;
@@ -62,6 +74,9 @@ public class ExecuteProjectSetTask extends AbstractProjectSetPathBasedTask imple
   /** indicates the number of concurrent threads */
   private int                             _threadCount       = 1;
 
+  /** the file that contains the durations of the projects of the previous run */
+  private File                            _timingsFile;
+
   /**
    * <p>
    * Creates a new instance of type {@link ExecuteProjectSetTask}.
@@ -161,21 +176,59 @@ public class ExecuteProjectSetTask extends AbstractProjectSetPathBasedTask imple
     return this._macroExecutionDelegate.getScopedMacroDefinitions();
   }
 
+  /**
+   * <p>
+   * Returns the number of threads that execute the projects.
+   * </p>
+   * 
+   * @return the number of threads that execute the projects
+   */
   public int getThreadCount() {
     return this._threadCount;
   }
 
+  /**
+   * <p>
+   * Sets the number of threads that execute the projects. If more than one thread is used, each project is executed as
+   * soon as all projects it depends on have been executed (if the build order is resolved).
+   * </p>
+   * 
+   * @param threads
+   *          the number of threads that execute the projects
+   */
   public void setThreadCount(int threads) {
     this._threadCount = threads;
   }
 
+  /**
+   * <p>
+   * Returns the file that contains the durations of the projects of the previous run.
+   * </p>
+   * 
+   * @return the file that contains the durations of the projects of the previous run (might be <code>null</code>)
+   */
+  public File getTimingsFile() {
+    return this._timingsFile;
+  }
+
+  /**
+   * <p>
+   * Sets the file that contains the durations of the projects of the previous run. If set, the durations are used to
+   * start the projects with the longest critical path first (in parallel mode) and the file is updated with the
+   * durations of this run.
+   * </p>
+   * 
+   * @param timingsFile
+   *          the file that contains the durations of the projects of the previous run
+   */
+  public void setTimingsFile(File timingsFile) {
+    this._timingsFile = timingsFile;
+  }
+
   @Override
   protected void preconditions() throws BuildException {
     super.preconditions();
 
-    if (this._resolveBuildOrder && this._threadCount > 1) {
-      throw new BuildException("In parallel mode (threadCount>1) build order can not be resolved");
-    }
     if (this._threadCount < 1) {
       throw new BuildException("ThreadCount must at least be 1");
     }
@@ -195,7 +248,15 @@ public class ExecuteProjectSetTask extends AbstractProjectSetPathBasedTask imple
 
     // get all eclipse projects and calculate the build order if necessary
     List<EclipseProject> projects = null;
-    if (this._resolveBuildOrder) {
+    DependencyGraph<EclipseProject> buildGraph = null;
+    if (this._resolveBuildOrder && (this._threadCount > 1)) {
+
+      // resolve the build graph, so each project can be executed as soon as its dependencies have been executed
+      buildGraph = BuildOrderResolver.resolveBuildGraph(getWorkspace(), getProjectNames(),
+          this._projectReferenceAwareDelegate.getProjectReferenceTypes(),
+          this._subElementAndAttributeDelegate.getSubElements());
+      projects = buildGraph.calculateOrder();
+    } else if (this._resolveBuildOrder) {
 
       // resolve the build order
       projects = BuildOrderResolver.resolveBuildOrder(getWorkspace(), getProjectNames(),
@@ -204,143 +265,195 @@ public class ExecuteProjectSetTask extends AbstractProjectSetPathBasedTask imple
     } else {
       // only get the specified projects
       projects = Arrays.asList(getWorkspace().getProjects(getProjectNames(), false));
-    }
-
-    final BuildCallable[] buildCallables = new BuildCallable[this._threadCount];
-    for (int i = 0; i < buildCallables.length; i++) {
-      buildCallables[i] = new BuildCallable();
-    }
-
-    int callableIndex = 0;
-    for (final EclipseProject eclipseProject : projects) {
-      buildCallables[callableIndex].addProject(eclipseProject);
-      callableIndex++;
-      if (callableIndex >= buildCallables.length) {
-        callableIndex = 0;
+      if (this._threadCount > 1) {
+        // the projects don't depend on each other
+        buildGraph = new DependencyGraph<EclipseProject>();
+        for (EclipseProject eclipseProject : projects) {
+          if (!buildGraph.containsVertex(eclipseProject)) {
+            buildGraph.addVertex(eclipseProject);
+          }
+        }
       }
     }
 
-    // execute the macro definitions
-    for (ScopedMacroDefinition<Scope> scopedMacroDefinition : getScopedMacroDefinitions()) {
-
-      //
-      for (BuildCallable buildCallable : buildCallables) {
-        buildCallable.setScopedMacroDefinition(scopedMacroDefinition);
-      }
-
-      if (buildCallables.length > 1) {
-
-        // create the future tasks
-        @SuppressWarnings("unchecked")
-        FutureTask<Void>[] futureTasks = new FutureTask[this._threadCount];
-        for (int i = 0; i < futureTasks.length; i++) {
-          futureTasks[i] = new FutureTask<Void>(buildCallables[i]);
-
-          Thread thread = new Thread(futureTasks[i]);
-          thread.setName("A4E-" + thread.getName());
-          thread.start();
-        }
-
-        // collect the result
-
-        BuildException buildException = null;
-
-        for (FutureTask<Void> futureTask : futureTasks) {
-          if (buildException != null) {
-            // At least one task crashed: cancel all others
-            try {
-              A4ELogging.debug("One task crashed, canceling task " + futureTask);
-              futureTask.cancel(true);
-            } catch (Exception ex) {
-              // ignore
-            }
-
-            continue;
-          }
-
-          // Wait for task to complete
+    // the durations of the previous run
+    Properties timings = readTimings();
+    Map<EclipseProject, Long> weights = null;
+    if (!timings.isEmpty()) {
+      weights = new HashMap<EclipseProject, Long>();
+      for (EclipseProject eclipseProject : projects) {
+        String duration = timings.getProperty(eclipseProject.getSpecifiedName());
+        if (duration != null) {
           try {
-            futureTask.get();
-          } catch (Exception e) {
-            Throwable t = e;
-            if (e instanceof ExecutionException) {
-              t = ((ExecutionException) e).getCause();
-            }
-            if (t instanceof BuildException) {
-              buildException = (BuildException) t;
-            }
-            buildException = new BuildException(e);
+            weights.put(eclipseProject, Long.valueOf(duration));
+          } catch (NumberFormatException ex) {
+            // ignore the invalid duration
           }
         }
+      }
+    }
 
-        if (buildException != null) {
-          throw buildException;
-        }
+    // execute the macro definitions
+    Map<String, Long> durations = new LinkedHashMap<String, Long>();
+    for (ScopedMacroDefinition<Scope> scopedMacroDefinition : getScopedMacroDefinitions()) {
+      if (buildGraph != null) {
+        executeInParallel(buildGraph, scopedMacroDefinition, weights, durations);
       } else {
-        try {
-          buildCallables[0].call();
-        } catch (Exception e) {
-          Throwable t = e;
-          if (e instanceof ExecutionException) {
-            t = ((ExecutionException) e).getCause();
-          }
-          if (t instanceof BuildException) {
-            throw (BuildException) t;
-          }
-          throw new BuildException(e);
-
+        for (EclipseProject eclipseProject : projects) {
+          long start = System.nanoTime();
+          executeProject(scopedMacroDefinition, eclipseProject);
+          addDuration(durations, eclipseProject, (System.nanoTime() - start) / 1000000L);
         }
       }
+    }
 
+    // store the durations of this run
+    if (this._timingsFile != null) {
+      for (Map.Entry<String, Long> entry : durations.entrySet()) {
+        timings.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+      }
+      writeTimings(timings);
     }
 
     stopWatchService.getOrCreateStopWatch("executeProjectSet").stop();
 
   }
 
-  class BuildCallable implements Callable<Void> {
-    private final List<EclipseProject>   _projects = new LinkedList<EclipseProject>();
-
-    private ScopedMacroDefinition<Scope> _scopedMacroDefinition;
-
-    public void addProject(EclipseProject project) {
-      this._projects.add(project);
+  /**
+   * <p>
+   * Executes the given macro definition for all projects of the given build graph using the configured number of
+   * threads. A project is executed as soon as all projects it depends on have been executed. If the execution fails for
+   * a project, the executions of the other projects are cancelled.
+   * </p>
+   * 
+   * @param buildGraph
+   *          the build graph
+   * @param scopedMacroDefinition
+   *          the macro definition
+   * @param weights
+   *          the durations of the projects of the previous run (might be <code>null</code>)
+   * @param durations
+   *          the map that receives the durations of the projects (key: the name of the project)
+   */
+  private void executeInParallel(DependencyGraph<EclipseProject> buildGraph,
+      final ScopedMacroDefinition<Scope> scopedMacroDefinition, Map<EclipseProject, Long> weights,
+      Map<String, Long> durations) {
+
+    DependencyGraphExecutor<EclipseProject> executor = new DependencyGraphExecutor<EclipseProject>(buildGraph,
+        this._threadCount, "A4E");
+    executor.setWeights(weights);
+    executor.execute(new VertexAction<EclipseProject>() {
+      public void execute(EclipseProject eclipseProject) {
+        executeProject(scopedMacroDefinition, eclipseProject);
+      }
+    });
 
+    for (Map.Entry<EclipseProject, Long> entry : executor.getDurations().entrySet()) {
+      addDuration(durations, entry.getKey(), entry.getValue().longValue());
     }
 
-    public void setScopedMacroDefinition(ScopedMacroDefinition<Scope> scopedMacroDefinition) {
-      this._scopedMacroDefinition = scopedMacroDefinition;
-
+    // report the utilization of the worker threads
+    for (DependencyGraphExecutor.WorkerStatistics statistics : executor.getWorkerStatistics()) {
+      A4ELogging.info("Worker '%s' executed %d project(s) in %d ms (%d percent utilization)", statistics.getName(),
+          Integer.valueOf(statistics.getVertexCount()), Long.valueOf(statistics.getBusyTime()), Integer
+              .valueOf(statistics.getUtilization()));
     }
+  }
 
-    public Void call() throws Exception {
-
-      // System.out.println(String.format("ExecuteProjectSetTask[%s] 1: %s", Thread.currentThread(), this._projects));
-
-      for (final EclipseProject eclipseProject : this._projects) {
-
-        // System.out.println(String.format("ExecuteProjectSetTask[%s] 2: %s", Thread.currentThread(),
-        // eclipseProject.getSpecifiedName()));
-
-        // execute macro instance
-        ExecuteProjectSetTask.this._macroExecutionDelegate.executeMacroInstance(
-            this._scopedMacroDefinition.getMacroDef(), new MacroExecutionValuesProvider() {
-
-              public MacroExecutionValues provideMacroExecutionValues(MacroExecutionValues values) {
-                // set the values
-                ExecuteProjectSetTask.this._platformExecutorValuesProvider
-                    .provideExecutorValues(eclipseProject, values);
+  /**
+   * <p>
+   * Executes the given macro definition for the given project.
+   * </p>
+   * 
+   * @param scopedMacroDefinition
+   *          the macro definition
+   * @param eclipseProject
+   *          the project
+   */
+  private void executeProject(ScopedMacroDefinition<Scope> scopedMacroDefinition, final EclipseProject eclipseProject) {
+
+    // spans that are recorded while the project is built are attributed to the project
+    String previousProject = TraceRecorder.setProject(eclipseProject.getSpecifiedName());
+    long startNanos = System.nanoTime();
+    try {
+      // execute macro instance
+      this._macroExecutionDelegate.executeMacroInstance(scopedMacroDefinition.getMacroDef(),
+          new MacroExecutionValuesProvider() {
+
+            public MacroExecutionValues provideMacroExecutionValues(MacroExecutionValues values) {
+              // set the values
+              ExecuteProjectSetTask.this._platformExecutorValuesProvider.provideExecutorValues(eclipseProject, values);
+
+              // return result
+              return values;
+            }
+          });
+    } finally {
+      TraceRecorder traceRecorder = PerformanceLogging.getTraceRecorder();
+      if (traceRecorder != null) {
+        long durationNanos = System.nanoTime() - startNanos;
+        String[] args = new String[] { "scope", String.valueOf(scopedMacroDefinition.getScope()) };
+        traceRecorder.record(eclipseProject.getSpecifiedName(), TraceRecorder.PROJECT_CATEGORY, startNanos,
+            durationNanos, args);
+      }
+      TraceRecorder.setProject(previousProject);
+    }
+  }
 
-                // System.out.println(String.format("ExecuteProjectSetTask[%s] 3: %s", Thread.currentThread(),
-                // values.getProperties()));
+  private static void addDuration(Map<String, Long> durations, EclipseProject eclipseProject, long duration) {
+    Long previous = durations.get(eclipseProject.getSpecifiedName());
+    durations.put(eclipseProject.getSpecifiedName(), Long.valueOf(previous != null ? previous.longValue() + duration
+        : duration));
+  }
 
-                // return result
-                return values;
-              }
-            });
+  /**
+   * <p>
+   * Reads the durations of the previous run from the timings file. A missing or unreadable file results in empty
+   * timings.
+   * </p>
+   * 
+   * @return the durations of the previous run (key: the name of the project, value: the duration in milliseconds)
+   */
+  private Properties readTimings() {
+    Properties result = new Properties();
+    if ((this._timingsFile == null) || !this._timingsFile.isFile()) {
+      return result;
+    }
+    InputStream input = null;
+    try {
+      input = new FileInputStream(this._timingsFile);
+      result.load(input);
+    } catch (IOException ex) {
+      A4ELogging.warn("Failed to read the timings file '%s': %s", this._timingsFile, ex.getMessage());
+      result.clear();
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+    return result;
+  }
 
-      }
-      return null;
+  /**
+   * <p>
+   * Writes the given durations to the timings file. A failure is only logged since the timings are just an
+   * optimization.
+   * </p>
+   * 
+   * @param timings
+   *          the durations (key: the name of the project, value: the duration in milliseconds)
+   */
+  private void writeTimings(Properties timings) {
+    File parent = this._timingsFile.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      Utilities.mkdirs(parent);
+    }
+    OutputStream output = null;
+    try {
+      output = new FileOutputStream(this._timingsFile);
+      timings.store(output, "durations of the projects in milliseconds");
+    } catch (IOException ex) {
+      A4ELogging.warn("Failed to write the timings file '%s': %s", this._timingsFile, ex.getMessage());
+    } finally {
+      Utilities.close((Closeable) output);
     }
   }
 
@@ -3,13 +3,16 @@ package org.ant4eclipse.ant.platform;
 import java.io.File;
 import java.io.FileFilter;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.ant4eclipse.ant.core.AbstractAnt4EclipseDataType;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
 import org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry.ProjectFileParser;
 import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.FilesetWorkspaceDefinition;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.RegistrationTimings;
 import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceRegistry;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.DirectoryScanner;
@@ -27,17 +30,42 @@ import org.apache.tools.ant.types.DirSet;
 public class WorkspaceDefinitionDataType extends AbstractAnt4EclipseDataType {
 
   /** - */
-  private String       _id;
+  private String              _id;
 
   /**
    * The filesets which are combined to register the workspace
    */
-  private List<DirSet> _dirSet;
+  private List<DirSet>        _dirSet;
 
   /**
    * indicates if this definition scanns directories recursive
    */
-  private boolean      recursive;
+  private boolean             recursive;
+
+  /**
+   * the number of threads used to read the projects (0 for the default of the workspace registry)
+   */
+  private int                 _threadCount;
+
+  /**
+   * the prefix of the properties that receive the registration timings (might be <code>null</code>)
+   */
+  private String              _timingsProperty;
+
+  /**
+   * the file that stores the snapshot of the workspace (might be <code>null</code>)
+   */
+  private File                _snapshotFile;
+
+  /**
+   * the timings of the workspace registration
+   */
+  private RegistrationTimings _registrationTimings;
+
+  /**
+   * the default excludes of ant (only determined once per definition)
+   */
+  private String[]            _defaultExcludes;
 
   /**
    * <p>
@@ -68,6 +96,48 @@ public class WorkspaceDefinitionDataType extends AbstractAnt4EclipseDataType {
     this.recursive = recursive;
   }
 
+  /**
+   * Sets the number of threads used to read and post process the projects of the workspace.
+   * 
+   * @param threadCount
+   *          the number of threads
+   */
+  public void setThreadCount(int threadCount) {
+    this._threadCount = threadCount;
+  }
+
+  /**
+   * Sets the prefix of the properties that receive the timings of the workspace registration in milliseconds
+   * (<code>&lt;prefix&gt;.discovery</code>, <code>&lt;prefix&gt;.read</code> and <code>&lt;prefix&gt;.postprocess</code>)
+   * and the number of registered projects (<code>&lt;prefix&gt;.projects</code>).
+   * 
+   * @param timingsProperty
+   *          the prefix of the properties
+   */
+  public void setTimingsProperty(String timingsProperty) {
+    this._timingsProperty = timingsProperty;
+  }
+
+  /**
+   * Sets the file that stores a snapshot of the workspace. Projects that haven't been changed since the snapshot has
+   * been written don't need to be parsed again.
+   * 
+   * @param snapshotFile
+   *          the snapshot file
+   */
+  public void setSnapshotFile(File snapshotFile) {
+    this._snapshotFile = snapshotFile;
+  }
+
+  /**
+   * Returns the timings of the workspace registration.
+   * 
+   * @return the timings of the workspace registration or <code>null</code> if the workspace hasn't been registered yet
+   */
+  public RegistrationTimings getRegistrationTimings() {
+    return this._registrationTimings;
+  }
+
   /**
    * <p>
    * </p>
@@ -90,8 +160,12 @@ public class WorkspaceDefinitionDataType extends AbstractAnt4EclipseDataType {
     if (this._id == null) {
       throw new BuildException("Workspace registration requires the identifier property to be set!");
     }
-    // create a workspace from the filesets
-    List<File> projectDirectories = new ArrayList<File>();
+
+    if (this._threadCount < 0) {
+      throw new BuildException("The attribute 'threadCount' must not be negative!");
+    }
+    // create a workspace from the filesets (a directory might be included by several filesets)
+    Set<File> projectDirectories = new LinkedHashSet<File>();
     for (DirSet fs : this._dirSet) {
       DirectoryScanner directoryScanner = fs.getDirectoryScanner();
       File fsBase = directoryScanner.getBasedir();
@@ -104,8 +178,21 @@ public class WorkspaceDefinitionDataType extends AbstractAnt4EclipseDataType {
       A4ELogging.warn("No directories found for workspace %s", this._id);
     }
     WorkspaceRegistry registry = ServiceRegistryAccess.instance().getService(WorkspaceRegistry.class);
-    registry.registerWorkspace(this._id,
-        new FilesetWorkspaceDefinition(projectDirectories.toArray(new File[projectDirectories.size()])));
+    FilesetWorkspaceDefinition workspaceDefinition = new FilesetWorkspaceDefinition(projectDirectories
+        .toArray(new File[projectDirectories.size()]));
+    registry.registerWorkspace(this._id, workspaceDefinition, this._threadCount, this._snapshotFile);
+    this._registrationTimings = registry.getRegistrationTimings(this._id);
+
+    if (this._timingsProperty != null) {
+      getProject().setNewProperty(this._timingsProperty + ".projects",
+          String.valueOf(this._registrationTimings.getProjectCount()));
+      getProject().setNewProperty(this._timingsProperty + ".discovery",
+          String.valueOf(this._registrationTimings.getDiscoveryTime()));
+      getProject().setNewProperty(this._timingsProperty + ".read",
+          String.valueOf(this._registrationTimings.getReadTime()));
+      getProject().setNewProperty(this._timingsProperty + ".postprocess",
+          String.valueOf(this._registrationTimings.getPostProcessTime()));
+    }
   }
 
   /**
@@ -114,7 +201,7 @@ public class WorkspaceDefinitionDataType extends AbstractAnt4EclipseDataType {
    * @param projectDirectories
    * @param file
    */
-  private void addDirectory(List<File> projectDirectories, File file) {
+  private void addDirectory(Set<File> projectDirectories, File file) {
     if (!isValidDirectory(file)) {
       return;
     }
@@ -122,7 +209,7 @@ public class WorkspaceDefinitionDataType extends AbstractAnt4EclipseDataType {
     if (!isEclipseProject(file)) {
       // Do we use recursive scanning?
       if (this.recursive) {
-        A4ELogging.debug("Scann " + file + " for subdirectories of eclipse projects.");
+        A4ELogging.debug("Scann %s for subdirectories of eclipse projects.", file);
         File[] subFolders = file.listFiles(new FileFilter() {
 
           public boolean accept(File pathname) {
@@ -137,7 +224,7 @@ public class WorkspaceDefinitionDataType extends AbstractAnt4EclipseDataType {
           return;
         }
       }
-      A4ELogging.debug("File " + file + " is not an eclipse project directory and will be ignored.");
+      A4ELogging.debug("File %s is not an eclipse project directory and will be ignored.", file);
       return;
     }
     // Everything is fine, we add this directory!
@@ -162,22 +249,23 @@ public class WorkspaceDefinitionDataType extends AbstractAnt4EclipseDataType {
    * @return
    */
   protected boolean isValidDirectory(File file) {
-    // make sure it exists
-    if (!file.exists()) {
-      A4ELogging.debug("File " + file + " does not exist and will be ignored.");
-      return false;
-    }
-    // make sure its a directory
+    // make sure its an existing directory
     if (!file.isDirectory()) {
-      A4ELogging.debug("File " + file + " is not a directory and will be ignored.");
+      if (!file.exists()) {
+        A4ELogging.debug("File %s does not exist and will be ignored.", file);
+      } else {
+        A4ELogging.debug("File %s is not a directory and will be ignored.", file);
+      }
       return false;
     }
     // and not a "excluded" one
-    String[] excludes = DirectoryScanner.getDefaultExcludes();
+    if (this._defaultExcludes == null) {
+      this._defaultExcludes = DirectoryScanner.getDefaultExcludes();
+    }
     String fileName = file.toString();
-    for (String exclude : excludes) {
+    for (String exclude : this._defaultExcludes) {
       if (DirectoryScanner.match(exclude, fileName)) {
-        A4ELogging.debug("File " + file + " is an excluded directory and will be ignored.");
+        A4ELogging.debug("File %s is an excluded directory and will be ignored.", file);
         return false;
       }
     }
@@ -25,7 +25,9 @@ import org.ant4eclipse.ant.platform.core.delegate.helper.AntReferencesRaper;
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.ldapfilter.LdapFilter;
 import org.ant4eclipse.lib.core.ldapfilter.ParseException;
+import org.ant4eclipse.lib.core.util.PerformanceLogging;
 import org.ant4eclipse.lib.core.util.StringMap;
+import org.ant4eclipse.lib.core.util.TraceRecorder;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.PropertyHelper;
 import org.apache.tools.ant.Task;
@@ -45,8 +47,11 @@ import org.apache.tools.ant.taskdefs.MacroInstance;
  */
 public class MacroExecutionDelegate<E> extends AbstractAntDelegate implements MacroExecutionComponent<E> {
 
+  /** the category of the spans that are recorded for macro executions */
+  private static final String            MACRO_CATEGORY = "macro";
+
   /** the prefix for all scoped properties and references */
-  private String                         _prefix = null;
+  private String                         _prefix        = null;
 
   /** list of all macro definitions */
   private List<ScopedMacroDefinition<E>> _macroDefs;
@@ -174,11 +179,40 @@ public class MacroExecutionDelegate<E> extends AbstractAntDelegate implements Ma
     // System.out.println(macroExecutionValues);
     // ******
 
-    // execute macro instance
-    instance.execute();
+    // execute macro instance (recorded as a span if a trace is running)
+    TraceRecorder traceRecorder = PerformanceLogging.getTraceRecorder();
+    long startNanos = System.nanoTime();
+    try {
+      instance.execute();
+    } finally {
+      if (traceRecorder != null) {
+        long durationNanos = System.nanoTime() - startNanos;
+        String[] args = new String[] { "scope", String.valueOf(getScope(macroDef)) };
+        traceRecorder.record(((Task) getProjectComponent()).getTaskName(), MACRO_CATEGORY, startNanos, durationNanos,
+            args);
+      }
+    }
 
     // unset scoped values
     antPropertiesRaper.unsetScopedValues();
     antReferencesRaper.unsetScopedValues();
   }
+
+  /**
+   * <p>
+   * Returns the scope of the given macro definition.
+   * </p>
+   * 
+   * @param macroDef
+   *          the macro definition
+   * @return the scope or <code>null</code> if the macro definition hasn't been created by this delegate.
+   */
+  private E getScope(MacroDef macroDef) {
+    for (ScopedMacroDefinition<E> scopedMacroDefinition : this._macroDefs) {
+      if (scopedMacroDefinition.getMacroDef() == macroDef) {
+        return scopedMacroDefinition.getScope();
+      }
+    }
+    return null;
+  }
 }
@@ -55,4 +55,11 @@ public final class CRoleIdentifier implements ProjectRoleIdentifier {
   public void postProcess(EclipseProject project) {
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public String[] getProjectFiles() {
+    return new String[] { ".cproject" };
+  }
+
 } /* ENDCLASS */
@@ -12,13 +12,17 @@
 package org.ant4eclipse.lib.core;
 
 import org.ant4eclipse.lib.core.data.VersionTest;
+import org.ant4eclipse.lib.core.dependencygraph.DependencyGraphExecutorTest;
 import org.ant4eclipse.lib.core.dependencygraph.DependencyGraphTest;
 import org.ant4eclipse.lib.core.logging.Failuretest;
 import org.ant4eclipse.lib.core.logging.LoggingUsageTest;
 import org.ant4eclipse.lib.core.nls.NLSTest;
 import org.ant4eclipse.lib.core.service.PropertiesBasedServiceRegistryConfigurationTest;
 import org.ant4eclipse.lib.core.service.ServiceRegistryTest;
+import org.ant4eclipse.lib.core.util.DigestHelperTest;
 import org.ant4eclipse.lib.core.util.ManifestHelperTest;
+import org.ant4eclipse.lib.core.util.StopWatchTest;
+import org.ant4eclipse.lib.core.util.TraceRecorderTest;
 import org.ant4eclipse.lib.core.util.UtilitiesTest;
 import org.ant4eclipse.lib.core.xquery.XQueryHandlerTest;
 import org.junit.runner.RunWith;
@@ -26,8 +30,9 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ AssureTest.class, ClassNameTest.class, DefaultConfiguratorTest.class, VersionTest.class,
-    DependencyGraphTest.class, Failuretest.class, LoggingUsageTest.class, NLSTest.class,
-    PropertiesBasedServiceRegistryConfigurationTest.class, ServiceRegistryTest.class, ManifestHelperTest.class,
-    UtilitiesTest.class, XQueryHandlerTest.class })
+    DependencyGraphTest.class, DependencyGraphExecutorTest.class, Failuretest.class, LoggingUsageTest.class,
+    NLSTest.class, PropertiesBasedServiceRegistryConfigurationTest.class, ServiceRegistryTest.class,
+    DigestHelperTest.class, ManifestHelperTest.class, StopWatchTest.class, TraceRecorderTest.class, UtilitiesTest.class,
+    XQueryHandlerTest.class })
 public class AllCoreTests {
 } /* ENDCLASS */
@@ -0,0 +1,161 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.dependencygraph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test: DependencyGraphExecutor
+ */
+public class DependencyGraphExecutorTest {
+
+  @Test
+  public void dependenciesFirst() {
+    final DependencyGraph<String> graph = new DependencyGraph<String>();
+    graph.addEdge("app", "ui");
+    graph.addEdge("app", "core");
+    graph.addEdge("ui", "core");
+    graph.addEdge("test", "core");
+    graph.addVertex("tools");
+
+    final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+    DependencyGraphExecutor<String> executor = new DependencyGraphExecutor<String>(graph, 4, "test");
+    executor.execute(new VertexAction<String>() {
+      public void execute(String vertex) {
+        for (String child : graph.getChildren(vertex)) {
+          Assert.assertTrue(vertex + " -> " + child, executed.contains(child));
+        }
+        executed.add(vertex);
+      }
+    });
+
+    Assert.assertEquals(5, executed.size());
+    Assert.assertEquals(5, executor.getDurations().size());
+    int vertices = 0;
+    for (DependencyGraphExecutor.WorkerStatistics statistics : executor.getWorkerStatistics()) {
+      Assert.assertTrue(statistics.getName().startsWith("test-"));
+      vertices += statistics.getVertexCount();
+    }
+    Assert.assertEquals(5, vertices);
+  }
+
+  @Test
+  public void independentVerticesRunInParallel() throws Exception {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+    graph.addVertex("a");
+    graph.addVertex("b");
+
+    // each action waits for the other one, so this only finishes if both run at the same time
+    final CountDownLatch latch = new CountDownLatch(2);
+    new DependencyGraphExecutor<String>(graph, 2, "test").execute(new VertexAction<String>() {
+      public void execute(String vertex) throws Exception {
+        latch.countDown();
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+      }
+    });
+  }
+
+  @Test
+  public void criticalPathFirst() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+    graph.addVertex("short");
+    graph.addEdge("long2", "long1");
+
+    final List<String> executed = new ArrayList<String>();
+    VertexAction<String> action = new VertexAction<String>() {
+      public void execute(String vertex) {
+        executed.add(vertex);
+      }
+    };
+
+    // by default the order of the graph is used
+    DependencyGraphExecutor<String> executor = new DependencyGraphExecutor<String>(graph, 1, "test");
+    executor.execute(action);
+    Assert.assertEquals(Arrays.asList("short", "long1", "long2"), executed);
+
+    // the vertex with the longest critical path comes first
+    Map<String, Long> weights = new HashMap<String, Long>();
+    weights.put("short", Long.valueOf(100));
+    weights.put("long1", Long.valueOf(80));
+    weights.put("long2", Long.valueOf(80));
+    executor.setWeights(weights);
+    executed.clear();
+    executor.execute(action);
+    Assert.assertEquals(Arrays.asList("long1", "short", "long2"), executed);
+  }
+
+  @Test
+  public void failFast() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+    graph.addEdge("b", "a");
+    graph.addEdge("c", "b");
+    graph.addVertex("slow");
+
+    final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+    final List<String> interrupted = Collections.synchronizedList(new ArrayList<String>());
+    try {
+      new DependencyGraphExecutor<String>(graph, 2, "test").execute(new VertexAction<String>() {
+        public void execute(String vertex) {
+          executed.add(vertex);
+          if ("slow".equals(vertex)) {
+            try {
+              Thread.sleep(10000);
+            } catch (InterruptedException ex) {
+              // the action takes a while to clean up
+              try {
+                Thread.sleep(200);
+              } catch (InterruptedException ex2) {
+                // not expected, the executor only interrupts once
+              }
+              interrupted.add(vertex);
+            }
+          } else if ("b".equals(vertex)) {
+            throw new IllegalStateException("failed: " + vertex);
+          }
+        }
+      });
+      Assert.fail();
+    } catch (IllegalStateException ex) {
+      Assert.assertEquals("failed: b", ex.getMessage());
+    }
+    Assert.assertFalse(executed.contains("c"));
+
+    // the running action has been interrupted and has finished before the failure was rethrown
+    Assert.assertEquals(Arrays.asList("slow"), interrupted);
+  }
+
+  @Test
+  public void subgraph() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+    graph.addEdge("a", "b");
+    graph.addEdge("b", "c");
+    graph.addEdge("a", "d");
+    graph.addVertex("e");
+
+    // the dependency of a on c via b is kept
+    DependencyGraph<String> subgraph = graph.createSubgraph(Arrays.asList("a", "c", "e"));
+    Assert.assertEquals(Arrays.asList("c"), subgraph.getChildren("a"));
+    Assert.assertTrue(subgraph.getChildren("c").isEmpty());
+    Assert.assertEquals(Arrays.asList("c", "e", "a"), subgraph.calculateOrder());
+  }
+
+} /* ENDCLASS */
@@ -18,6 +18,7 @@ import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -87,6 +88,76 @@ public class DependencyGraphTest {
     }
   }
 
+  @Test
+  public void allCycles() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+
+    graph.addEdge("a", "b");
+    graph.addEdge("b", "c");
+    graph.addEdge("c", "a");
+    graph.addEdge("c", "d");
+    graph.addEdge("d", "e");
+    graph.addEdge("e", "d");
+    graph.addEdge("f", "f");
+    graph.addEdge("g", "a");
+
+    List<List<String>> cycles = graph.calculateCycles();
+    Assert.assertEquals(3, cycles.size());
+    Assert.assertEquals(Arrays.asList("a", "b", "c"), cycles.get(0));
+    Assert.assertEquals(Arrays.asList("d", "e"), cycles.get(1));
+    Assert.assertEquals(Arrays.asList("f"), cycles.get(2));
+
+    try {
+      graph.calculateLayers();
+      Assert.fail();
+    } catch (Ant4EclipseException ex) {
+      Assert.assertEquals(CoreExceptionCode.CYCLIC_DEPENDENCIES_EXCEPTION, ex.getExceptionCode());
+      Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("a -> b -> c -> a"));
+      Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("d -> e -> d"));
+      Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("f -> f"));
+    }
+  }
+
+  @Test
+  public void layers() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+
+    graph.addVertex("app");
+    graph.addEdge("app", "ui");
+    graph.addEdge("app", "core");
+    graph.addEdge("ui", "core");
+    graph.addEdge("ui", "core");
+    graph.addEdge("test", "core");
+    graph.addVertex("tools");
+
+    Assert.assertTrue(graph.calculateCycles().isEmpty());
+
+    List<List<String>> layers = graph.calculateLayers();
+    Assert.assertEquals(3, layers.size());
+    Assert.assertEquals(Arrays.asList("core", "tools"), layers.get(0));
+    Assert.assertEquals(Arrays.asList("ui", "test"), layers.get(1));
+    Assert.assertEquals(Arrays.asList("app"), layers.get(2));
+    Assert.assertEquals(Arrays.asList("core", "tools", "ui", "test", "app"), graph.calculateOrder());
+  }
+
+  @Test
+  public void deepGraph() {
+    DependencyGraph<Integer> graph = new DependencyGraph<Integer>();
+    int count = 100000;
+    for (int i = 1; i < count; i++) {
+      graph.addEdge(Integer.valueOf(i), Integer.valueOf(i - 1));
+    }
+
+    List<Integer> order = graph.calculateOrder();
+    Assert.assertEquals(count, order.size());
+    Assert.assertEquals(Integer.valueOf(0), order.get(0));
+    Assert.assertEquals(Integer.valueOf(count - 1), order.get(count - 1));
+
+    // the cycle detection doesn't overflow the stack
+    graph.addEdge(Integer.valueOf(0), Integer.valueOf(count - 1));
+    Assert.assertEquals(count, graph.calculateCycles().get(0).size());
+  }
+
   @Test
   public void edge() {
     Object parent = new Object();
@@ -0,0 +1,41 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.security.MessageDigest;
+
+public class DigestHelperTest {
+
+  @Test
+  public void emptyDigest() {
+    Assert.assertEquals("d41d8cd98f00b204e9800998ecf8427e", DigestHelper.toHex(DigestHelper.createDigest().digest()));
+  }
+
+  @Test
+  public void boundariesBetweenStrings() {
+    // the strings are added together with their length, so moving a character from one to the other makes a difference
+    Assert.assertFalse(digest("ab", "c").equals(digest("a", "bc")));
+    Assert.assertFalse(digest(null, "").equals(digest("", null)));
+    Assert.assertEquals(digest("ab", "c"), digest("ab", "c"));
+  }
+
+  private String digest(String first, String second) {
+    MessageDigest digest = DigestHelper.createDigest();
+    DigestHelper.update(digest, first);
+    DigestHelper.update(digest, second);
+    return DigestHelper.toHex(digest.digest());
+  }
+
+} /* ENDCLASS */
@@ -0,0 +1,106 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StopWatchTest {
+
+  @Test
+  public void buckets() {
+    for (long nanos = 0; nanos < 100000; nanos++) {
+      int bucket = StopWatch.getBucket(nanos);
+      Assert.assertTrue(nanos <= StopWatch.getBucketUpperBound(bucket));
+      Assert.assertTrue(bucket == 0 || nanos > StopWatch.getBucketUpperBound(bucket - 1));
+    }
+    Assert.assertEquals(Long.MAX_VALUE, StopWatch.getBucketUpperBound(StopWatch.getBucket(Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void statistics() {
+    StopWatch stopWatch = new StopWatch("test");
+    for (int i = 1; i <= 100; i++) {
+      stopWatch.record(i * 1000000L, i * 1000000L);
+    }
+
+    Assert.assertEquals(100, stopWatch.getInvocations());
+    Assert.assertEquals(5050, stopWatch.getElapsedTime());
+    Assert.assertEquals(50.5, stopWatch.getAverageTime(), 0.001);
+    Assert.assertEquals(1000000L, stopWatch.getMinNanos());
+    Assert.assertEquals(100000000L, stopWatch.getMaxNanos());
+    assertApproximately(50000000L, stopWatch.getPercentileNanos(50));
+    assertApproximately(90000000L, stopWatch.getPercentileNanos(90));
+    Assert.assertEquals(100000000L, stopWatch.getPercentileNanos(100));
+
+    stopWatch.reset();
+    Assert.assertEquals(0, stopWatch.getInvocations());
+    Assert.assertEquals(0, stopWatch.getMinNanos());
+    Assert.assertEquals(0, stopWatch.getPercentileNanos(50));
+  }
+
+  @Test
+  public void nesting() throws Exception {
+    StopWatch outer = new StopWatch("outer");
+    StopWatch inner = new StopWatch("inner");
+
+    outer.start();
+    inner.start();
+    Assert.assertTrue(outer.isRunning());
+    Assert.assertTrue(inner.isRunning());
+    Thread.sleep(20);
+    inner.stop();
+    Thread.sleep(20);
+    outer.stop();
+
+    Assert.assertFalse(outer.isRunning());
+    Assert.assertEquals(1, outer.getInvocations());
+    Assert.assertEquals(1, inner.getInvocations());
+    Assert.assertTrue(inner.getParents().contains("outer"));
+    Assert.assertTrue(outer.getParents().isEmpty());
+    Assert.assertEquals(outer.getElapsedNanos() - inner.getElapsedNanos(), outer.getSelfNanos());
+    Assert.assertEquals(inner.getElapsedNanos(), inner.getSelfNanos());
+  }
+
+  @Test
+  public void threads() throws Exception {
+    final StopWatch stopWatch = new StopWatch("threads");
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 1000; j++) {
+            stopWatch.start();
+            stopWatch.stop();
+          }
+        }
+      };
+      threads[i].start();
+    }
+
+    // a run of the main thread overlaps with the runs of the other threads
+    stopWatch.start();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assert.assertTrue(stopWatch.isRunning());
+    stopWatch.stop();
+
+    Assert.assertEquals(4001, stopWatch.getInvocations());
+    Assert.assertFalse(stopWatch.isRunning());
+  }
+
+  private void assertApproximately(long expected, long actual) {
+    Assert.assertTrue("expected about " + expected + " but was " + actual, Math.abs(expected - actual) <= expected / 4);
+  }
+}
@@ -0,0 +1,79 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.util;
+
+import java.io.File;
+import java.io.StringWriter;
+
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TraceRecorderTest {
+
+  @Test
+  public void chromeTrace() {
+    TraceRecorder traceRecorder = new TraceRecorder(2);
+    String previous = TraceRecorder.setProject("project \"A\"");
+    try {
+      traceRecorder.record("compile", "ecj", System.nanoTime(), 1500000L, new String[] { "units", "12" });
+    } finally {
+      TraceRecorder.setProject(previous);
+    }
+    traceRecorder.record("resolve", "jdt", System.nanoTime(), 2000L, null);
+    traceRecorder.record("dropped", "jdt", System.nanoTime(), 2000L, null);
+
+    Assert.assertEquals(2, traceRecorder.getEventCount());
+    Assert.assertEquals(1, traceRecorder.getDroppedEvents());
+
+    File file = JUnitUtilities.createTempFile();
+    traceRecorder.writeChromeTrace(file);
+    String trace = Utilities.readTextContent(file, "UTF-8", true).toString();
+    Assert.assertTrue(trace, trace.startsWith("{\"displayTimeUnit\":\"ms\""));
+    Assert.assertTrue(trace, trace.contains("\"name\":\"thread_name\""));
+    Assert.assertTrue(trace, trace.contains("\"name\":\"compile\",\"cat\":\"ecj\",\"ph\":\"X\""));
+    Assert.assertTrue(trace, trace.contains("\"dur\":1500.000,\"args\":{\"project\":\"project \\\"A\\\"\","));
+    Assert.assertTrue(trace, trace.contains("\"units\":\"12\"}"));
+    Assert.assertTrue(trace, trace.contains("\"name\":\"resolve\""));
+    Assert.assertFalse(trace, trace.contains("\"name\":\"dropped\""));
+  }
+
+  @Test
+  public void summary() {
+    TraceRecorder traceRecorder = new TraceRecorder(100);
+    String previous = TraceRecorder.setProject("B");
+    try {
+      traceRecorder.record("compile", "ecj", System.nanoTime(), 3000000L, null);
+      traceRecorder.record("compile", "ecj", System.nanoTime(), 1000000L, null);
+      traceRecorder.record("B", TraceRecorder.PROJECT_CATEGORY, System.nanoTime(), 5000000L, null);
+    } finally {
+      TraceRecorder.setProject(previous);
+    }
+    StopWatch stopWatch = new StopWatch("test");
+    stopWatch.record(2000000L, 2000000L);
+
+    File file = JUnitUtilities.createTempFile();
+    traceRecorder.writeSummary(file, new StopWatch[] { stopWatch, new StopWatch("unused") });
+    String summary = Utilities.readTextContent(file, "UTF-8", true).toString();
+    Assert.assertTrue(summary, summary.contains("{\"name\":\"B\",\"totalMs\":5.000,\"spans\":{"));
+    Assert.assertTrue(summary, summary.contains("\"compile\":{\"count\":2,\"totalMs\":4.000}"));
+    Assert.assertTrue(summary, summary.contains("{\"name\":\"test\",\"invocations\":1,\"totalMs\":2.000"));
+    Assert.assertFalse(summary, summary.contains("unused"));
+  }
+
+  @Test
+  public void writeString() throws Exception {
+    StringWriter writer = new StringWriter();
+    TraceRecorder.writeString(writer, "a\"b\\c\nd\u0001");
+    Assert.assertEquals("\"a\\\"b\\\\c\\nd\\u0001\"", writer.toString());
+  }
+}
@@ -216,6 +216,29 @@ public class UtilitiesTest extends ConfigurableAnt4EclipseTestCase {
     Assert.assertArrayEquals(expected, current);
   }
 
+  @Test
+  public void replaceFile() {
+    File tempdir = Utilities.createTempDir();
+    File target = new File(tempdir, "target.txt");
+    File source1 = new File(tempdir, "source1.txt");
+    Utilities.writeFile(source1, "first", "UTF-8");
+    Assert.assertTrue(Utilities.replaceFile(source1, target));
+    Assert.assertFalse(source1.exists());
+    Assert.assertEquals("first", Utilities.readTextContent(target, "UTF-8", false).toString());
+
+    // an existing target file is replaced
+    File source2 = new File(tempdir, "source2.txt");
+    Utilities.writeFile(source2, "second", "UTF-8");
+    Assert.assertTrue(Utilities.replaceFile(source2, target));
+    Assert.assertFalse(source2.exists());
+    Assert.assertEquals("second", Utilities.readTextContent(target, "UTF-8", false).toString());
+
+    // a missing source file leaves nothing behind
+    Assert.assertFalse(Utilities.replaceFile(new File(tempdir, "missing.txt"), new File(tempdir, "other.txt")));
+    Assert.assertFalse(new File(tempdir, "other.txt").exists());
+    Utilities.delete(tempdir);
+  }
+
   @Test
   public void filter() {
 
@@ -0,0 +1,167 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.xquery;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+
+import java.io.File;
+
+/**
+ * <p>
+ * Measures the time needed to query the <code>.project</code> and <code>.classpath</code> files of a generated
+ * workspace with 5,000 projects. The queries are the ones used by the project and classpath file parsers. Each run is
+ * repeated with additional queries that don't match any element, so the influence of the number of queries can be
+ * seen.
+ * </p>
+ * <p>
+ * Usage: <code>XQueryHandlerBenchmark [projects] [rounds]</code>
+ * </p>
+ */
+public class XQueryHandlerBenchmark {
+
+  /** the number of additional queries used for the second measurement */
+  private static final int UNMATCHED_QUERIES = 50;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args
+   *          The number of projects and the number of rounds (both optional).
+   *
+   * @throws Exception
+   *           The benchmark failed for some reason.
+   */
+  public static final void main(String[] args) throws Exception {
+    int projects = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    File workspace = Utilities.createTempDir();
+    try {
+      createWorkspace(workspace, projects);
+      for (int round = 1; round <= rounds; round++) {
+        long plain = queryWorkspace(workspace, projects, 0);
+        long unmatched = queryWorkspace(workspace, projects, UNMATCHED_QUERIES);
+        System.out.println("round " + round + ": " + (plain / 1000000L) + " ms, with " + UNMATCHED_QUERIES
+            + " additional queries: " + (unmatched / 1000000L) + " ms (" + (2 * projects) + " files)");
+      }
+    } finally {
+      Utilities.delete(workspace);
+    }
+  }
+
+  /**
+   * Queries the project files of all projects of the supplied workspace.
+   *
+   * @param workspace
+   *          The workspace directory.
+   * @param projects
+   *          The number of projects.
+   * @param unmatched
+   *          The number of additional queries that don't match any element.
+   *
+   * @return The time needed in nanoseconds.
+   */
+  private static long queryWorkspace(File workspace, int projects, int unmatched) {
+    long start = System.nanoTime();
+    for (int i = 0; i < projects; i++) {
+      File projectDir = new File(workspace, "project" + i);
+
+      XQueryHandler projectHandler = new XQueryHandler(".project");
+      projectHandler.createQuery("/projectDescription/name");
+      projectHandler.createQuery("/projectDescription/comment");
+      projectHandler.createQuery("/projectDescription/projects/project");
+      projectHandler.createQuery("/projectDescription/natures/nature");
+      projectHandler.createQuery("/projectDescription/buildSpec/{buildCommand}/name");
+      projectHandler.createQuery("/projectDescription/linkedResources/{link}/name");
+      projectHandler.createQuery("/projectDescription/linkedResources/{link}/type");
+      projectHandler.createQuery("/projectDescription/linkedResources/{link}/location");
+      projectHandler.createQuery("/projectDescription/linkedResources/{link}/locationURI");
+      addUnmatchedQueries(projectHandler, "projectDescription", unmatched);
+      XQueryHandler.queryFile(new File(projectDir, ".project"), projectHandler);
+
+      XQueryHandler classpathHandler = new XQueryHandler(".classpath");
+      classpathHandler.createQuery("/classpath/classpathentry/@kind");
+      classpathHandler.createQuery("/classpath/classpathentry/@path");
+      classpathHandler.createQuery("/classpath/classpathentry/@output");
+      classpathHandler.createQuery("/classpath/classpathentry/@exported");
+      classpathHandler.createQuery("/classpath/classpathentry/@including");
+      classpathHandler.createQuery("/classpath/classpathentry/@excluding");
+      addUnmatchedQueries(classpathHandler, "classpath", unmatched);
+      XQueryHandler.queryFile(new File(projectDir, ".classpath"), classpathHandler);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static void addUnmatchedQueries(XQueryHandler handler, String root, int count) {
+    for (int i = 0; i < count; i++) {
+      handler.createQuery("/" + root + "/unknown" + i + "/element");
+    }
+  }
+
+  /**
+   * Creates the <code>.project</code> and <code>.classpath</code> files for the supplied number of projects.
+   *
+   * @param workspace
+   *          The workspace directory.
+   * @param projects
+   *          The number of projects.
+   */
+  private static void createWorkspace(File workspace, int projects) {
+    for (int i = 0; i < projects; i++) {
+      File projectDir = new File(workspace, "project" + i);
+      Utilities.mkdirs(projectDir);
+
+      StringBuffer project = new StringBuffer();
+      project.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      project.append("<projectDescription>\n");
+      project.append("\t<name>project" + i + "</name>\n");
+      project.append("\t<comment>generated project " + i + "</comment>\n");
+      project.append("\t<projects>\n");
+      for (int j = Math.max(0, i - 3); j < i; j++) {
+        project.append("\t\t<project>project" + j + "</project>\n");
+      }
+      project.append("\t</projects>\n");
+      project.append("\t<buildSpec>\n");
+      project.append("\t\t<buildCommand>\n");
+      project.append("\t\t\t<name>org.eclipse.jdt.core.javabuilder</name>\n");
+      project.append("\t\t\t<arguments>\n\t\t\t</arguments>\n");
+      project.append("\t\t</buildCommand>\n");
+      project.append("\t</buildSpec>\n");
+      project.append("\t<natures>\n");
+      project.append("\t\t<nature>org.eclipse.jdt.core.javanature</nature>\n");
+      project.append("\t</natures>\n");
+      project.append("\t<linkedResources>\n");
+      project.append("\t\t<link>\n");
+      project.append("\t\t\t<name>shared</name>\n");
+      project.append("\t\t\t<type>2</type>\n");
+      project.append("\t\t\t<location>/shared/project" + i + "</location>\n");
+      project.append("\t\t</link>\n");
+      project.append("\t</linkedResources>\n");
+      project.append("</projectDescription>\n");
+      Utilities.writeFile(new File(projectDir, ".project"), project.toString(), "UTF-8");
+
+      StringBuffer classpath = new StringBuffer();
+      classpath.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      classpath.append("<classpath>\n");
+      classpath.append("\t<classpathentry kind=\"src\" path=\"src\"/>\n");
+      classpath.append("\t<classpathentry kind=\"src\" path=\"test\" output=\"bin-test\"/>\n");
+      classpath.append("\t<classpathentry kind=\"con\" path=\"org.eclipse.jdt.launching.JRE_CONTAINER\"/>\n");
+      for (int j = Math.max(0, i - 3); j < i; j++) {
+        classpath.append("\t<classpathentry kind=\"src\" path=\"/project" + j + "\" exported=\"true\"/>\n");
+      }
+      classpath.append("\t<classpathentry kind=\"lib\" path=\"lib/library.jar\"/>\n");
+      classpath.append("\t<classpathentry kind=\"output\" path=\"bin\"/>\n");
+      classpath.append("</classpath>\n");
+      Utilities.writeFile(new File(projectDir, ".classpath"), classpath.toString(), "UTF-8");
+    }
+  }
+
+} /* ENDCLASS */
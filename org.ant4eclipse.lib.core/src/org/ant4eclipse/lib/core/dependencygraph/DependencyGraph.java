@@ -1,11 +1,11 @@
 /**********************************************************************
  * Copyright (c) 2005-2009 ant4eclipse project team.
- *
+ * 
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
- *
+ * 
  * Contributors:
  *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
  **********************************************************************/
@@ -15,10 +15,16 @@ import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.CoreExceptionCode;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -45,7 +51,14 @@ import java.util.Set;
  * 
  * <p>
  * The order of the nodes depends on the order of the tree definition via {@link DependencyGraph#addVertex(Object)} and
- * {@link DependencyGraph#addEdge(Object, Object)}.
+ * {@link DependencyGraph#addEdge(Object, Object)}: the nodes are grouped in layers (see {@link #calculateLayers()}),
+ * the nodes of a layer are ordered as they have been added.
+ * </p>
+ * 
+ * <p>
+ * The vertices are indexed by a hash map and the edges are stored as adjacency lists, so the order is calculated in
+ * linear time (Kahn's algorithm). If the graph contains cycles, all of them are reported (Tarjan's algorithm for
+ * strongly connected components).
  * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
@@ -56,14 +69,17 @@ import java.util.Set;
  */
 public final class DependencyGraph<T> {
 
-  /** vertices */
-  private List<T>           _vertices;
+  /** vertices (in the order they have been added) */
+  private List<T>            _vertices;
+
+  /** the indices of the vertices */
+  private Map<T, Integer>    _indices;
 
-  /** edges */
-  private List<Edge<T>>     _edges;
+  /** the indices of the children of each vertex */
+  private List<Set<Integer>> _children;
 
   /** renderer */
-  private VertexRenderer<T> _renderer;
+  private VertexRenderer<T>  _renderer;
 
   /**
    * <p>
@@ -71,8 +87,9 @@ public final class DependencyGraph<T> {
    * </p>
    */
   public DependencyGraph() {
-    this._vertices = new LinkedList<T>();
-    this._edges = new LinkedList<Edge<T>>();
+    this._vertices = new ArrayList<T>();
+    this._indices = new HashMap<T, Integer>();
+    this._children = new ArrayList<Set<Integer>>();
   }
 
   /**
@@ -100,9 +117,7 @@ public final class DependencyGraph<T> {
    */
   public void addVertex(T vertex) {
     Assure.notNull("vertex", vertex);
-    if (!this._vertices.contains(vertex)) {
-      this._vertices.add(vertex);
-    }
+    getIndex(vertex);
   }
 
   /**
@@ -117,12 +132,12 @@ public final class DependencyGraph<T> {
    */
   public boolean containsVertex(T vertex) {
     Assure.notNull("vertex", vertex);
-    return this._vertices.contains(vertex);
+    return this._indices.containsKey(vertex);
   }
 
   /**
    * <p>
-   * Adds an edge to the {@link DependencyGraph}.
+   * Adds an edge to the {@link DependencyGraph}. Adding the same edge twice has no effect.
    * </p>
    * 
    * @param parent
@@ -133,9 +148,70 @@ public final class DependencyGraph<T> {
   public void addEdge(T parent, T child) {
     Assure.notNull("parent", parent);
     Assure.notNull("child", child);
-    addVertex(parent);
-    addVertex(child);
-    this._edges.add(new Edge<T>(parent, child));
+    int parentIndex = getIndex(parent);
+    int childIndex = getIndex(child);
+    this._children.get(parentIndex).add(Integer.valueOf(childIndex));
+  }
+
+  /**
+   * <p>
+   * Returns the children of the given vertex (the vertices the given vertex depends on) in the order the edges have
+   * been added.
+   * </p>
+   * 
+   * @param vertex
+   *          the vertex
+   * @return the children of the given vertex.
+   */
+  public List<T> getChildren(T vertex) {
+    Assure.notNull("vertex", vertex);
+    Integer index = this._indices.get(vertex);
+    Assure.assertTrue(index != null, "The vertex must have been added to the graph");
+    List<T> result = new ArrayList<T>(this._children.get(index.intValue()).size());
+    for (Integer child : this._children.get(index.intValue())) {
+      result.add(this._vertices.get(child.intValue()));
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Creates a graph that only contains the given vertices. A vertex of the new graph depends on another vertex of the
+   * new graph if there's a path between them in this graph that doesn't pass another vertex of the new graph. So the
+   * dependencies via vertices that are not contained in the new graph are preserved.
+   * </p>
+   * 
+   * @param vertices
+   *          the vertices of the new graph (they are added in the given order)
+   * @return the new graph.
+   */
+  public DependencyGraph<T> createSubgraph(List<T> vertices) {
+    Assure.notNull("vertices", vertices);
+    DependencyGraph<T> result = this._renderer != null ? new DependencyGraph<T>(this._renderer)
+        : new DependencyGraph<T>();
+    Set<Integer> contained = new HashSet<Integer>();
+    for (T vertex : vertices) {
+      Assure.assertTrue(containsVertex(vertex), "The vertex must have been added to the graph");
+      contained.add(this._indices.get(vertex));
+      result.addVertex(vertex);
+    }
+    for (T vertex : vertices) {
+      // depth first search that stops at the vertices of the new graph
+      Set<Integer> visited = new HashSet<Integer>();
+      LinkedList<Integer> stack = new LinkedList<Integer>(this._children.get(this._indices.get(vertex).intValue()));
+      while (!stack.isEmpty()) {
+        Integer child = stack.removeFirst();
+        if (!visited.add(child)) {
+          continue;
+        }
+        if (contained.contains(child)) {
+          result.addEdge(vertex, this._vertices.get(child.intValue()));
+        } else {
+          stack.addAll(0, this._children.get(child.intValue()));
+        }
+      }
+    }
+    return result;
   }
 
   /**
@@ -146,179 +222,291 @@ public final class DependencyGraph<T> {
    * @return the ordered list of all the nodes..
    */
   public List<T> calculateOrder() {
-
-    // setup a matrix that contains a true value iff there is a the first index donates a parent of the second value
-    boolean[][] matrix = new boolean[this._vertices.size()][this._vertices.size()];
-
-    // fill the diagonale
-    for (boolean[] element : matrix) {
-      Arrays.fill(element, false);
+    List<T> result = new LinkedList<T>();
+    for (List<T> layer : calculateLayers()) {
+      result.addAll(layer);
     }
+    return result;
+  }
 
-    // set each value to true iff there is a relationship form first to second...
-    for (int i = 0; i < this._edges.size(); i++) {
-      Edge<T> edge = this._edges.get(i);
-      int fromidx = this._vertices.indexOf(edge.getParent());
-      int toidx = this._vertices.indexOf(edge.getChild());
-
-      if ((fromidx == -1) || (toidx == -1)) {
-        // one of the edge's vertices has not been
-        // added to this graph (f.e. if it's a dependency
-        // on the outside of a specific context)
-        continue;
+  /**
+   * <p>
+   * Computes the layers of the graph. The first layer contains all nodes without children, each following layer
+   * contains the nodes whose children are all contained in the previous layers. So the nodes of a layer don't depend on
+   * each other and can be processed in parallel once the previous layers have been processed. The nodes of a layer are
+   * ordered as they have been added.
+   * </p>
+   * 
+   * @return the layers of the graph.
+   */
+  public List<List<T>> calculateLayers() {
+    int count = this._vertices.size();
+
+    // count the children and collect the parents of each vertex
+    int[] pending = new int[count];
+    List<List<Integer>> parents = new ArrayList<List<Integer>>(count);
+    for (int i = 0; i < count; i++) {
+      parents.add(new ArrayList<Integer>(2));
+    }
+    for (int i = 0; i < count; i++) {
+      Set<Integer> children = this._children.get(i);
+      pending[i] = children.size();
+      for (Integer child : children) {
+        parents.get(child.intValue()).add(Integer.valueOf(i));
       }
+    }
 
-      matrix[fromidx][toidx] = true;
+    // the first layer contains the vertices without children
+    List<Integer> layer = new ArrayList<Integer>();
+    for (int i = 0; i < count; i++) {
+      if (pending[i] == 0) {
+        layer.add(Integer.valueOf(i));
+      }
     }
 
-    List<T> list = new LinkedList<T>();
+    // a vertex becomes part of the next layer as soon as its last child has been processed
+    List<List<T>> result = new ArrayList<List<T>>();
+    int processed = 0;
+    while (!layer.isEmpty()) {
+      List<T> vertices = new ArrayList<T>(layer.size());
+      List<Integer> nextLayer = new ArrayList<Integer>();
+      for (Integer index : layer) {
+        vertices.add(this._vertices.get(index.intValue()));
+        for (Integer parent : parents.get(index.intValue())) {
+          if (--pending[parent.intValue()] == 0) {
+            nextLayer.add(parent);
+          }
+        }
+      }
+      result.add(vertices);
+      processed += vertices.size();
+      Collections.sort(nextLayer);
+      layer = nextLayer;
+    }
 
-    // iterates across the matrix as long as we didn't found
-    // a cycle and there are still edges to be processed
-    while (reduce(list, matrix)) {
-      // nothing to do...
+    if (processed < count) {
+      throw new Ant4EclipseException(CoreExceptionCode.CYCLIC_DEPENDENCIES_EXCEPTION, renderCycles());
     }
 
-    return list;
+    return result;
   }
 
   /**
    * <p>
-   * Reduces the internal matrix. Reduction means that the supplied matrix will be modified while vertices that doesn't
-   * refer to any other one can be added to the list since they no longer depend on another vertex. Reduction is an
-   * iterative process, so it's necessary to run this function until the matrix doesn't contain an edge.
+   * Computes all cycles of the graph. For each strongly connected component that contains more than one node (or a
+   * node that references itself) one cycle is returned: the list starts with the first added node of the component
+   * and follows the edges back to it (the first node is not repeated at the end). The cycles are ordered as their
+   * first nodes have been added.
    * </p>
    * 
-   * @param result
-   *          The list that will receive the vertices.
-   * @param matrix
-   *          The current state of the matrix representing the graph.
-   * 
-   * @return true <=> There are still edges within the matrix so a succeeding iteration is required.
+   * @return the cycles of the graph (an empty list if the graph is acyclic).
    */
-  private boolean reduce(List<T> result, boolean[][] matrix) {
-    int zeros = 0;
-    int[] count = countEdges(matrix);
-
-    List<T> removable = new LinkedList<T>();
-
-    // add currently independent vertices to the list
-    // of removable candidates
-    for (int i = 0; i < count.length; i++) {
-      if (count[i] == 0) {
-        T vertex = this._vertices.get(i);
-
-        if (!result.contains(vertex)) {
-          removable.add(vertex);
+  public List<List<T>> calculateCycles() {
+    List<List<T>> result = new ArrayList<List<T>>();
+    for (int[] component : calculateStronglyConnectedComponents()) {
+      if ((component.length > 1) || this._children.get(component[0]).contains(Integer.valueOf(component[0]))) {
+        List<T> cycle = new ArrayList<T>(component.length);
+        for (int index : findCycle(component)) {
+          cycle.add(this._vertices.get(index));
         }
+        result.add(cycle);
+      }
+    }
+    return result;
+  }
 
-        zeros++;
+  /**
+   * <p>
+   * Returns the index of the given vertex. The vertex is added if necessary.
+   * </p>
+   * 
+   * @param vertex
+   *          the vertex
+   * @return the index of the vertex.
+   */
+  private int getIndex(T vertex) {
+    Integer index = this._indices.get(vertex);
+    if (index == null) {
+      index = Integer.valueOf(this._vertices.size());
+      this._indices.put(vertex, index);
+      this._vertices.add(vertex);
+      this._children.add(new LinkedHashSet<Integer>());
+    }
+    return index.intValue();
+  }
+
+  /**
+   * <p>
+   * Computes the strongly connected components of the graph with Tarjan's algorithm. The depth first search is
+   * implemented iteratively, so deep graphs don't overflow the stack.
+   * </p>
+   * 
+   * @return the strongly connected components (the indices of each component are sorted), ordered by their smallest
+   *         index.
+   */
+  private List<int[]> calculateStronglyConnectedComponents() {
+    int count = this._vertices.size();
+    int[] order = new int[count];
+    int[] lowLink = new int[count];
+    boolean[] onStack = new boolean[count];
+    Arrays.fill(order, -1);
+
+    int[] stack = new int[count];
+    int stackSize = 0;
+    int counter = 0;
+
+    // the children of each vertex and the position of the next child to visit
+    int[][] children = new int[count][];
+    for (int i = 0; i < count; i++) {
+      children[i] = new int[this._children.get(i).size()];
+      int j = 0;
+      for (Integer child : this._children.get(i)) {
+        children[i][j++] = child.intValue();
       }
     }
+    int[] nextChild = new int[count];
+
+    // the path of the depth first search
+    int[] path = new int[count];
 
-    if (removable.isEmpty()) {
-      if (zeros < matrix.length) {
-        // get the first cycle and create an apropriate textual representation
-        StringBuffer buffer = new StringBuffer();
-        for (int i = 0; i < count.length; i++) {
-          if (count[i] > 0) {
-            cycleString(buffer, new HashSet<T>(), i, matrix);
-            break;
+    List<int[]> result = new ArrayList<int[]>();
+    for (int root = 0; root < count; root++) {
+      if (order[root] != -1) {
+        continue;
+      }
+      int pathSize = 0;
+      path[pathSize++] = root;
+      order[root] = lowLink[root] = counter++;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+
+      while (pathSize > 0) {
+        int vertex = path[pathSize - 1];
+        if (nextChild[vertex] < children[vertex].length) {
+          int child = children[vertex][nextChild[vertex]++];
+          if (order[child] == -1) {
+            // descend
+            path[pathSize++] = child;
+            order[child] = lowLink[child] = counter++;
+            stack[stackSize++] = child;
+            onStack[child] = true;
+          } else if (onStack[child]) {
+            lowLink[vertex] = Math.min(lowLink[vertex], order[child]);
           }
+          continue;
         }
-        throw new Ant4EclipseException(CoreExceptionCode.CYCLIC_DEPENDENCIES_EXCEPTION, buffer.toString());
-      }
-    } else {
-      // we need to clear the removable vertices, so they won't
-      // be processed within the next iteration
-      for (int i = 0; i < matrix.length; i++) {
-        for (int j = 0; j < matrix.length; j++) {
-          if (matrix[i][j]) {
-            if (removable.contains(this._vertices.get(j))) {
-              matrix[i][j] = false;
-            }
+
+        // all children have been visited
+        pathSize--;
+        if (pathSize > 0) {
+          int parent = path[pathSize - 1];
+          lowLink[parent] = Math.min(lowLink[parent], lowLink[vertex]);
+        }
+        if (lowLink[vertex] == order[vertex]) {
+          // the vertex is the root of a strongly connected component
+          int size = 0;
+          while (stack[stackSize - 1 - size] != vertex) {
+            size++;
           }
+          size++;
+          int[] component = new int[size];
+          for (int i = 0; i < size; i++) {
+            int member = stack[--stackSize];
+            onStack[member] = false;
+            component[i] = member;
+          }
+          Arrays.sort(component);
+          result.add(component);
         }
       }
-
-      result.addAll(removable);
     }
 
-    return zeros < matrix.length;
+    Collections.sort(result, new Comparator<int[]>() {
+      public int compare(int[] o1, int[] o2) {
+        return o1[0] - o2[0];
+      }
+    });
+    return result;
   }
 
   /**
    * <p>
-   * Creates a String which is used to create a textual representation of a cycle.
+   * Finds a shortest cycle through the first vertex of the given strongly connected component (breadth first search
+   * that doesn't leave the component).
    * </p>
    * 
-   * @param buffer
-   *          The buffer used to collect the data.
-   * @param processed
-   *          A list of added vertices which is required for the abortion criteria.
-   * @param idx
-   *          The index of the vertex which is part of the cycle.
-   * @param matrix
-   *          The current state of the matrix.
+   * @param component
+   *          the sorted indices of the strongly connected component
+   * @return the indices of the vertices of the cycle (starting with the first vertex of the component).
    */
-  private void cycleString(StringBuffer buffer, Set<T> processed, int idx, boolean[][] matrix) {
-    T vertex = this._vertices.get(idx);
-    if (this._renderer == null) {
-      buffer.append(String.valueOf(vertex));
-    } else {
-      buffer.append(this._renderer.renderVertex(vertex));
-    }
-    if (processed.contains(vertex)) {
-      return;
-    }
-    buffer.append(" -> ");
-    processed.add(vertex);
-    for (int i = 0; i < matrix.length; i++) {
-      if (matrix[idx][i]) {
-        cycleString(buffer, processed, i, matrix);
-        break;
+  private List<Integer> findCycle(int[] component) {
+    int start = component[0];
+    Map<Integer, Integer> predecessors = new HashMap<Integer, Integer>();
+    LinkedList<Integer> queue = new LinkedList<Integer>();
+    queue.add(Integer.valueOf(start));
+    Integer last = null;
+    while ((last == null) && !queue.isEmpty()) {
+      Integer vertex = queue.removeFirst();
+      for (Integer child : this._children.get(vertex.intValue())) {
+        if (Arrays.binarySearch(component, child.intValue()) < 0) {
+          continue;
+        }
+        if (child.intValue() == start) {
+          last = vertex;
+          break;
+        }
+        if (!predecessors.containsKey(child)) {
+          predecessors.put(child, vertex);
+          queue.add(child);
+        }
       }
     }
+
+    // follow the predecessors back to the start
+    LinkedList<Integer> result = new LinkedList<Integer>();
+    for (Integer vertex = last; vertex.intValue() != start; vertex = predecessors.get(vertex)) {
+      result.addFirst(vertex);
+    }
+    result.addFirst(Integer.valueOf(start));
+    return result;
   }
 
   /**
    * <p>
-   * Returns a list with the counted number of edges.
+   * Creates a textual representation of all cycles of the graph.
    * </p>
    * 
-   * @param matrix
-   *          The matrix which provides graph representation.
-   * 
-   * @return A list with the length of the matrix where each element holds the number of edges of the related row.
+   * @return a textual representation of all cycles of the graph.
    */
-  private int[] countEdges(boolean[][] matrix) {
-    int[] result = new int[matrix.length];
-    // count the number of edges for each row
-    for (int i = 0; i < matrix.length; i++) {
-      result[i] = sum(matrix[i]);
+  private String renderCycles() {
+    StringBuffer buffer = new StringBuffer();
+    for (List<T> cycle : calculateCycles()) {
+      if (buffer.length() > 0) {
+        buffer.append("', '");
+      }
+      for (T vertex : cycle) {
+        buffer.append(renderVertex(vertex));
+        buffer.append(" -> ");
+      }
+      buffer.append(renderVertex(cycle.get(0)));
     }
-    return result;
+    return buffer.toString();
   }
 
   /**
    * <p>
-   * Returns the number of 'true'-values in the given array.
+   * Returns the textual representation of the given vertex.
    * </p>
    * 
-   * @param row
-   *          the array of boolean
-   * @return the number of 'true'-values in the given array.
+   * @param vertex
+   *          the vertex
+   * @return the textual representation of the given vertex.
    */
-  private int sum(boolean[] row) {
-    int result = 0;
-
-    for (boolean element : row) {
-      if (element) {
-        result++;
-      }
+  private String renderVertex(T vertex) {
+    if (this._renderer == null) {
+      return String.valueOf(vertex);
     }
-
-    return result;
+    return this._renderer.renderVertex(vertex);
   }
 
 } /* ENDCLASS */
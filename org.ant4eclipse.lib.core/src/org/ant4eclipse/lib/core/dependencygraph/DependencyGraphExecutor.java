@@ -0,0 +1,397 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.dependencygraph;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.util.ConcurrencyHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ * Executes a {@link VertexAction} for all vertices of a {@link DependencyGraph} in parallel. The action for a vertex is
+ * started as soon as the actions for all its children have been finished, so the order of the graph is respected.
+ * </p>
+ * <p>
+ * The vertices that are ready to be executed are kept in a single queue, each worker thread takes the next vertex from
+ * this queue as soon as it is idle. By default the vertices are taken in the order of the graph (see
+ * {@link DependencyGraph#calculateOrder()}). If weights (e.g. the durations of a previous run) have been set, the
+ * vertex with the longest critical path is taken first: the critical path of a vertex is its weight plus the longest
+ * critical path of the vertices that depend on it.
+ * </p>
+ * <p>
+ * If the action fails for a vertex, no further actions are started, the running actions are cancelled (interrupted)
+ * and the failure is rethrown as soon as they have finished.
+ * </p>
+ * 
+ * @param <T>
+ *          the type of the vertices
+ */
+public final class DependencyGraphExecutor<T> {
+
+  /** the graph */
+  private DependencyGraph<T>     _graph;
+
+  /** the number of worker threads */
+  private int                    _threadCount;
+
+  /** the prefix of the names of the worker threads */
+  private String                 _threadNamePrefix;
+
+  /** the weights of the vertices (<code>null</code> if the vertices are executed in the order of the graph) */
+  private Map<T, Long>           _weights;
+
+  /** the durations of the executed actions in milliseconds */
+  private Map<T, Long>           _durations;
+
+  /** the statistics of the worker threads (key: the name of the thread) */
+  private Map<String, long[]>    _workers;
+
+  /** the statistics of the worker threads of the last execution */
+  private List<WorkerStatistics> _workerStatistics;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link DependencyGraphExecutor}.
+   * </p>
+   * 
+   * @param graph
+   *          the graph (must not contain cycles)
+   * @param threadCount
+   *          the number of worker threads
+   * @param threadNamePrefix
+   *          the prefix of the names of the worker threads
+   */
+  public DependencyGraphExecutor(DependencyGraph<T> graph, int threadCount, String threadNamePrefix) {
+    Assure.notNull("graph", graph);
+    Assure.assertTrue(threadCount > 0, "Parameter 'threadCount' must be positive");
+    Assure.nonEmpty("threadNamePrefix", threadNamePrefix);
+    this._graph = graph;
+    this._threadCount = threadCount;
+    this._threadNamePrefix = threadNamePrefix;
+    this._durations = Collections.synchronizedMap(new LinkedHashMap<T, Long>());
+    this._workers = new HashMap<String, long[]>();
+    this._workerStatistics = Collections.emptyList();
+  }
+
+  /**
+   * <p>
+   * Sets the weights of the vertices (e.g. the durations of a previous run). Vertices without a weight get the average
+   * weight. If weights are set, the vertex with the longest critical path is executed first.
+   * </p>
+   * 
+   * @param weights
+   *          the weights of the vertices (might be <code>null</code>)
+   */
+  public void setWeights(Map<T, Long> weights) {
+    this._weights = weights;
+  }
+
+  /**
+   * <p>
+   * Executes the given action for all vertices of the graph. The method returns as soon as all actions have been
+   * finished or the first action failed.
+   * </p>
+   * 
+   * @param action
+   *          the action
+   */
+  public void execute(VertexAction<T> action) {
+    Assure.notNull("action", action);
+
+    // the order of the graph (this also makes sure that the graph doesn't contain cycles)
+    List<T> order = this._graph.calculateOrder();
+    int count = order.size();
+    Map<T, Integer> indices = new HashMap<T, Integer>();
+    for (int i = 0; i < count; i++) {
+      indices.put(order.get(i), Integer.valueOf(i));
+    }
+
+    // count the children of each vertex and collect the vertices that depend on it
+    int[] pending = new int[count];
+    List<List<Integer>> dependents = new ArrayList<List<Integer>>(count);
+    for (int i = 0; i < count; i++) {
+      dependents.add(new ArrayList<Integer>(2));
+    }
+    for (int i = 0; i < count; i++) {
+      for (T child : this._graph.getChildren(order.get(i))) {
+        pending[i]++;
+        dependents.get(indices.get(child).intValue()).add(Integer.valueOf(i));
+      }
+    }
+
+    // the queue of the vertices that are ready to be executed
+    PriorityQueue<Integer> ready = new PriorityQueue<Integer>(Math.max(1, count), createComparator(
+        calculateCriticalPaths(order, dependents)));
+    for (int i = 0; i < count; i++) {
+      if (pending[i] == 0) {
+        ready.add(Integer.valueOf(i));
+      }
+    }
+
+    this._durations.clear();
+    synchronized (this._workers) {
+      this._workers.clear();
+    }
+    int threads = Math.max(1, Math.min(this._threadCount, count));
+    ExecutorService executor = Executors.newFixedThreadPool(threads, ConcurrencyHelper
+        .newDaemonThreadFactory(this._threadNamePrefix));
+    CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(executor);
+    long start = System.nanoTime();
+    int running = 0;
+    int finished = 0;
+    try {
+      while (finished < count) {
+
+        // start the vertices that are ready as long as there are idle workers
+        while ((running < threads) && !ready.isEmpty()) {
+          int index = ready.poll().intValue();
+          completionService.submit(createTask(action, order.get(index), index));
+          running++;
+        }
+
+        // wait for the next action to finish
+        int index = ConcurrencyHelper.take(completionService).intValue();
+        running--;
+        finished++;
+        for (Integer dependent : dependents.get(index)) {
+          if (--pending[dependent.intValue()] == 0) {
+            ready.add(dependent);
+          }
+        }
+      }
+    } finally {
+      // cancels the running actions (if an action failed) and waits for them, so no action outlives the execution
+      ConcurrencyHelper.shutdownNow(executor);
+      this._workerStatistics = createWorkerStatistics((System.nanoTime() - start) / 1000000L);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the durations of the actions of the last execution in milliseconds.
+   * </p>
+   * 
+   * @return the durations of the actions of the last execution.
+   */
+  public Map<T, Long> getDurations() {
+    synchronized (this._durations) {
+      return new LinkedHashMap<T, Long>(this._durations);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the statistics of the worker threads of the last execution (ordered by the names of the threads).
+   * </p>
+   * 
+   * @return the statistics of the worker threads of the last execution.
+   */
+  public List<WorkerStatistics> getWorkerStatistics() {
+    return this._workerStatistics;
+  }
+
+  /**
+   * <p>
+   * Calculates the critical path of each vertex (see {@link #setWeights(Map)}).
+   * </p>
+   * 
+   * @param order
+   *          the vertices in the order of the graph
+   * @param dependents
+   *          the indices of the vertices that depend on each vertex
+   * @return the critical paths (all zero if no weights have been set)
+   */
+  private long[] calculateCriticalPaths(List<T> order, List<List<Integer>> dependents) {
+    long[] result = new long[order.size()];
+    if (this._weights == null) {
+      return result;
+    }
+
+    // vertices without weight get the average weight
+    long sum = 0;
+    int known = 0;
+    for (T vertex : order) {
+      Long weight = this._weights.get(vertex);
+      if (weight != null) {
+        sum += weight.longValue();
+        known++;
+      }
+    }
+    long defaultWeight = known > 0 ? Math.max(1, sum / known) : 1;
+
+    // the dependents of a vertex come after the vertex in the order of the graph
+    for (int i = order.size() - 1; i >= 0; i--) {
+      Long weight = this._weights.get(order.get(i));
+      long longest = 0;
+      for (Integer dependent : dependents.get(i)) {
+        longest = Math.max(longest, result[dependent.intValue()]);
+      }
+      result[i] = (weight != null ? weight.longValue() : defaultWeight) + longest;
+    }
+    return result;
+  }
+
+  private static Comparator<Integer> createComparator(final long[] criticalPaths) {
+    return new Comparator<Integer>() {
+      public int compare(Integer o1, Integer o2) {
+        long path1 = criticalPaths[o1.intValue()];
+        long path2 = criticalPaths[o2.intValue()];
+        if (path1 != path2) {
+          return path1 > path2 ? -1 : 1;
+        }
+        return o1.intValue() - o2.intValue();
+      }
+    };
+  }
+
+  private Callable<Integer> createTask(final VertexAction<T> action, final T vertex, final int index) {
+    return new Callable<Integer>() {
+      public Integer call() throws Exception {
+        long start = System.nanoTime();
+        try {
+          action.execute(vertex);
+        } finally {
+          long duration = System.nanoTime() - start;
+          DependencyGraphExecutor.this._durations.put(vertex, Long.valueOf(duration / 1000000L));
+          String name = Thread.currentThread().getName();
+          synchronized (DependencyGraphExecutor.this._workers) {
+            long[] statistics = DependencyGraphExecutor.this._workers.get(name);
+            if (statistics == null) {
+              statistics = new long[2];
+              DependencyGraphExecutor.this._workers.put(name, statistics);
+            }
+            statistics[0]++;
+            statistics[1] += duration;
+          }
+        }
+        return Integer.valueOf(index);
+      }
+    };
+  }
+
+  private List<WorkerStatistics> createWorkerStatistics(long elapsedTime) {
+    List<WorkerStatistics> result = new ArrayList<WorkerStatistics>();
+    synchronized (this._workers) {
+      for (Map.Entry<String, long[]> entry : new TreeMap<String, long[]>(this._workers).entrySet()) {
+        result.add(new WorkerStatistics(entry.getKey(), (int) entry.getValue()[0], entry.getValue()[1] / 1000000L,
+            elapsedTime));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * The statistics of a single worker thread.
+   * </p>
+   */
+  public static final class WorkerStatistics {
+
+    /** the name of the worker thread */
+    private String _name;
+
+    /** the number of executed vertices */
+    private int    _vertexCount;
+
+    /** the time the worker has been busy in milliseconds */
+    private long   _busyTime;
+
+    /** the elapsed time of the execution in milliseconds */
+    private long   _elapsedTime;
+
+    private WorkerStatistics(String name, int vertexCount, long busyTime, long elapsedTime) {
+      this._name = name;
+      this._vertexCount = vertexCount;
+      this._busyTime = busyTime;
+      this._elapsedTime = elapsedTime;
+    }
+
+    /**
+     * <p>
+     * Returns the name of the worker thread.
+     * </p>
+     * 
+     * @return the name of the worker thread.
+     */
+    public String getName() {
+      return this._name;
+    }
+
+    /**
+     * <p>
+     * Returns the number of vertices executed by the worker.
+     * </p>
+     * 
+     * @return the number of executed vertices.
+     */
+    public int getVertexCount() {
+      return this._vertexCount;
+    }
+
+    /**
+     * <p>
+     * Returns the time the worker has been busy in milliseconds.
+     * </p>
+     * 
+     * @return the time the worker has been busy.
+     */
+    public long getBusyTime() {
+      return this._busyTime;
+    }
+
+    /**
+     * <p>
+     * Returns the utilization of the worker (the busy time in percent of the elapsed time of the execution).
+     * </p>
+     * 
+     * @return the utilization of the worker.
+     */
+    public int getUtilization() {
+      return this._elapsedTime > 0 ? (int) Math.min(100, (this._busyTime * 100) / this._elapsedTime) : 100;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+      StringBuffer buffer = new StringBuffer();
+      buffer.append("[WorkerStatistics:");
+      buffer.append(" name: ");
+      buffer.append(this._name);
+      buffer.append(" vertexCount: ");
+      buffer.append(this._vertexCount);
+      buffer.append(" busyTime: ");
+      buffer.append(this._busyTime);
+      buffer.append(" utilization: ");
+      buffer.append(getUtilization());
+      buffer.append("]");
+      return buffer.toString();
+    }
+
+  } /* ENDCLASS */
+
+} /* ENDCLASS */
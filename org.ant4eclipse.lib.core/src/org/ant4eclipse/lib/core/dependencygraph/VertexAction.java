@@ -0,0 +1,37 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.dependencygraph;
+
+/**
+ * <p>
+ * Interface for an action that is executed for each vertex of a {@link DependencyGraph} by a
+ * {@link DependencyGraphExecutor}.
+ * </p>
+ * 
+ * @param <T>
+ *          the type of the vertices
+ */
+public interface VertexAction<T> {
+
+  /**
+   * <p>
+   * Executes the action for the given vertex. The action has already been executed for all children of the vertex.
+   * </p>
+   * 
+   * @param vertex
+   *          the vertex
+   * @throws Exception
+   *           the action failed for some reason.
+   */
+  void execute(T vertex) throws Exception;
+
+} /* ENDINTERFACE */
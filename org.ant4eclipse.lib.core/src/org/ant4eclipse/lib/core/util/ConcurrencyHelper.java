@@ -0,0 +1,154 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.util;
+
+import org.ant4eclipse.lib.core.Assure;
+
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Helper class for the execution of tasks in other threads. Failures of a task are rethrown in the waiting thread
+ * unchanged if they are unchecked, checked exceptions are wrapped into a {@link RuntimeException}.
+ * </p>
+ */
+public class ConcurrencyHelper {
+
+  /**
+   * <p>
+   * Waits for the given future and returns its result.
+   * </p>
+   * 
+   * @param <T>
+   *          the type of the result
+   * @param future
+   *          the future
+   * @return the result of the future.
+   */
+  public static final <T> T get(Future<T> future) {
+    Assure.notNull("future", future);
+    try {
+      return future.get();
+    } catch (InterruptedException ex) {
+      throw interrupted(ex);
+    } catch (ExecutionException ex) {
+      throw unwrap(ex);
+    }
+  }
+
+  /**
+   * <p>
+   * Waits for the next completed task of the given completion service and returns its result.
+   * </p>
+   * 
+   * @param <T>
+   *          the type of the result
+   * @param completionService
+   *          the completion service
+   * @return the result of the next completed task.
+   */
+  public static final <T> T take(CompletionService<T> completionService) {
+    Assure.notNull("completionService", completionService);
+    Future<T> future = null;
+    try {
+      future = completionService.take();
+    } catch (InterruptedException ex) {
+      throw interrupted(ex);
+    }
+    return get(future);
+  }
+
+  /**
+   * <p>
+   * Shuts down the given executor, interrupts the running tasks and waits until they have finished. If the current
+   * thread is interrupted while waiting, its interrupted state is restored and the method returns immediately.
+   * </p>
+   * 
+   * @param executor
+   *          the executor
+   */
+  public static final void shutdownNow(ExecutorService executor) {
+    Assure.notNull("executor", executor);
+    executor.shutdownNow();
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        // the tasks are still running
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the exception to throw for the failure of a task. The cause is returned if it's a
+   * {@link RuntimeException}, an {@link Error} is thrown immediately and a checked exception is wrapped.
+   * </p>
+   * 
+   * @param ex
+   *          the failure of a task
+   * @return the exception to throw.
+   */
+  public static final RuntimeException unwrap(ExecutionException ex) {
+    Assure.notNull("ex", ex);
+    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new RuntimeException(cause.getMessage(), cause);
+  }
+
+  /**
+   * <p>
+   * Restores the interrupted state of the current thread and returns the exception to throw.
+   * </p>
+   * 
+   * @param ex
+   *          the exception that signalled the interruption
+   * @return the exception to throw.
+   */
+  public static final RuntimeException interrupted(InterruptedException ex) {
+    Thread.currentThread().interrupt();
+    return new RuntimeException(ex.getMessage(), ex);
+  }
+
+  /**
+   * <p>
+   * Creates a {@link ThreadFactory} for daemon threads, so idle threads don't prevent the virtual machine from exiting.
+   * </p>
+   * 
+   * @param namePrefix
+   *          the prefix of the names of the threads
+   * @return the {@link ThreadFactory}.
+   */
+  public static final ThreadFactory newDaemonThreadFactory(final String namePrefix) {
+    Assure.nonEmpty("namePrefix", namePrefix);
+    final AtomicInteger counter = new AtomicInteger();
+    return new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread result = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+        result.setDaemon(true);
+        return result;
+      }
+    };
+  }
+
+} /* ENDCLASS */
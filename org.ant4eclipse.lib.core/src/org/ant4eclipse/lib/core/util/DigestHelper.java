@@ -0,0 +1,105 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.util;
+
+import org.ant4eclipse.lib.core.Assure;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>
+ * Helper class for the computation of MD5 digests. Strings are added together with their length, so the digests of
+ * different sequences of values never collide because of the boundaries between the values.
+ * </p>
+ */
+public class DigestHelper {
+
+  /**
+   * <p>
+   * Creates a new MD5 message digest.
+   * </p>
+   * 
+   * @return a new message digest.
+   */
+  public static final MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException ex) {
+      // MD5 is supported by every java runtime
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the given string to the given digest.
+   * </p>
+   * 
+   * @param digest
+   *          the digest
+   * @param value
+   *          the string (maybe <code>null</code>)
+   */
+  public static final void update(MessageDigest digest, String value) {
+    Assure.notNull("digest", digest);
+    if (value == null) {
+      update(digest, -1);
+      return;
+    }
+    try {
+      byte[] bytes = value.getBytes("UTF-8");
+      update(digest, bytes.length);
+      digest.update(bytes);
+    } catch (UnsupportedEncodingException ex) {
+      // UTF-8 is always supported
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the given number to the given digest.
+   * </p>
+   * 
+   * @param digest
+   *          the digest
+   * @param value
+   *          the number
+   */
+  public static final void update(MessageDigest digest, long value) {
+    Assure.notNull("digest", digest);
+    for (int i = 0; i < 8; i++) {
+      digest.update((byte) (value >>> (i * 8)));
+    }
+  }
+
+  /**
+   * <p>
+   * Converts the given bytes (e.g. the result of {@link MessageDigest#digest()}) to a hex string.
+   * </p>
+   * 
+   * @param bytes
+   *          the bytes
+   * @return the hex string.
+   */
+  public static final String toHex(byte[] bytes) {
+    Assure.notNull("bytes", bytes);
+    StringBuffer buffer = new StringBuffer(bytes.length * 2);
+    for (byte b : bytes) {
+      buffer.append(Character.forDigit((b >> 4) & 0xF, 16));
+      buffer.append(Character.forDigit(b & 0xF, 16));
+    }
+    return buffer.toString();
+  }
+}
@@ -16,12 +16,32 @@ import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
 /**
  * Used for ant4eclipse internal performance logging
  * 
+ * <p>
+ * The performance logging is enabled using the system property <code>ant4eclipse.enablePerformanceLogging</code>. If
+ * it is disabled, all methods return immediately. The performance logging can also be enabled at runtime (see
+ * {@link #setEnabled(boolean)}), e.g. by tasks that record a trace of the build. Code that is executed frequently
+ * should use a {@link StopWatchHandle} (see {@link #createHandle(Class, String)}) instead of
+ * {@link #start(Class, String)} and {@link #stop(Class, String)}, so the name of the stop watch isn't built on each
+ * invocation.
+ * 
  * @author
  * 
  */
 public class PerformanceLogging {
 
-  private static final boolean ENABLE_PERFORMANCE_LOGGING = Boolean.getBoolean("ant4eclipse.enablePerformanceLogging");
+  private static volatile boolean _enabled = Boolean.getBoolean("ant4eclipse.enablePerformanceLogging");
+
+  /**
+   * Creates a {@link StopWatchHandle} for the StopWatch identified by the given class and name. The handle can be
+   * stored in a static field.
+   * 
+   * @param source
+   * @param name
+   * @return the handle
+   */
+  public static StopWatchHandle createHandle(Class<?> source, String name) {
+    return new StopWatchHandle(source.getName() + "::" + name);
+  }
 
   /**
    * Starts the performance logging. The given class and name are used as identifier for the StopWatch that should be
@@ -31,7 +51,7 @@ public class PerformanceLogging {
    * @param name
    */
   public static void start(Class<?> source, String name) {
-    if (ENABLE_PERFORMANCE_LOGGING) {
+    if (_enabled) {
       getStopWatchService().getOrCreateStopWatch(source.getName() + "::" + name).start();
     }
   }
@@ -44,13 +64,59 @@ public class PerformanceLogging {
    * @param name
    */
   public static long stop(Class<?> source, String name) {
-    if (ENABLE_PERFORMANCE_LOGGING) {
+    if (_enabled) {
       return getStopWatchService().getOrCreateStopWatch(source.getName() + "::" + name).stop();
     }
 
     return -1;
   }
 
+  /**
+   * Adds the given value to a counter. The given class and name are used as identifier for the counter that should be
+   * used
+   * 
+   * @param source
+   * @param name
+   * @param value
+   */
+  public static void count(Class<?> source, String name, long value) {
+    if (_enabled) {
+      getStopWatchService().addToCounter(source.getName() + "::" + name, value);
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if the performance logging has been enabled.
+   * 
+   * @return <code>true</code> if the performance logging has been enabled.
+   */
+  public static boolean isEnabled() {
+    return _enabled;
+  }
+
+  /**
+   * Enables or disables the performance logging.
+   * 
+   * @param enabled
+   *          <code>true</code> if the performance logging should be enabled
+   */
+  public static void setEnabled(boolean enabled) {
+    _enabled = enabled;
+  }
+
+  /**
+   * Returns the recorder of the running trace (see {@link StopWatchService#startTrace()}).
+   * 
+   * @return the recorder of the running trace or <code>null</code> if the performance logging is disabled or no trace
+   *         is running.
+   */
+  public static TraceRecorder getTraceRecorder() {
+    if (_enabled) {
+      return getStopWatchService().getTraceRecorder();
+    }
+    return null;
+  }
+
   /**
    * @return the registered instance of the {@link StopWatchService}
    */
@@ -11,87 +11,454 @@
  **********************************************************************/
 package org.ant4eclipse.lib.core.util;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 /**
  * <p>
  * Implements a stop watch.
  * </p>
  * <p>
- * A stop watch can be started and stoped multiple times.
- * 
+ * A stop watch can be started and stoped multiple times, by multiple threads at the same time and recursively. Each
+ * thread maintains a stack of its running stop watches: stopping a stop watch records the time since the matching
+ * start (measured with {@link System#nanoTime()}) and charges it to the stop watch that has been started before on
+ * the same thread (the parent). For each stop watch the total time, the self time (total time minus the time spent in
+ * child stop watches), the minimum and maximum time and a histogram of all measured times are collected, so
+ * percentiles can be computed.
+ * </p>
+ * <p>
+ * The collected values are updated without locking.
+ * </p>
+ * <p>
+ * If a {@link TraceRecorder} has been set, each stopped run is additionally recorded as a span of the trace.
+ * </p>
+ *
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
 public class StopWatch {
 
+  /** the number of histogram buckets per power of two */
+  private static final int                SUB_BUCKETS  = 4;
+
+  /** the number of histogram buckets (enough for all positive long values) */
+  private static final int                BUCKET_COUNT = 62 * SUB_BUCKETS;
+
+  /** the nanoseconds per millisecond */
+  private static final long               NANOS_PER_MS = 1000000L;
+
+  /** the innermost running stop watch of the current thread */
+  private static final ThreadLocal<Frame> CURRENT      = new ThreadLocal<Frame>();
+
   /** The name of the stop watch */
-  private final String _name;
+  private final String                    _name;
+
+  /** the category of the spans recorded for this stop watch */
+  private final String                    _category;
 
-  private int          _invocations  = 0;
+  /** the number of completed measurements */
+  private final AtomicLong                _invocations;
 
-  private long         _elapsedTime;
+  /** the sum of all measured times (in nanoseconds) */
+  private final AtomicLong                _elapsedNanos;
 
-  private long         _runningSince = -1;
+  /** the sum of all measured times minus the times of the child stop watches (in nanoseconds) */
+  private final AtomicLong                _selfNanos;
 
+  /** the shortest measured time (in nanoseconds) */
+  private final AtomicLong                _minNanos;
+
+  /** the longest measured time (in nanoseconds) */
+  private final AtomicLong                _maxNanos;
+
+  /** the number of measured times per histogram bucket */
+  private final AtomicLongArray           _buckets;
+
+  /** the names of the stop watches that have been running when this stop watch has been started */
+  private final Map<String, StopWatch>    _parents;
+
+  /** the trace recorder the runs of this stop watch are recorded with (might be <code>null</code>) */
+  private volatile TraceRecorder          _traceRecorder;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link StopWatch}.
+   * </p>
+   *
+   * @param name
+   *          the name of the stop watch
+   */
   public StopWatch(String name) {
     super();
     this._name = name;
-  }
-
-  public long stop() {
-    if (this._runningSince == -1) {
-      return this._elapsedTime;
-    }
-
-    long elapsedTime = System.currentTimeMillis() - this._runningSince;
-    this._elapsedTime += elapsedTime;
-    this._runningSince = -1;
-    return elapsedTime;
+    this._category = getCategory(name);
+    this._invocations = new AtomicLong();
+    this._elapsedNanos = new AtomicLong();
+    this._selfNanos = new AtomicLong();
+    this._minNanos = new AtomicLong(Long.MAX_VALUE);
+    this._maxNanos = new AtomicLong();
+    this._buckets = new AtomicLongArray(BUCKET_COUNT);
+    this._parents = new ConcurrentHashMap<String, StopWatch>();
   }
 
   /**
-   * (Re)starts the StopWatch
+   * (Re)starts the StopWatch on the current thread
    */
   public void start() {
-    this._invocations++;
-    this._runningSince = System.currentTimeMillis();
+    CURRENT.set(new Frame(this, System.nanoTime(), CURRENT.get()));
+  }
+
+  /**
+   * <p>
+   * Stops the innermost run of this stop watch on the current thread and returns its time (in ms). If this stop watch
+   * isn't running on the current thread, the total time is returned.
+   * </p>
+   *
+   * @return the time of the stopped run (in ms).
+   */
+  public long stop() {
+    long now = System.nanoTime();
+
+    // find the innermost frame of this stop watch, frames of other stop watches that are still running are kept
+    Frame child = null;
+    Frame frame = CURRENT.get();
+    while ((frame != null) && (frame._stopWatch != this)) {
+      child = frame;
+      frame = frame._parent;
+    }
+    if (frame == null) {
+      return getElapsedTime();
+    }
+    if (child == null) {
+      CURRENT.set(frame._parent);
+    } else {
+      child._parent = frame._parent;
+    }
+
+    long elapsedNanos = now - frame._startNanos;
+    record(elapsedNanos, elapsedNanos - frame._childNanos);
+    TraceRecorder traceRecorder = this._traceRecorder;
+    if (traceRecorder != null) {
+      traceRecorder.record(this._name, this._category, frame._startNanos, elapsedNanos, null);
+    }
+    if (frame._parent != null) {
+      frame._parent._childNanos += elapsedNanos;
+      if (frame._parent._stopWatch != this) {
+        this._parents.put(frame._parent._stopWatch.getName(), frame._parent._stopWatch);
+      }
+    }
+    return elapsedNanos / NANOS_PER_MS;
   }
 
   /**
-   * Returns the total time this stop watch has been run
-   * 
+   * <p>
+   * Returns <code>true</code> if this stop watch is running on the current thread.
+   * </p>
+   *
+   * @return <code>true</code> if this stop watch is running on the current thread.
+   */
+  public boolean isRunning() {
+    for (Frame frame = CURRENT.get(); frame != null; frame = frame._parent) {
+      if (frame._stopWatch == this) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * <p>
+   * Records a time that has been measured outside of this stop watch.
+   * </p>
+   *
+   * @param elapsedNanos
+   *          the measured time (in nanoseconds)
+   * @param selfNanos
+   *          the measured time minus the time of nested operations (in nanoseconds)
+   */
+  public void record(long elapsedNanos, long selfNanos) {
+    this._invocations.incrementAndGet();
+    this._elapsedNanos.addAndGet(elapsedNanos);
+    this._selfNanos.addAndGet(selfNanos);
+    this._buckets.incrementAndGet(getBucket(elapsedNanos));
+
+    long min = this._minNanos.get();
+    while ((elapsedNanos < min) && !this._minNanos.compareAndSet(min, elapsedNanos)) {
+      min = this._minNanos.get();
+    }
+    long max = this._maxNanos.get();
+    while ((elapsedNanos > max) && !this._maxNanos.compareAndSet(max, elapsedNanos)) {
+      max = this._maxNanos.get();
+    }
+  }
+
+  /**
+   * <p>
+   * Resets all collected values. Runs that are in progress are not affected.
+   * </p>
+   */
+  public void reset() {
+    this._invocations.set(0);
+    this._elapsedNanos.set(0);
+    this._selfNanos.set(0);
+    this._minNanos.set(Long.MAX_VALUE);
+    this._maxNanos.set(0);
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      this._buckets.set(i, 0);
+    }
+    this._parents.clear();
+  }
+
+  /**
+   * Returns the total time this stop watch has been run (in ms)
+   *
    * @return
    */
   public long getElapsedTime() {
-    return this._elapsedTime;
+    return this._elapsedNanos.get() / NANOS_PER_MS;
+  }
+
+  /**
+   * Returns the total time this stop watch has been run (in nanoseconds)
+   *
+   * @return
+   */
+  public long getElapsedNanos() {
+    return this._elapsedNanos.get();
+  }
+
+  /**
+   * Returns the total time this stop watch has been run without the time of its child stop watches (in nanoseconds)
+   *
+   * @return
+   */
+  public long getSelfNanos() {
+    return this._selfNanos.get();
   }
 
   /**
    * returns the average time (in ms) this stop watch has been run
-   * 
+   *
    * @return
    */
   public double getAverageTime() {
-    if (this._invocations == 0) {
+    long invocations = this._invocations.get();
+    if (invocations == 0) {
       return 0;
     }
-    return this._elapsedTime / this._invocations;
+    return (double) this._elapsedNanos.get() / NANOS_PER_MS / invocations;
+  }
+
+  /**
+   * Returns the shortest time this stop watch has been run (in nanoseconds)
+   *
+   * @return
+   */
+  public long getMinNanos() {
+    long min = this._minNanos.get();
+    return min == Long.MAX_VALUE ? 0 : min;
+  }
+
+  /**
+   * Returns the longest time this stop watch has been run (in nanoseconds)
+   *
+   * @return
+   */
+  public long getMaxNanos() {
+    return this._maxNanos.get();
+  }
+
+  /**
+   * <p>
+   * Returns the given percentile of the times this stop watch has been run (in nanoseconds). The percentile is
+   * computed from a histogram whose buckets divide each power of two into four parts, so the result is an
+   * approximation within about 20 percent.
+   * </p>
+   *
+   * @param percentile
+   *          the percentile (between <code>0</code> and <code>100</code>)
+   * @return the approximated percentile.
+   */
+  public long getPercentileNanos(double percentile) {
+    long[] buckets = new long[BUCKET_COUNT];
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets[i] = this._buckets.get(i);
+      count += buckets[i];
+    }
+    if (count == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += buckets[i];
+      if (seen >= rank) {
+        long value = getBucketUpperBound(i);
+        return Math.max(getMinNanos(), Math.min(getMaxNanos(), value));
+      }
+    }
+    return getMaxNanos();
   }
 
   /**
    * returns how often this stop watch has been used
-   * 
+   *
    * @return
    */
   public int getInvocations() {
-    return this._invocations;
-    }
+    return (int) this._invocations.get();
+  }
+
+  /**
+   * Returns the names of the stop watches that have been running on the same thread when this stop watch has been
+   * started
+   *
+   * @return
+   */
+  public Set<String> getParents() {
+    return this._parents.keySet();
+  }
 
   /**
    * Returns the name of this stop watch
-   * 
+   *
    * @return
    */
   public String getName() {
     return this._name;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return String.format("'%s' took total %.3f sec (invocations: %d, average: %.3f ms, min: %.3f ms, "
+        + "p50: %.3f ms, p90: %.3f ms, p99: %.3f ms, max: %.3f ms, self: %.3f sec)", this._name, getElapsedNanos()
+        / (NANOS_PER_MS * 1000d), getInvocations(), getAverageTime(), toMillis(getMinNanos()),
+        toMillis(getPercentileNanos(50)), toMillis(getPercentileNanos(90)), toMillis(getPercentileNanos(99)),
+        toMillis(getMaxNanos()), getSelfNanos() / (NANOS_PER_MS * 1000d));
+  }
+
+  /**
+   * <p>
+   * Sets the trace recorder the runs of this stop watch are recorded with.
+   * </p>
+   *
+   * @param traceRecorder
+   *          the trace recorder (might be <code>null</code> to stop recording)
+   */
+  void setTraceRecorder(TraceRecorder traceRecorder) {
+    this._traceRecorder = traceRecorder;
+  }
+
+  /**
+   * <p>
+   * Returns the category of the spans of the stop watch with the given name. Stop watch names usually have the form
+   * <code>&lt;class name&gt;::&lt;method&gt;</code>, so the simple class name is used as category.
+   * </p>
+   *
+   * @param name
+   *          the name of the stop watch
+   * @return the category.
+   */
+  private static String getCategory(String name) {
+    int separator = name.indexOf("::");
+    if (separator < 0) {
+      return "ant4eclipse";
+    }
+    String className = name.substring(0, separator);
+    return className.substring(className.lastIndexOf('.') + 1);
+  }
+
+  /**
+   * <p>
+   * Returns the histogram bucket of the given time.
+   * </p>
+   *
+   * @param nanos
+   *          the time (in nanoseconds)
+   * @return the histogram bucket.
+   */
+  static int getBucket(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return nanos < 0 ? 0 : (int) nanos;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    int subBucket = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+    return (exponent - 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * <p>
+   * Returns the largest time that belongs to the given histogram bucket.
+   * </p>
+   *
+   * @param bucket
+   *          the histogram bucket
+   * @return the largest time that belongs to the bucket (in nanoseconds).
+   */
+  static long getBucketUpperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + 1;
+    long lowerBound = ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS)) << (exponent - 2);
+    return lowerBound + (1L << (exponent - 2)) - 1;
+  }
+
+  /**
+   * <p>
+   * Converts the given nanoseconds to milliseconds.
+   * </p>
+   *
+   * @param nanos
+   *          the nanoseconds
+   * @return the milliseconds.
+   */
+  private static double toMillis(long nanos) {
+    return (double) nanos / NANOS_PER_MS;
+  }
+
+  /**
+   * <p>
+   * A run of a stop watch on the stack of a thread.
+   * </p>
+   */
+  private static class Frame {
+
+    /** the running stop watch */
+    private StopWatch _stopWatch;
+
+    /** the start time of the run (in nanoseconds) */
+    private long     _startNanos;
+
+    /** the time spent in child stop watches (in nanoseconds) */
+    private long     _childNanos;
+
+    /** the enclosing run */
+    private Frame    _parent;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link Frame}.
+     * </p>
+     *
+     * @param stopWatch
+     *          the running stop watch
+     * @param startNanos
+     *          the start time of the run
+     * @param parent
+     *          the enclosing run (might be <code>null</code>)
+     */
+    public Frame(StopWatch stopWatch, long startNanos, Frame parent) {
+      this._stopWatch = stopWatch;
+      this._startNanos = startNanos;
+      this._parent = parent;
+    }
+  }
 }
@@ -0,0 +1,130 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.util;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+
+/**
+ * <p>
+ * A pre-registered handle for a {@link StopWatch} of the {@link StopWatchService}. Handles are meant to be stored in
+ * static fields, so hot code paths neither have to build the name of the stop watch nor look it up each time:
+ * </p>
+ *
+ * <pre>
+ * private static final StopWatchHandle COMPILE = PerformanceLogging.createHandle(MyClass.class, &quot;compile&quot;);
+ * ...
+ * COMPILE.start();
+ * try {
+ *   ...
+ * } finally {
+ *   COMPILE.stop();
+ * }
+ * </pre>
+ * <p>
+ * If the performance logging is disabled (see {@link PerformanceLogging#isEnabled()}) the methods of a handle return
+ * immediately. The stop watch is resolved when it is used the first time and again whenever the registered
+ * {@link StopWatchService} has been replaced.
+ * </p>
+ */
+public final class StopWatchHandle {
+
+  /** the name of the stop watch */
+  private final String              _name;
+
+  /** the service the stop watch has been resolved from */
+  private volatile StopWatchService _service;
+
+  /** the resolved stop watch */
+  private volatile StopWatch        _stopWatch;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link StopWatchHandle}.
+   * </p>
+   *
+   * @param name
+   *          the name of the stop watch
+   */
+  StopWatchHandle(String name) {
+    Assure.notNull("name", name);
+
+    this._name = name;
+  }
+
+  /**
+   * <p>
+   * Returns the name of the stop watch.
+   * </p>
+   *
+   * @return the name of the stop watch.
+   */
+  public String getName() {
+    return this._name;
+  }
+
+  /**
+   * <p>
+   * Starts the stop watch on the current thread (see {@link StopWatch#start()}).
+   * </p>
+   */
+  public void start() {
+    if (PerformanceLogging.isEnabled()) {
+      getStopWatch().start();
+    }
+  }
+
+  /**
+   * <p>
+   * Stops the stop watch on the current thread (see {@link StopWatch#stop()}).
+   * </p>
+   *
+   * @return the time of the stopped run (in ms) or <code>-1</code> if the handle is disabled.
+   */
+  public long stop() {
+    if (PerformanceLogging.isEnabled()) {
+      return getStopWatch().stop();
+    }
+    return -1;
+  }
+
+  /**
+   * <p>
+   * Returns the stop watch of the currently registered {@link StopWatchService}.
+   * </p>
+   *
+   * @return the stop watch.
+   */
+  private StopWatch getStopWatch() {
+    StopWatchService service = ServiceRegistryAccess.instance().getService(StopWatchService.class);
+    StopWatch stopWatch = this._stopWatch;
+    if ((stopWatch == null) || (service != this._service)) {
+      stopWatch = service.getOrCreateStopWatch(this._name);
+      this._stopWatch = stopWatch;
+      this._service = service;
+    }
+    return stopWatch;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[StopWatchHandle:");
+    buffer.append(" _name: ");
+    buffer.append(this._name);
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
@@ -34,13 +34,68 @@ public interface StopWatchService {
   public StopWatch getOrCreateStopWatch(String name);
 
   /**
-   * Resets all managed stopwatches
+   * Adds the given value to the counter with the specified name. The counter is created if it doesn't exist yet.
+   * 
+   * <p>
+   * Counters are used to collect numbers like cache hits and misses that don't have a duration.
+   * 
+   * @param name
+   *          the name of the counter
+   * @param value
+   *          the value to add
+   */
+  public void addToCounter(String name, long value);
+
+  /**
+   * Returns the current value of the counter with the specified name or <code>0</code> if no such counter exists.
+   * 
+   * @param name
+   *          the name of the counter
+   * @return the current value of the counter
+   */
+  public long getCounter(String name);
+
+  /**
+   * Returns all managed stopwatches.
+   * 
+   * @return all managed stopwatches
+   */
+  public StopWatch[] getStopWatches();
+
+  /**
+   * Resets all managed stopwatches and counters.
+   * 
+   * <p>
+   * The stopwatches are reset in place, so {@link StopWatchHandle StopWatchHandles} that refer to them remain valid.
    */
   public void resetAll();
 
   /**
-   * Dumps all stopwatches via ant4eclipse logging
+   * Dumps all stopwatches (as a tree of the stopwatches that have been started while another one has been running on
+   * the same thread) and counters via ant4eclipse logging
    */
   public void dumpAll();
 
+  /**
+   * Starts to record the runs of all stopwatches (including the ones that are created later) with a new
+   * {@link TraceRecorder}. If a trace is already running, its recorder is returned.
+   * 
+   * @return the recorder of the trace
+   */
+  public TraceRecorder startTrace();
+
+  /**
+   * Stops the running trace.
+   * 
+   * @return the recorder of the stopped trace or <code>null</code> if no trace has been running
+   */
+  public TraceRecorder stopTrace();
+
+  /**
+   * Returns the recorder of the running trace.
+   * 
+   * @return the recorder of the running trace or <code>null</code> if no trace is running
+   */
+  public TraceRecorder getTraceRecorder();
+
 }
@@ -11,62 +11,188 @@
  **********************************************************************/
 package org.ant4eclipse.lib.core.util;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Hashtable;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 
 public class StopWatchServiceImpl implements StopWatchService {
 
-  private final Map<String, StopWatch> _managedStopWatches;
+  /** orders stop watches by their total time (longest first) */
+  private static final Comparator<StopWatch>     BY_ELAPSED_TIME = new Comparator<StopWatch>() {
+                                                                   public int compare(StopWatch o1, StopWatch o2) {
+                                                                     return Long.valueOf(o2.getElapsedNanos())
+                                                                         .compareTo(o1.getElapsedNanos());
+                                                                   }
+                                                                 };
+
+  private final ConcurrentMap<String, StopWatch> _managedStopWatches;
+
+  private final Map<String, AtomicLong>          _managedCounters;
+
+  private volatile TraceRecorder                 _traceRecorder;
 
   public StopWatchServiceImpl() {
-    this._managedStopWatches = new Hashtable<String, StopWatch>();
+    this._managedStopWatches = new ConcurrentHashMap<String, StopWatch>();
+    this._managedCounters = new ConcurrentHashMap<String, AtomicLong>();
   }
 
   public StopWatch getOrCreateStopWatch(String name) {
 
     StopWatch stopWatch = this._managedStopWatches.get(name);
     if (stopWatch == null) {
-      stopWatch = new StopWatch(name);
-      this._managedStopWatches.put(name, stopWatch);
+      StopWatch newStopWatch = new StopWatch(name);
+      newStopWatch.setTraceRecorder(this._traceRecorder);
+      stopWatch = this._managedStopWatches.putIfAbsent(name, newStopWatch);
+      if (stopWatch == null) {
+        stopWatch = newStopWatch;
+      }
     }
 
     return stopWatch;
   }
 
+  public void addToCounter(String name, long value) {
+
+    AtomicLong counter = this._managedCounters.get(name);
+    if (counter == null) {
+      synchronized (this._managedCounters) {
+        counter = this._managedCounters.get(name);
+        if (counter == null) {
+          counter = new AtomicLong();
+          this._managedCounters.put(name, counter);
+        }
+      }
+    }
+
+    counter.addAndGet(value);
+  }
+
+  public long getCounter(String name) {
+    AtomicLong counter = this._managedCounters.get(name);
+    return counter != null ? counter.get() : 0;
+  }
+
+  public StopWatch[] getStopWatches() {
+    return this._managedStopWatches.values().toArray(new StopWatch[0]);
+  }
+
   public void resetAll() {
-    this._managedStopWatches.clear();
+    // the stop watches are kept, so handles that refer to them remain valid
+    for (StopWatch stopWatch : this._managedStopWatches.values()) {
+      stopWatch.reset();
+    }
+    this._managedCounters.clear();
   }
 
-  public void dumpAll() {
+  public synchronized TraceRecorder startTrace() {
+    if (this._traceRecorder == null) {
+      // stop watches that are created from now on get the recorder in getOrCreateStopWatch()
+      this._traceRecorder = new TraceRecorder();
+      setTraceRecorder(this._traceRecorder);
+    }
+    return this._traceRecorder;
+  }
 
-    dumpAll("total time:", new Comparator<StopWatch>() {
-      public int compare(StopWatch o1, StopWatch o2) {
-        return Long.valueOf(o2.getElapsedTime()).compareTo(o1.getElapsedTime());
-      }
-    });
+  public synchronized TraceRecorder stopTrace() {
+    TraceRecorder result = this._traceRecorder;
+    this._traceRecorder = null;
+    setTraceRecorder(null);
+    return result;
+  }
 
+  public TraceRecorder getTraceRecorder() {
+    return this._traceRecorder;
   }
 
-  private void dumpAll(String key, Comparator<StopWatch> comparator) {
+  public void dumpAll() {
+
+    // collect the used stop watches and their children
+    List<StopWatch> roots = new ArrayList<StopWatch>();
+    Map<String, List<StopWatch>> children = new TreeMap<String, List<StopWatch>>();
+    int count = 0;
+    for (StopWatch stopWatch : this._managedStopWatches.values()) {
+      if (stopWatch.getInvocations() == 0) {
+        continue;
+      }
+      count++;
+      boolean root = true;
+      for (String parent : stopWatch.getParents()) {
+        if (this._managedStopWatches.containsKey(parent)) {
+          List<StopWatch> siblings = children.get(parent);
+          if (siblings == null) {
+            siblings = new ArrayList<StopWatch>();
+            children.put(parent, siblings);
+          }
+          siblings.add(stopWatch);
+          root = false;
+        }
+      }
+      if (root) {
+        roots.add(stopWatch);
+      }
+    }
+
+    A4ELogging.info(count + " stopwatches ordered by total time:");
+    dump(roots, children, "  ", new HashSet<String>());
 
-    List<StopWatch> stopwatches = new LinkedList<StopWatch>(this._managedStopWatches.values());
-    for (StopWatch stopWatch : stopwatches) {
-      stopWatch.stop();
+    if (!this._managedCounters.isEmpty()) {
+      Map<String, AtomicLong> counters = new TreeMap<String, AtomicLong>(this._managedCounters);
+      A4ELogging.info(counters.size() + " counters ordered by name:");
+      for (Map.Entry<String, AtomicLong> counter : counters.entrySet()) {
+        A4ELogging.info(String.format("  '%s': %d", counter.getKey(), counter.getValue().get()));
+      }
     }
+  }
 
-    Collections.sort(stopwatches, comparator);
-    A4ELogging.info(stopwatches.size() + " stopwatches ordered by " + key);
+  /**
+   * Sets the given trace recorder on all managed stop watches.
+   * 
+   * @param traceRecorder
+   *          the trace recorder (might be <code>null</code>)
+   */
+  private void setTraceRecorder(TraceRecorder traceRecorder) {
+    for (StopWatch stopWatch : this._managedStopWatches.values()) {
+      stopWatch.setTraceRecorder(traceRecorder);
+    }
+  }
 
-    for (StopWatch stopWatch : stopwatches) {
-      A4ELogging.info(String.format("  '%s' took total '%f' sec (invocations: %d, average: %f sec)",
-          stopWatch.getName(), (double) stopWatch.getElapsedTime() / 1000, stopWatch.getInvocations(),
-          stopWatch.getAverageTime() / 1000));
+  /**
+   * Dumps the given stop watches and (indented) their children.
+   * 
+   * @param stopWatches
+   *          the stop watches to dump
+   * @param children
+   *          maps the names of stop watches to their children
+   * @param indent
+   *          the indentation
+   * @param path
+   *          the names of the stop watches that are currently dumped (used to break cycles)
+   */
+  private void dump(List<StopWatch> stopWatches, Map<String, List<StopWatch>> children, String indent,
+      Set<String> path) {
+
+    Collections.sort(stopWatches, BY_ELAPSED_TIME);
+    for (StopWatch stopWatch : stopWatches) {
+      if (!path.add(stopWatch.getName())) {
+        continue;
+      }
+      // the message is formatted here, so the percent signs of the names are not interpreted by the logger
+      A4ELogging.info("%s", indent + stopWatch);
+      List<StopWatch> nested = children.get(stopWatch.getName());
+      if (nested != null) {
+        dump(nested, children, indent + "  ", path);
+      }
+      path.remove(stopWatch.getName());
     }
   }
 }
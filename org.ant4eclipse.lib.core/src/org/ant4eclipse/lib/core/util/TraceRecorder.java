@@ -0,0 +1,557 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.CoreExceptionCode;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+
+/**
+ * <p>
+ * Records the runs of stop watches (and other spans of time) of a build, so they can be written in the
+ * <a href="http://code.google.com/p/trace-viewer/">Chrome Trace Event format</a> (viewable in chrome://tracing or
+ * Perfetto) and as a JSON summary.
+ * </p>
+ * <p>
+ * Each span is recorded with the thread that executed it, so parallel builds show up as separate lanes. Spans can be
+ * attributed to the eclipse project that is currently built by the recording thread (see {@link #setProject(String)}),
+ * the summary aggregates the spans per project.
+ * </p>
+ * <p>
+ * The number of recorded spans is limited (see {@link #MAX_EVENTS_PROPERTY}), further spans are only counted.
+ * </p>
+ */
+public class TraceRecorder {
+
+  /** System-Property that specifies the maximum number of recorded spans */
+  public static final String               MAX_EVENTS_PROPERTY = "ant4eclipse.trace.maxEvents";
+
+  /** the default maximum number of recorded spans */
+  public static final int                  DEFAULT_MAX_EVENTS  = 500000;
+
+  /** the category of spans that cover the build of a whole project */
+  public static final String               PROJECT_CATEGORY    = "project";
+
+  /** the eclipse project that is currently built by a thread */
+  private static final ThreadLocal<String> CURRENT_PROJECT     = new ThreadLocal<String>();
+
+  /** the start time of the recording (in nanoseconds) */
+  private final long                       _startNanos;
+
+  /** the start time of the recording (in milliseconds since the epoch) */
+  private final long                       _startMillis;
+
+  /** the maximum number of recorded spans */
+  private final int                        _maxEvents;
+
+  /** the recorded spans */
+  private final Queue<TraceEvent>          _events;
+
+  /** the number of recorded spans */
+  private final AtomicInteger              _eventCount;
+
+  /** the number of spans that have been dropped because the limit has been exceeded */
+  private final AtomicLong                 _droppedEvents;
+
+  /** the names of the threads that recorded spans */
+  private final Map<Long, String>          _threadNames;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link TraceRecorder}. The maximum number of recorded spans is read from the system
+   * property {@link #MAX_EVENTS_PROPERTY}.
+   * </p>
+   */
+  public TraceRecorder() {
+    this(Integer.getInteger(MAX_EVENTS_PROPERTY, DEFAULT_MAX_EVENTS).intValue());
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link TraceRecorder}.
+   * </p>
+   *
+   * @param maxEvents
+   *          the maximum number of recorded spans
+   */
+  public TraceRecorder(int maxEvents) {
+    Assure.assertTrue(maxEvents >= 0, "maxEvents must not be negative");
+
+    this._startNanos = System.nanoTime();
+    this._startMillis = System.currentTimeMillis();
+    this._maxEvents = maxEvents;
+    this._events = new ConcurrentLinkedQueue<TraceEvent>();
+    this._eventCount = new AtomicInteger();
+    this._droppedEvents = new AtomicLong();
+    this._threadNames = new ConcurrentHashMap<Long, String>();
+  }
+
+  /**
+   * <p>
+   * Sets the name of the eclipse project that is built by the current thread. Spans that are recorded by the current
+   * thread are attributed to this project.
+   * </p>
+   *
+   * @param projectName
+   *          the name of the project (might be <code>null</code>)
+   * @return the name of the project that has been set before (might be <code>null</code>).
+   */
+  public static String setProject(String projectName) {
+    String previous = CURRENT_PROJECT.get();
+    CURRENT_PROJECT.set(projectName);
+    return previous;
+  }
+
+  /**
+   * <p>
+   * Returns the name of the eclipse project that is built by the current thread.
+   * </p>
+   *
+   * @return the name of the project or <code>null</code>.
+   */
+  public static String getProject() {
+    return CURRENT_PROJECT.get();
+  }
+
+  /**
+   * <p>
+   * Records a span that has been executed by the current thread.
+   * </p>
+   *
+   * @param name
+   *          the name of the span
+   * @param category
+   *          the category of the span
+   * @param startNanos
+   *          the start time of the span (as returned by {@link System#nanoTime()})
+   * @param durationNanos
+   *          the duration of the span (in nanoseconds)
+   * @param args
+   *          additional name/value pairs that describe the span (might be <code>null</code>)
+   */
+  public void record(String name, String category, long startNanos, long durationNanos, String[] args) {
+    Assure.notNull("name", name);
+    Assure.notNull("category", category);
+    Assure.assertTrue((args == null) || (args.length % 2 == 0), "args must consist of name/value pairs");
+
+    if (this._eventCount.incrementAndGet() > this._maxEvents) {
+      this._eventCount.decrementAndGet();
+      this._droppedEvents.incrementAndGet();
+      return;
+    }
+
+    Thread thread = Thread.currentThread();
+    Long threadId = Long.valueOf(thread.getId());
+    if (!this._threadNames.containsKey(threadId)) {
+      this._threadNames.put(threadId, thread.getName());
+    }
+    this._events.add(new TraceEvent(name, category, CURRENT_PROJECT.get(), threadId.longValue(), startNanos,
+        durationNanos, args));
+  }
+
+  /**
+   * <p>
+   * Returns the number of recorded spans.
+   * </p>
+   *
+   * @return the number of recorded spans.
+   */
+  public int getEventCount() {
+    return this._eventCount.get();
+  }
+
+  /**
+   * <p>
+   * Returns the number of spans that have been dropped because the limit has been exceeded.
+   * </p>
+   *
+   * @return the number of dropped spans.
+   */
+  public long getDroppedEvents() {
+    return this._droppedEvents.get();
+  }
+
+  /**
+   * <p>
+   * Writes the recorded spans to the given file using the Chrome Trace Event format.
+   * </p>
+   *
+   * @param file
+   *          the destination file
+   */
+  public void writeChromeTrace(File file) {
+    Assure.notNull("file", file);
+
+    Writer writer = null;
+    try {
+      writer = createWriter(file);
+      writer.write("{\"displayTimeUnit\":\"ms\",\"otherData\":{\"startTime\":");
+      writer.write(String.valueOf(this._startMillis));
+      writer.write(",\"droppedEvents\":");
+      writer.write(String.valueOf(getDroppedEvents()));
+      writer.write("},\n\"traceEvents\":[\n");
+      writer.write("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"tid\":0,\"args\":{\"name\":\"ant4eclipse\"}}");
+      for (Map.Entry<Long, String> thread : new TreeMap<Long, String>(this._threadNames).entrySet()) {
+        writer.write(",\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+        writer.write(String.valueOf(thread.getKey()));
+        writer.write(",\"args\":{\"name\":");
+        writeString(writer, thread.getValue());
+        writer.write("}}");
+      }
+      for (TraceEvent event : this._events) {
+        writer.write(",\n{\"name\":");
+        writeString(writer, event._name);
+        writer.write(",\"cat\":");
+        writeString(writer, event._category);
+        writer.write(",\"ph\":\"X\",\"pid\":1,\"tid\":");
+        writer.write(String.valueOf(event._threadId));
+        writer.write(",\"ts\":");
+        writer.write(toMicros(event._startNanos - this._startNanos));
+        writer.write(",\"dur\":");
+        writer.write(toMicros(event._durationNanos));
+        if ((event._project != null) || (event._args != null)) {
+          writer.write(",\"args\":{");
+          boolean first = true;
+          if (event._project != null) {
+            writer.write("\"project\":");
+            writeString(writer, event._project);
+            first = false;
+          }
+          for (int i = 0; (event._args != null) && (i < event._args.length); i += 2) {
+            if (!first) {
+              writer.write(',');
+            }
+            writeString(writer, event._args[i]);
+            writer.write(':');
+            writeString(writer, event._args[i + 1]);
+            first = false;
+          }
+          writer.write('}');
+        }
+        writer.write('}');
+      }
+      writer.write("\n]}\n");
+      writer.close();
+      writer = null;
+    } catch (IOException ex) {
+      throw new Ant4EclipseException(ex, CoreExceptionCode.FILEIO_FAILURE, file);
+    } finally {
+      Utilities.close((Closeable) writer);
+    }
+  }
+
+  /**
+   * <p>
+   * Writes a JSON summary to the given file. The summary contains the total times of the recorded spans per project
+   * and the statistics of the given stop watches.
+   * </p>
+   *
+   * @param file
+   *          the destination file
+   * @param stopWatches
+   *          the stop watches whose statistics should be contained in the summary
+   */
+  public void writeSummary(File file, StopWatch[] stopWatches) {
+    Assure.notNull("file", file);
+    Assure.notNull("stopWatches", stopWatches);
+
+    // aggregate the spans per project and span name
+    Map<String, Map<String, long[]>> projects = new TreeMap<String, Map<String, long[]>>();
+    final Map<String, long[]> totals = new LinkedHashMap<String, long[]>();
+    for (TraceEvent event : this._events) {
+      if (event._project == null) {
+        continue;
+      }
+      Map<String, long[]> spans = projects.get(event._project);
+      if (spans == null) {
+        spans = new TreeMap<String, long[]>();
+        projects.put(event._project, spans);
+        totals.put(event._project, new long[1]);
+      }
+      long[] span = spans.get(event._name);
+      if (span == null) {
+        span = new long[2];
+        spans.put(event._name, span);
+      }
+      span[0]++;
+      span[1] += event._durationNanos;
+      if (PROJECT_CATEGORY.equals(event._category)) {
+        totals.get(event._project)[0] += event._durationNanos;
+      }
+    }
+    List<String> projectNames = new ArrayList<String>(projects.keySet());
+    Collections.sort(projectNames, new Comparator<String>() {
+      public int compare(String o1, String o2) {
+        return Long.valueOf(totals.get(o2)[0]).compareTo(Long.valueOf(totals.get(o1)[0]));
+      }
+    });
+
+    StopWatch[] sortedStopWatches = stopWatches.clone();
+    Arrays.sort(sortedStopWatches, new Comparator<StopWatch>() {
+      public int compare(StopWatch o1, StopWatch o2) {
+        return Long.valueOf(o2.getElapsedNanos()).compareTo(Long.valueOf(o1.getElapsedNanos()));
+      }
+    });
+
+    Writer writer = null;
+    try {
+      writer = createWriter(file);
+      writer.write("{\n\"startTime\":");
+      writer.write(String.valueOf(this._startMillis));
+      writer.write(",\n\"wallTimeMs\":");
+      writer.write(toMillis(System.nanoTime() - this._startNanos));
+      writer.write(",\n\"events\":");
+      writer.write(String.valueOf(getEventCount()));
+      writer.write(",\n\"droppedEvents\":");
+      writer.write(String.valueOf(getDroppedEvents()));
+      writer.write(",\n\"threads\":");
+      writer.write(String.valueOf(this._threadNames.size()));
+
+      writer.write(",\n\"projects\":[");
+      boolean firstProject = true;
+      for (String projectName : projectNames) {
+        writer.write(firstProject ? "\n" : ",\n");
+        writer.write("{\"name\":");
+        writeString(writer, projectName);
+        writer.write(",\"totalMs\":");
+        writer.write(toMillis(totals.get(projectName)[0]));
+        writer.write(",\"spans\":{");
+        boolean firstSpan = true;
+        for (Map.Entry<String, long[]> span : projects.get(projectName).entrySet()) {
+          if (!firstSpan) {
+            writer.write(',');
+          }
+          writeString(writer, span.getKey());
+          writer.write(":{\"count\":");
+          writer.write(String.valueOf(span.getValue()[0]));
+          writer.write(",\"totalMs\":");
+          writer.write(toMillis(span.getValue()[1]));
+          writer.write('}');
+          firstSpan = false;
+        }
+        writer.write("}}");
+        firstProject = false;
+      }
+      writer.write("\n],\n\"stopWatches\":[");
+
+      boolean firstStopWatch = true;
+      for (StopWatch stopWatch : sortedStopWatches) {
+        if (stopWatch.getInvocations() == 0) {
+          continue;
+        }
+        writer.write(firstStopWatch ? "\n" : ",\n");
+        writer.write("{\"name\":");
+        writeString(writer, stopWatch.getName());
+        writer.write(",\"invocations\":");
+        writer.write(String.valueOf(stopWatch.getInvocations()));
+        writer.write(",\"totalMs\":");
+        writer.write(toMillis(stopWatch.getElapsedNanos()));
+        writer.write(",\"selfMs\":");
+        writer.write(toMillis(stopWatch.getSelfNanos()));
+        writer.write(",\"minMs\":");
+        writer.write(toMillis(stopWatch.getMinNanos()));
+        writer.write(",\"p50Ms\":");
+        writer.write(toMillis(stopWatch.getPercentileNanos(50)));
+        writer.write(",\"p90Ms\":");
+        writer.write(toMillis(stopWatch.getPercentileNanos(90)));
+        writer.write(",\"p99Ms\":");
+        writer.write(toMillis(stopWatch.getPercentileNanos(99)));
+        writer.write(",\"maxMs\":");
+        writer.write(toMillis(stopWatch.getMaxNanos()));
+        writer.write('}');
+        firstStopWatch = false;
+      }
+      writer.write("\n]\n}\n");
+      writer.close();
+      writer = null;
+    } catch (IOException ex) {
+      throw new Ant4EclipseException(ex, CoreExceptionCode.FILEIO_FAILURE, file);
+    } finally {
+      Utilities.close((Closeable) writer);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[TraceRecorder:");
+    buffer.append(" _startMillis: ");
+    buffer.append(this._startMillis);
+    buffer.append(" _maxEvents: ");
+    buffer.append(this._maxEvents);
+    buffer.append(" events: ");
+    buffer.append(getEventCount());
+    buffer.append(" _droppedEvents: ");
+    buffer.append(getDroppedEvents());
+    buffer.append("]");
+    return buffer.toString();
+  }
+
+  /**
+   * <p>
+   * Creates a buffered UTF-8 writer for the given file. The parent directory is created if necessary.
+   * </p>
+   *
+   * @param file
+   *          the file
+   * @return the writer.
+   * @throws IOException
+   */
+  private static Writer createWriter(File file) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      Utilities.mkdirs(parent);
+    }
+    return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+  }
+
+  /**
+   * <p>
+   * Writes the given string as a JSON string literal.
+   * </p>
+   *
+   * @param writer
+   *          the writer
+   * @param value
+   *          the string
+   * @throws IOException
+   */
+  static void writeString(Writer writer, String value) throws IOException {
+    writer.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '"':
+        writer.write("\\\"");
+        break;
+      case '\\':
+        writer.write("\\\\");
+        break;
+      case '\n':
+        writer.write("\\n");
+        break;
+      case '\r':
+        writer.write("\\r");
+        break;
+      case '\t':
+        writer.write("\\t");
+        break;
+      default:
+        if (c < 0x20) {
+          writer.write(String.format("\\u%04x", Integer.valueOf(c)));
+        } else {
+          writer.write(c);
+        }
+      }
+    }
+    writer.write('"');
+  }
+
+  /**
+   * <p>
+   * Formats the given nanoseconds as microseconds.
+   * </p>
+   *
+   * @param nanos
+   *          the nanoseconds
+   * @return the formatted microseconds.
+   */
+  private static String toMicros(long nanos) {
+    if (nanos < 0) {
+      // spans that have been started before the recording
+      return "-" + toMicros(-nanos);
+    }
+    return String.valueOf(nanos / 1000) + "." + String.valueOf(1000 + nanos % 1000).substring(1);
+  }
+
+  /**
+   * <p>
+   * Formats the given nanoseconds as milliseconds.
+   * </p>
+   *
+   * @param nanos
+   *          the nanoseconds
+   * @return the formatted milliseconds.
+   */
+  private static String toMillis(long nanos) {
+    return toMicros(nanos / 1000);
+  }
+
+  /**
+   * <p>
+   * A recorded span.
+   * </p>
+   */
+  private static class TraceEvent {
+
+    /** the name of the span */
+    private String   _name;
+
+    /** the category of the span */
+    private String   _category;
+
+    /** the project the span is attributed to (might be <code>null</code>) */
+    private String   _project;
+
+    /** the id of the thread that executed the span */
+    private long     _threadId;
+
+    /** the start time of the span (in nanoseconds) */
+    private long     _startNanos;
+
+    /** the duration of the span (in nanoseconds) */
+    private long     _durationNanos;
+
+    /** additional name/value pairs (might be <code>null</code>) */
+    private String[] _args;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link TraceEvent}.
+     * </p>
+     */
+    public TraceEvent(String name, String category, String project, long threadId, long startNanos,
+        long durationNanos, String[] args) {
+      this._name = name;
+      this._category = category;
+      this._project = project;
+      this._threadId = threadId;
+      this._startNanos = startNanos;
+      this._durationNanos = durationNanos;
+      this._args = args;
+    }
+  }
+}
@@ -321,6 +321,32 @@ public class Utilities {
     return result;
   }
 
+  /**
+   * Moves the supplied source file to the target location, replacing an already existing target file. The source file
+   * is removed if it couldn't be moved, so the target either contains the new content or remains unchanged.
+   * 
+   * @param source
+   *          The file which shall be moved. Not <code>null</code>.
+   * @param target
+   *          The file which shall be replaced. Not <code>null</code>.
+   * 
+   * @return true <=> The target file has been replaced with success.
+   */
+  public static final boolean replaceFile(File source, File target) {
+    Assure.notNull("source", source);
+    Assure.notNull("target", target);
+    if (source.renameTo(target)) {
+      return true;
+    }
+    // rename doesn't replace existing files on all platforms
+    target.delete();
+    if (source.renameTo(target)) {
+      return true;
+    }
+    source.delete();
+    return false;
+  }
+
   /**
    * Returns a list of all files located within the supplied directory/file.
    * 
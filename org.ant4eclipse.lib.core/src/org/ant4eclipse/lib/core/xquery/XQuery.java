@@ -314,6 +314,36 @@ public class XQuery {
 
   }
 
+  /**
+   * Returns the number of elements of the path of this query.
+   * 
+   * @return The number of elements of the path of this query.
+   */
+  int getPathLength() {
+    return this._splitted.length;
+  }
+
+  /**
+   * Returns the name of the element of the path of this query at the supplied depth.
+   * 
+   * @param depth
+   *          The depth within the path of this query.
+   * 
+   * @return The name of the element or '*' for any element.
+   */
+  String getPathElement(int depth) {
+    return this._splitted[depth];
+  }
+
+  /**
+   * Returns true if this query collects the text content of an element rather than an attribute value.
+   * 
+   * @return true <=> This query collects the text content of an element.
+   */
+  boolean isTextQuery() {
+    return this._attribute == null;
+  }
+
   /**
    * Prepare this query for another XML document.
    */
@@ -15,16 +15,24 @@ import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.CoreExceptionCode;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.parsers.FactoryConfigurationError;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -32,28 +40,43 @@ import java.util.Vector;
  * A SAX handler allowing to collect XML related data using simple queries (similar to XPath but currently not providing
  * it's complete functionality).
  * </p>
- * 
+ * <p>
+ * The queries of a handler are compiled into a trie of their element paths. While parsing, the handler keeps track of
+ * the trie nodes that are reached by the path of the current element, so each SAX event is only passed to the queries
+ * whose path matches the names of the current element and its parents. The text content of an element is only
+ * created if a query selects it. The SAX parsers are reused per thread.
+ * </p>
+ *
  * @author Daniel Kasmeroglu (daniel.kasmeroglu@kasisoft.net)
  */
 public class XQueryHandler extends DefaultHandler {
 
+  /** the SAX parsers of the threads (a parser is removed while it is in use, so nested parses create their own) */
+  private static final ThreadLocal<SAXParser> PARSERS = new ThreadLocal<SAXParser>();
+
   /** - */
-  private StringBuffer            _buffer;
+  private StringBuffer                        _buffer;
 
   /** - */
-  private int                     _depth;
+  private int                                 _depth;
 
   /** - */
-  private Vector<XQuery>          _queries;
+  private Vector<XQuery>                      _queries;
+
+  private String                              _fileName;
+
+  /** the root of the trie of the query paths (<code>null</code> if it has to be compiled) */
+  private PathNode                            _root;
 
-  private String                  _fileName;
+  /** the trie nodes reached by the open elements (index 0 contains the root, index n + 1 the nodes of depth n) */
+  private List<List<PathNode>>                _reached;
 
   /** - */
-  private static SAXParserFactory factory;
+  private static SAXParserFactory             factory;
 
   /**
    * Initialises this handler.
-   * 
+   *
    * @param fileName
    *          The name of the file that has to be parsed.
    */
@@ -63,6 +86,7 @@ public class XQueryHandler extends DefaultHandler {
     this._queries = new Vector<XQuery>();
     this._depth = 0;
     this._fileName = fileName;
+    this._reached = new ArrayList<List<PathNode>>();
   }
 
   /**
@@ -74,15 +98,16 @@ public class XQueryHandler extends DefaultHandler {
 
   /**
    * Creates a XQuery instance for the supplied query string.
-   * 
+   *
    * @param query
    *          A XPath like query string.
-   * 
+   *
    * @return A query instance allowing to retrieve the results.
    */
   public XQuery createQuery(String query) {
     XQuery result = new XQuery(this._fileName, query);
     this._queries.add(result);
+    this._root = null;
     return result;
   }
 
@@ -99,6 +124,15 @@ public class XQueryHandler extends DefaultHandler {
     if (this._buffer.length() > 0) {
       this._buffer.delete(0, this._buffer.length());
     }
+
+    // compile the queries
+    if (this._root == null) {
+      this._root = compile(this._queries);
+      this._reached.clear();
+      List<PathNode> rootNodes = new ArrayList<PathNode>(1);
+      rootNodes.add(this._root);
+      this._reached.add(rootNodes);
+    }
   }
 
   /**
@@ -107,9 +141,28 @@ public class XQueryHandler extends DefaultHandler {
   @Override
   public void startElement(String uri, String localname, String qname, Attributes attributes) throws SAXException {
 
-    for (int i = 0; i < this._queries.size(); i++) {
-      XQuery query = this._queries.get(i);
-      query.visit(this._depth, qname, attributes);
+    // determine the trie nodes reached by this element
+    List<PathNode> parentNodes = this._reached.get(this._depth);
+    if (this._reached.size() == this._depth + 1) {
+      this._reached.add(new ArrayList<PathNode>(2));
+    }
+    List<PathNode> nodes = this._reached.get(this._depth + 1);
+    nodes.clear();
+    for (int i = 0; i < parentNodes.size(); i++) {
+      PathNode parentNode = parentNodes.get(i);
+      PathNode node = parentNode.getChild(qname);
+      if (node != null) {
+        nodes.add(node);
+      }
+      if (parentNode._wildcard != null) {
+        nodes.add(parentNode._wildcard);
+      }
+    }
+
+    for (int i = 0; i < nodes.size(); i++) {
+      for (XQuery query : nodes.get(i)._queries) {
+        query.visit(this._depth, qname, attributes);
+      }
     }
 
     this._depth++;
@@ -122,12 +175,21 @@ public class XQueryHandler extends DefaultHandler {
   @Override
   public void endElement(String uri, String localname, String qname) throws SAXException {
 
+    List<PathNode> nodes = this._reached.get(this._depth);
+
     this._depth--;
 
-    String str = this._buffer.toString().trim();
-    for (int i = 0; i < this._queries.size(); i++) {
-      XQuery query = this._queries.get(i);
-      query.endVisit(this._depth, str);
+    // the text content is only needed if a query selects it
+    String str = null;
+    for (int i = 0; (str == null) && (i < nodes.size()); i++) {
+      if (nodes.get(i)._selectsText) {
+        str = this._buffer.toString().trim();
+      }
+    }
+    for (int i = 0; i < nodes.size(); i++) {
+      for (XQuery query : nodes.get(i)._queries) {
+        query.endVisit(this._depth, str);
+      }
     }
 
     if (this._buffer.length() > 0) {
@@ -146,7 +208,7 @@ public class XQueryHandler extends DefaultHandler {
 
   /**
    * Runs the queries against the supplied XML file.
-   * 
+   *
    * @param xmlfile
    *          The XML file that shall be queried.
    * @param handler
@@ -155,18 +217,21 @@ public class XQueryHandler extends DefaultHandler {
   public static void queryFile(File xmlfile, XQueryHandler handler) {
     Assure.isFile("xmlfile", xmlfile);
     Assure.notNull("handler", handler);
+    InputStream inputStream = null;
     try {
-      SAXParserFactory factory = getSAXParserFactory();
-      factory.newSAXParser().parse(new FileInputStream(xmlfile), handler);
+      inputStream = new FileInputStream(xmlfile);
+      parse(inputStream, handler);
     } catch (Exception ex) {
       A4ELogging.error(ex.getMessage());
       throw (new Ant4EclipseException(ex, CoreExceptionCode.X_QUERY_PARSE_EXCEPTION));
+    } finally {
+      Utilities.close((Closeable) inputStream);
     }
   }
 
   /**
    * Runs the queries against the supplied XML inputstream.
-   * 
+   *
    * @param inputStream
    *          The XML inputstream that shall be queried.
    * @param handler
@@ -176,14 +241,46 @@ public class XQueryHandler extends DefaultHandler {
     Assure.notNull("inputStream", inputStream);
     Assure.notNull("handler", handler);
     try {
-      SAXParserFactory factory = getSAXParserFactory();
-      factory.newSAXParser().parse(inputStream, handler);
+      parse(inputStream, handler);
     } catch (Exception ex) {
       A4ELogging.error(ex.getMessage());
       throw (new Ant4EclipseException(ex, CoreExceptionCode.X_QUERY_PARSE_EXCEPTION));
     }
   }
 
+  /**
+   * Parses the supplied XML inputstream with the SAX parser of the current thread.
+   *
+   * @param inputStream
+   *          The XML inputstream that shall be parsed.
+   * @param handler
+   *          The handler which provides all queries.
+   *
+   * @throws Exception
+   *           Parsing failed for some reason.
+   */
+  private static void parse(InputStream inputStream, XQueryHandler handler) throws Exception {
+    SAXParser parser = PARSERS.get();
+    PARSERS.set(null);
+    if (parser == null) {
+      parser = newSAXParser();
+    }
+    try {
+      parser.parse(inputStream, handler);
+    } finally {
+      try {
+        parser.reset();
+        PARSERS.set(parser);
+      } catch (UnsupportedOperationException ex) {
+        // the parser can't be reused
+      }
+    }
+  }
+
+  private static synchronized SAXParser newSAXParser() throws ParserConfigurationException, SAXException {
+    return getSAXParserFactory().newSAXParser();
+  }
+
   private static SAXParserFactory getSAXParserFactory() throws FactoryConfigurationError {
 
     if (factory == null) {
@@ -194,4 +291,98 @@ public class XQueryHandler extends DefaultHandler {
     return factory;
   }
 
+  /**
+   * Compiles the supplied queries into a trie of their element paths.
+   *
+   * @param queries
+   *          The queries that shall be compiled.
+   *
+   * @return The root of the trie.
+   */
+  private static PathNode compile(List<XQuery> queries) {
+    PathNode root = new PathNode();
+    for (XQuery query : queries) {
+      PathNode node = root;
+      for (int depth = 0; depth < query.getPathLength(); depth++) {
+        node = node.getOrCreateChild(query.getPathElement(depth));
+        node.addQuery(query);
+      }
+      if (query.isTextQuery()) {
+        node._selectsText = true;
+      }
+    }
+    return root;
+  }
+
+  /**
+   * A node of the trie of the query paths. A node represents an element path, it knows the queries whose path starts
+   * with this element path.
+   */
+  private static class PathNode {
+
+    /** the queries that are visited for elements reaching this node */
+    private XQuery[]              _queries     = new XQuery[0];
+
+    /** indicates that a query collects the text content of elements reaching this node */
+    private boolean               _selectsText = false;
+
+    /** the child nodes for named elements (<code>null</code> if there are none) */
+    private Map<String, PathNode> _children;
+
+    /** the child node for any element ('*') */
+    private PathNode              _wildcard;
+
+    /**
+     * Returns the child node for the supplied element name.
+     *
+     * @param element
+     *          The name of the element.
+     *
+     * @return The child node or null.
+     */
+    public PathNode getChild(String element) {
+      return this._children != null ? this._children.get(element) : null;
+    }
+
+    /**
+     * Returns the child node for the supplied element name of a query path. The node is created if necessary.
+     *
+     * @param element
+     *          The name of the element or '*' for any element.
+     *
+     * @return The child node.
+     */
+    public PathNode getOrCreateChild(String element) {
+      if ("*".equals(element)) {
+        if (this._wildcard == null) {
+          this._wildcard = new PathNode();
+        }
+        return this._wildcard;
+      }
+      if (this._children == null) {
+        this._children = new HashMap<String, PathNode>();
+      }
+      PathNode result = this._children.get(element);
+      if (result == null) {
+        result = new PathNode();
+        this._children.put(element, result);
+      }
+      return result;
+    }
+
+    /**
+     * Adds a query that is visited for elements reaching this node.
+     *
+     * @param query
+     *          The query that shall be added.
+     */
+    public void addQuery(XQuery query) {
+      XQuery[] queries = new XQuery[this._queries.length + 1];
+      System.arraycopy(this._queries, 0, queries, 0, this._queries.length);
+      queries[this._queries.length] = query;
+      this._queries = queries;
+    }
+
+  } /* ENDCLASS */
+
 } /* ENDCLASS */
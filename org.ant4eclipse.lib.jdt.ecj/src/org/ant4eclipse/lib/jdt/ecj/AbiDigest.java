@@ -0,0 +1,514 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.DigestHelper;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.IBinaryAnnotation;
+import org.eclipse.jdt.internal.compiler.env.IBinaryElementValuePair;
+import org.eclipse.jdt.internal.compiler.env.IBinaryField;
+import org.eclipse.jdt.internal.compiler.env.IBinaryMethod;
+import org.eclipse.jdt.internal.compiler.env.IBinaryNestedType;
+
+/**
+ * <p>
+ * Computes digests of the public API (the 'ABI') of class files and of complete output folders. The digest of a class
+ * file covers everything a dependent class can be compiled against: the type signature, all non-private fields
+ * (including constant values, which are inlined by the compiler), all non-private method signatures and all
+ * annotations. Method bodies, private members and synthetic members are not part of the digest, so changing the
+ * implementation of a method doesn't change the digest.
+ * </p>
+ * <p>
+ * The digest of an output folder is stored in a file next to the folder ('.&lt;folder&gt;.abi') together with a stamp
+ * of the class files contained in the folder (see {@link #write(File, String)}). Projects that have an output folder
+ * on their class path use the digest instead of the state of the single class files to decide whether their class
+ * path has been changed (see {@link DependencyDatabase#computeFingerprint(Map, File[])}). So a change within a method
+ * body of an upstream project doesn't cause the recompilation of the downstream projects.
+ * </p>
+ */
+public class AbiDigest {
+
+  /** the version of the binary format */
+  private static final int    FORMAT_VERSION = 1;
+
+  /** the postfix of class files */
+  private static final String CLASS_POSTFIX  = ".class";
+
+  /** the postfix of digest files */
+  private static final String ABI_POSTFIX    = ".abi";
+
+  /**
+   * <p>
+   * Computes the digest of the public API of the given class file.
+   * </p>
+   *
+   * @param classFileBytes
+   *          the content of the class file
+   * @return the digest of the public API (as hex string).
+   */
+  public static String compute(byte[] classFileBytes) {
+    Assure.notNull("classFileBytes", classFileBytes);
+
+    MessageDigest digest = DigestHelper.createDigest();
+    try {
+      ClassFileReader reader = new ClassFileReader(classFileBytes, null, true);
+      update(digest, reader);
+    } catch (ClassFormatException e) {
+      // the class file can't be analyzed, so every change is considered as an api change
+      digest.reset();
+      digest.update(classFileBytes);
+    }
+    return DigestHelper.toHex(digest.digest());
+  }
+
+  /**
+   * <p>
+   * Computes the digest of a complete output folder from the digests of the contained class files.
+   * </p>
+   *
+   * @param classFileDigests
+   *          the digests of the class files (class file name relative to the output folder -&gt; digest)
+   * @return the digest of the output folder (as hex string).
+   */
+  public static String compute(Map<String, String> classFileDigests) {
+    Assure.notNull("classFileDigests", classFileDigests);
+
+    MessageDigest digest = DigestHelper.createDigest();
+    for (Map.Entry<String, String> entry : new TreeMap<String, String>(classFileDigests).entrySet()) {
+      update(digest, entry.getKey());
+      update(digest, entry.getValue());
+    }
+    return DigestHelper.toHex(digest.digest());
+  }
+
+  /**
+   * <p>
+   * Returns the file that stores the digest of the given output folder.
+   * </p>
+   *
+   * @param outputFolder
+   *          the output folder
+   * @return the file that stores the digest of the given output folder.
+   */
+  public static File getDigestFile(File outputFolder) {
+    Assure.notNull("outputFolder", outputFolder);
+
+    File folder = outputFolder.getAbsoluteFile();
+    return new File(folder.getParentFile(), "." + folder.getName() + ABI_POSTFIX);
+  }
+
+  /**
+   * <p>
+   * Stores the digest of the given output folder. The digest has to be computed from all class files that are
+   * currently contained in the output folder.
+   * </p>
+   *
+   * @param outputFolder
+   *          the output folder
+   * @param digest
+   *          the digest of the output folder
+   */
+  public static void write(File outputFolder, String digest) {
+    Assure.isDirectory("outputFolder", outputFolder);
+    Assure.notNull("digest", digest);
+
+    File file = getDigestFile(outputFolder);
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(computeStamp(outputFolder));
+      out.writeUTF(digest);
+      out.close();
+      out = null;
+    } catch (IOException e) {
+      A4ELogging.warn("Could not write api digest '%s': %s", file, e.getMessage());
+      Utilities.close((Closeable) out);
+      out = null;
+      file.delete();
+    } finally {
+      Utilities.close((Closeable) out);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the stored digest of the given output folder. If no digest has been stored or if the class files of the
+   * output folder have been modified after the digest has been stored, <code>null</code> is returned.
+   * </p>
+   *
+   * @param outputFolder
+   *          the output folder
+   * @param stamp
+   *          the current stamp of the output folder (see {@link #computeStamp(File)})
+   * @return the digest of the output folder or <code>null</code>.
+   */
+  public static String read(File outputFolder, long stamp) {
+    Assure.notNull("outputFolder", outputFolder);
+
+    File file = getDigestFile(outputFolder);
+    if (!file.isFile()) {
+      return null;
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if ((in.readInt() != FORMAT_VERSION) || (in.readLong() != stamp)) {
+        return null;
+      }
+      return in.readUTF();
+    } catch (IOException e) {
+      A4ELogging.debug("Could not read api digest '%s': %s", file, e.getMessage());
+      return null;
+    } finally {
+      Utilities.close((Closeable) in);
+    }
+  }
+
+  /**
+   * <p>
+   * Computes a stamp of the class files contained in the given folder. The stamp contains the names, sizes and
+   * modification times of all class files.
+   * </p>
+   *
+   * @param folder
+   *          the folder
+   * @return the stamp of the class files.
+   */
+  public static long computeStamp(File folder) {
+    Assure.notNull("folder", folder);
+
+    long[] hash = new long[] { 17 };
+    computeStamp(folder, hash);
+    return hash[0];
+  }
+
+  /**
+   * <p>
+   * Adds the state of the class files contained in the given directory to the given hash.
+   * </p>
+   *
+   * @param directory
+   *          the directory
+   * @param hash
+   *          the hash
+   */
+  private static void computeStamp(File directory, long[] hash) {
+    String[] children = directory.list();
+    if (children == null) {
+      return;
+    }
+    Arrays.sort(children);
+    for (String child : children) {
+      File file = new File(directory, child);
+      if (child.endsWith(CLASS_POSTFIX)) {
+        hash[0] = 31 * hash[0] + child.hashCode();
+        hash[0] = 31 * hash[0] + file.length();
+        hash[0] = 31 * hash[0] + file.lastModified();
+      } else if (file.isDirectory()) {
+        hash[0] = 31 * hash[0] + child.hashCode();
+        computeStamp(file, hash);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the public API of the given class file to the given digest.
+   * </p>
+   *
+   * @param digest
+   *          the digest
+   * @param reader
+   *          the class file
+   */
+  private static void update(MessageDigest digest, ClassFileReader reader) {
+
+    // the type itself
+    update(digest, reader.getModifiers());
+    update(digest, reader.getName());
+    update(digest, reader.getSuperclassName());
+    update(digest, reader.getInterfaceNames());
+    update(digest, reader.getGenericSignature());
+    update(digest, reader.getEnclosingTypeName());
+    update(digest, reader.getTagBits());
+    update(digest, reader.getAnnotations());
+
+    // the member types
+    Map<String, Integer> memberTypes = new TreeMap<String, Integer>();
+    IBinaryNestedType[] nestedTypes = reader.getMemberTypes();
+    if (nestedTypes != null) {
+      for (IBinaryNestedType nestedType : nestedTypes) {
+        if (!isPrivate(nestedType.getModifiers())) {
+          memberTypes.put(new String(nestedType.getName()), Integer.valueOf(nestedType.getModifiers()));
+        }
+      }
+    }
+    for (Map.Entry<String, Integer> memberType : memberTypes.entrySet()) {
+      update(digest, memberType.getKey());
+      update(digest, memberType.getValue().longValue());
+    }
+
+    // the fields (sorted, the order of the members is irrelevant)
+    Map<String, IBinaryField> fields = new TreeMap<String, IBinaryField>();
+    IBinaryField[] binaryFields = reader.getFields();
+    if (binaryFields != null) {
+      for (IBinaryField field : binaryFields) {
+        if (!isPrivate(field.getModifiers()) && !isSynthetic(field.getModifiers())) {
+          fields.put(new String(field.getName()), field);
+        }
+      }
+    }
+    for (IBinaryField field : fields.values()) {
+      update(digest, field.getModifiers());
+      update(digest, field.getName());
+      update(digest, field.getTypeName());
+      update(digest, field.getGenericSignature());
+      update(digest, field.getTagBits());
+      update(digest, field.getAnnotations());
+      if (field.getConstant() != null) {
+        update(digest, field.getConstant().toString());
+      }
+    }
+
+    // the methods (sorted, the order of the members is irrelevant)
+    Map<String, IBinaryMethod> methods = new TreeMap<String, IBinaryMethod>();
+    IBinaryMethod[] binaryMethods = reader.getMethods();
+    if (binaryMethods != null) {
+      for (IBinaryMethod method : binaryMethods) {
+        if (!isPrivate(method.getModifiers()) && !isSynthetic(method.getModifiers()) && !method.isClinit()) {
+          methods.put(new String(method.getSelector()) + new String(method.getMethodDescriptor()), method);
+        }
+      }
+    }
+    for (IBinaryMethod method : methods.values()) {
+      update(digest, method.getModifiers());
+      update(digest, method.getSelector());
+      update(digest, method.getMethodDescriptor());
+      update(digest, method.getGenericSignature());
+      update(digest, method.getExceptionTypeNames());
+      update(digest, method.getTagBits());
+      update(digest, method.getAnnotations());
+      updateValue(digest, method.getDefaultValue());
+      int parameterCount = getParameterCount(method.getMethodDescriptor());
+      for (int i = 0; i < parameterCount; i++) {
+        update(digest, getParameterAnnotations(method, i));
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the given annotations to the given digest.
+   * </p>
+   *
+   * @param digest
+   *          the digest
+   * @param annotations
+   *          the annotations (maybe <code>null</code>)
+   */
+  private static void update(MessageDigest digest, IBinaryAnnotation[] annotations) {
+    if (annotations == null) {
+      update(digest, -1);
+      return;
+    }
+    update(digest, annotations.length);
+    for (IBinaryAnnotation annotation : annotations) {
+      update(digest, annotation.getTypeName());
+      IBinaryElementValuePair[] pairs = annotation.getElementValuePairs();
+      if (pairs != null) {
+        for (IBinaryElementValuePair pair : pairs) {
+          update(digest, pair.getName());
+          updateValue(digest, pair.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the given annotation element value to the given digest.
+   * </p>
+   *
+   * @param digest
+   *          the digest
+   * @param value
+   *          the value (a constant, class signature, enum constant signature, annotation or an array of these)
+   */
+  private static void updateValue(MessageDigest digest, Object value) {
+    if (value instanceof Object[]) {
+      Object[] values = (Object[]) value;
+      update(digest, values.length);
+      for (Object element : values) {
+        updateValue(digest, element);
+      }
+    } else if (value instanceof IBinaryAnnotation) {
+      update(digest, new IBinaryAnnotation[] { (IBinaryAnnotation) value });
+    } else {
+      update(digest, String.valueOf(value));
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the annotations of the parameter with the given index.
+   * </p>
+   *
+   * @param method
+   *          the method
+   * @param index
+   *          the index of the parameter
+   * @return the annotations of the parameter (maybe <code>null</code>).
+   */
+  private static IBinaryAnnotation[] getParameterAnnotations(IBinaryMethod method, int index) {
+    try {
+      return method.getParameterAnnotations(index);
+    } catch (ArrayIndexOutOfBoundsException e) {
+      // the parameter annotations attribute doesn't cover synthetic parameters
+      return null;
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the number of parameters of the given method descriptor.
+   * </p>
+   *
+   * @param descriptor
+   *          the method descriptor (e.g. '(I[Ljava/lang/String;)V')
+   * @return the number of parameters.
+   */
+  private static int getParameterCount(char[] descriptor) {
+    int result = 0;
+    int i = 1;
+    while (descriptor[i] != ')') {
+      while (descriptor[i] == '[') {
+        i++;
+      }
+      if (descriptor[i] == 'L') {
+        i = CharOperation.indexOf(';', descriptor, i);
+      }
+      i++;
+      result++;
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given modifiers contain the private flag.
+   * </p>
+   *
+   * @param modifiers
+   *          the modifiers
+   * @return <code>true</code> if the given modifiers contain the private flag.
+   */
+  private static boolean isPrivate(int modifiers) {
+    return (modifiers & ClassFileConstants.AccPrivate) != 0;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given modifiers contain the synthetic flag.
+   * </p>
+   *
+   * @param modifiers
+   *          the modifiers
+   * @return <code>true</code> if the given modifiers contain the synthetic flag.
+   */
+  private static boolean isSynthetic(int modifiers) {
+    return (modifiers & ClassFileConstants.AccSynthetic) != 0;
+  }
+
+  /**
+   * <p>
+   * Adds the given names to the given digest.
+   * </p>
+   *
+   * @param digest
+   *          the digest
+   * @param names
+   *          the names (maybe <code>null</code>)
+   */
+  private static void update(MessageDigest digest, char[][] names) {
+    if (names == null) {
+      update(digest, -1);
+      return;
+    }
+    update(digest, names.length);
+    for (char[] name : names) {
+      update(digest, name);
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the given name to the given digest.
+   * </p>
+   *
+   * @param digest
+   *          the digest
+   * @param name
+   *          the name (maybe <code>null</code>)
+   */
+  private static void update(MessageDigest digest, char[] name) {
+    update(digest, name == null ? null : new String(name));
+  }
+
+  /**
+   * <p>
+   * Adds the given string to the given digest (see {@link DigestHelper#update(MessageDigest, String)}).
+   * </p>
+   *
+   * @param digest
+   *          the digest
+   * @param value
+   *          the string (maybe <code>null</code>)
+   */
+  private static void update(MessageDigest digest, String value) {
+    DigestHelper.update(digest, value);
+  }
+
+  /**
+   * <p>
+   * Adds the given number to the given digest (see {@link DigestHelper#update(MessageDigest, long)}).
+   * </p>
+   *
+   * @param digest
+   *          the digest
+   * @param value
+   *          the number
+   */
+  private static void update(MessageDigest digest, long value) {
+    DigestHelper.update(digest, value);
+  }
+}
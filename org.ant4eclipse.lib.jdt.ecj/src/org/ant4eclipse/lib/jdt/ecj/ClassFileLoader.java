@@ -46,6 +46,21 @@ public interface ClassFileLoader {
    */
   boolean hasPackage(String packageName);
 
+  /**
+   * <p>
+   * This method returns <code>true</code> if {@link ClassFileLoader} has a package with the name (regardless of any
+   * visibility restrictions). The package name is passed in as used by the eclipse java compiler, e.g.
+   * <code>(['java'], 'lang')</code>.
+   * </p>
+   * 
+   * @param parentPackageName
+   *          the segments of the parent package (maybe <code>null</code> or empty for top level packages)
+   * @param packageName
+   *          the (simple) name of the package
+   * @return <code>true</code> if the package is available via this {@link ClassFileLoader}
+   */
+  boolean hasPackage(char[][] parentPackageName, char[] packageName);
+
   /**
    * <p>
    * Returns an instance of type {@link ClassFile} that represents the specified class or <code>null</code> if no such
@@ -59,6 +74,22 @@ public interface ClassFileLoader {
    */
   ClassFile loadClass(ClassName className);
 
+  /**
+   * <p>
+   * Returns an instance of type {@link ClassFile} that represents the specified class or <code>null</code> if no such
+   * class can be found. In contrast to {@link #loadClass(ClassName)} the name of the class is passed in as used by the
+   * eclipse java compiler, so no intermediate strings have to be created.
+   * </p>
+   * 
+   * @param packageName
+   *          the segments of the package name (maybe <code>null</code> or empty for the default package)
+   * @param typeName
+   *          the name of the class without the package (e.g. <code>Map$Entry</code>)
+   * @return an instance of type {@link ClassFile} that represents the specified class or <code>null</code> if the class
+   *         is not available.
+   */
+  ClassFile loadClass(char[][] packageName, char[] typeName);
+
   /**
    * <p>
    * Returns an instance of type {@link SourceFile} that is the source file for the specified class or <code>null</code>
@@ -72,6 +103,21 @@ public interface ClassFileLoader {
    */
   ReferableSourceFile loadSource(ClassName className);
 
+  /**
+   * <p>
+   * Returns an instance of type {@link SourceFile} that is the source file for the specified class or <code>null</code>
+   * if no such source can be found. The name of the class is passed in as used by the eclipse java compiler.
+   * </p>
+   * 
+   * @param packageName
+   *          the segments of the package name (maybe <code>null</code> or empty for the default package)
+   * @param typeName
+   *          the name of the class without the package
+   * @return an instance of type {@link SourceFile} that is the source file for the specified class or <code>null</code>
+   *         if no such source can be found.
+   */
+  ReferableSourceFile loadSource(char[][] packageName, char[] typeName);
+
   /**
    * Returns a list of File entries describing classpath entries associated with this ClassFileLoader instance. Please
    * note that the list may not be complete if the implementation of this interface provides a class from an unknown
@@ -15,8 +15,10 @@ import java.io.File;
 import java.util.Arrays;
 
 import org.ant4eclipse.lib.core.util.PerformanceLogging;
+import org.ant4eclipse.lib.core.util.StopWatchHandle;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCache;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClasspathClassFileLoaderImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClasspathStamp;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.CompoundClassFileLoaderImpl;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.FilteringClassFileLoader;
 
@@ -29,6 +31,31 @@ import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.FilteringClassFileLoade
  */
 public class ClassFileLoaderFactory {
 
+  /** stop watch for {@link #createClasspathClassFileLoader(File, byte, File[], File[])} */
+  private static final StopWatchHandle CREATE_WITH_SOURCEPATH = PerformanceLogging.createHandle(
+                                                                  ClassFileLoaderFactory.class,
+                                                                  "createClasspathClassFileLoader-mitSourcePath");
+
+  /** stop watch for {@link #createClasspathClassFileLoader(File, byte)} */
+  private static final StopWatchHandle CREATE_FOR_ENTRY       = PerformanceLogging.createHandle(
+                                                                  ClassFileLoaderFactory.class,
+                                                                  "createClasspathClassFileLoader-ohneAlles");
+
+  /** stop watch for the creation of class path based class file loaders that are not cached yet */
+  private static final StopWatchHandle CREATE_UNCACHED        = PerformanceLogging.createHandle(
+                                                                  ClassFileLoaderFactory.class,
+                                                                  "createClasspathClassFileLoader-uncached");
+
+  /** stop watch for {@link #createCompoundClassFileLoader(ClassFileLoader[])} */
+  private static final StopWatchHandle CREATE_COMPOUND        = PerformanceLogging.createHandle(
+                                                                  ClassFileLoaderFactory.class,
+                                                                  "createCompoundClassFileLoader");
+
+  /** stop watch for {@link #createFilteringClassFileLoader(ClassFileLoader, String)} */
+  private static final StopWatchHandle CREATE_FILTERING       = PerformanceLogging.createHandle(
+                                                                  ClassFileLoaderFactory.class,
+                                                                  "createFilteringClassFileLoader");
+
   // /**
   // * <p>
   // * Creates an new instance of type {@link ClassFileLoader}, that can load {@link ClassFile ClassFiles} from an array
@@ -70,27 +97,38 @@ public class ClassFileLoaderFactory {
    */
   public static ClassFileLoader createClasspathClassFileLoader(File source, byte type, File[] classpathEntries,
       File[] sourcepathEntries) {
-    PerformanceLogging.start(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-mitSourcePath");
-    PerformanceLogging.start(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-mitSourcePath-" + source);
+    CREATE_WITH_SOURCEPATH.start();
     try {
       ClassFileLoaderCacheKey cacheKey = new ClassFileLoaderCacheKey(source, type, classpathEntries, sourcepathEntries);
 
       // Try to get already initialized ClassFileLoader from cache
       ClassFileLoader classFileLoader = ClassFileLoaderCache.getInstance().getClassFileLoader(cacheKey);
       if (classFileLoader == null) {
+        // Stamp the class path before the ClassFileLoader scans it, so concurrent changes are detected later
+        File[] entries = new File[classpathEntries.length + sourcepathEntries.length];
+        System.arraycopy(classpathEntries, 0, entries, 0, classpathEntries.length);
+        System.arraycopy(sourcepathEntries, 0, entries, classpathEntries.length, sourcepathEntries.length);
+        ClasspathStamp stamp = ClasspathStamp.create(entries);
+
         // Create new ClassFileLoader
-        classFileLoader = new ClasspathClassFileLoaderImpl(source, type, classpathEntries, sourcepathEntries);
+        CREATE_UNCACHED.start();
+        try {
+          classFileLoader = new ClasspathClassFileLoaderImpl(source, type, classpathEntries, sourcepathEntries,
+              ClassFileLoaderCache.getInstance().getPackageIndexCache(), ClassFileLoaderCache.getInstance()
+                  .getBinaryTypeCache());
+        } finally {
+          CREATE_UNCACHED.stop();
+        }
 
         // add ClassFileLoader to Cache
-        ClassFileLoaderCache.getInstance().storeClassFileLoader(cacheKey, classFileLoader);
-  }
+        ClassFileLoaderCache.getInstance().storeClassFileLoader(cacheKey, classFileLoader, stamp);
+      }
 
       // Return the ClassFileLoader
       return classFileLoader;
     } finally {
       // Stop performance logging
-      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-mitSourcePath");
-      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-mitSourcePath-" + source);
+      CREATE_WITH_SOURCEPATH.stop();
     }
   }
 
@@ -107,8 +145,9 @@ public class ClassFileLoaderFactory {
       super();
       this._source = source;
       this._type = type;
-      this._classpathEntries = classpathEntries;
-      this._sourcepathEntries = sourcepathEntries;
+      // copy the arrays, the key must not change if the caller modifies them
+      this._classpathEntries = classpathEntries.clone();
+      this._sourcepathEntries = sourcepathEntries.clone();
     }
 
     @Override
@@ -199,24 +238,31 @@ public class ClassFileLoaderFactory {
    * @return a new instance of type {@link ClassFileLoader}.
    */
   public static ClassFileLoader createClasspathClassFileLoader(File entry, byte type) {
-    PerformanceLogging.start(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-ohneAlles");
-    PerformanceLogging.start(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-ohneAlles-" + entry);
+    CREATE_FOR_ENTRY.start();
     try {
       String cacheKey = String.valueOf(entry) + "/" + type;
       // Try to get ClassFileLoader from cache
       ClassFileLoader classFileLoader = ClassFileLoaderCache.getInstance().getClassFileLoader(cacheKey);
       if (classFileLoader == null) {
+        // Stamp the entry before the ClassFileLoader scans it
+        ClasspathStamp stamp = ClasspathStamp.create(new File[] { entry });
+
         // Create new ClassFileLoader
-        classFileLoader = new ClasspathClassFileLoaderImpl(entry, type);
+        CREATE_UNCACHED.start();
+        try {
+          classFileLoader = new ClasspathClassFileLoaderImpl(entry, type, ClassFileLoaderCache.getInstance()
+              .getPackageIndexCache(), ClassFileLoaderCache.getInstance().getBinaryTypeCache());
+        } finally {
+          CREATE_UNCACHED.stop();
+        }
 
         // add to cache
-        ClassFileLoaderCache.getInstance().storeClassFileLoader(cacheKey, classFileLoader);
+        ClassFileLoaderCache.getInstance().storeClassFileLoader(cacheKey, classFileLoader, stamp);
       }
 
       return classFileLoader;
     } finally {
-      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-ohneAlles");
-      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-ohneAlles-" + entry);
+      CREATE_FOR_ENTRY.stop();
     }
   }
 
@@ -232,11 +278,11 @@ public class ClassFileLoaderFactory {
    *         loaders.
    */
   public static ClassFileLoader createCompoundClassFileLoader(ClassFileLoader[] classFileLoaders) {
-    PerformanceLogging.start(ClassFileLoaderFactory.class, "createCompoundClassFileLoader");
+    CREATE_COMPOUND.start();
     try {
-    return new CompoundClassFileLoaderImpl(classFileLoaders);
+      return new CompoundClassFileLoaderImpl(classFileLoaders);
     } finally {
-      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createCompoundClassFileLoader");
+      CREATE_COMPOUND.stop();
     }
   }
 
@@ -253,11 +299,11 @@ public class ClassFileLoaderFactory {
    * @return the class file loader
    */
   public static ClassFileLoader createFilteringClassFileLoader(ClassFileLoader classFileLoader, String filter) {
-    PerformanceLogging.start(ClassFileLoaderFactory.class, "createFilteringClassFileLoader");
+    CREATE_FILTERING.start();
     try {
-    return new FilteringClassFileLoader(classFileLoader, filter);
+      return new FilteringClassFileLoader(classFileLoader, filter);
     } finally {
-      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createFilteringClassFileLoader");
+      CREATE_FILTERING.stop();
     }
   }
 
@@ -50,4 +50,23 @@ public interface CompileJobDescription {
    *         compilation process.
    */
   ClassFileLoader getClassFileLoader();
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the dependencies of the compiled source files should be recorded (see
+   * {@link CompileJobResult#getSourceFileDependencies()}).
+   * </p>
+   * 
+   * @return <code>true</code> if the dependencies of the compiled source files should be recorded.
+   */
+  boolean isRecordDependencies();
+
+  /**
+   * <p>
+   * Returns the {@link PipelineConfiguration} that specifies how the compiler processes the source files.
+   * </p>
+   * 
+   * @return the {@link PipelineConfiguration} that specifies how the compiler processes the source files.
+   */
+  PipelineConfiguration getPipelineConfiguration();
 }
@@ -50,4 +50,19 @@ public interface CompileJobResult {
    */
   Map<String, File> getCompiledClassFiles();
 
+  /**
+   * Returns the dependencies of the source files that have been compiled successfully. The dependencies are only
+   * recorded if requested by the {@link CompileJobDescription#isRecordDependencies() compile job description}.
+   * 
+   * @return The dependencies of the source files that have been compiled successfully. Not <code>null</code>.
+   */
+  SourceFileDependencies[] getSourceFileDependencies();
+
+  /**
+   * Returns the statistics of the compile job, e.g. the time spent in the phases of the compiler.
+   * 
+   * @return The statistics of the compile job. Not <code>null</code>.
+   */
+  CompileStatistics getStatistics();
+
 }
@@ -0,0 +1,208 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+/**
+ * <p>
+ * Describes where the time of a compile job has been spent. The times of the compiler phases (parse, resolve, analyze
+ * and generate) are measured by the eclipse java compiler, the write time is the time that has been spent writing
+ * class files. All times are given in milliseconds and are summed up over all threads, so with a parallel pipeline
+ * (see {@link PipelineConfiguration}) the phases overlap and their sum may exceed the elapsed time.
+ * </p>
+ */
+public class CompileStatistics {
+
+  /** statistics without any recorded time */
+  public static final CompileStatistics EMPTY = new CompileStatistics(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+  /** the time spent parsing the source files */
+  private long                          _parseTime;
+
+  /** the time spent resolving the source files */
+  private long                          _resolveTime;
+
+  /** the time spent analysing the source files */
+  private long                          _analyzeTime;
+
+  /** the time spent generating the class files */
+  private long                          _generateTime;
+
+  /** the time spent writing the class files */
+  private long                          _writeTime;
+
+  /** the elapsed time of the compile job */
+  private long                          _elapsedTime;
+
+  /** the number of compiled source files */
+  private int                           _compilationUnits;
+
+  /** the number of compiled lines */
+  private long                          _lines;
+
+  /** the number of chunks */
+  private int                           _chunks;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompileStatistics}.
+   * </p>
+   *
+   * @param parseTime
+   *          the time spent parsing the source files
+   * @param resolveTime
+   *          the time spent resolving the source files
+   * @param analyzeTime
+   *          the time spent analysing the source files
+   * @param generateTime
+   *          the time spent generating the class files
+   * @param writeTime
+   *          the time spent writing the class files
+   * @param elapsedTime
+   *          the elapsed time of the compile job
+   * @param compilationUnits
+   *          the number of compiled source files
+   * @param lines
+   *          the number of compiled lines
+   * @param chunks
+   *          the number of chunks
+   */
+  public CompileStatistics(long parseTime, long resolveTime, long analyzeTime, long generateTime, long writeTime,
+      long elapsedTime, int compilationUnits, long lines, int chunks) {
+    this._parseTime = parseTime;
+    this._resolveTime = resolveTime;
+    this._analyzeTime = analyzeTime;
+    this._generateTime = generateTime;
+    this._writeTime = writeTime;
+    this._elapsedTime = elapsedTime;
+    this._compilationUnits = compilationUnits;
+    this._lines = lines;
+    this._chunks = chunks;
+  }
+
+  /**
+   * <p>
+   * Returns the time spent parsing the source files.
+   * </p>
+   *
+   * @return the time spent parsing the source files.
+   */
+  public long getParseTime() {
+    return this._parseTime;
+  }
+
+  /**
+   * <p>
+   * Returns the time spent resolving the source files.
+   * </p>
+   *
+   * @return the time spent resolving the source files.
+   */
+  public long getResolveTime() {
+    return this._resolveTime;
+  }
+
+  /**
+   * <p>
+   * Returns the time spent analysing the source files (flow analysis).
+   * </p>
+   *
+   * @return the time spent analysing the source files.
+   */
+  public long getAnalyzeTime() {
+    return this._analyzeTime;
+  }
+
+  /**
+   * <p>
+   * Returns the time spent generating the class files.
+   * </p>
+   *
+   * @return the time spent generating the class files.
+   */
+  public long getGenerateTime() {
+    return this._generateTime;
+  }
+
+  /**
+   * <p>
+   * Returns the time spent writing the class files.
+   * </p>
+   *
+   * @return the time spent writing the class files.
+   */
+  public long getWriteTime() {
+    return this._writeTime;
+  }
+
+  /**
+   * <p>
+   * Returns the elapsed time of the compile job.
+   * </p>
+   *
+   * @return the elapsed time of the compile job.
+   */
+  public long getElapsedTime() {
+    return this._elapsedTime;
+  }
+
+  /**
+   * <p>
+   * Returns the number of compiled source files (including source files that have been compiled because they are
+   * referenced by other source files).
+   * </p>
+   *
+   * @return the number of compiled source files.
+   */
+  public int getCompilationUnits() {
+    return this._compilationUnits;
+  }
+
+  /**
+   * <p>
+   * Returns the number of compiled lines.
+   * </p>
+   *
+   * @return the number of compiled lines.
+   */
+  public long getLines() {
+    return this._lines;
+  }
+
+  /**
+   * <p>
+   * Returns the number of chunks the source files have been compiled in.
+   * </p>
+   *
+   * @return the number of chunks the source files have been compiled in.
+   */
+  public int getChunks() {
+    return this._chunks;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append(this._compilationUnits).append(" source files (");
+    buffer.append(this._lines).append(" lines, ");
+    buffer.append(this._chunks).append(this._chunks == 1 ? " chunk" : " chunks");
+    buffer.append(") in ").append(this._elapsedTime).append(" ms [parse: ");
+    buffer.append(this._parseTime).append(" ms, resolve: ");
+    buffer.append(this._resolveTime).append(" ms, analyze: ");
+    buffer.append(this._analyzeTime).append(" ms, generate: ");
+    buffer.append(this._generateTime).append(" ms, write: ");
+    buffer.append(this._writeTime).append(" ms]");
+    return buffer.toString();
+  }
+}
@@ -27,13 +27,19 @@ import java.util.Map;
 public class DefaultCompileJobDescription implements CompileJobDescription {
 
   /** the ClassFileLoader */
-  private ClassFileLoader     _classFileLoader;
+  private ClassFileLoader       _classFileLoader;
 
   /** the compiler options */
-  private Map<String, String> _compilerOptions;
+  private Map<String, String>   _compilerOptions;
 
   /** the source files */
-  private SourceFile[]        _sourceFiles;
+  private SourceFile[]          _sourceFiles;
+
+  /** indicates whether the dependencies of the compiled source files should be recorded */
+  private boolean               _recordDependencies;
+
+  /** the pipeline configuration */
+  private PipelineConfiguration _pipelineConfiguration = PipelineConfiguration.createDefault();
 
   /**
    * <p>
@@ -84,6 +90,20 @@ public class DefaultCompileJobDescription implements CompileJobDescription {
     return this._sourceFiles;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isRecordDependencies() {
+    return this._recordDependencies;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public PipelineConfiguration getPipelineConfiguration() {
+    return this._pipelineConfiguration;
+  }
+
   /**
    * <p>
    * Sets the class file loader.
@@ -123,6 +143,31 @@ public class DefaultCompileJobDescription implements CompileJobDescription {
     this._sourceFiles = sourceFiles;
   }
 
+  /**
+   * <p>
+   * Specifies whether the dependencies of the compiled source files should be recorded.
+   * </p>
+   * 
+   * @param recordDependencies
+   *          <code>true</code> if the dependencies of the compiled source files should be recorded.
+   */
+  public void setRecordDependencies(boolean recordDependencies) {
+    this._recordDependencies = recordDependencies;
+  }
+
+  /**
+   * <p>
+   * Sets the pipeline configuration.
+   * </p>
+   * 
+   * @param pipelineConfiguration
+   *          the pipeline configuration.
+   */
+  public void setPipelineConfiguration(PipelineConfiguration pipelineConfiguration) {
+    Assure.notNull("pipelineConfiguration", pipelineConfiguration);
+    this._pipelineConfiguration = pipelineConfiguration;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -163,6 +208,8 @@ public class DefaultCompileJobDescription implements CompileJobDescription {
     }
     buffer.append(this._sourceFiles);
     buffer.append("}");
+    buffer.append(", _pipelineConfiguration: ");
+    buffer.append(this._pipelineConfiguration);
     buffer.append("]");
     return buffer.toString();
   }
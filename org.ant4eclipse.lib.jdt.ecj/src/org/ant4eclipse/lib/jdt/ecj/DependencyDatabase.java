@@ -0,0 +1,713 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.DigestHelper;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+/**
+ * <p>
+ * The {@link DependencyDatabase} stores the dependencies between the source files of a project and is used to compile
+ * a project incrementally. For each successfully compiled source file it contains the generated class files and the
+ * names the source file refers to (see {@link SourceFileDependencies}).
+ * </p>
+ * <p>
+ * Before a compilation {@link #getSourceFilesToCompile(SourceFile[], String)} computes the source files that have to
+ * be compiled: all source files that are new or have been changed since the last compilation, plus all source files
+ * that (transitively) depend on types that have been changed, added or removed. The class files of removed source
+ * files are deleted. After the compilation the database is updated with the result of the compilation (
+ * {@link #update(CompileJobResult)}) and class files that haven't been generated again are deleted.
+ * </p>
+ * <p>
+ * A database also contains a fingerprint of the compilation environment (compiler options and class path, see
+ * {@link #computeFingerprint(Map, File[])}). If the fingerprint changes, all source files are compiled.
+ * </p>
+ */
+public class DependencyDatabase {
+
+  /** the version of the binary format */
+  private static final int    FORMAT_VERSION = 2;
+
+  /** the postfix of class files */
+  private static final String CLASS_POSTFIX  = ".class";
+
+  /** the postfix of java source files */
+  private static final String JAVA_POSTFIX   = ".java";
+
+  /** the fingerprint of the compilation environment */
+  private String              _fingerprint;
+
+  /** the entries (absolute path of the source file -> entry) */
+  private Map<String, Entry>  _entries;
+
+  /** the state of the source files that are about to be compiled (absolute path -> {lastModified, length}) */
+  private Map<String, long[]> _pendingStamps;
+
+  /** the previous entries of the source files that are about to be compiled */
+  private Map<String, Entry>  _replacedEntries;
+
+  /**
+   * <p>
+   * Creates a new, empty instance of type {@link DependencyDatabase}.
+   * </p>
+   */
+  public DependencyDatabase() {
+    this._fingerprint = "";
+    this._entries = new LinkedHashMap<String, Entry>();
+    this._pendingStamps = new HashMap<String, long[]>();
+    this._replacedEntries = new HashMap<String, Entry>();
+  }
+
+  /**
+   * <p>
+   * Reads the database from the given file. Returns an empty database if the file doesn't exist or can't be read.
+   * </p>
+   *
+   * @param file
+   *          the database file
+   * @return the database
+   */
+  public static DependencyDatabase read(File file) {
+    Assure.notNull("file", file);
+
+    DependencyDatabase result = new DependencyDatabase();
+    if (!file.isFile()) {
+      return result;
+    }
+
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (in.readInt() != FORMAT_VERSION) {
+        return result;
+      }
+      String fingerprint = in.readUTF();
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String key = in.readUTF();
+        Entry entry = new Entry(in.readLong(), in.readLong(), in.readUTF(), readStrings(in), readStrings(in),
+            readStrings(in), readStrings(in), readStrings(in));
+        result._entries.put(key, entry);
+      }
+      result._fingerprint = fingerprint;
+      return result;
+    } catch (IOException e) {
+      A4ELogging.debug("Could not read dependency database '%s': %s", file, e.getMessage());
+      return new DependencyDatabase();
+    } finally {
+      Utilities.close((Closeable) in);
+    }
+  }
+
+  /**
+   * <p>
+   * Writes this database to the given file.
+   * </p>
+   *
+   * @param file
+   *          the database file
+   */
+  public void write(File file) {
+    Assure.notNull("file", file);
+
+    File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+    DataOutputStream out = null;
+    try {
+      Utilities.mkdirs(file.getAbsoluteFile().getParentFile());
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(this._fingerprint);
+      out.writeInt(this._entries.size());
+      for (Map.Entry<String, Entry> entry : this._entries.entrySet()) {
+        Entry value = entry.getValue();
+        out.writeUTF(entry.getKey());
+        out.writeLong(value._lastModified);
+        out.writeLong(value._length);
+        out.writeUTF(value._destinationFolder);
+        writeStrings(out, Arrays.asList(value._classFileNames));
+        writeStrings(out, Arrays.asList(value._abiDigests));
+        writeStrings(out, value._qualifiedReferences);
+        writeStrings(out, value._simpleNameReferences);
+        writeStrings(out, value._rootReferences);
+      }
+      out.close();
+      out = null;
+      if (!Utilities.replaceFile(tempFile, file)) {
+        A4ELogging.warn("Could not write dependency database '%s': the file could not be replaced", file);
+      }
+    } catch (IOException e) {
+      A4ELogging.warn("Could not write dependency database '%s': %s", file, e.getMessage());
+      tempFile.delete();
+    } finally {
+      Utilities.close((Closeable) out);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the number of source files contained in this database.
+   * </p>
+   *
+   * @return the number of source files contained in this database.
+   */
+  public int size() {
+    return this._entries.size();
+  }
+
+  /**
+   * <p>
+   * Computes the source files that have to be compiled. The class files of source files that don't exist anymore are
+   * deleted. For the source files that have to be compiled only the class files of the primary type (and its nested
+   * types) are kept, so unchanged class files don't have to be written again. These class files can't be used by the
+   * compiler instead of the source file. Class files that are not generated again are deleted by
+   * {@link #update(CompileJobResult)}.
+   * </p>
+   *
+   * @param sourceFiles
+   *          all source files of the project
+   * @param fingerprint
+   *          the fingerprint of the current compilation environment (see {@link #computeFingerprint(Map, File[])})
+   * @return the source files that have to be compiled (in the order of the given source files).
+   */
+  public SourceFile[] getSourceFilesToCompile(SourceFile[] sourceFiles, String fingerprint) {
+    Assure.notNull("sourceFiles", sourceFiles);
+    Assure.notNull("fingerprint", fingerprint);
+
+    // Step 1: determine the current state of the source files
+    Map<String, SourceFile> current = new LinkedHashMap<String, SourceFile>();
+    this._pendingStamps.clear();
+    this._replacedEntries.clear();
+    for (SourceFile sourceFile : sourceFiles) {
+      File file = sourceFile.getSourceFile();
+      String key = file.getAbsolutePath();
+      current.put(key, sourceFile);
+      this._pendingStamps.put(key, new long[] { file.lastModified(), file.length() });
+    }
+
+    Set<String> scheduled = new HashSet<String>();
+    List<String[]> changedTypes = new LinkedList<String[]>();
+
+    // Step 2: if the environment has changed, everything has to be compiled
+    boolean full = !fingerprint.equals(this._fingerprint);
+    if (full && !this._entries.isEmpty()) {
+      A4ELogging.debug("Compilation environment has changed, compiling all source files.");
+    }
+    this._fingerprint = fingerprint;
+
+    // Step 3: handle removed source files
+    for (String key : new ArrayList<String>(this._entries.keySet())) {
+      if (!current.containsKey(key)) {
+        Entry entry = this._entries.remove(key);
+        A4ELogging.debug("Source file '%s' has been removed.", key);
+        addTypes(entry, changedTypes);
+        deleteClassFiles(entry, Collections.<String> emptySet());
+      }
+    }
+
+    // Step 4: handle new and changed source files
+    for (Map.Entry<String, SourceFile> sourceFile : current.entrySet()) {
+      String key = sourceFile.getKey();
+      Entry entry = this._entries.get(key);
+      if (full || (entry == null) || !entry.isUpToDate(sourceFile.getValue(), this._pendingStamps.get(key))) {
+        scheduled.add(key);
+        if (entry != null) {
+          addTypes(entry, changedTypes);
+        }
+        changedTypes.add(getPrimaryType(sourceFile.getValue().getSourceFileName()));
+      }
+    }
+
+    // Step 5: add all source files that (transitively) depend on changed types
+    if (!full && !changedTypes.isEmpty()) {
+      Map<String, List<String>> index = createSimpleNameIndex();
+      while (!changedTypes.isEmpty()) {
+        String[] type = changedTypes.remove(0);
+        List<String> candidates = index.get(type[1]);
+        if (candidates == null) {
+          continue;
+        }
+        for (String key : candidates) {
+          Entry entry = this._entries.get(key);
+          if (!scheduled.contains(key) && current.containsKey(key) && entry.dependsOn(type[0], type[1])) {
+            A4ELogging.debug("Source file '%s' depends on changed type '%s.%s'.", key, type[0], type[1]);
+            scheduled.add(key);
+            addTypes(entry, changedTypes);
+          }
+        }
+      }
+    }
+
+    // Step 6: remove the entries of the source files that have to be compiled
+    List<SourceFile> result = new LinkedList<SourceFile>();
+    for (Map.Entry<String, SourceFile> sourceFile : current.entrySet()) {
+      if (scheduled.contains(sourceFile.getKey())) {
+        Entry entry = this._entries.remove(sourceFile.getKey());
+        if (entry != null) {
+          deleteClassFiles(entry, getPrimaryClassFileNames(entry, sourceFile.getValue()));
+          this._replacedEntries.put(sourceFile.getKey(), entry);
+        }
+        result.add(sourceFile.getValue());
+      }
+    }
+
+    return result.toArray(new SourceFile[result.size()]);
+  }
+
+  /**
+   * <p>
+   * Updates this database with the result of a compilation. Source files that couldn't be compiled are not added, so
+   * they will be compiled again next time. Class files of the previous compilation that haven't been generated again
+   * (including all class files of the source files that couldn't be compiled) are deleted.
+   * </p>
+   *
+   * @param result
+   *          the result of the compilation
+   */
+  public void update(CompileJobResult result) {
+    Assure.notNull("result", result);
+
+    for (SourceFileDependencies dependencies : result.getSourceFileDependencies()) {
+      File file = dependencies.getSourceFile();
+      String key = file.getAbsolutePath();
+      long[] stamp = this._pendingStamps.get(key);
+      if (stamp == null) {
+        stamp = new long[] { file.lastModified(), file.length() };
+      }
+      Entry entry = new Entry(stamp[0], stamp[1], dependencies.getDestinationFolder().getAbsolutePath(), dependencies
+          .getClassFileNames(), dependencies.getAbiDigests(), dependencies.getQualifiedReferences(), dependencies
+          .getSimpleNameReferences(), dependencies.getRootReferences());
+      this._entries.put(key, entry);
+      Entry replaced = this._replacedEntries.remove(key);
+      if ((replaced != null) && replaced._destinationFolder.equals(entry._destinationFolder)) {
+        deleteClassFiles(replaced, new HashSet<String>(Arrays.asList(entry._classFileNames)));
+      } else if (replaced != null) {
+        deleteClassFiles(replaced, Collections.<String> emptySet());
+      }
+    }
+    for (Entry replaced : this._replacedEntries.values()) {
+      deleteClassFiles(replaced, Collections.<String> emptySet());
+    }
+    this._pendingStamps.clear();
+    this._replacedEntries.clear();
+  }
+
+  /**
+   * <p>
+   * Computes the digest of the public api of the given destination folder from the class files that have been
+   * generated for the source files of this database (see {@link AbiDigest}).
+   * </p>
+   *
+   * @param destinationFolder
+   *          the destination folder
+   * @return the digest of the public api of the given destination folder.
+   */
+  public String getAbiDigest(File destinationFolder) {
+    Assure.notNull("destinationFolder", destinationFolder);
+
+    String path = destinationFolder.getAbsolutePath();
+    Map<String, String> digests = new HashMap<String, String>();
+    for (Entry entry : this._entries.values()) {
+      if (entry._destinationFolder.equals(path)) {
+        for (int i = 0; i < entry._classFileNames.length; i++) {
+          digests.put(entry._classFileNames[i], entry._abiDigests[i]);
+        }
+      }
+    }
+    return AbiDigest.compute(digests);
+  }
+
+  /**
+   * <p>
+   * Computes the fingerprint of a compilation environment. The fingerprint is an MD5 digest of the compiler options,
+   * the paths of the class path entries, the size and modification time of all archives and the state of all class
+   * files in the directories of the given class path.
+   * </p>
+   * <p>
+   * If a directory has been written by an incremental compilation and hasn't been modified since, the digest of its
+   * public api is used instead of the state of the class files (see {@link AbiDigest}). So changes to an upstream
+   * project that don't affect its public api don't change the fingerprint.
+   * </p>
+   *
+   * @param compilerOptions
+   *          the compiler options
+   * @param classpathEntries
+   *          the class path entries (archives or directories). The destination folders of the compilation must not be
+   *          contained.
+   * @return the fingerprint of the compilation environment.
+   */
+  public static String computeFingerprint(Map<String, String> compilerOptions, File[] classpathEntries) {
+    Assure.notNull("compilerOptions", compilerOptions);
+    Assure.notNull("classpathEntries", classpathEntries);
+
+    MessageDigest digest = DigestHelper.createDigest();
+    for (Map.Entry<String, String> option : new TreeMap<String, String>(compilerOptions).entrySet()) {
+      DigestHelper.update(digest, option.getKey());
+      DigestHelper.update(digest, option.getValue());
+    }
+    DigestHelper.update(digest, classpathEntries.length);
+    for (File entry : classpathEntries) {
+      DigestHelper.update(digest, entry.getAbsolutePath());
+      fingerprint(entry, digest);
+    }
+    return DigestHelper.toHex(digest.digest());
+  }
+
+  /**
+   * <p>
+   * Adds the state of the given file or directory to the given digest.
+   * </p>
+   *
+   * @param file
+   *          the file or directory
+   * @param digest
+   *          the digest
+   */
+  private static void fingerprint(File file, MessageDigest digest) {
+    if (file.isFile()) {
+      DigestHelper.update(digest, 'F');
+      DigestHelper.update(digest, file.length());
+      DigestHelper.update(digest, file.lastModified());
+    } else if (file.isDirectory()) {
+      long stamp = AbiDigest.computeStamp(file);
+      String abiDigest = AbiDigest.read(file, stamp);
+      if (abiDigest != null) {
+        A4ELogging.debug("Using api digest '%s' for class path entry '%s'.", abiDigest, file);
+        DigestHelper.update(digest, 'A');
+        DigestHelper.update(digest, abiDigest);
+      } else {
+        DigestHelper.update(digest, 'D');
+        DigestHelper.update(digest, stamp);
+      }
+    } else {
+      DigestHelper.update(digest, 'M');
+    }
+  }
+
+  /**
+   * <p>
+   * Creates an index that maps simple names to the source files that refer to them.
+   * </p>
+   *
+   * @return the index.
+   */
+  private Map<String, List<String>> createSimpleNameIndex() {
+    Map<String, List<String>> result = new HashMap<String, List<String>>();
+    for (Map.Entry<String, Entry> entry : this._entries.entrySet()) {
+      for (String simpleName : entry.getValue()._simpleNameReferences) {
+        List<String> keys = result.get(simpleName);
+        if (keys == null) {
+          keys = new LinkedList<String>();
+          result.put(simpleName, keys);
+        }
+        keys.add(entry.getKey());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Adds the (top level) types defined by the given entry to the given list.
+   * </p>
+   *
+   * @param entry
+   *          the entry
+   * @param types
+   *          the list of types (package name and simple name)
+   */
+  private static void addTypes(Entry entry, List<String[]> types) {
+    for (String classFileName : entry._classFileNames) {
+      String name = classFileName.substring(0, classFileName.length() - CLASS_POSTFIX.length());
+      int index = name.indexOf('$');
+      if (index != -1) {
+        // member and local types are covered by their top level type
+        continue;
+      }
+      types.add(splitTypeName(name));
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the primary type (package name and simple name) of the source file with the given name.
+   * </p>
+   *
+   * @param sourceFileName
+   *          the name of the source file relative to its source folder (e.g. 'a/b/Foo.java')
+   * @return the primary type.
+   */
+  private static String[] getPrimaryType(String sourceFileName) {
+    String name = sourceFileName.replace(File.separatorChar, '/');
+    if (name.endsWith(JAVA_POSTFIX)) {
+      name = name.substring(0, name.length() - JAVA_POSTFIX.length());
+    }
+    return splitTypeName(name);
+  }
+
+  /**
+   * <p>
+   * Splits the given slash separated type name into the dot separated package name and the simple name.
+   * </p>
+   *
+   * @param name
+   *          the type name (e.g. 'a/b/Foo')
+   * @return the package name and the simple name.
+   */
+  private static String[] splitTypeName(String name) {
+    int index = name.lastIndexOf('/');
+    if (index == -1) {
+      return new String[] { "", name };
+    }
+    return new String[] { name.substring(0, index).replace('/', '.'), name.substring(index + 1) };
+  }
+
+  /**
+   * <p>
+   * Deletes the class files that have been generated for the given entry, except the given ones.
+   * </p>
+   *
+   * @param entry
+   *          the entry
+   * @param kept
+   *          the names of the class files that must not be deleted
+   */
+  private static void deleteClassFiles(Entry entry, Set<String> kept) {
+    for (String classFileName : entry._classFileNames) {
+      if (kept.contains(classFileName)) {
+        continue;
+      }
+      File classFile = new File(entry._destinationFolder, classFileName);
+      if (classFile.isFile() && !classFile.delete()) {
+        A4ELogging.warn("Could not delete outdated class file '%s'.", classFile);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the names of the class files of the given entry that belong to the primary type of the given source file
+   * (i.e. the class files of the primary type and its nested types).
+   * </p>
+   *
+   * @param entry
+   *          the entry
+   * @param sourceFile
+   *          the source file
+   * @return the names of the class files that belong to the primary type.
+   */
+  private static Set<String> getPrimaryClassFileNames(Entry entry, SourceFile sourceFile) {
+    String[] primaryType = getPrimaryType(sourceFile.getSourceFileName());
+    String name = primaryType[0].length() == 0 ? primaryType[1] : primaryType[0].replace('.', '/') + "/"
+        + primaryType[1];
+    Set<String> result = new HashSet<String>();
+    for (String classFileName : entry._classFileNames) {
+      if (classFileName.equals(name + CLASS_POSTFIX) || classFileName.startsWith(name + "$")) {
+        result.add(classFileName);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Reads an array of strings.
+   * </p>
+   *
+   * @param in
+   *          the stream to read from
+   * @return the strings
+   * @throws IOException
+   */
+  private static String[] readStrings(DataInputStream in) throws IOException {
+    String[] result = new String[in.readInt()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = in.readUTF();
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Writes an array of strings.
+   * </p>
+   *
+   * @param out
+   *          the stream to write to
+   * @param strings
+   *          the strings
+   * @throws IOException
+   */
+  private static void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException {
+    out.writeInt(strings.size());
+    for (String string : strings) {
+      out.writeUTF(string);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[DependencyDatabase:");
+    buffer.append(" _fingerprint: ");
+    buffer.append(this._fingerprint);
+    buffer.append(" entries: ");
+    buffer.append(this._entries.size());
+    buffer.append("]");
+    return buffer.toString();
+  }
+
+  /**
+   * <p>
+   * The dependencies of a single source file.
+   * </p>
+   */
+  private static class Entry {
+
+    /** the modification time of the source file when it has been compiled */
+    private long        _lastModified;
+
+    /** the size of the source file when it has been compiled */
+    private long        _length;
+
+    /** the absolute path of the destination folder */
+    private String      _destinationFolder;
+
+    /** the names of the generated class files */
+    private String[]    _classFileNames;
+
+    /** the api digests of the generated class files */
+    private String[]    _abiDigests;
+
+    /** the qualified references */
+    private Set<String> _qualifiedReferences;
+
+    /** the simple name references */
+    private Set<String> _simpleNameReferences;
+
+    /** the root references */
+    private Set<String> _rootReferences;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link Entry}.
+     * </p>
+     *
+     * @param lastModified
+     *          the modification time of the source file
+     * @param length
+     *          the size of the source file
+     * @param destinationFolder
+     *          the absolute path of the destination folder
+     * @param classFileNames
+     *          the names of the generated class files
+     * @param abiDigests
+     *          the api digests of the generated class files
+     * @param qualifiedReferences
+     *          the qualified references
+     * @param simpleNameReferences
+     *          the simple name references
+     * @param rootReferences
+     *          the root references
+     */
+    public Entry(long lastModified, long length, String destinationFolder, String[] classFileNames,
+        String[] abiDigests, String[] qualifiedReferences, String[] simpleNameReferences, String[] rootReferences) {
+      this._lastModified = lastModified;
+      this._length = length;
+      this._destinationFolder = destinationFolder;
+      this._classFileNames = classFileNames;
+      this._abiDigests = abiDigests;
+      this._qualifiedReferences = new HashSet<String>(Arrays.asList(qualifiedReferences));
+      this._simpleNameReferences = new HashSet<String>(Arrays.asList(simpleNameReferences));
+      this._rootReferences = new HashSet<String>(Arrays.asList(rootReferences));
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the source file hasn't changed since it has been compiled and all generated class
+     * files still exist.
+     * </p>
+     *
+     * @param sourceFile
+     *          the source file
+     * @param stamp
+     *          the current modification time and size of the source file
+     * @return <code>true</code> if the compiled source file is up to date.
+     */
+    public boolean isUpToDate(SourceFile sourceFile, long[] stamp) {
+      if ((this._lastModified != stamp[0]) || (this._length != stamp[1])) {
+        return false;
+      }
+      if (!this._destinationFolder.equals(sourceFile.getDestinationFolder().getAbsolutePath())) {
+        return false;
+      }
+      for (String classFileName : this._classFileNames) {
+        if (!new File(this._destinationFolder, classFileName).isFile()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the source file refers to the type with the given name.
+     * </p>
+     *
+     * @param packageName
+     *          the dot separated package name of the type (empty for the default package)
+     * @param simpleName
+     *          the simple name of the type
+     * @return <code>true</code> if the source file refers to the given type.
+     */
+    public boolean dependsOn(String packageName, String simpleName) {
+      if (!this._simpleNameReferences.contains(simpleName)) {
+        return false;
+      }
+      if (packageName.length() == 0) {
+        return this._rootReferences.contains(simpleName);
+      }
+      // the compiler only records qualified names with at least two segments, single segment names are root references
+      if (packageName.indexOf('.') == -1) {
+        return this._rootReferences.contains(packageName);
+      }
+      return this._qualifiedReferences.contains(packageName);
+    }
+  }
+}
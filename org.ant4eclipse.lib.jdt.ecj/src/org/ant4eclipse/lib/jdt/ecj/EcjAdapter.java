@@ -12,6 +12,9 @@
 package org.ant4eclipse.lib.jdt.ecj;
 
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.EcjAdapterImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon.CompileDaemonEcjAdapter;
+
+import java.util.List;
 
 /**
  * <p>
@@ -38,6 +41,20 @@ public interface EcjAdapter {
    */
   CompileJobResult compile(CompileJobDescription description);
 
+  /**
+   * <p>
+   * Performs a compile for each of the given {@link CompileJobDescription CompileJobDescriptions}. Independent compile
+   * jobs are executed in parallel. A compile job depends on another compile job if the class path of its
+   * {@link ClassFileLoader} contains a destination folder of the other compile job; such a compile job is started after
+   * the compile jobs it depends on have been finished.
+   * </p>
+   * 
+   * @param descriptions
+   *          the {@link CompileJobDescription CompileJobDescriptions} that describe the compile jobs.
+   * @return the {@link CompileJobResult CompileJobResults} (in the order of the given descriptions).
+   */
+  List<CompileJobResult> compile(List<CompileJobDescription> descriptions);
+
   /**
    * <p>
    * Inner factory to allow the creation of new {@link EcjAdapter} instances.
@@ -47,14 +64,22 @@ public interface EcjAdapter {
    */
   public static class Factory {
 
+    /** the name of the system property that enables the compile daemon */
+    public static final String COMPILE_DAEMON_PROPERTY = "ant4eclipse.compileDaemon";
+
     /**
      * <p>
-     * Creates a new instance of type {@link EcjAdapter}
+     * Creates a new instance of type {@link EcjAdapter}. If the system property <code>ant4eclipse.compileDaemon</code>
+     * is set to <code>true</code>, the compile jobs are delegated to a long-lived compile daemon that keeps its caches
+     * across ant invocations.
      * </p>
      * 
      * @return a new instance of type {@link EcjAdapter}.
      */
     public static EcjAdapter create() {
+      if (Boolean.getBoolean(COMPILE_DAEMON_PROPERTY)) {
+        return new CompileDaemonEcjAdapter();
+      }
       return new EcjAdapterImpl();
     }
   }
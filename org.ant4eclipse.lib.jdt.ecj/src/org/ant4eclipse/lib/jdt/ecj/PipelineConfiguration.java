@@ -0,0 +1,226 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * Describes how the eclipse java compiler processes the source files of a single compile job:
+ * <ul>
+ * <li><b>parallel read</b>: the source files are read and decoded by several threads before they are parsed.</li>
+ * <li><b>parallel processing</b>: the source files are resolved, analysed and translated into class files by a
+ * separate thread, while the compiler thread accepts the results and hands the class files over to the class file
+ * writer.</li>
+ * <li><b>maximum threads</b>: the maximum number of threads used to read source files and to write class files.</li>
+ * <li><b>chunk size</b>: if greater than zero, the source files are compiled in chunks of (roughly) this size. The
+ * source files of a package are always compiled in the same chunk. The class files of a chunk are kept in memory and
+ * are used by the following chunks, so only the syntax trees of a single chunk are held in memory.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * The default configuration can be changed with the system properties <code>ant4eclipse.ecj.parallelRead</code>,
+ * <code>ant4eclipse.ecj.parallelProcessing</code>, <code>ant4eclipse.ecj.maxThreads</code> and
+ * <code>ant4eclipse.ecj.chunkSize</code>.
+ * </p>
+ */
+public class PipelineConfiguration {
+
+  /** the name of the system property that enables reading the source files in parallel */
+  public static final String  PARALLEL_READ_PROPERTY          = "ant4eclipse.ecj.parallelRead";
+
+  /** the name of the system property that enables processing the source files in a separate thread */
+  public static final String  PARALLEL_PROCESSING_PROPERTY    = "ant4eclipse.ecj.parallelProcessing";
+
+  /** the name of the system property that specifies the maximum number of threads */
+  public static final String  MAX_THREADS_PROPERTY            = "ant4eclipse.ecj.maxThreads";
+
+  /** the name of the system property that specifies the chunk size */
+  public static final String  CHUNK_SIZE_PROPERTY             = "ant4eclipse.ecj.chunkSize";
+
+  /** the name of the (deprecated) system property that enables processing the source files in a separate thread */
+  private static final String LEGACY_MULTI_THREADING_PROPERTY = "a4e.ecj.useMultiThreading";
+
+  /** indicates whether the source files are read in parallel */
+  private boolean             _parallelRead;
+
+  /** indicates whether the source files are processed in a separate thread */
+  private boolean             _parallelProcessing;
+
+  /** the maximum number of threads used to read source files and to write class files */
+  private int                 _maxThreads;
+
+  /** the maximum number of source files per chunk (0 if the source files are not compiled in chunks) */
+  private int                 _chunkSize;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PipelineConfiguration} with the default configuration (see
+   * {@link #createDefault()}).
+   * </p>
+   */
+  public PipelineConfiguration() {
+    this._parallelRead = Boolean.getBoolean(PARALLEL_READ_PROPERTY);
+    this._parallelProcessing = Boolean.getBoolean(PARALLEL_PROCESSING_PROPERTY)
+        || Boolean.getBoolean(LEGACY_MULTI_THREADING_PROPERTY);
+    this._maxThreads = Math.max(1, Integer.getInteger(MAX_THREADS_PROPERTY,
+        Runtime.getRuntime().availableProcessors()).intValue());
+    this._chunkSize = Math.max(0, Integer.getInteger(CHUNK_SIZE_PROPERTY, 0).intValue());
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PipelineConfiguration}.
+   * </p>
+   *
+   * @param parallelRead
+   *          <code>true</code> if the source files should be read in parallel
+   * @param parallelProcessing
+   *          <code>true</code> if the source files should be processed in a separate thread
+   * @param maxThreads
+   *          the maximum number of threads used to read source files and to write class files
+   * @param chunkSize
+   *          the maximum number of source files per chunk (0 if the source files should not be compiled in chunks)
+   */
+  public PipelineConfiguration(boolean parallelRead, boolean parallelProcessing, int maxThreads, int chunkSize) {
+    setParallelRead(parallelRead);
+    setParallelProcessing(parallelProcessing);
+    setMaxThreads(maxThreads);
+    setChunkSize(chunkSize);
+  }
+
+  /**
+   * <p>
+   * Returns a new {@link PipelineConfiguration} that is initialized from the system properties. By default the source
+   * files are neither read nor processed in parallel and are not compiled in chunks, and the maximum number of threads
+   * is the number of available processors.
+   * </p>
+   *
+   * @return a new {@link PipelineConfiguration} that is initialized from the system properties.
+   */
+  public static PipelineConfiguration createDefault() {
+    return new PipelineConfiguration();
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the source files are read in parallel.
+   * </p>
+   *
+   * @return <code>true</code> if the source files are read in parallel.
+   */
+  public boolean isParallelRead() {
+    return this._parallelRead;
+  }
+
+  /**
+   * <p>
+   * Specifies whether the source files are read in parallel.
+   * </p>
+   *
+   * @param parallelRead
+   *          <code>true</code> if the source files should be read in parallel
+   */
+  public void setParallelRead(boolean parallelRead) {
+    this._parallelRead = parallelRead;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the source files are processed in a separate thread.
+   * </p>
+   *
+   * @return <code>true</code> if the source files are processed in a separate thread.
+   */
+  public boolean isParallelProcessing() {
+    return this._parallelProcessing;
+  }
+
+  /**
+   * <p>
+   * Specifies whether the source files are processed in a separate thread.
+   * </p>
+   *
+   * @param parallelProcessing
+   *          <code>true</code> if the source files should be processed in a separate thread
+   */
+  public void setParallelProcessing(boolean parallelProcessing) {
+    this._parallelProcessing = parallelProcessing;
+  }
+
+  /**
+   * <p>
+   * Returns the maximum number of threads used to read source files and to write class files.
+   * </p>
+   *
+   * @return the maximum number of threads used to read source files and to write class files.
+   */
+  public int getMaxThreads() {
+    return this._maxThreads;
+  }
+
+  /**
+   * <p>
+   * Sets the maximum number of threads used to read source files and to write class files.
+   * </p>
+   *
+   * @param maxThreads
+   *          the maximum number of threads (at least 1)
+   */
+  public void setMaxThreads(int maxThreads) {
+    Assure.assertTrue(maxThreads > 0, "The maximum number of threads must be greater than 0.");
+    this._maxThreads = maxThreads;
+  }
+
+  /**
+   * <p>
+   * Returns the maximum number of source files per chunk.
+   * </p>
+   *
+   * @return the maximum number of source files per chunk (0 if the source files are not compiled in chunks).
+   */
+  public int getChunkSize() {
+    return this._chunkSize;
+  }
+
+  /**
+   * <p>
+   * Sets the maximum number of source files per chunk.
+   * </p>
+   *
+   * @param chunkSize
+   *          the maximum number of source files per chunk (0 if the source files should not be compiled in chunks)
+   */
+  public void setChunkSize(int chunkSize) {
+    Assure.assertTrue(chunkSize >= 0, "The chunk size must not be negative.");
+    this._chunkSize = chunkSize;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[PipelineConfiguration:");
+    buffer.append(" _parallelRead: ");
+    buffer.append(this._parallelRead);
+    buffer.append(", _parallelProcessing: ");
+    buffer.append(this._parallelProcessing);
+    buffer.append(", _maxThreads: ");
+    buffer.append(this._maxThreads);
+    buffer.append(", _chunkSize: ");
+    buffer.append(this._chunkSize);
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
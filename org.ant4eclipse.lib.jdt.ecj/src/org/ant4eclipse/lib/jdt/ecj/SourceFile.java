@@ -51,7 +51,8 @@ public interface SourceFile {
 
   /**
    * <p>
-   * Returns the destination folder.
+   * Returns the destination folder. If the name of the destination folder ends with <code>.jar</code> or
+   * <code>.zip</code>, the class files are written to an archive instead of a directory.
    * </p>
    * 
    * @return the destination folder.
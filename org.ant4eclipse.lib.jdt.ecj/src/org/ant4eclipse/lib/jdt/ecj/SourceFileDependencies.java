@@ -0,0 +1,195 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import java.io.File;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * Describes the outcome of the successful compilation of a single source file: the class files that have been
+ * generated and the names that have been referenced by the source file. The references are collected by the eclipse
+ * java compiler and have the same semantics as the ones used by the incremental builder of the eclipse IDE:
+ * <ul>
+ * <li>qualified references contain all (dot separated) package and type names that have been referenced, including
+ * all their prefixes (e.g. <code>java.util.Map</code>, <code>java.util</code> and <code>java</code>)</li>
+ * <li>simple name references contain all simple names that have been referenced (e.g. <code>Map</code>)</li>
+ * <li>root references contain the first segments of all referenced names (e.g. <code>java</code>) as well as the names
+ * of referenced types in the default package</li>
+ * </ul>
+ * </p>
+ */
+public class SourceFileDependencies {
+
+  /** the source file */
+  private File     _sourceFile;
+
+  /** the destination folder */
+  private File     _destinationFolder;
+
+  /** the names of the generated class files, relative to the destination folder (e.g. 'a/b/Foo$Inner.class') */
+  private String[] _classFileNames;
+
+  /** the digests of the public api of the generated class files (see {@link AbiDigest}) */
+  private String[] _abiDigests;
+
+  /** the qualified references */
+  private String[] _qualifiedReferences;
+
+  /** the simple name references */
+  private String[] _simpleNameReferences;
+
+  /** the root references */
+  private String[] _rootReferences;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link SourceFileDependencies}.
+   * </p>
+   *
+   * @param sourceFile
+   *          the source file
+   * @param destinationFolder
+   *          the destination folder
+   * @param classFileNames
+   *          the names of the generated class files, relative to the destination folder
+   * @param abiDigests
+   *          the digests of the public api of the generated class files (in the order of the class file names)
+   * @param qualifiedReferences
+   *          the qualified references
+   * @param simpleNameReferences
+   *          the simple name references
+   * @param rootReferences
+   *          the root references
+   */
+  public SourceFileDependencies(File sourceFile, File destinationFolder, String[] classFileNames, String[] abiDigests,
+      String[] qualifiedReferences, String[] simpleNameReferences, String[] rootReferences) {
+    Assure.notNull("sourceFile", sourceFile);
+    Assure.notNull("destinationFolder", destinationFolder);
+    Assure.notNull("classFileNames", classFileNames);
+    Assure.notNull("abiDigests", abiDigests);
+    Assure.assertTrue(classFileNames.length == abiDigests.length, "Each class file must have an api digest.");
+    Assure.notNull("qualifiedReferences", qualifiedReferences);
+    Assure.notNull("simpleNameReferences", simpleNameReferences);
+    Assure.notNull("rootReferences", rootReferences);
+
+    this._sourceFile = sourceFile;
+    this._destinationFolder = destinationFolder;
+    this._classFileNames = classFileNames;
+    this._abiDigests = abiDigests;
+    this._qualifiedReferences = qualifiedReferences;
+    this._simpleNameReferences = simpleNameReferences;
+    this._rootReferences = rootReferences;
+  }
+
+  /**
+   * <p>
+   * Returns the source file.
+   * </p>
+   *
+   * @return the source file.
+   */
+  public File getSourceFile() {
+    return this._sourceFile;
+  }
+
+  /**
+   * <p>
+   * Returns the destination folder.
+   * </p>
+   *
+   * @return the destination folder.
+   */
+  public File getDestinationFolder() {
+    return this._destinationFolder;
+  }
+
+  /**
+   * <p>
+   * Returns the names of the generated class files, relative to the destination folder (e.g.
+   * <code>a/b/Foo$Inner.class</code>).
+   * </p>
+   *
+   * @return the names of the generated class files.
+   */
+  public String[] getClassFileNames() {
+    return this._classFileNames;
+  }
+
+  /**
+   * <p>
+   * Returns the digests of the public api of the generated class files (in the order of the class file names).
+   * </p>
+   *
+   * @return the digests of the public api of the generated class files.
+   */
+  public String[] getAbiDigests() {
+    return this._abiDigests;
+  }
+
+  /**
+   * <p>
+   * Returns the qualified references.
+   * </p>
+   *
+   * @return the qualified references.
+   */
+  public String[] getQualifiedReferences() {
+    return this._qualifiedReferences;
+  }
+
+  /**
+   * <p>
+   * Returns the simple name references.
+   * </p>
+   *
+   * @return the simple name references.
+   */
+  public String[] getSimpleNameReferences() {
+    return this._simpleNameReferences;
+  }
+
+  /**
+   * <p>
+   * Returns the root references.
+   * </p>
+   *
+   * @return the root references.
+   */
+  public String[] getRootReferences() {
+    return this._rootReferences;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[SourceFileDependencies:");
+    buffer.append(" _sourceFile: ");
+    buffer.append(this._sourceFile);
+    buffer.append(" _destinationFolder: ");
+    buffer.append(this._destinationFolder);
+    buffer.append(" _classFileNames: ");
+    buffer.append(this._classFileNames.length);
+    buffer.append(" _qualifiedReferences: ");
+    buffer.append(this._qualifiedReferences.length);
+    buffer.append(" _simpleNameReferences: ");
+    buffer.append(this._simpleNameReferences.length);
+    buffer.append(" _rootReferences: ");
+    buffer.append(this._rootReferences.length);
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,178 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+
+/**
+ * <p>
+ * The name environment used if the source files of a compile job are compiled in chunks. The types that have been
+ * compiled by previous chunks are answered from memory. A type whose source file will be compiled by a following chunk
+ * is answered as source, so the compiler compiles it together with the current chunk; such source files are skipped by
+ * the following chunks. All other types are answered by the underlying name environment.
+ * </p>
+ * <p>
+ * Source files are found by their primary type (e.g. <code>a/b/Foo.java</code> declares the type <code>a.b.Foo</code>).
+ * </p>
+ */
+public class ChunkNameEnvironment implements INameEnvironment {
+
+  /** the underlying name environment */
+  private INameEnvironment                 _nameEnvironment;
+
+  /** the compilation units that haven't been compiled yet (qualified type name -> compilation unit) */
+  private Map<String, CompilationUnitImpl> _pendingUnits;
+
+  /** the class files that have been compiled (qualified type name -> content) */
+  private Map<String, byte[]>              _classFiles;
+
+  /** the packages of all compilation units (including their parent packages) */
+  private Set<String>                      _packages;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ChunkNameEnvironment}.
+   * </p>
+   *
+   * @param nameEnvironment
+   *          the underlying name environment
+   * @param compilationUnits
+   *          all compilation units of the compile job
+   */
+  public ChunkNameEnvironment(INameEnvironment nameEnvironment, CompilationUnitImpl[] compilationUnits) {
+    Assure.notNull("nameEnvironment", nameEnvironment);
+    Assure.notNull("compilationUnits", compilationUnits);
+
+    this._nameEnvironment = nameEnvironment;
+    this._pendingUnits = new HashMap<String, CompilationUnitImpl>();
+    this._classFiles = new HashMap<String, byte[]>();
+    this._packages = new HashSet<String>();
+    for (CompilationUnitImpl compilationUnit : compilationUnits) {
+      char[][] packageName = compilationUnit.getPackageName();
+      this._pendingUnits.put(getKey(packageName, compilationUnit.getMainTypeName()), compilationUnit);
+      for (int i = 1; i <= packageName.length; i++) {
+        this._packages.add(getKey(CharOperation.subarray(packageName, 0, i - 1), packageName[i - 1]));
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Marks the given compilation unit as compiled.
+   * </p>
+   *
+   * @param compilationUnit
+   *          the compilation unit
+   * @return <code>true</code> if the compilation unit hasn't been compiled yet, <code>false</code> if it has already
+   *         been compiled together with a previous chunk.
+   */
+  public synchronized boolean claim(CompilationUnitImpl compilationUnit) {
+    String key = getKey(compilationUnit.getPackageName(), compilationUnit.getMainTypeName());
+    return this._pendingUnits.remove(key) == compilationUnit;
+  }
+
+  /**
+   * <p>
+   * Adds a compiled class file, so it is visible for the following chunks.
+   * </p>
+   *
+   * @param compoundName
+   *          the compound name of the class file (e.g. <code>{a, b, Foo$Inner}</code>)
+   * @param content
+   *          the content of the class file
+   */
+  public synchronized void addClassFile(char[][] compoundName, byte[] content) {
+    this._classFiles.put(new String(CharOperation.concatWith(compoundName, '/')), content);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public NameEnvironmentAnswer findType(char[][] compoundTypeName) {
+    NameEnvironmentAnswer answer = findChunkType(new String(CharOperation.concatWith(compoundTypeName, '/')));
+    return answer != null ? answer : this._nameEnvironment.findType(compoundTypeName);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
+    NameEnvironmentAnswer answer = findChunkType(getKey(packageName, typeName));
+    return answer != null ? answer : this._nameEnvironment.findType(typeName, packageName);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isPackage(char[][] parentPackageName, char[] packageName) {
+    return this._packages.contains(getKey(parentPackageName, packageName))
+        || this._nameEnvironment.isPackage(parentPackageName, packageName);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void cleanup() {
+    // the underlying name environment is used by all chunks
+  }
+
+  /**
+   * <p>
+   * Returns the type with the given name if it has been compiled by a previous chunk or will be compiled by a following
+   * chunk.
+   * </p>
+   *
+   * @param key
+   *          the qualified type name (e.g. <code>a/b/Foo</code>)
+   * @return the type with the given name or <code>null</code>.
+   */
+  private synchronized NameEnvironmentAnswer findChunkType(String key) {
+    byte[] content = this._classFiles.get(key);
+    if (content != null) {
+      try {
+        return new NameEnvironmentAnswer(new ClassFileReader(content, (key + ".class").toCharArray(), true), null);
+      } catch (ClassFormatException e) {
+        return null;
+      }
+    }
+    CompilationUnitImpl compilationUnit = this._pendingUnits.remove(key);
+    return compilationUnit != null ? new NameEnvironmentAnswer(compilationUnit, null) : null;
+  }
+
+  /**
+   * <p>
+   * Returns the qualified name of the given type or package.
+   * </p>
+   *
+   * @param packageName
+   *          the package name (maybe <code>null</code>)
+   * @param name
+   *          the type or package name
+   * @return the qualified name (e.g. <code>a/b/Foo</code>).
+   */
+  private static String getKey(char[][] packageName, char[] name) {
+    if ((packageName == null) || (packageName.length == 0)) {
+      return new String(name);
+    }
+    return new String(CharOperation.concatWith(packageName, name, '/'));
+  }
+}
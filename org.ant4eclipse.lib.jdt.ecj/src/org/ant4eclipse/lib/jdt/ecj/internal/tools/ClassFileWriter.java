@@ -0,0 +1,396 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.PerformanceLogging;
+import org.ant4eclipse.lib.core.util.StopWatchHandle;
+import org.ant4eclipse.lib.core.util.TraceRecorder;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+/**
+ * <p>
+ * Writes the class files generated by the compiler. Class files are handed over to a small pool of worker threads
+ * (the number of threads can be specified with the system property <code>ant4eclipse.classFileWriterThreads</code>
+ * and can be limited per compile job), so the compiler doesn't have to wait for the file system. The queue of pending
+ * class files is bounded: if it is full, the compiler thread writes the class file itself.
+ * </p>
+ * <p>
+ * Class files are written to a temporary file first and renamed afterwards, so a class file is either complete or
+ * not written at all. A class file whose content hasn't changed is not written again, so its modification time is
+ * kept and dependent builds don't notice a change. Directories that have already been created are remembered.
+ * </p>
+ * <p>
+ * If a destination folder is a jar or zip file (i.e. its name ends with <code>.jar</code> or <code>.zip</code>), the
+ * class files are collected in memory and the archive is written on {@link #close()}. Entries of an existing archive
+ * that haven't been compiled again are kept.
+ * </p>
+ */
+public class ClassFileWriter {
+
+  /** the name of the system property that specifies the number of worker threads */
+  private static final String            THREADS_PROPERTY = "ant4eclipse.classFileWriterThreads";
+
+  /** the default number of worker threads */
+  private static final int               DEFAULT_THREADS  = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+  /** the number of worker threads */
+  private static final int               THREADS          = Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS).intValue();
+
+  /** the maximum number of class files waiting to be written */
+  private static final int               QUEUE_CAPACITY   = 256;
+
+  /** the postfix of temporary files */
+  private static final String            TEMP_POSTFIX     = ".tmp";
+
+  /** measures the writing of single class files */
+  private static final StopWatchHandle   WRITE_CLASS_FILE = PerformanceLogging.createHandle(ClassFileWriter.class,
+                                                              "writeClassFile");
+
+  /** measures the writing of archives */
+  private static final StopWatchHandle   WRITE_ARCHIVE    = PerformanceLogging.createHandle(ClassFileWriter.class,
+                                                              "writeArchive");
+
+  /** the executor that writes the class files */
+  private ThreadPoolExecutor             _executor;
+
+  /** the directories that are known to exist */
+  private Map<File, Boolean>             _directories;
+
+  /** the class files that have to be written to archives (archive -> class file name -> content) */
+  private Map<File, Map<String, byte[]>> _archives;
+
+  /** the class files that couldn't be written (class file -> error message) */
+  private Map<File, String>              _failures;
+
+  /** the number of class files that have been written */
+  private AtomicLong                     _written;
+
+  /** the number of class files that have been skipped because they haven't changed */
+  private AtomicLong                     _unchanged;
+
+  /** the time spent writing class files (in nanoseconds, summed up over all threads) */
+  private AtomicLong                     _writeTime;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ClassFileWriter}.
+   * </p>
+   */
+  public ClassFileWriter() {
+    this(THREADS);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ClassFileWriter}.
+   * </p>
+   * 
+   * @param maxThreads
+   *          the maximum number of worker threads
+   */
+  public ClassFileWriter(int maxThreads) {
+    int threads = Math.max(1, Math.min(THREADS, maxThreads));
+    this._executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadPoolExecutor.CallerRunsPolicy());
+    this._directories = new ConcurrentHashMap<File, Boolean>();
+    this._archives = new HashMap<File, Map<String, byte[]>>();
+    this._failures = new ConcurrentHashMap<File, String>();
+    this._written = new AtomicLong();
+    this._unchanged = new AtomicLong();
+    this._writeTime = new AtomicLong();
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given destination folder is an archive.
+   * </p>
+   *
+   * @param destinationFolder
+   *          the destination folder
+   * @return <code>true</code> if the given destination folder is an archive.
+   */
+  public static boolean isArchive(File destinationFolder) {
+    String name = destinationFolder.getName().toLowerCase();
+    return name.endsWith(".jar") || name.endsWith(".zip");
+  }
+
+  /**
+   * <p>
+   * Schedules the given class file for writing.
+   * </p>
+   *
+   * @param destinationFolder
+   *          the destination folder (a directory or an archive)
+   * @param classFileName
+   *          the name of the class file relative to the destination folder (e.g. 'a/b/Foo.class')
+   * @param content
+   *          the content of the class file
+   */
+  public void write(final File destinationFolder, final String classFileName, final byte[] content) {
+    Assure.notNull("destinationFolder", destinationFolder);
+    Assure.notNull("classFileName", classFileName);
+    Assure.notNull("content", content);
+
+    if (isArchive(destinationFolder)) {
+      synchronized (this._archives) {
+        Map<String, byte[]> entries = this._archives.get(destinationFolder);
+        if (entries == null) {
+          entries = new TreeMap<String, byte[]>();
+          this._archives.put(destinationFolder, entries);
+        }
+        entries.put(classFileName, content);
+      }
+      return;
+    }
+
+    // the class file is written on behalf of the project the compiling thread is building
+    final String project = TraceRecorder.getProject();
+    this._executor.execute(new Runnable() {
+      public void run() {
+        File classFile = new File(destinationFolder, classFileName);
+        long start = System.nanoTime();
+        String previousProject = TraceRecorder.setProject(project);
+        WRITE_CLASS_FILE.start();
+        try {
+          writeClassFile(classFile, content);
+        } catch (IOException e) {
+          ClassFileWriter.this._failures.put(classFile, String.valueOf(e.getMessage()));
+        } catch (RuntimeException e) {
+          ClassFileWriter.this._failures.put(classFile, e.toString());
+        } finally {
+          WRITE_CLASS_FILE.stop();
+          TraceRecorder.setProject(previousProject);
+          ClassFileWriter.this._writeTime.addAndGet(System.nanoTime() - start);
+        }
+      }
+    });
+  }
+
+  /**
+   * <p>
+   * Waits until all class files have been written and writes the archives.
+   * </p>
+   *
+   * @return the class files that couldn't be written (class file -&gt; error message).
+   */
+  public Map<File, String> close() {
+    this._executor.shutdown();
+    try {
+      while (!this._executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        // continue waiting
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e.getMessage(), e);
+    }
+
+    synchronized (this._archives) {
+      for (Map.Entry<File, Map<String, byte[]>> archive : this._archives.entrySet()) {
+        long start = System.nanoTime();
+        WRITE_ARCHIVE.start();
+        try {
+          writeArchive(archive.getKey(), archive.getValue());
+        } catch (IOException e) {
+          for (String classFileName : archive.getValue().keySet()) {
+            this._failures.put(new File(archive.getKey(), classFileName), String.valueOf(e.getMessage()));
+          }
+        } finally {
+          WRITE_ARCHIVE.stop();
+          this._writeTime.addAndGet(System.nanoTime() - start);
+        }
+      }
+      this._archives.clear();
+    }
+
+    A4ELogging.debug("Class files written: %d, unchanged: %d, failed: %d", Long.valueOf(this._written.get()), Long
+        .valueOf(this._unchanged.get()), Integer.valueOf(this._failures.size()));
+    return this._failures;
+  }
+
+  /**
+   * <p>
+   * Returns the time spent writing class files (in milliseconds, summed up over all threads).
+   * </p>
+   * 
+   * @return the time spent writing class files.
+   */
+  public long getWriteTime() {
+    return this._writeTime.get() / 1000000L;
+  }
+
+  /**
+   * <p>
+   * Writes the given class file unless it already exists with the same content.
+   * </p>
+   *
+   * @param classFile
+   *          the class file
+   * @param content
+   *          the content of the class file
+   * @throws IOException
+   */
+  private void writeClassFile(File classFile, byte[] content) throws IOException {
+    if (classFile.isFile() && (classFile.length() == content.length) && Arrays.equals(readFile(classFile), content)) {
+      A4ELogging.debug("class file unchanged: '%s'", classFile);
+      this._unchanged.incrementAndGet();
+      return;
+    }
+
+    File directory = classFile.getParentFile();
+    if (!this._directories.containsKey(directory)) {
+      if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+        throw new IOException("Could not create directory '" + directory + "'.");
+      }
+      this._directories.put(directory, Boolean.TRUE);
+    }
+
+    A4ELogging.debug("writing class file: '%s'", classFile);
+    File tempFile = new File(directory, classFile.getName() + TEMP_POSTFIX);
+    OutputStream output = null;
+    try {
+      output = new FileOutputStream(tempFile);
+      output.write(content);
+      output.close();
+      output = null;
+      if (!Utilities.replaceFile(tempFile, classFile)) {
+        throw new IOException("Could not replace class file '" + classFile + "'.");
+      }
+    } finally {
+      Utilities.close((Closeable) output);
+      if (tempFile.exists()) {
+        tempFile.delete();
+      }
+    }
+    this._written.incrementAndGet();
+  }
+
+  /**
+   * <p>
+   * Writes the given entries to the given archive. Entries of the existing archive that are not replaced are kept.
+   * </p>
+   *
+   * @param archive
+   *          the archive
+   * @param entries
+   *          the class files (class file name -&gt; content)
+   * @throws IOException
+   */
+  private void writeArchive(File archive, Map<String, byte[]> entries) throws IOException {
+    File directory = archive.getAbsoluteFile().getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create directory '" + directory + "'.");
+    }
+
+    A4ELogging.debug("writing archive: '%s'", archive);
+    File tempFile = new File(directory, archive.getName() + TEMP_POSTFIX);
+    ZipOutputStream output = null;
+    ZipFile existing = null;
+    try {
+      output = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      if (archive.isFile()) {
+        existing = new ZipFile(archive);
+        byte[] buffer = new byte[8192];
+        for (Enumeration<? extends ZipEntry> enumeration = existing.entries(); enumeration.hasMoreElements();) {
+          ZipEntry entry = enumeration.nextElement();
+          if (!entries.containsKey(entry.getName())) {
+            output.putNextEntry(new ZipEntry(entry.getName()));
+            // Utilities.copy() would close the archive
+            InputStream input = existing.getInputStream(entry);
+            try {
+              for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+                output.write(buffer, 0, read);
+              }
+            } finally {
+              Utilities.close((Closeable) input);
+            }
+            output.closeEntry();
+          }
+        }
+        existing.close();
+        existing = null;
+      }
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        output.putNextEntry(new ZipEntry(entry.getKey()));
+        output.write(entry.getValue());
+        output.closeEntry();
+        this._written.incrementAndGet();
+      }
+      output.close();
+      output = null;
+      if (!Utilities.replaceFile(tempFile, archive)) {
+        throw new IOException("Could not replace archive '" + archive + "'.");
+      }
+    } finally {
+      Utilities.close((Closeable) output);
+      if (existing != null) {
+        existing.close();
+      }
+      if (tempFile.exists()) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Reads the content of the given file.
+   * </p>
+   *
+   * @param file
+   *          the file
+   * @return the content of the given file.
+   * @throws IOException
+   */
+  private static byte[] readFile(File file) throws IOException {
+    byte[] result = new byte[(int) file.length()];
+    InputStream input = null;
+    try {
+      input = new BufferedInputStream(new FileInputStream(file));
+      int offset = 0;
+      while (offset < result.length) {
+        int read = input.read(result, offset, result.length - offset);
+        if (read == -1) {
+          break;
+        }
+        offset += read;
+      }
+      return result;
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+}
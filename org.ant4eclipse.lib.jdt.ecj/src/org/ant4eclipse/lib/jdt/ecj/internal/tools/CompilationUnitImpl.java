@@ -15,15 +15,14 @@ package org.ant4eclipse.lib.jdt.ecj.internal.tools;
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
+import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCache;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.SourceContentsCache;
 import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 import java.util.StringTokenizer;
 
 /**
@@ -51,6 +50,9 @@ public class CompilationUnitImpl implements ICompilationUnit {
   /** the name of the package , e.g. {java, lang} */
   private char[][]            _packageName;
 
+  /** the preloaded contents of the source file (see {@link #preloadContents()}) */
+  private volatile char[]     _contents;
+
   /**
    * <p>
    * Creates a new instance of type {@link CompilationUnitImpl}.
@@ -110,28 +112,53 @@ public class CompilationUnitImpl implements ICompilationUnit {
    * {@inheritDoc}
    */
   public final char[] getContents() {
+    char[] contents = this._contents;
+    return contents != null ? contents : readContents();
+  }
+
+  /**
+   * <p>
+   * Reads the contents of the source file, so they are available immediately when the compiler requests them. The
+   * compiler requests the contents twice (to build the type bindings and to parse the method bodies), so the preloaded
+   * contents are kept until this compilation unit is released.
+   * </p>
+   */
+  public void preloadContents() {
+    this._contents = readContents();
+  }
+
+  /**
+   * <p>
+   * Reads the contents of the source file.
+   * </p>
+   * 
+   * @return the contents of the source file.
+   */
+  private char[] readContents() {
     String filename = new String(this._fileName);
     File sourceFile = new File(this._sourceFile.getSourceFolder(), filename);
-
-    StringBuffer result = new StringBuffer();
+    String encoding = this._sourceFile.getEncoding();
 
     try {
-      BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(sourceFile), this._sourceFile
-          .getEncoding()));
+      // the contents of referable source files are shared by all compile jobs
+      if (!(this._sourceFile instanceof ReferableSourceFile)) {
+        return SourceFileReader.read(sourceFile, encoding);
+      }
 
-      String str;
-      while ((str = in.readLine()) != null) {
-        result.append(str);
-        result.append("\n");
+      SourceContentsCache cache = ClassFileLoaderCache.getInstance().getSourceContentsCache();
+      String path = sourceFile.getPath();
+      long lastModified = sourceFile.lastModified();
+      long length = sourceFile.length();
+      char[] result = cache.get(path, encoding, lastModified, length);
+      if (result == null) {
+        result = SourceFileReader.read(sourceFile, encoding);
+        cache.put(path, encoding, lastModified, length, result);
       }
-    } catch (UnsupportedEncodingException e) {
-      throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_COMPILATION_CONTENT_EXCEPTION, filename,
-          this._sourceFile.getSourceFolder(), this._sourceFile.getEncoding());
+      return result;
     } catch (IOException e) {
       throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_COMPILATION_CONTENT_EXCEPTION, filename,
-          this._sourceFile.getSourceFolder(), this._sourceFile.getEncoding());
+          this._sourceFile.getSourceFolder(), encoding);
     }
-    return result.toString().toCharArray();
   }
 
   /**
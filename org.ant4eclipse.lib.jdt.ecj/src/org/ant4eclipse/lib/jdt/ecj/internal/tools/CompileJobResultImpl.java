@@ -12,6 +12,8 @@
 package org.ant4eclipse.lib.jdt.ecj.internal.tools;
 
 import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.CompileStatistics;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileDependencies;
 import org.eclipse.jdt.core.compiler.CategorizedProblem;
 
 import java.io.File;
@@ -20,11 +22,15 @@ import java.util.Map;
 
 public class CompileJobResultImpl implements CompileJobResult {
 
-  private boolean              _succeeded;
+  private boolean                  _succeeded;
 
-  private CategorizedProblem[] _categorizedProblems;
+  private CategorizedProblem[]     _categorizedProblems;
 
-  private Map<String, File>    _compiledclassfiles;
+  private Map<String, File>        _compiledclassfiles;
+
+  private SourceFileDependencies[] _sourceFileDependencies;
+
+  private CompileStatistics        _statistics;
 
   /**
    * {@inheritDoc}
@@ -69,4 +75,38 @@ public class CompileJobResultImpl implements CompileJobResult {
     this._compiledclassfiles = compiledclasses;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public SourceFileDependencies[] getSourceFileDependencies() {
+    return this._sourceFileDependencies == null ? new SourceFileDependencies[0] : this._sourceFileDependencies;
+  }
+
+  /**
+   * Changes the dependencies of the compiled source files.
+   * 
+   * @param sourceFileDependencies
+   *          The dependencies of the compiled source files. Maybe <code>null</code>.
+   */
+  public void setSourceFileDependencies(SourceFileDependencies[] sourceFileDependencies) {
+    this._sourceFileDependencies = sourceFileDependencies;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CompileStatistics getStatistics() {
+    return this._statistics == null ? CompileStatistics.EMPTY : this._statistics;
+  }
+
+  /**
+   * Changes the statistics of the compile job.
+   * 
+   * @param statistics
+   *          The statistics of the compile job. Maybe <code>null</code>.
+   */
+  public void setStatistics(CompileStatistics statistics) {
+    this._statistics = statistics;
+  }
+
 }
@@ -11,20 +11,24 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.ecj.internal.tools;
 
-import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
-import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.AbiDigest;
 import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileDependencies;
+import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.core.compiler.CategorizedProblem;
 import org.eclipse.jdt.internal.compiler.ClassFile;
 import org.eclipse.jdt.internal.compiler.CompilationResult;
 import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -35,19 +39,32 @@ import java.util.Map;
  * {@link CompilerRequestorImpl} writes the compiled class files to disc or reports the errors in case the compilation
  * was not successful.
  * </p>
+ * <p>
+ * The class files are written asynchronously by a {@link ClassFileWriter}, so {@link #close()} has to be called after
+ * the compilation has been finished.
+ * </p>
  * 
  * @author Nils Hartmann (nils@nilshartmann.net)
  */
 public class CompilerRequestorImpl implements ICompilerRequestor {
 
   /** indicates whether the compilation was successful or not */
-  protected boolean                  _compilationSuccessful;
+  protected boolean                    _compilationSuccessful;
 
   /** the list of categorized problems */
-  protected List<CategorizedProblem> _categorizedProblems;
+  protected List<CategorizedProblem>   _categorizedProblems;
 
   /** collection of class files which have been compiled */
-  private Map<String, File>          _compiledClassFiles;
+  private Map<String, File>            _compiledClassFiles;
+
+  /** writes the compiled class files */
+  private ClassFileWriter              _classFileWriter;
+
+  /** indicates whether the dependencies of the compiled source files should be recorded */
+  private boolean                      _recordDependencies;
+
+  /** the dependencies of the compiled source files */
+  private List<SourceFileDependencies> _sourceFileDependencies;
 
   /**
    * <p>
@@ -55,9 +72,41 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
    * </p>
    */
   public CompilerRequestorImpl() {
+    this(false);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompilerRequestorImpl}.
+   * </p>
+   * 
+   * @param recordDependencies
+   *          <code>true</code> if the dependencies of the compiled source files should be recorded. In this case the
+   *          compiler has to produce reference information.
+   */
+  public CompilerRequestorImpl(boolean recordDependencies) {
+    this(recordDependencies, new ClassFileWriter());
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompilerRequestorImpl}.
+   * </p>
+   * 
+   * @param recordDependencies
+   *          <code>true</code> if the dependencies of the compiled source files should be recorded. In this case the
+   *          compiler has to produce reference information.
+   * @param classFileWriter
+   *          the class file writer that writes the compiled class files
+   */
+  public CompilerRequestorImpl(boolean recordDependencies, ClassFileWriter classFileWriter) {
+    Assure.notNull("classFileWriter", classFileWriter);
     this._compilationSuccessful = true;
     this._categorizedProblems = new LinkedList<CategorizedProblem>();
     this._compiledClassFiles = new Hashtable<String, File>();
+    this._classFileWriter = classFileWriter;
+    this._recordDependencies = recordDependencies;
+    this._sourceFileDependencies = Collections.synchronizedList(new LinkedList<SourceFileDependencies>());
   }
 
   /**
@@ -99,6 +148,8 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
 
     if (!result.hasErrors()) {
       ClassFile[] classFiles = result.getClassFiles();
+      List<String> classFileNames = new ArrayList<String>(classFiles.length);
+      List<String> abiDigests = new ArrayList<String>(classFiles.length);
       for (ClassFile classFile2 : classFiles) {
         char[][] compoundName = classFile2.getCompoundName();
         StringBuffer classFileName = new StringBuffer();
@@ -110,20 +161,21 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
         }
         classFileName.append(".class");
         File classFile = new File(destinationDirectory, classFileName.toString());
-        File classDir = classFile.getParentFile();
-        if (!classDir.exists()) {
-          classDir.mkdirs();
-        }
-        try {
-          A4ELogging.debug("writing class file: '%s'", classFile);
-          Utilities.writeFile(classFile, classFile2.getBytes());
-          this._compiledClassFiles.put(classFileName.toString(), classFile);
-        } catch (Ant4EclipseException ioe) {
-          A4ELogging.error("Could not write classfile '%s': %s", classFileName.toString(), ioe.toString());
-          ioe.printStackTrace();
-          this._compilationSuccessful = false;
+        this._classFileWriter.write(destinationDirectory, classFileName.toString(), classFile2.getBytes());
+        this._compiledClassFiles.put(classFileName.toString(), classFile);
+        classFileNames.add(classFileName.toString());
+        if (this._recordDependencies) {
+          abiDigests.add(AbiDigest.compute(classFile2.getBytes()));
         }
       }
+
+      // record the dependencies
+      if (this._recordDependencies) {
+        this._sourceFileDependencies.add(new SourceFileDependencies(sourceFile.getSourceFile(), destinationDirectory,
+            classFileNames.toArray(new String[classFileNames.size()]), abiDigests.toArray(new String[abiDigests
+                .size()]), toStrings(result.qualifiedReferences), CharOperation
+                .toStrings(result.simpleNameReferences), CharOperation.toStrings(result.rootReferences)));
+      }
     } else {
       this._compilationSuccessful = false;
     }
@@ -134,6 +186,35 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
     }
   }
 
+  /**
+   * <p>
+   * Waits until all class files have been written. Class files that couldn't be written are removed from the compiled
+   * class files, and the dependencies of their source files are discarded, so they will be compiled again next time.
+   * </p>
+   */
+  public void close() {
+    Map<File, String> failures = this._classFileWriter.close();
+    if (failures.isEmpty()) {
+      return;
+    }
+    this._compilationSuccessful = false;
+    for (Map.Entry<File, String> failure : failures.entrySet()) {
+      A4ELogging.error("Could not write classfile '%s': %s", failure.getKey(), failure.getValue());
+      this._compiledClassFiles.values().remove(failure.getKey());
+      synchronized (this._sourceFileDependencies) {
+        for (Iterator<SourceFileDependencies> iterator = this._sourceFileDependencies.iterator(); iterator.hasNext();) {
+          SourceFileDependencies dependencies = iterator.next();
+          for (String classFileName : dependencies.getClassFileNames()) {
+            if (new File(dependencies.getDestinationFolder(), classFileName).equals(failure.getKey())) {
+              iterator.remove();
+              break;
+            }
+          }
+        }
+      }
+    }
+  }
+
   /**
    * <p>
    * Returns <code>true</code> if the compilation was successful, <code>false</code> otherwise.
@@ -155,4 +236,35 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
   public CategorizedProblem[] getCategorizedProblems() {
     return this._categorizedProblems.toArray(new CategorizedProblem[0]);
   }
+
+  /**
+   * <p>
+   * Returns the dependencies of the source files that have been compiled successfully.
+   * </p>
+   * 
+   * @return the dependencies of the source files that have been compiled successfully.
+   */
+  public SourceFileDependencies[] getSourceFileDependencies() {
+    return this._sourceFileDependencies.toArray(new SourceFileDependencies[0]);
+  }
+
+  /**
+   * <p>
+   * Converts the given qualified names to dot separated strings.
+   * </p>
+   * 
+   * @param names
+   *          the qualified names (maybe <code>null</code>)
+   * @return the names as dot separated strings.
+   */
+  private static String[] toStrings(char[][][] names) {
+    if (names == null) {
+      return new String[0];
+    }
+    String[] result = new String[names.length];
+    for (int i = 0; i < names.length; i++) {
+      result[i] = CharOperation.toString(names[i]);
+    }
+    return result;
+  }
 }
@@ -11,24 +11,53 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.ecj.internal.tools;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.ConcurrencyHelper;
+import org.ant4eclipse.lib.core.util.PerformanceLogging;
+import org.ant4eclipse.lib.core.util.StopWatchHandle;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.CompileStatistics;
 import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.lib.jdt.ecj.PipelineConfiguration;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCache;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.TypeLookupCache;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.ClassFile;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
 import org.eclipse.jdt.internal.compiler.Compiler;
 import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
+import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
 import org.eclipse.jdt.internal.compiler.IErrorHandlingPolicy;
 import org.eclipse.jdt.internal.compiler.IProblemFactory;
 import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
 import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
 import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.impl.CompilerStats;
 import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
 
 /**
@@ -37,61 +66,565 @@ import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
  * <ul>
  * <li>setting the compiler options as specified in the eclipse project or in the global settings</li>
  * <li>setting the java runtime environment as specified in the eclipse project</li>
+ * <li>compiling multiple projects in parallel (see {@link #compile(List)})</li>
+ * <li>reading, processing and chunking the source files of a single project as specified by its
+ * {@link PipelineConfiguration}</li>
  * </ul>
+ * <p>
+ * The number of threads used to compile multiple projects can be specified with the system property
+ * <code>ant4eclipse.ecj.threads</code> and defaults to the number of available processors.
+ * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
 public final class EcjAdapterImpl implements EcjAdapter {
 
+  /** the number of threads used to compile multiple projects */
+  private static final int             THREADS       = Math.max(1, Integer.getInteger("ant4eclipse.ecj.threads",
+                                                         Runtime.getRuntime().availableProcessors()).intValue());
+
+  /** measures the compile jobs */
+  private static final StopWatchHandle COMPILE       = PerformanceLogging.createHandle(EcjAdapterImpl.class,
+                                                         "compile");
+
+  /** measures the compilation of the chunks of a compile job */
+  private static final StopWatchHandle COMPILE_CHUNK = PerformanceLogging.createHandle(EcjAdapterImpl.class,
+                                                         "compileChunk");
+
+  /** measures the parallel reading of the source files of a chunk */
+  private static final StopWatchHandle READ          = PerformanceLogging.createHandle(EcjAdapterImpl.class, "read");
+
+  /** measures the parsing of the source files of a chunk */
+  private static final StopWatchHandle PARSE         = PerformanceLogging.createHandle(EcjAdapterImpl.class, "parse");
+
+  /** measures the resolving, analyzing and generating of a compilation unit */
+  private static final StopWatchHandle PROCESS       = PerformanceLogging.createHandle(EcjAdapterImpl.class,
+                                                         "process");
+
   /**
    * {@inheritDoc}
    */
   public CompileJobResult compile(CompileJobDescription description) {
     Assure.notNull("description", description);
 
-    // create the name environment
-    INameEnvironment nameEnvironment = new NameEnvironmentImpl(description.getClassFileLoader());
+    // the compile job changes its output folders, so cached class file loaders have to be checked again
+    ClassFileLoaderCache.getInstance().beginCompileJob();
+    return compile(description, description.getClassFileLoader());
+  }
 
-    // get the compiler options
-    Map<String, String> compilerOptions = description.getCompilerOptions();
+  /**
+   * {@inheritDoc}
+   */
+  public List<CompileJobResult> compile(final List<CompileJobDescription> descriptions) {
+    Assure.notNull("descriptions", descriptions);
 
-    // retrieve the compilation units
-    ICompilationUnit[] sources = getCompilationUnits(description.getSourceFiles());
+    // the compile jobs change their output folders, so cached class file loaders have to be checked again
+    ClassFileLoaderCache.getInstance().beginCompileJob();
+    final int count = descriptions.size();
+    final CompileJobResult[] results = new CompileJobResult[count];
 
-    // create the error handling policy
-    IErrorHandlingPolicy policy = DefaultErrorHandlingPolicies.proceedWithAllProblems();
+    // Step 1: determine the destination folders and the class path of each compile job
+    List<Set<String>> destinationFolders = new ArrayList<Set<String>>(count);
+    List<Set<String>> classpaths = new ArrayList<Set<String>>(count);
+    for (CompileJobDescription description : descriptions) {
+      Assure.notNull("description", description);
+      Set<String> folders = new HashSet<String>();
+      for (SourceFile sourceFile : description.getSourceFiles()) {
+        folders.add(getPath(sourceFile.getDestinationFolder()));
+      }
+      destinationFolders.add(folders);
+      Set<String> classpath = new HashSet<String>();
+      for (File entry : description.getClassFileLoader().getClasspath()) {
+        classpath.add(getPath(entry));
+      }
+      classpaths.add(classpath);
+    }
 
-    // create the problem factory
-    IProblemFactory problemFactory = new DefaultProblemFactory(Locale.getDefault());
+    // Step 2: compute the dependencies between the compile jobs
+    final List<List<File>> upstreamFolders = new ArrayList<List<File>>(count);
+    List<List<Integer>> dependents = new ArrayList<List<Integer>>(count);
+    int[] pending = new int[count];
+    for (int i = 0; i < count; i++) {
+      upstreamFolders.add(new LinkedList<File>());
+      dependents.add(new LinkedList<Integer>());
+    }
+    for (int i = 0; i < count; i++) {
+      for (int j = 0; j < count; j++) {
+        if (i == j) {
+          continue;
+        }
+        boolean dependsOn = false;
+        for (String folder : destinationFolders.get(j)) {
+          if (classpaths.get(i).contains(folder)) {
+            upstreamFolders.get(i).add(new File(folder));
+            dependsOn = true;
+          }
+        }
+        if (dependsOn) {
+          dependents.get(j).add(Integer.valueOf(i));
+          pending[i]++;
+        }
+      }
+    }
 
-    // create the compiler requestor
-    CompilerRequestorImpl requestor = new CompilerRequestorImpl();
+    // Step 3: execute the compile jobs as soon as the compile jobs they depend on have been finished
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(THREADS, Math.max(1, count)));
+    CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(executor);
+    boolean[] started = new boolean[count];
+    int running = 0;
+    int finished = 0;
+    try {
+      while (finished < count) {
 
-    // create the compiler
-    Compiler compiler = new Compiler(nameEnvironment, policy, new CompilerOptions(compilerOptions), requestor,
-        problemFactory);
+        // start all compile jobs that are ready
+        for (int i = 0; i < count; i++) {
+          if (!started[i] && (pending[i] == 0)) {
+            started[i] = true;
+            running++;
+            completionService.submit(createCompileTask(descriptions, upstreamFolders, results, i));
+          }
+        }
+
+        // break cyclic dependencies: start the first compile job that hasn't been started yet
+        if (running == 0) {
+          for (int i = 0; i < count; i++) {
+            if (!started[i]) {
+              A4ELogging.warn("Cyclic dependency between compile jobs detected, starting compile job %d.", Integer
+                  .valueOf(i + 1));
+              started[i] = true;
+              running++;
+              completionService.submit(createCompileTask(descriptions, upstreamFolders, results, i));
+              break;
+            }
+          }
+        }
 
-    if (Boolean.getBoolean("a4e.ecj.useMultiThreading")) {
-      compiler.useSingleThread = false;
+        // wait for the next compile job to finish
+        int index = ConcurrencyHelper.take(completionService).intValue();
+        running--;
+        finished++;
+        for (Integer dependent : dependents.get(index)) {
+          pending[dependent.intValue()]--;
+        }
+      }
+    } finally {
+      executor.shutdown();
     }
-    A4ELogging.debug("ecj useSingleThread: " + compiler.useSingleThread);
 
-    // setup a batch annotation processor
-    setupAnnotationProcessor(compiler);
+    List<CompileJobResult> result = new ArrayList<CompileJobResult>(count);
+    for (CompileJobResult compileJobResult : results) {
+      result.add(compileJobResult);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Creates the task that executes the compile job with the given index.
+   * </p>
+   * 
+   * @param descriptions
+   *          the descriptions of all compile jobs
+   * @param upstreamFolders
+   *          the destination folders of other compile jobs that are contained in the class path of each compile job
+   * @param results
+   *          the array that receives the result
+   * @param index
+   *          the index of the compile job
+   * @return the task that executes the compile job with the given index.
+   */
+  private Callable<Integer> createCompileTask(final List<CompileJobDescription> descriptions,
+      final List<List<File>> upstreamFolders, final CompileJobResult[] results, final int index) {
+    return new Callable<Integer>() {
+      public Integer call() {
+        CompileJobDescription description = descriptions.get(index);
+        long start = System.currentTimeMillis();
+        results[index] = compile(description, getClassFileLoader(description, upstreamFolders.get(index)));
+        A4ELogging.info("Compile job %d of %d (%d source files) finished in %d ms.", Integer.valueOf(index + 1),
+            Integer.valueOf(descriptions.size()), Integer.valueOf(description.getSourceFiles().length), Long
+                .valueOf(System.currentTimeMillis() - start));
+        return Integer.valueOf(index);
+      }
+    };
+  }
+
+  /**
+   * <p>
+   * Returns the {@link ClassFileLoader} for the given compile job. The class file loader of the description has been
+   * created before the compile jobs it depends on have written their class files. So new class file loaders for the
+   * destination folders of these compile jobs are created and take precedence over the class file loader of the
+   * description.
+   * </p>
+   * 
+   * @param description
+   *          the description of the compile job
+   * @param upstreamFolders
+   *          the destination folders of other compile jobs that are contained in the class path of the compile job
+   * @return the {@link ClassFileLoader} for the given compile job.
+   */
+  private ClassFileLoader getClassFileLoader(CompileJobDescription description, List<File> upstreamFolders) {
+    if (upstreamFolders.isEmpty()) {
+      return description.getClassFileLoader();
+    }
+    List<ClassFileLoader> classFileLoaders = new LinkedList<ClassFileLoader>();
+    for (File folder : upstreamFolders) {
+      classFileLoaders.add(ClassFileLoaderFactory.createClasspathClassFileLoader(folder, EcjAdapter.PROJECT));
+    }
+    classFileLoaders.add(description.getClassFileLoader());
+    return ClassFileLoaderFactory.createCompoundClassFileLoader(classFileLoaders
+        .toArray(new ClassFileLoader[classFileLoaders.size()]));
+  }
+
+  /**
+   * <p>
+   * Returns the canonical path of the given file, used to compare class path entries and destination folders.
+   * </p>
+   * 
+   * @param file
+   *          the file
+   * @return the canonical path of the given file.
+   */
+  private static String getPath(File file) {
+    String path = Utilities.getCanonicalFile(file).getAbsolutePath();
+    // for windows the case makes no difference
+    return Utilities.isWindows() ? path.toLowerCase() : path;
+  }
+
+  /**
+   * <p>
+   * Performs a compile based on the given {@link CompileJobDescription}, using the given {@link ClassFileLoader}. The
+   * source files are compiled as specified by the {@link PipelineConfiguration} of the description. If the source
+   * files have been compiled in chunks and the compilation reported errors, all source files are compiled again at
+   * once: a chunk only finds the source files of the following chunks by their primary type names, so the errors might
+   * be caused by the chunking itself.
+   * </p>
+   * 
+   * @param description
+   *          the {@link CompileJobDescription} that describes the compile job.
+   * @param classFileLoader
+   *          the {@link ClassFileLoader} used to resolve the referenced types.
+   * @return the result of the compile job.
+   */
+  private CompileJobResult compile(CompileJobDescription description, ClassFileLoader classFileLoader) {
+    COMPILE.start();
+    try {
+      return doCompile(description, classFileLoader);
+    } finally {
+      COMPILE.stop();
+    }
+  }
+
+  /**
+   * <p>
+   * Compiles the given compile job (see {@link #compile(CompileJobDescription, ClassFileLoader)}).
+   * </p>
+   * 
+   * @param description
+   *          the {@link CompileJobDescription} that describes the compile job.
+   * @param classFileLoader
+   *          the {@link ClassFileLoader} used to resolve the referenced types.
+   * @return the result of the compile job.
+   */
+  private CompileJobResult doCompile(CompileJobDescription description, ClassFileLoader classFileLoader) {
+    long start = System.currentTimeMillis();
+
+    // create the name environment
+    TypeLookupCache typeLookupCache = ClassFileLoaderCache.getInstance().getTypeLookupCache(classFileLoader);
+    INameEnvironment nameEnvironment = new NameEnvironmentImpl(classFileLoader, typeLookupCache);
+    long typeLookupHits = typeLookupCache.getHits();
+    long typeLookupMisses = typeLookupCache.getMisses();
+
+    // get the pipeline configuration
+    PipelineConfiguration pipeline = description.getPipelineConfiguration();
+    A4ELogging.debug("ecj pipeline: %s", pipeline);
+
+    // retrieve the compilation units and split them into chunks
+    List<CompilationUnitImpl[]> chunks = createChunks(getCompilationUnits(description.getSourceFiles()), pipeline
+        .getChunkSize());
 
     // compile
-    compiler.compile(sources);
+    CompilerStats stats = new CompilerStats();
+    int[] counters = new int[2];
+    ClassFileWriter classFileWriter = new ClassFileWriter(pipeline.getMaxThreads());
+    CompilerRequestorImpl requestor = compileChunks(description, nameEnvironment, chunks, classFileWriter, stats,
+        counters);
+    long writeTime = classFileWriter.getWriteTime();
+    if ((chunks.size() > 1) && hasErrors(requestor)) {
+      A4ELogging.info("Compilation in %d chunks reported errors, compiling all source files at once.", Integer
+          .valueOf(chunks.size()));
+      chunks = createChunks(getCompilationUnits(description.getSourceFiles()), 0);
+      classFileWriter = new ClassFileWriter(pipeline.getMaxThreads());
+      requestor = compileChunks(description, nameEnvironment, chunks, classFileWriter, stats, counters);
+      writeTime += classFileWriter.getWriteTime();
+    }
 
     // create the compile job result
     CompileJobResultImpl result = new CompileJobResultImpl();
     result.setSucceeded(requestor.isCompilationSuccessful());
     result.setCategorizedProblems(requestor.getCategorizedProblems());
     result.setCompiledClassFiles(requestor.getCompiledClassFiles());
+    result.setSourceFileDependencies(requestor.getSourceFileDependencies());
+    result.setStatistics(new CompileStatistics(stats.parseTime, stats.resolveTime, stats.analyzeTime,
+        stats.generateTime, writeTime, System.currentTimeMillis() - start, counters[0], stats.lineCount, counters[1]));
+    A4ELogging.debug("ecj statistics: %s", result.getStatistics());
+
+    // report the type lookups of this compile job once (the cache is shared with other jobs using the same loader)
+    PerformanceLogging.count(EcjAdapterImpl.class, "typeLookupCache-hits", typeLookupCache.getHits() - typeLookupHits);
+    PerformanceLogging.count(EcjAdapterImpl.class, "typeLookupCache-misses", typeLookupCache.getMisses()
+        - typeLookupMisses);
 
     // return the result
     return result;
   }
 
+  /**
+   * <p>
+   * Compiles the given chunks one after another.
+   * </p>
+   * 
+   * @param description
+   *          the {@link CompileJobDescription} that describes the compile job.
+   * @param nameEnvironment
+   *          the name environment
+   * @param chunks
+   *          the chunks of compilation units
+   * @param classFileWriter
+   *          the class file writer
+   * @param stats
+   *          the statistics that are updated with the statistics of the compiler
+   * @param counters
+   *          the counters that are updated with the number of compiled compilation units and the number of chunks
+   * @return the compiler requestor that has received the results.
+   */
+  private CompilerRequestorImpl compileChunks(CompileJobDescription description, INameEnvironment nameEnvironment,
+      List<CompilationUnitImpl[]> chunks, ClassFileWriter classFileWriter, CompilerStats stats, final int[] counters) {
+
+    // create the compiler requestor
+    final CompilerRequestorImpl requestor = new CompilerRequestorImpl(description.isRecordDependencies(),
+        classFileWriter);
+
+    // the chunks see the class files compiled by the previous chunks and the source files of the following ones
+    final ChunkNameEnvironment chunkNameEnvironment = chunks.size() > 1 ? new ChunkNameEnvironment(nameEnvironment,
+        getCompilationUnits(chunks)) : null;
+    ICompilerRequestor compilerRequestor = new ICompilerRequestor() {
+      public void acceptResult(CompilationResult result) {
+        synchronized (counters) {
+          counters[0]++;
+        }
+        if (chunkNameEnvironment != null) {
+          for (ClassFile classFile : result.getClassFiles()) {
+            chunkNameEnvironment.addClassFile(classFile.getCompoundName(), classFile.getBytes());
+          }
+        }
+        requestor.acceptResult(result);
+      }
+    };
+
+    // compile (and wait until all class files have been written)
+    try {
+      for (int i = 0; i < chunks.size(); i++) {
+        List<CompilationUnitImpl> compilationUnits = new ArrayList<CompilationUnitImpl>(chunks.get(i).length);
+        for (CompilationUnitImpl compilationUnit : chunks.get(i)) {
+          if ((chunkNameEnvironment == null) || chunkNameEnvironment.claim(compilationUnit)) {
+            compilationUnits.add(compilationUnit);
+          }
+        }
+        // release the compilation units (and their contents) of this chunk
+        chunks.set(i, null);
+        if (!compilationUnits.isEmpty()) {
+          COMPILE_CHUNK.start();
+          try {
+            compileChunk(description, chunkNameEnvironment != null ? chunkNameEnvironment : nameEnvironment,
+                compilerRequestor, compilationUnits.toArray(new CompilationUnitImpl[compilationUnits.size()]), stats);
+          } finally {
+            COMPILE_CHUNK.stop();
+          }
+          counters[1]++;
+        }
+      }
+    } finally {
+      requestor.close();
+    }
+    return requestor;
+  }
+
+  /**
+   * <p>
+   * Compiles the given compilation units with a new compiler.
+   * </p>
+   * 
+   * @param description
+   *          the {@link CompileJobDescription} that describes the compile job.
+   * @param nameEnvironment
+   *          the name environment
+   * @param requestor
+   *          the compiler requestor
+   * @param compilationUnits
+   *          the compilation units
+   * @param stats
+   *          the statistics that are updated with the statistics of the compiler
+   */
+  private void compileChunk(CompileJobDescription description, INameEnvironment nameEnvironment,
+      ICompilerRequestor requestor, CompilationUnitImpl[] compilationUnits, CompilerStats stats) {
+
+    PipelineConfiguration pipeline = description.getPipelineConfiguration();
+
+    // read the source files in parallel
+    if (pipeline.isParallelRead()) {
+      READ.start();
+      try {
+        preloadContents(compilationUnits, pipeline.getMaxThreads());
+      } finally {
+        READ.stop();
+      }
+    }
+
+    // create the error handling policy
+    IErrorHandlingPolicy policy = DefaultErrorHandlingPolicies.proceedWithAllProblems();
+
+    // create the problem factory
+    IProblemFactory problemFactory = new DefaultProblemFactory(Locale.getDefault());
+
+    // create the compiler options (reference information is needed to record the dependencies)
+    CompilerOptions options = new CompilerOptions(description.getCompilerOptions());
+    options.produceReferenceInfo = description.isRecordDependencies();
+
+    // create the compiler
+    Compiler compiler = new PipelineCompiler(nameEnvironment, policy, options, requestor, problemFactory);
+    compiler.useSingleThread = !pipeline.isParallelProcessing();
+
+    // setup a batch annotation processor
+    setupAnnotationProcessor(compiler);
+
+    // compile
+    compiler.compile(compilationUnits);
+
+    stats.parseTime += compiler.stats.parseTime;
+    stats.resolveTime += compiler.stats.resolveTime;
+    stats.analyzeTime += compiler.stats.analyzeTime;
+    stats.generateTime += compiler.stats.generateTime;
+    stats.lineCount += compiler.stats.lineCount;
+  }
+
+  /**
+   * <p>
+   * Reads the contents of the given compilation units in parallel. Compilation units that can't be read are skipped,
+   * so the compiler reports the problem when it requests their contents.
+   * </p>
+   * 
+   * @param compilationUnits
+   *          the compilation units
+   * @param maxThreads
+   *          the maximum number of threads
+   */
+  private void preloadContents(CompilationUnitImpl[] compilationUnits, int maxThreads) {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxThreads,
+        compilationUnits.length)));
+    try {
+      for (final CompilationUnitImpl compilationUnit : compilationUnits) {
+        executor.execute(new Runnable() {
+          public void run() {
+            try {
+              compilationUnit.preloadContents();
+            } catch (RuntimeException e) {
+              A4ELogging.debug("Could not preload '%s': %s", new String(compilationUnit.getFileName()), e);
+            }
+          }
+        });
+      }
+    } finally {
+      executor.shutdown();
+    }
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        // continue waiting
+      }
+    } catch (InterruptedException e) {
+      throw ConcurrencyHelper.interrupted(e);
+    }
+  }
+
+  /**
+   * <p>
+   * Splits the given compilation units into chunks of roughly the given size. The compilation units of a package are
+   * always put into the same chunk.
+   * </p>
+   * 
+   * @param compilationUnits
+   *          the compilation units
+   * @param chunkSize
+   *          the maximum number of compilation units per chunk (0 for a single chunk)
+   * @return the chunks.
+   */
+  private List<CompilationUnitImpl[]> createChunks(CompilationUnitImpl[] compilationUnits, int chunkSize) {
+    List<CompilationUnitImpl[]> result = new ArrayList<CompilationUnitImpl[]>();
+    if ((chunkSize <= 0) || (compilationUnits.length <= chunkSize)) {
+      result.add(compilationUnits);
+      return result;
+    }
+
+    // group the compilation units by package
+    Map<String, List<CompilationUnitImpl>> packages = new TreeMap<String, List<CompilationUnitImpl>>();
+    for (CompilationUnitImpl compilationUnit : compilationUnits) {
+      String packageName = new String(CharOperation.concatWith(compilationUnit.getPackageName(), '.'));
+      List<CompilationUnitImpl> units = packages.get(packageName);
+      if (units == null) {
+        units = new ArrayList<CompilationUnitImpl>();
+        packages.put(packageName, units);
+      }
+      units.add(compilationUnit);
+    }
+
+    // fill the chunks
+    List<CompilationUnitImpl> chunk = new ArrayList<CompilationUnitImpl>();
+    for (List<CompilationUnitImpl> units : packages.values()) {
+      if (!chunk.isEmpty() && (chunk.size() + units.size() > chunkSize)) {
+        result.add(chunk.toArray(new CompilationUnitImpl[chunk.size()]));
+        chunk.clear();
+      }
+      chunk.addAll(units);
+    }
+    if (!chunk.isEmpty()) {
+      result.add(chunk.toArray(new CompilationUnitImpl[chunk.size()]));
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns all compilation units of the given chunks.
+   * </p>
+   * 
+   * @param chunks
+   *          the chunks
+   * @return all compilation units of the given chunks.
+   */
+  private CompilationUnitImpl[] getCompilationUnits(List<CompilationUnitImpl[]> chunks) {
+    List<CompilationUnitImpl> result = new ArrayList<CompilationUnitImpl>();
+    for (CompilationUnitImpl[] chunk : chunks) {
+      result.addAll(Arrays.asList(chunk));
+    }
+    return result.toArray(new CompilationUnitImpl[result.size()]);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the compiler reported errors.
+   * </p>
+   * 
+   * @param requestor
+   *          the compiler requestor
+   * @return <code>true</code> if the compiler reported errors.
+   */
+  private boolean hasErrors(CompilerRequestorImpl requestor) {
+    for (CategorizedProblem problem : requestor.getCategorizedProblems()) {
+      if (problem.isError()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void setupAnnotationProcessor(Compiler compiler) {
     // compiler.annotationProcessorManager = Utilities
     // .newInstance("org.eclipse.jdt.internal.compiler.apt.dispatch.BatchAnnotationProcessorManager");
@@ -109,10 +642,10 @@ public final class EcjAdapterImpl implements EcjAdapter {
    *          the source files
    * @return the compilation units for the given source files.
    */
-  private ICompilationUnit[] getCompilationUnits(SourceFile[] sourceFiles) {
+  private CompilationUnitImpl[] getCompilationUnits(SourceFile[] sourceFiles) {
 
     // create result list
-    List<ICompilationUnit> result = new LinkedList<ICompilationUnit>();
+    List<CompilationUnitImpl> result = new LinkedList<CompilationUnitImpl>();
 
     // iterate over source folders
     for (SourceFile sourceFile : sourceFiles) {
@@ -125,6 +658,66 @@ public final class EcjAdapterImpl implements EcjAdapter {
     }
 
     // return the result
-    return result.toArray(new ICompilationUnit[result.size()]);
+    return result.toArray(new CompilationUnitImpl[result.size()]);
+  }
+
+  /**
+   * <p>
+   * A {@link Compiler} that doesn't start its own threads to read the source files. The source files are read by
+   * {@link EcjAdapterImpl#preloadContents(CompilationUnitImpl[], int)} instead, so the number of threads is limited by
+   * the {@link PipelineConfiguration}.
+   * </p>
+   */
+  private static final class PipelineCompiler extends Compiler {
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link PipelineCompiler}.
+     * </p>
+     * 
+     * @param nameEnvironment
+     *          the name environment
+     * @param policy
+     *          the error handling policy
+     * @param options
+     *          the compiler options
+     * @param requestor
+     *          the compiler requestor
+     * @param problemFactory
+     *          the problem factory
+     */
+    public PipelineCompiler(INameEnvironment nameEnvironment, IErrorHandlingPolicy policy, CompilerOptions options,
+        ICompilerRequestor requestor, IProblemFactory problemFactory) {
+      super(nameEnvironment, policy, options, requestor, problemFactory);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void internalBeginToCompile(ICompilationUnit[] sourceUnits, int maxUnits) {
+      boolean useSingleThread = this.useSingleThread;
+      this.useSingleThread = true;
+      PARSE.start();
+      try {
+        super.internalBeginToCompile(sourceUnits, maxUnits);
+      } finally {
+        PARSE.stop();
+        this.useSingleThread = useSingleThread;
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process(CompilationUnitDeclaration unit, int i) {
+      PROCESS.start();
+      try {
+        super.process(unit, i);
+      } finally {
+        PROCESS.stop();
+      }
+    }
   }
 }
\ No newline at end of file
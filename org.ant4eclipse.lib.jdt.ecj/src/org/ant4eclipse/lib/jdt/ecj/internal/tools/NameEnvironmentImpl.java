@@ -17,6 +17,9 @@ import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.jdt.ecj.ClassFile;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCache;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.TypeLookupCache;
+import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
 
@@ -24,6 +27,11 @@ import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
  * <p>
  * Adapter class to utilize class file loaders in the eclipse java compiler.
  * </p>
+ * <p>
+ * The results of all type and package lookups are remembered in a {@link TypeLookupCache} that is shared by all name
+ * environments using the same class file loader. The hits and misses are reported once per compile job via
+ * {@link org.ant4eclipse.lib.core.util.PerformanceLogging}.
+ * </p>
  * 
  * @author Gerd Wuetherich (gerd@gerd-wuetherich.de)
  * @author Nils Hartmann (nils@nilshartmann.net)
@@ -44,17 +52,37 @@ public class NameEnvironmentImpl implements INameEnvironment {
   /** used to find binary type as requested by the compiler */
   private ClassFileLoader _classFileLoader;
 
+  /** the results of previous lookups */
+  private TypeLookupCache _typeLookupCache;
+
   /**
    * <p>
-   * Create a new instance of type {@link NameEnvironmentImpl}.
+   * Create a new instance of type {@link NameEnvironmentImpl}. The {@link TypeLookupCache} for the given class file
+   * loader is obtained from the {@link ClassFileLoaderCache}.
    * </p>
    * 
    * @param classFileLoader
    *          the class file loader to use.
    */
   public NameEnvironmentImpl(ClassFileLoader classFileLoader) {
+    this(classFileLoader, ClassFileLoaderCache.getInstance().getTypeLookupCache(classFileLoader));
+  }
+
+  /**
+   * <p>
+   * Create a new instance of type {@link NameEnvironmentImpl}.
+   * </p>
+   * 
+   * @param classFileLoader
+   *          the class file loader to use.
+   * @param typeLookupCache
+   *          the cache for the lookup results of the given class file loader.
+   */
+  public NameEnvironmentImpl(ClassFileLoader classFileLoader, TypeLookupCache typeLookupCache) {
     Assure.notNull("classFileLoader", classFileLoader);
+    Assure.notNull("typeLookupCache", typeLookupCache);
     this._classFileLoader = classFileLoader;
+    this._typeLookupCache = typeLookupCache;
 
     if (DEBUG_ALL || DEBUG_TYPE_NOT_FOUND) {
       A4ELogging.info("NameEnvironment tracing enabled.");
@@ -73,20 +101,7 @@ public class NameEnvironmentImpl implements INameEnvironment {
    * {@inheritDoc}
    */
   public NameEnvironmentAnswer findType(char[][] compoundTypeName) {
-
-    // convert char array to string(buffer)
-    StringBuffer buffer = new StringBuffer();
-    for (int i = 0; i < compoundTypeName.length; i++) {
-      buffer.append(new String(compoundTypeName[i]));
-      if (i < compoundTypeName.length - 1) {
-        buffer.append(".");
-      }
-    }
-
-    // find class
-    NameEnvironmentAnswer answer = findClass(buffer.toString());
-    return answer;
-
+    return findType(null, compoundTypeName);
   }
 
   /**
@@ -94,15 +109,20 @@ public class NameEnvironmentImpl implements INameEnvironment {
    */
   public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
 
-    StringBuffer result = new StringBuffer();
-    if (packageName != null) {
-      for (char[] element : packageName) {
-        result.append(new String(element)).append(".");
+    // the cache normalises both kinds of names, so 'findType(char[][])' passes the compound name as package name
+    TypeLookupCache.Result result = this._typeLookupCache.getType(packageName, typeName);
+    if (result == null) {
+      if (typeName == null) {
+        // split the compound name passed to 'findType(char[][])'
+        result = lookupType(CharOperation.subarray(packageName, 0, packageName.length - 1),
+            packageName[packageName.length - 1]);
+      } else {
+        result = lookupType(packageName, typeName);
       }
+      this._typeLookupCache.putType(packageName, typeName, result);
     }
-    result.append(new String(typeName));
 
-    return findClass(result.toString());
+    return createAnswer(result);
   }
 
   /**
@@ -117,16 +137,15 @@ public class NameEnvironmentImpl implements INameEnvironment {
    */
   public boolean isPackage(char[][] parentPackageName, char[] packageName) {
 
-    String qualifiedPackageName = toJavaName(parentPackageName);
-    if (qualifiedPackageName.length() > 0) {
-      qualifiedPackageName += "." + new String(packageName);
-    } else {
-      qualifiedPackageName = new String(packageName);
+    Boolean cached = this._typeLookupCache.getPackage(parentPackageName, packageName);
+    if (cached != null) {
+      return cached.booleanValue();
     }
 
-    boolean packageFound = this._classFileLoader.hasPackage(qualifiedPackageName);
+    boolean packageFound = this._classFileLoader.hasPackage(parentPackageName, packageName);
 
     if (DEBUG_ALL) {
+      String qualifiedPackageName = toJavaName(parentPackageName, packageName);
       if (packageFound) {
         A4ELogging.info("Package '%s' found...", qualifiedPackageName);
       } else {
@@ -134,6 +153,7 @@ public class NameEnvironmentImpl implements INameEnvironment {
       }
     }
 
+    this._typeLookupCache.putPackage(parentPackageName, packageName, packageFound);
     return packageFound;
   }
 
@@ -156,65 +176,97 @@ public class NameEnvironmentImpl implements INameEnvironment {
    * @return a {@link NameEnvironmentAnswer}
    */
   protected NameEnvironmentAnswer findClass(ClassName className) {
+    return createAnswer(lookupType(CharOperation.splitOn('.', className.getPackageName().toCharArray()), className
+        .getClassName().toCharArray()));
+  }
+
+  /**
+   * <p>
+   * Looks up the given class using the class file loader. Binary types are preferred over source files. The name of
+   * the class is only converted to a string if tracing has been enabled.
+   * </p>
+   * 
+   * @param packageName
+   *          the segments of the package name
+   * @param typeName
+   *          the name of the class without the package
+   * @return the result of the lookup, never <code>null</code>.
+   */
+  private TypeLookupCache.Result lookupType(char[][] packageName, char[] typeName) {
 
     // load class file from class file loader
-    ClassFile classFile = this._classFileLoader.loadClass(className);
+    ClassFile classFile = this._classFileLoader.loadClass(packageName, typeName);
 
     // return new NameEnvironmentAnswer if classFile was found
     if (classFile != null) {
 
       if (DEBUG_ALL) {
-        A4ELogging.info("Loading class '%s' from '%s'.", className.getQualifiedClassName(), classFile
+        A4ELogging.info("Loading class '%s' from '%s'.", toJavaName(packageName, typeName), classFile
             .getLibraryLocation());
       }
 
-      return new NameEnvironmentAnswer(classFile.getBinaryType(), (classFile.hasAccessRestriction() ? classFile
-          .getAccessRestriction() : null));
+      return new TypeLookupCache.Result(classFile, null);
     }
 
     // load source file from class file loader
-    // TODO: AccessRestictions for source files!!
-    SourceFile sourceFile = this._classFileLoader.loadSource(className);
+    SourceFile sourceFile = this._classFileLoader.loadSource(packageName, typeName);
 
     // load source file from class file loader
     if (sourceFile != null) {
 
       if (DEBUG_ALL) {
-        A4ELogging.info("Loading class '%s' as source from '%s'.", className.getQualifiedClassName(), sourceFile
+        A4ELogging.info("Loading class '%s' as source from '%s'.", toJavaName(packageName, typeName), sourceFile
             .getSourceFile().getAbsolutePath());
       }
 
-      // TODO: AccessRestictions for source files!!
-      return new NameEnvironmentAnswer(new CompilationUnitImpl(sourceFile), null);
+      return new TypeLookupCache.Result(null, sourceFile);
     }
 
     // else return null
     if (DEBUG_TYPE_NOT_FOUND) {
-      A4ELogging.info("Could not load class '%s'.", className.getQualifiedClassName());
+      A4ELogging.info("Could not load class '%s'.", toJavaName(packageName, typeName));
     }
+    return TypeLookupCache.NOT_FOUND;
+  }
+
+  /**
+   * <p>
+   * Creates the {@link NameEnvironmentAnswer} for the given lookup result.
+   * </p>
+   * 
+   * @param result
+   *          the result of a lookup
+   * @return a {@link NameEnvironmentAnswer} or <code>null</code> if the type hasn't been found.
+   */
+  private NameEnvironmentAnswer createAnswer(TypeLookupCache.Result result) {
+
+    ClassFile classFile = result.getClassFile();
+    if (classFile != null) {
+      return new NameEnvironmentAnswer(classFile.getBinaryType(), (classFile.hasAccessRestriction() ? classFile
+          .getAccessRestriction() : null));
+    }
+
+    SourceFile sourceFile = result.getSourceFile();
+    if (sourceFile != null) {
+      // TODO: AccessRestictions for source files!!
+      return new NameEnvironmentAnswer(new CompilationUnitImpl(sourceFile), null);
+    }
+
     return null;
   }
 
   /**
    * <p>
-   * Converts the given char array to a java name (e.g. "net.sf.ant4eclipse").
+   * Converts the given char arrays to a java name (e.g. "net.sf.ant4eclipse").
    * </p>
    * 
    * @param array
-   *          the array to convert.
-   * @return the
+   *          the leading segments (maybe <code>null</code>).
+   * @param name
+   *          the last segment (maybe <code>null</code>).
+   * @return the java name
    */
-  private static String toJavaName(char[][] array) {
-    StringBuffer result = new StringBuffer();
-
-    if (array != null) {
-      for (int i = 0; i < array.length; i++) {
-        result.append(new String(array[i]));
-        if (i < array.length - 1) {
-          result.append(".");
-        }
-      }
-    }
-    return result.toString();
+  private static String toJavaName(char[][] array, char[] name) {
+    return new String(CharOperation.concatWith(array, name, '.'));
   }
 }
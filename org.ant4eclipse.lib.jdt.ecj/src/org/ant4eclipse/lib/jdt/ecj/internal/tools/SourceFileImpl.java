@@ -39,14 +39,19 @@ public class SourceFileImpl implements SourceFile {
    * @param sourceFileName
    *          the name of the source file
    * @param destinationFolder
-   *          the destination folder
+   *          the destination folder (a directory or a jar or zip file)
    * @param encoding
    *          the file encoding
    */
   public SourceFileImpl(File sourceFolder, String sourceFileName, File destinationFolder, String encoding) {
     Assure.isDirectory("sourceFolder", sourceFolder);
     Assure.nonEmpty("sourceFileName", sourceFileName);
-    Assure.isDirectory("destinationFolder", destinationFolder);
+    if (ClassFileWriter.isArchive(destinationFolder)) {
+      // the archive is created when the class files are written
+      Assure.notNull("destinationFolder", destinationFolder);
+    } else {
+      Assure.isDirectory("destinationFolder", destinationFolder);
+    }
     Assure.nonEmpty("encoding", encoding);
     this._destinationFolder = destinationFolder;
     this._encoding = encoding;
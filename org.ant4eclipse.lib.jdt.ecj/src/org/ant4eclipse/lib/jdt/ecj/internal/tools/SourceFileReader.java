@@ -0,0 +1,143 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+/**
+ * <p>
+ * Reads the content of source files. The file is read with a single bulk read into a {@link ByteBuffer} and decoded
+ * directly into a character array, so there are no intermediate line strings and no buffer growing. The content is
+ * returned as is, i.e. the original line terminators are kept, so the line numbers and source positions reported by
+ * the compiler match the file on disc. A leading byte order mark is removed.
+ * </p>
+ * <p>
+ * Like a {@link java.io.InputStreamReader}, malformed input and unmappable characters are replaced instead of
+ * rejected.
+ * </p>
+ */
+public class SourceFileReader {
+
+  /** the byte order mark */
+  private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+  /**
+   * <p>
+   * Returns the content of the given source file.
+   * </p>
+   *
+   * @param sourceFile
+   *          the source file
+   * @param encoding
+   *          the encoding of the source file
+   * @return the content of the given source file.
+   * @throws IOException
+   *           if the file can't be read or the encoding isn't supported
+   */
+  public static char[] read(File sourceFile, String encoding) throws IOException {
+    Assure.notNull("sourceFile", sourceFile);
+    Assure.nonEmpty("encoding", encoding);
+
+    CharsetDecoder decoder = getCharset(encoding).newDecoder();
+    decoder.onMalformedInput(CodingErrorAction.REPLACE);
+    decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    ByteBuffer bytes = readBytes(sourceFile);
+
+    CharBuffer chars = CharBuffer.allocate((int) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte()));
+    decoder.decode(bytes, chars, true);
+    decoder.flush(chars);
+    chars.flip();
+
+    // skip the byte order mark
+    int offset = 0;
+    if (chars.hasRemaining() && (chars.get(0) == BYTE_ORDER_MARK)) {
+      offset = 1;
+    }
+
+    // the buffer has exactly the right size for single byte encodings
+    char[] result = chars.array();
+    int length = chars.limit() - offset;
+    if ((offset == 0) && (length == result.length)) {
+      return result;
+    }
+    char[] trimmed = new char[length];
+    System.arraycopy(result, offset, trimmed, 0, length);
+    return trimmed;
+  }
+
+  /**
+   * <p>
+   * Reads the content of the given file with a single bulk read.
+   * </p>
+   *
+   * @param file
+   *          the file
+   * @return a buffer containing the content of the file, ready to be read.
+   * @throws IOException
+   */
+  private static ByteBuffer readBytes(File file) throws IOException {
+    FileInputStream input = null;
+    try {
+      input = new FileInputStream(file);
+      FileChannel channel = input.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File '" + file + "' is too large.");
+      }
+      ByteBuffer result = ByteBuffer.allocate((int) size);
+      while (result.hasRemaining() && (channel.read(result) != -1)) {
+        // continue reading
+      }
+      result.flip();
+      return result;
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the charset with the given name.
+   * </p>
+   *
+   * @param encoding
+   *          the name of the charset
+   * @return the charset with the given name.
+   * @throws IOException
+   *           if the charset isn't supported
+   */
+  private static Charset getCharset(String encoding) throws IOException {
+    try {
+      return Charset.forName(encoding);
+    } catch (IllegalCharsetNameException e) {
+      throw new UnsupportedEncodingException(encoding);
+    } catch (UnsupportedCharsetException e) {
+      throw new UnsupportedEncodingException(encoding);
+    }
+  }
+}
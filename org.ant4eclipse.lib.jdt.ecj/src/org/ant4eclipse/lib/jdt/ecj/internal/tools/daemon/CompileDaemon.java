@@ -0,0 +1,584 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ant4eclipse.lib.core.configuration.Ant4EclipseConfiguration;
+import org.ant4eclipse.lib.core.configuration.Ant4EclipseConfigurationImpl;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.logging.Ant4EclipseLogger;
+import org.ant4eclipse.lib.core.logging.DefaultAnt4EclipseLogger;
+import org.ant4eclipse.lib.core.logging.DefaultAnt4EclipseLogger.Priority;
+import org.ant4eclipse.lib.core.service.ConfigurationContext;
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.service.ServiceRegistryConfiguration;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.EcjAdapterImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCache;
+
+/**
+ * <p>
+ * A long-lived process that compiles {@link CompileJobDescription CompileJobDescriptions} on behalf of
+ * {@link CompileDaemonClient CompileDaemonClients}. As the daemon survives the ant invocations, its class file loaders,
+ * parsed binary types and source contents (see {@link ClassFileLoaderCache}) as well as the code optimized by the just
+ * in time compiler are reused by subsequent builds. Cached class file loaders are invalidated as soon as their class
+ * path entries change, so the daemon never compiles against stale class files.
+ * </p>
+ * <p>
+ * The daemon listens on a loopback socket and publishes its port together with a random access token in a state file.
+ * Requests that don't carry the token are rejected. A request that has been sent by a client with a different code
+ * base (e.g. after an update of ant4eclipse) makes the daemon shut down, so the client can start a new one.
+ * </p>
+ * <p>
+ * Anyone who knows the token can make the daemon read and write files with the permissions of its user, so the state
+ * file is only readable by its owner. A state directory created by the daemon is only accessible by its owner, too.
+ * Java 5 can't change file permissions, therefore <code>chmod</code> is used; the daemon refuses to start if the
+ * permissions can't be restricted. On Windows the permissions aren't changed, the state file is protected by the
+ * access control list of the user's profile directory (the default location of the state file).
+ * </p>
+ * <p>
+ * The daemon shuts down if it hasn't received a request for the idle timeout (system property
+ * <code>ant4eclipse.compileDaemon.idleTimeout</code>, in milliseconds, default: three hours). If the used heap exceeds
+ * the memory limit (system property <code>ant4eclipse.compileDaemon.maxMemory</code>, in bytes, default: three quarters
+ * of the maximum heap) after a compile job, the caches are cleared; if that doesn't help, the daemon shuts down.
+ * </p>
+ * <p>
+ * The daemon writes its messages to a log file next to the state file. Debug messages are only written if the system
+ * property <code>ant4eclipse.compileDaemon.debug</code> is set to <code>true</code>.
+ * </p>
+ */
+public class CompileDaemon {
+
+  /** the name of the system property that specifies the idle timeout (in milliseconds) */
+  public static final String IDLE_TIMEOUT_PROPERTY = "ant4eclipse.compileDaemon.idleTimeout";
+
+  /** the name of the system property that specifies the memory limit (in bytes) */
+  public static final String MAX_MEMORY_PROPERTY   = "ant4eclipse.compileDaemon.maxMemory";
+
+  /** the name of the system property that enables debug messages in the log file of the daemon */
+  public static final String DEBUG_PROPERTY        = "ant4eclipse.compileDaemon.debug";
+
+  /** the default idle timeout */
+  public static final long   DEFAULT_IDLE_TIMEOUT  = 3L * 60 * 60 * 1000;
+
+  /** the key of the port in the state file */
+  static final String        PORT_KEY              = "port";
+
+  /** the key of the access token in the state file */
+  static final String        TOKEN_KEY             = "token";
+
+  /** the interval in which the idle timeout is checked */
+  private static final int   ACCEPT_TIMEOUT        = 1000;
+
+  /** the number of attempts to acquire the lock of the state file */
+  private static final int   LOCK_ATTEMPTS         = 20;
+
+  /** the state file */
+  private File               _stateFile;
+
+  /** the access token */
+  private String             _token;
+
+  /** the stamp of the code base of this daemon */
+  private String             _codeStamp;
+
+  /** the idle timeout */
+  private long               _idleTimeout;
+
+  /** the memory limit */
+  private long               _maxMemory;
+
+  /** the server socket */
+  private ServerSocket       _serverSocket;
+
+  /** the executor that handles the connections */
+  private ExecutorService    _executor;
+
+  /** the number of requests currently processed */
+  private AtomicInteger      _activeRequests;
+
+  /** the time of the last request */
+  private volatile long      _lastRequest;
+
+  /** indicates that the daemon has been stopped */
+  private volatile boolean   _stopped;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompileDaemon}.
+   * </p>
+   *
+   * @param stateFile
+   *          the state file
+   */
+  public CompileDaemon(File stateFile) {
+    this._stateFile = stateFile;
+    this._token = new BigInteger(130, new SecureRandom()).toString(32);
+    this._codeStamp = computeCodeStamp(System.getProperty("java.class.path"));
+    this._idleTimeout = Long.getLong(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT).longValue();
+    this._maxMemory = Long.getLong(MAX_MEMORY_PROPERTY, (Runtime.getRuntime().maxMemory() / 4) * 3).longValue();
+    this._activeRequests = new AtomicInteger();
+    this._executor = Executors.newCachedThreadPool(new ThreadFactory() {
+      private final AtomicInteger _count = new AtomicInteger();
+
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "ant4eclipse-compile-daemon-" + this._count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * <p>
+   * Starts the daemon. The only argument is the path of the state file.
+   * </p>
+   *
+   * @param args
+   *          the arguments
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length != 1) {
+      System.err.println("Usage: " + CompileDaemon.class.getName() + " <statefile>");
+      System.exit(1);
+    }
+    File stateFile = new File(args[0]).getAbsoluteFile();
+    createStateDirectory(stateFile);
+
+    // only one daemon per state file
+    RandomAccessFile lockFile = new RandomAccessFile(new File(stateFile.getPath() + ".lock"), "rw");
+    FileLock lock = lockFile.getChannel().tryLock();
+    for (int i = 0; (lock == null) && (i < LOCK_ATTEMPTS); i++) {
+      // a stale daemon that has just been stopped might still hold the lock
+      Thread.sleep(ACCEPT_TIMEOUT / 4);
+      lock = lockFile.getChannel().tryLock();
+    }
+    if (lock == null) {
+      System.err.println("Another compile daemon is running for '" + stateFile + "'.");
+      System.exit(0);
+    }
+
+    File logFile = new File(stateFile.getPath() + ".log");
+    PrintStream log = new PrintStream(new FileOutputStream(logFile), true);
+    restrictToOwner(logFile, false);
+    System.setOut(log);
+    System.setErr(log);
+
+    final DefaultAnt4EclipseLogger logger = new DefaultAnt4EclipseLogger(log);
+    logger.setLogLevel(Boolean.getBoolean(DEBUG_PROPERTY) ? Priority.debug : Priority.info);
+    final Ant4EclipseConfiguration configuration = new Ant4EclipseConfigurationImpl();
+    ServiceRegistryAccess.configure(new ServiceRegistryConfiguration() {
+      public void configure(ConfigurationContext context) {
+        context.registerService(logger, Ant4EclipseLogger.class.getName());
+        context.registerService(configuration, Ant4EclipseConfiguration.class.getName());
+        context.registerService(new ClassFileLoaderCache(), ClassFileLoaderCache.class.getName());
+      }
+    });
+
+    try {
+      new CompileDaemon(stateFile).run();
+    } finally {
+      ServiceRegistryAccess.reset();
+      lock.release();
+      lockFile.close();
+    }
+    System.exit(0);
+  }
+
+  /**
+   * <p>
+   * Runs the daemon until it is stopped or the idle timeout has been exceeded.
+   * </p>
+   *
+   * @throws IOException
+   */
+  public void run() throws IOException {
+    this._serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    this._serverSocket.setSoTimeout(ACCEPT_TIMEOUT);
+    this._lastRequest = System.currentTimeMillis();
+    Thread shutdownHook = new Thread() {
+      @Override
+      public void run() {
+        deleteStateFile();
+      }
+    };
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+    try {
+      writeStateFile();
+      A4ELogging.info("Compile daemon listening on port %d", Integer.valueOf(this._serverSocket.getLocalPort()));
+      while (!this._stopped) {
+        try {
+          final Socket socket = this._serverSocket.accept();
+          this._activeRequests.incrementAndGet();
+          this._lastRequest = System.currentTimeMillis();
+          this._executor.execute(new Runnable() {
+            public void run() {
+              try {
+                handle(socket);
+              } finally {
+                CompileDaemon.this._activeRequests.decrementAndGet();
+                CompileDaemon.this._lastRequest = System.currentTimeMillis();
+              }
+            }
+          });
+        } catch (SocketTimeoutException e) {
+          if ((this._activeRequests.get() == 0)
+              && (System.currentTimeMillis() - this._lastRequest > this._idleTimeout)) {
+            A4ELogging.info("Compile daemon has been idle for %d ms, shutting down", Long.valueOf(this._idleTimeout));
+            this._stopped = true;
+          }
+        }
+      }
+    } finally {
+      deleteStateFile();
+      Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      this._serverSocket.close();
+      this._executor.shutdown();
+      try {
+        this._executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Handles a single connection.
+   * </p>
+   *
+   * @param socket
+   *          the socket of the connection
+   */
+  private void handle(Socket socket) {
+    try {
+      DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      if ((input.readInt() != CompileDaemonProtocol.MAGIC) || (input.readInt() != CompileDaemonProtocol.VERSION)
+          || !this._token.equals(input.readUTF())) {
+        A4ELogging.warn("Rejected request from '%s'", socket.getRemoteSocketAddress());
+        return;
+      }
+      if (!this._codeStamp.equals(input.readUTF())) {
+        A4ELogging.info("Client uses a different code base, shutting down");
+        stop();
+        output.writeByte(CompileDaemonProtocol.STATUS_STALE);
+        output.flush();
+        return;
+      }
+      try {
+        handleRequest(input.readByte(), input, output);
+      } catch (RuntimeException e) {
+        A4ELogging.error("Request failed: %s", e);
+        output.writeByte(CompileDaemonProtocol.STATUS_ERROR);
+        output.writeUTF(String.valueOf(e));
+      }
+      output.flush();
+    } catch (IOException e) {
+      A4ELogging.warn("Connection failed: %s", e);
+    } catch (OutOfMemoryError e) {
+      stop();
+      throw e;
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Handles a single request.
+   * </p>
+   *
+   * @param request
+   *          the request type
+   * @param input
+   *          the input
+   * @param output
+   *          the output
+   * @throws IOException
+   */
+  private void handleRequest(byte request, DataInputStream input, DataOutputStream output) throws IOException {
+    switch (request) {
+    case CompileDaemonProtocol.REQUEST_PING:
+      output.writeByte(CompileDaemonProtocol.STATUS_OK);
+      break;
+    case CompileDaemonProtocol.REQUEST_STOP:
+      stop();
+      output.writeByte(CompileDaemonProtocol.STATUS_OK);
+      break;
+    case CompileDaemonProtocol.REQUEST_COMPILE:
+      CompileJobResult result = new EcjAdapterImpl().compile(CompileDaemonProtocol.readDescription(input));
+      output.writeByte(CompileDaemonProtocol.STATUS_OK);
+      CompileDaemonProtocol.writeResult(output, result);
+      checkMemory();
+      break;
+    case CompileDaemonProtocol.REQUEST_COMPILE_BATCH:
+      List<CompileJobDescription> descriptions = new ArrayList<CompileJobDescription>();
+      int count = input.readInt();
+      for (int i = 0; i < count; i++) {
+        descriptions.add(CompileDaemonProtocol.readDescription(input));
+      }
+      List<CompileJobResult> results = new EcjAdapterImpl().compile(descriptions);
+      output.writeByte(CompileDaemonProtocol.STATUS_OK);
+      output.writeInt(results.size());
+      for (CompileJobResult compileJobResult : results) {
+        CompileDaemonProtocol.writeResult(output, compileJobResult);
+      }
+      checkMemory();
+      break;
+    default:
+      output.writeByte(CompileDaemonProtocol.STATUS_ERROR);
+      output.writeUTF("Unknown request: " + request);
+    }
+  }
+
+  /**
+   * <p>
+   * Clears the caches if the used heap exceeds the memory limit and stops the daemon if that doesn't help.
+   * </p>
+   */
+  private void checkMemory() {
+    if (usedMemory() <= this._maxMemory) {
+      return;
+    }
+    A4ELogging.info("Compile daemon exceeds its memory limit, clearing caches");
+    ClassFileLoaderCache cache = ClassFileLoaderCache.getInstance();
+    cache.clear();
+    cache.getBinaryTypeCache().clear();
+    cache.getSourceContentsCache().clear();
+    System.gc();
+    if (usedMemory() > this._maxMemory) {
+      A4ELogging.info("Compile daemon still exceeds its memory limit, shutting down");
+      stop();
+    }
+  }
+
+  /**
+   * <p>
+   * Stops the daemon. Requests that are currently processed are completed.
+   * </p>
+   */
+  private void stop() {
+    this._stopped = true;
+    deleteStateFile();
+  }
+
+  /**
+   * <p>
+   * Writes the state file. The state file is written to a temporary file first, so clients never read an incomplete
+   * state file.
+   * </p>
+   *
+   * @throws IOException
+   */
+  private void writeStateFile() throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty(PORT_KEY, String.valueOf(this._serverSocket.getLocalPort()));
+    properties.setProperty(TOKEN_KEY, this._token);
+    File tempFile = new File(this._stateFile.getPath() + ".tmp");
+
+    // restrict the permissions of a new and empty file before the token is written
+    tempFile.delete();
+    if (!tempFile.createNewFile()) {
+      throw new IOException("Could not create '" + tempFile + "'.");
+    }
+    OutputStream output = null;
+    try {
+      restrictToOwner(tempFile, false);
+      output = new FileOutputStream(tempFile);
+      properties.store(output, "ant4eclipse compile daemon");
+      output.close();
+      output = null;
+    } catch (IOException e) {
+      Utilities.close((Closeable) output);
+      output = null;
+      tempFile.delete();
+      throw e;
+    } finally {
+      Utilities.close((Closeable) output);
+    }
+    this._stateFile.delete();
+    if (!tempFile.renameTo(this._stateFile)) {
+      throw new IOException("Could not rename '" + tempFile + "' to '" + this._stateFile + "'.");
+    }
+  }
+
+  /**
+   * <p>
+   * Deletes the state file if it still belongs to this daemon.
+   * </p>
+   */
+  private synchronized void deleteStateFile() {
+    Properties properties = readStateFile(this._stateFile);
+    if ((properties != null) && this._token.equals(properties.getProperty(TOKEN_KEY))) {
+      this._stateFile.delete();
+    }
+  }
+
+  /**
+   * <p>
+   * Reads the given state file.
+   * </p>
+   *
+   * @param stateFile
+   *          the state file
+   * @return the content of the state file or <code>null</code> if it doesn't exist or can't be read.
+   */
+  static Properties readStateFile(File stateFile) {
+    if (!stateFile.isFile()) {
+      return null;
+    }
+    InputStream input = null;
+    try {
+      input = new FileInputStream(stateFile);
+      Properties result = new Properties();
+      result.load(input);
+      return result;
+    } catch (IOException e) {
+      return null;
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+
+  /**
+   * <p>
+   * Creates the directory of the given state file. A directory that is created is only accessible by its owner.
+   * </p>
+   *
+   * @param stateFile
+   *          the state file
+   * @throws IOException
+   *           if the directory can't be created or its permissions can't be restricted
+   */
+  static void createStateDirectory(File stateFile) throws IOException {
+    File directory = stateFile.getAbsoluteFile().getParentFile();
+    if (directory.isDirectory()) {
+      return;
+    }
+    if (!directory.mkdirs() && !directory.isDirectory()) {
+      throw new IOException("Could not create directory '" + directory + "'.");
+    }
+    restrictToOwner(directory, true);
+  }
+
+  /**
+   * <p>
+   * Restricts the access to the given file or directory to its owner (see class comment).
+   * </p>
+   *
+   * @param file
+   *          the file or directory
+   * @param directory
+   *          <code>true</code> if the given file is a directory
+   * @throws IOException
+   *           if the permissions can't be restricted
+   */
+  static void restrictToOwner(File file, boolean directory) throws IOException {
+    if (Utilities.isWindows()) {
+      return;
+    }
+    Process process = Runtime.getRuntime().exec(
+        new String[] { "chmod", directory ? "700" : "600", file.getAbsolutePath() });
+    Utilities.close((Closeable) process.getOutputStream());
+    Utilities.close((Closeable) process.getInputStream());
+    Utilities.close((Closeable) process.getErrorStream());
+    try {
+      if (process.waitFor() != 0) {
+        throw new IOException("Could not restrict the permissions of '" + file + "'.");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while restricting the permissions of '" + file + "'.");
+    }
+  }
+
+  /**
+   * <p>
+   * Computes a stamp of the given class path, based on the paths, lengths and modification times of its entries.
+   * Client and daemon use the same code base if they compute the same stamp.
+   * </p>
+   *
+   * @param classpath
+   *          the class path
+   * @return the stamp of the given class path.
+   */
+  static String computeCodeStamp(String classpath) {
+    StringBuffer buffer = new StringBuffer();
+    StringTokenizer tokenizer = new StringTokenizer(classpath, File.pathSeparator);
+    while (tokenizer.hasMoreTokens()) {
+      File entry = new File(tokenizer.nextToken()).getAbsoluteFile();
+      buffer.append(entry.getPath()).append(';');
+      buffer.append(entry.length()).append(';');
+      buffer.append(entry.lastModified()).append(File.pathSeparatorChar);
+    }
+    try {
+      byte[] digest = MessageDigest.getInstance("MD5").digest(buffer.toString().getBytes("UTF-8"));
+      return new BigInteger(1, digest).toString(16);
+    } catch (NoSuchAlgorithmException e) {
+      return buffer.toString();
+    } catch (UnsupportedEncodingException e) {
+      return buffer.toString();
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the used heap.
+   * </p>
+   *
+   * @return the used heap.
+   */
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,463 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.eclipse.jdt.internal.compiler.Compiler;
+
+/**
+ * <p>
+ * Sends compile jobs to the {@link CompileDaemon}. If no daemon is running (or the running daemon uses a different code
+ * base), a new daemon is started in the background. The daemon is identified by its state file (system property
+ * <code>ant4eclipse.compileDaemon.stateFile</code>, default: <code>~/.ant4eclipse/compile-daemon.properties</code>).
+ * </p>
+ * <p>
+ * Additional arguments for the virtual machine of the daemon (e.g. <code>-Xmx1g</code>) can be specified with the
+ * system property <code>ant4eclipse.compileDaemon.jvmArgs</code>.
+ * </p>
+ */
+public class CompileDaemonClient {
+
+  /** the name of the system property that specifies the state file */
+  public static final String STATE_FILE_PROPERTY    = "ant4eclipse.compileDaemon.stateFile";
+
+  /** the name of the system property that specifies additional arguments for the virtual machine of the daemon */
+  public static final String JVM_ARGS_PROPERTY      = "ant4eclipse.compileDaemon.jvmArgs";
+
+  /** the name of the system property that specifies how long to wait for a new daemon (in milliseconds) */
+  public static final String START_TIMEOUT_PROPERTY = "ant4eclipse.compileDaemon.startTimeout";
+
+  /** the default time to wait for a new daemon */
+  public static final long   DEFAULT_START_TIMEOUT  = 30000;
+
+  /** the timeout for establishing a connection */
+  private static final int   CONNECT_TIMEOUT        = 5000;
+
+  /** the state file */
+  private File               _stateFile;
+
+  /** the class path of the daemon */
+  private String             _classpath;
+
+  /** the stamp of the code base of the daemon */
+  private String             _codeStamp;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompileDaemonClient} that uses the default state file.
+   * </p>
+   */
+  public CompileDaemonClient() {
+    this(getDefaultStateFile());
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompileDaemonClient}.
+   * </p>
+   *
+   * @param stateFile
+   *          the state file of the daemon
+   */
+  public CompileDaemonClient(File stateFile) {
+    Assure.notNull("stateFile", stateFile);
+    this._stateFile = stateFile.getAbsoluteFile();
+    this._classpath = computeClasspath();
+    this._codeStamp = this._classpath != null ? CompileDaemon.computeCodeStamp(this._classpath) : null;
+  }
+
+  /**
+   * <p>
+   * Returns the state file that is used if the system property <code>ant4eclipse.compileDaemon.stateFile</code> is not
+   * set.
+   * </p>
+   *
+   * @return the default state file.
+   */
+  public static File getDefaultStateFile() {
+    String stateFile = System.getProperty(STATE_FILE_PROPERTY);
+    if ((stateFile != null) && (stateFile.trim().length() > 0)) {
+      return new File(stateFile.trim());
+    }
+    return new File(new File(System.getProperty("user.home"), ".ant4eclipse"), "compile-daemon.properties");
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the daemon can be started, i.e. the class path of the daemon could be determined.
+   * </p>
+   *
+   * @return <code>true</code> if the daemon can be started.
+   */
+  public boolean isAvailable() {
+    return this._classpath != null;
+  }
+
+  /**
+   * <p>
+   * Compiles the given compile job in the daemon.
+   * </p>
+   *
+   * @param description
+   *          the compile job description
+   * @return the compile job result.
+   * @throws IOException
+   *           if the daemon is not available or the compile job failed
+   */
+  public CompileJobResult compile(CompileJobDescription description) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    CompileDaemonProtocol.writeDescription(new DataOutputStream(buffer), description);
+    DataInputStream response = send(CompileDaemonProtocol.REQUEST_COMPILE, buffer.toByteArray(), true);
+    return CompileDaemonProtocol.readResult(response);
+  }
+
+  /**
+   * <p>
+   * Compiles the given compile jobs in the daemon.
+   * </p>
+   *
+   * @param descriptions
+   *          the compile job descriptions
+   * @return the compile job results (in the order of the given descriptions).
+   * @throws IOException
+   *           if the daemon is not available or the compile jobs failed
+   */
+  public List<CompileJobResult> compile(List<CompileJobDescription> descriptions) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(buffer);
+    output.writeInt(descriptions.size());
+    for (CompileJobDescription description : descriptions) {
+      CompileDaemonProtocol.writeDescription(output, description);
+    }
+    DataInputStream response = send(CompileDaemonProtocol.REQUEST_COMPILE_BATCH, buffer.toByteArray(), true);
+    int count = response.readInt();
+    List<CompileJobResult> result = new ArrayList<CompileJobResult>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(CompileDaemonProtocol.readResult(response));
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if a daemon is running. No daemon is started.
+   * </p>
+   *
+   * @return <code>true</code> if a daemon is running.
+   */
+  public boolean ping() {
+    try {
+      return send(CompileDaemonProtocol.REQUEST_PING, new byte[0], false) != null;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * <p>
+   * Stops the running daemon (if any).
+   * </p>
+   */
+  public void stop() {
+    try {
+      send(CompileDaemonProtocol.REQUEST_STOP, new byte[0], false);
+    } catch (IOException e) {
+      A4ELogging.debug("Could not stop compile daemon: %s", e);
+    }
+  }
+
+  /**
+   * <p>
+   * Sends the given request to the daemon and returns the response data. If the daemon runs a different code base, a
+   * new daemon is started and the request is sent again.
+   * </p>
+   *
+   * @param request
+   *          the request type
+   * @param payload
+   *          the request data
+   * @param start
+   *          <code>true</code> if a daemon should be started if none is running
+   * @return the response data or <code>null</code> if no daemon is running and <code>start</code> is
+   *         <code>false</code>.
+   * @throws IOException
+   */
+  private DataInputStream send(byte request, byte[] payload, boolean start) throws IOException {
+    if (!isAvailable()) {
+      throw new IOException("Could not determine the class path of the compile daemon.");
+    }
+    for (int attempt = 0;; attempt++) {
+      Properties state = CompileDaemon.readStateFile(this._stateFile);
+      Socket socket = state != null ? connect(state) : null;
+      if (socket == null) {
+        if (!start) {
+          return null;
+        }
+        state = startDaemon(state);
+        socket = connect(state);
+        if (socket == null) {
+          throw new IOException("Could not connect to compile daemon.");
+        }
+      }
+
+      byte[] response;
+      try {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        output.writeInt(CompileDaemonProtocol.MAGIC);
+        output.writeInt(CompileDaemonProtocol.VERSION);
+        output.writeUTF(state.getProperty(CompileDaemon.TOKEN_KEY));
+        output.writeUTF(this._codeStamp);
+        output.writeByte(request);
+        output.write(payload);
+        output.flush();
+        response = readFully(socket.getInputStream());
+      } finally {
+        socket.close();
+      }
+
+      if (response.length == 0) {
+        throw new IOException("Compile daemon closed the connection.");
+      }
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(response));
+      byte status = input.readByte();
+      if (status == CompileDaemonProtocol.STATUS_OK) {
+        return input;
+      } else if (status == CompileDaemonProtocol.STATUS_ERROR) {
+        throw new IOException("Compile daemon failed: " + input.readUTF());
+      } else if ((status != CompileDaemonProtocol.STATUS_STALE) || (attempt > 0)) {
+        throw new IOException("Unexpected response from compile daemon: " + status);
+      }
+      A4ELogging.debug("Compile daemon uses a different code base, restarting");
+      if (!start) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Connects to the daemon described by the given state.
+   * </p>
+   *
+   * @param state
+   *          the content of the state file
+   * @return the socket or <code>null</code> if the daemon is not running.
+   */
+  private Socket connect(Properties state) {
+    String port = state.getProperty(CompileDaemon.PORT_KEY);
+    if ((port == null) || (state.getProperty(CompileDaemon.TOKEN_KEY) == null)) {
+      return null;
+    }
+    Socket socket = new Socket();
+    try {
+      socket.connect(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), Integer.parseInt(port)),
+          CONNECT_TIMEOUT);
+      return socket;
+    } catch (IOException e) {
+      A4ELogging.debug("Could not connect to compile daemon: %s", e);
+    } catch (NumberFormatException e) {
+      A4ELogging.debug("Invalid compile daemon state file: %s", e);
+    }
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // ignore
+    }
+    return null;
+  }
+
+  /**
+   * <p>
+   * Starts a new daemon and waits until it has written its state file.
+   * </p>
+   *
+   * @param previousState
+   *          the previous content of the state file (maybe <code>null</code>)
+   * @return the content of the new state file.
+   * @throws IOException
+   */
+  private Properties startDaemon(Properties previousState) throws IOException {
+    String previousToken = previousState != null ? previousState.getProperty(CompileDaemon.TOKEN_KEY) : null;
+
+    List<String> command = new ArrayList<String>();
+    command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+    String jvmArgs = System.getProperty(JVM_ARGS_PROPERTY);
+    if (jvmArgs != null) {
+      StringTokenizer tokenizer = new StringTokenizer(jvmArgs);
+      while (tokenizer.hasMoreTokens()) {
+        command.add(tokenizer.nextToken());
+      }
+    }
+    addSystemProperty(command, CompileDaemon.IDLE_TIMEOUT_PROPERTY);
+    addSystemProperty(command, CompileDaemon.MAX_MEMORY_PROPERTY);
+    addSystemProperty(command, CompileDaemon.DEBUG_PROPERTY);
+    command.add("-cp");
+    command.add(this._classpath);
+    command.add(CompileDaemon.class.getName());
+    command.add(this._stateFile.getPath());
+
+    A4ELogging.debug("Starting compile daemon: %s", command);
+    CompileDaemon.createStateDirectory(this._stateFile);
+    ProcessBuilder builder = new ProcessBuilder(command);
+    builder.redirectErrorStream(true);
+    Process process = builder.start();
+    Utilities.close((Closeable) process.getOutputStream());
+    Utilities.close((Closeable) process.getInputStream());
+    Utilities.close((Closeable) process.getErrorStream());
+
+    long timeout = Long.getLong(START_TIMEOUT_PROPERTY, DEFAULT_START_TIMEOUT).longValue();
+    long end = System.currentTimeMillis() + timeout;
+    while (System.currentTimeMillis() < end) {
+      Properties state = CompileDaemon.readStateFile(this._stateFile);
+      if ((state != null) && (state.getProperty(CompileDaemon.TOKEN_KEY) != null)
+          && !state.getProperty(CompileDaemon.TOKEN_KEY).equals(previousToken)) {
+        return state;
+      }
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for the compile daemon.");
+      }
+    }
+    throw new IOException("Compile daemon didn't start within " + timeout + " ms.");
+  }
+
+  /**
+   * <p>
+   * Passes the given system property to the daemon (if it is set).
+   * </p>
+   *
+   * @param command
+   *          the command line of the daemon
+   * @param name
+   *          the name of the system property
+   */
+  private static void addSystemProperty(List<String> command, String name) {
+    String value = System.getProperty(name);
+    if (value != null) {
+      command.add("-D" + name + "=" + value);
+    }
+  }
+
+  /**
+   * <p>
+   * Computes the class path of the daemon from the locations of the ant4eclipse classes and the eclipse java compiler.
+   * </p>
+   *
+   * @return the class path of the daemon or <code>null</code> if it can't be determined.
+   */
+  private static String computeClasspath() {
+    Set<String> entries = new LinkedHashSet<String>();
+    for (Class<?> clazz : new Class<?>[] { CompileDaemon.class, A4ELogging.class, Compiler.class }) {
+      File location = getLocation(clazz);
+      if (location == null) {
+        A4ELogging.debug("Could not determine the location of '%s'", clazz.getName());
+        return null;
+      }
+      entries.add(location.getPath());
+    }
+    StringBuffer buffer = new StringBuffer();
+    for (String entry : entries) {
+      if (buffer.length() > 0) {
+        buffer.append(File.pathSeparatorChar);
+      }
+      buffer.append(entry);
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * <p>
+   * Returns the jar file or directory the given class has been loaded from.
+   * </p>
+   *
+   * @param clazz
+   *          the class
+   * @return the jar file or directory the given class has been loaded from or <code>null</code> if it can't be
+   *         determined.
+   */
+  private static File getLocation(Class<?> clazz) {
+    String resource = clazz.getName().replace('.', '/') + ".class";
+    URL url = clazz.getClassLoader() != null ? clazz.getClassLoader().getResource(resource) : null;
+    if (url == null) {
+      return null;
+    }
+    try {
+      String location = url.toExternalForm();
+      if ("jar".equals(url.getProtocol())) {
+        int separator = location.indexOf("!/");
+        if (separator == -1) {
+          return null;
+        }
+        location = location.substring("jar:".length(), separator);
+      } else if ("file".equals(url.getProtocol())) {
+        location = location.substring(0, location.length() - resource.length());
+      } else {
+        return null;
+      }
+      return new File(new URI(location)).getAbsoluteFile();
+    } catch (URISyntaxException e) {
+      return null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * <p>
+   * Reads the given stream until its end.
+   * </p>
+   *
+   * @param input
+   *          the stream
+   * @return the content of the stream.
+   * @throws IOException
+   */
+  private static byte[] readFully(InputStream input) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    InputStream buffered = new BufferedInputStream(input);
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = buffered.read(buffer)) != -1) {
+      result.write(buffer, 0, read);
+    }
+    return result.toByteArray();
+  }
+}
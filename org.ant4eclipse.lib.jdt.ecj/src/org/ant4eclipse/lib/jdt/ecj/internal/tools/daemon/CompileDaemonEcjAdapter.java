@@ -0,0 +1,101 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.EcjAdapterImpl;
+
+/**
+ * <p>
+ * Implementation of an {@link EcjAdapter} that delegates the compile jobs to the {@link CompileDaemon}. If the daemon
+ * is not available or a compile job can't be transferred to the daemon (e.g. because it uses a custom class file
+ * loader), the compile job is executed in the current virtual machine.
+ * </p>
+ */
+public class CompileDaemonEcjAdapter implements EcjAdapter {
+
+  /** the client that talks to the daemon */
+  private CompileDaemonClient _client;
+
+  /** the adapter that is used if the daemon can't be used */
+  private EcjAdapter          _localAdapter;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompileDaemonEcjAdapter}.
+   * </p>
+   */
+  public CompileDaemonEcjAdapter() {
+    this(new CompileDaemonClient());
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompileDaemonEcjAdapter}.
+   * </p>
+   *
+   * @param client
+   *          the client that talks to the daemon
+   */
+  public CompileDaemonEcjAdapter(CompileDaemonClient client) {
+    Assure.notNull("client", client);
+    this._client = client;
+    this._localAdapter = new EcjAdapterImpl();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CompileJobResult compile(CompileJobDescription description) {
+    Assure.notNull("description", description);
+
+    if (this._client.isAvailable() && CompileDaemonProtocol.canWrite(description)) {
+      try {
+        return this._client.compile(description);
+      } catch (IOException e) {
+        A4ELogging.warn("Compile daemon is not available, compiling locally: %s", e.getMessage());
+      }
+    } else {
+      A4ELogging.debug("Compile job can't be delegated to the compile daemon, compiling locally");
+    }
+    return this._localAdapter.compile(description);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<CompileJobResult> compile(List<CompileJobDescription> descriptions) {
+    Assure.notNull("descriptions", descriptions);
+
+    boolean delegate = this._client.isAvailable();
+    for (int i = 0; delegate && (i < descriptions.size()); i++) {
+      delegate = CompileDaemonProtocol.canWrite(descriptions.get(i));
+    }
+    if (delegate) {
+      try {
+        return this._client.compile(descriptions);
+      } catch (IOException e) {
+        A4ELogging.warn("Compile daemon is not available, compiling locally: %s", e.getMessage());
+      }
+    } else {
+      A4ELogging.debug("Compile jobs can't be delegated to the compile daemon, compiling locally");
+    }
+    return this._localAdapter.compile(descriptions);
+  }
+}
@@ -0,0 +1,364 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.CompileStatistics;
+import org.ant4eclipse.lib.jdt.ecj.DefaultCompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.PipelineConfiguration;
+import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileDependencies;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileFactory;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.CompileJobResultImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCodec;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblem;
+import org.eclipse.jdt.internal.compiler.problem.ProblemSeverities;
+
+/**
+ * <p>
+ * The protocol spoken between the {@link CompileDaemonClient} and the {@link CompileDaemon}. A request consists of a
+ * header (magic number, protocol version, access token, code stamp), the request type and the request data. The
+ * response consists of a status and the response data.
+ * </p>
+ * <p>
+ * This class also contains the (de-)serialization of {@link CompileJobDescription CompileJobDescriptions} and
+ * {@link CompileJobResult CompileJobResults}. Class file loaders are transferred by their structure (see
+ * {@link ClassFileLoaderCodec}), source files and class files by their paths, so client and daemon must share the
+ * same file system.
+ * </p>
+ */
+public class CompileDaemonProtocol {
+
+  /** the magic number that starts each request */
+  public static final int  MAGIC                 = 0xA4EC0DAE;
+
+  /** the version of the protocol */
+  public static final int  VERSION               = 2;
+
+  /** request: check whether the daemon is alive */
+  public static final byte REQUEST_PING          = 1;
+
+  /** request: compile a single job */
+  public static final byte REQUEST_COMPILE       = 2;
+
+  /** request: compile a batch of jobs */
+  public static final byte REQUEST_COMPILE_BATCH = 3;
+
+  /** request: stop the daemon */
+  public static final byte REQUEST_STOP          = 4;
+
+  /** status: the request has been processed */
+  public static final byte STATUS_OK             = 0;
+
+  /** status: the daemon runs other code than the client and shuts down */
+  public static final byte STATUS_STALE          = 1;
+
+  /** status: the request failed (followed by a message) */
+  public static final byte STATUS_ERROR          = 2;
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given description can be transferred to the daemon.
+   * </p>
+   *
+   * @param description
+   *          the description
+   * @return <code>true</code> if the given description can be transferred to the daemon.
+   */
+  public static boolean canWrite(CompileJobDescription description) {
+    return ClassFileLoaderCodec.canWrite(description.getClassFileLoader());
+  }
+
+  /**
+   * <p>
+   * Writes the given compile job description.
+   * </p>
+   *
+   * @param output
+   *          the output
+   * @param description
+   *          the compile job description
+   * @throws IOException
+   */
+  public static void writeDescription(DataOutput output, CompileJobDescription description) throws IOException {
+    Map<String, String> compilerOptions = description.getCompilerOptions();
+    output.writeInt(compilerOptions.size());
+    for (Map.Entry<String, String> entry : compilerOptions.entrySet()) {
+      output.writeUTF(entry.getKey());
+      writeString(output, entry.getValue());
+    }
+
+    SourceFile[] sourceFiles = description.getSourceFiles();
+    output.writeInt(sourceFiles.length);
+    for (SourceFile sourceFile : sourceFiles) {
+      output.writeUTF(sourceFile.getSourceFolder().getPath());
+      output.writeUTF(sourceFile.getSourceFileName());
+      output.writeUTF(sourceFile.getDestinationFolder().getPath());
+      output.writeUTF(sourceFile.getEncoding());
+    }
+
+    ClassFileLoaderCodec.write(output, description.getClassFileLoader());
+    output.writeBoolean(description.isRecordDependencies());
+
+    PipelineConfiguration pipeline = description.getPipelineConfiguration();
+    output.writeBoolean(pipeline.isParallelRead());
+    output.writeBoolean(pipeline.isParallelProcessing());
+    output.writeInt(pipeline.getMaxThreads());
+    output.writeInt(pipeline.getChunkSize());
+  }
+
+  /**
+   * <p>
+   * Reads a compile job description that has been written with
+   * {@link #writeDescription(DataOutput, CompileJobDescription)}.
+   * </p>
+   *
+   * @param input
+   *          the input
+   * @return the compile job description.
+   * @throws IOException
+   */
+  public static CompileJobDescription readDescription(DataInput input) throws IOException {
+    DefaultCompileJobDescription result = new DefaultCompileJobDescription();
+
+    Map<String, String> compilerOptions = new HashMap<String, String>();
+    int count = input.readInt();
+    for (int i = 0; i < count; i++) {
+      compilerOptions.put(input.readUTF(), readString(input));
+    }
+    result.setCompilerOptions(compilerOptions);
+
+    SourceFile[] sourceFiles = new SourceFile[input.readInt()];
+    for (int i = 0; i < sourceFiles.length; i++) {
+      File sourceFolder = new File(input.readUTF());
+      String sourceFileName = input.readUTF();
+      File destinationFolder = new File(input.readUTF());
+      sourceFiles[i] = SourceFileFactory.createSourceFile(sourceFolder, sourceFileName, destinationFolder, input
+          .readUTF());
+    }
+    result.setSourceFiles(sourceFiles);
+
+    ClassFileLoader classFileLoader = ClassFileLoaderCodec.read(input);
+    result.setClassFileLoader(classFileLoader);
+    result.setRecordDependencies(input.readBoolean());
+
+    boolean parallelRead = input.readBoolean();
+    boolean parallelProcessing = input.readBoolean();
+    int maxThreads = input.readInt();
+    int chunkSize = input.readInt();
+    result.setPipelineConfiguration(new PipelineConfiguration(parallelRead, parallelProcessing, maxThreads, chunkSize));
+    return result;
+  }
+
+  /**
+   * <p>
+   * Writes the given compile job result.
+   * </p>
+   *
+   * @param output
+   *          the output
+   * @param result
+   *          the compile job result
+   * @throws IOException
+   */
+  public static void writeResult(DataOutput output, CompileJobResult result) throws IOException {
+    output.writeBoolean(result.succeeded());
+
+    CategorizedProblem[] problems = result.getCategorizedProblems();
+    output.writeInt(problems.length);
+    for (CategorizedProblem problem : problems) {
+      char[] fileName = problem.getOriginatingFileName();
+      writeString(output, fileName != null ? new String(fileName) : null);
+      writeString(output, problem.getMessage());
+      output.writeInt(problem.getID());
+      writeStrings(output, problem.getArguments());
+      output.writeBoolean(problem.isError());
+      output.writeInt(problem.getSourceStart());
+      output.writeInt(problem.getSourceEnd());
+      output.writeInt(problem.getSourceLineNumber());
+      output.writeInt(problem instanceof DefaultProblem ? ((DefaultProblem) problem).getSourceColumnNumber() : 0);
+    }
+
+    Map<String, File> compiledClassFiles = result.getCompiledClassFiles();
+    output.writeInt(compiledClassFiles.size());
+    for (Map.Entry<String, File> entry : compiledClassFiles.entrySet()) {
+      output.writeUTF(entry.getKey());
+      output.writeUTF(entry.getValue().getPath());
+    }
+
+    SourceFileDependencies[] dependencies = result.getSourceFileDependencies();
+    output.writeInt(dependencies != null ? dependencies.length : -1);
+    for (int i = 0; (dependencies != null) && (i < dependencies.length); i++) {
+      output.writeUTF(dependencies[i].getSourceFile().getPath());
+      output.writeUTF(dependencies[i].getDestinationFolder().getPath());
+      writeStrings(output, dependencies[i].getClassFileNames());
+      writeStrings(output, dependencies[i].getAbiDigests());
+      writeStrings(output, dependencies[i].getQualifiedReferences());
+      writeStrings(output, dependencies[i].getSimpleNameReferences());
+      writeStrings(output, dependencies[i].getRootReferences());
+    }
+
+    CompileStatistics statistics = result.getStatistics();
+    output.writeLong(statistics.getParseTime());
+    output.writeLong(statistics.getResolveTime());
+    output.writeLong(statistics.getAnalyzeTime());
+    output.writeLong(statistics.getGenerateTime());
+    output.writeLong(statistics.getWriteTime());
+    output.writeLong(statistics.getElapsedTime());
+    output.writeInt(statistics.getCompilationUnits());
+    output.writeLong(statistics.getLines());
+    output.writeInt(statistics.getChunks());
+  }
+
+  /**
+   * <p>
+   * Reads a compile job result that has been written with {@link #writeResult(DataOutput, CompileJobResult)}.
+   * </p>
+   *
+   * @param input
+   *          the input
+   * @return the compile job result.
+   * @throws IOException
+   */
+  public static CompileJobResult readResult(DataInput input) throws IOException {
+    CompileJobResultImpl result = new CompileJobResultImpl();
+    result.setSucceeded(input.readBoolean());
+
+    CategorizedProblem[] problems = new CategorizedProblem[input.readInt()];
+    for (int i = 0; i < problems.length; i++) {
+      String fileName = readString(input);
+      String message = readString(input);
+      int id = input.readInt();
+      String[] arguments = readStrings(input);
+      int severity = input.readBoolean() ? ProblemSeverities.Error : ProblemSeverities.Warning;
+      int start = input.readInt();
+      int end = input.readInt();
+      int line = input.readInt();
+      int column = input.readInt();
+      problems[i] = new DefaultProblem(fileName != null ? fileName.toCharArray() : null, message, id, arguments,
+          severity, start, end, line, column);
+    }
+    result.setCategorizedProblems(problems);
+
+    Map<String, File> compiledClassFiles = new LinkedHashMap<String, File>();
+    int count = input.readInt();
+    for (int i = 0; i < count; i++) {
+      compiledClassFiles.put(input.readUTF(), new File(input.readUTF()));
+    }
+    result.setCompiledClassFiles(compiledClassFiles);
+
+    count = input.readInt();
+    if (count >= 0) {
+      SourceFileDependencies[] dependencies = new SourceFileDependencies[count];
+      for (int i = 0; i < count; i++) {
+        File sourceFile = new File(input.readUTF());
+        File destinationFolder = new File(input.readUTF());
+        dependencies[i] = new SourceFileDependencies(sourceFile, destinationFolder, readStrings(input),
+            readStrings(input), readStrings(input), readStrings(input), readStrings(input));
+      }
+      result.setSourceFileDependencies(dependencies);
+    }
+
+    long parseTime = input.readLong();
+    long resolveTime = input.readLong();
+    long analyzeTime = input.readLong();
+    long generateTime = input.readLong();
+    long writeTime = input.readLong();
+    long elapsedTime = input.readLong();
+    int compilationUnits = input.readInt();
+    long lines = input.readLong();
+    int chunks = input.readInt();
+    result.setStatistics(new CompileStatistics(parseTime, resolveTime, analyzeTime, generateTime, writeTime,
+        elapsedTime, compilationUnits, lines, chunks));
+    return result;
+  }
+
+  /**
+   * <p>
+   * Writes the given string, which may be <code>null</code>.
+   * </p>
+   *
+   * @param output
+   *          the output
+   * @param value
+   *          the string (maybe <code>null</code>)
+   * @throws IOException
+   */
+  public static void writeString(DataOutput output, String value) throws IOException {
+    output.writeBoolean(value != null);
+    if (value != null) {
+      output.writeUTF(value);
+    }
+  }
+
+  /**
+   * <p>
+   * Reads a string that has been written with {@link #writeString(DataOutput, String)}.
+   * </p>
+   *
+   * @param input
+   *          the input
+   * @return the string (maybe <code>null</code>).
+   * @throws IOException
+   */
+  public static String readString(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readUTF() : null;
+  }
+
+  /**
+   * <p>
+   * Writes the given strings.
+   * </p>
+   *
+   * @param output
+   *          the output
+   * @param values
+   *          the strings (maybe <code>null</code>)
+   * @throws IOException
+   */
+  private static void writeStrings(DataOutput output, String[] values) throws IOException {
+    int length = values != null ? values.length : 0;
+    output.writeInt(length);
+    for (int i = 0; i < length; i++) {
+      writeString(output, values[i]);
+    }
+  }
+
+  /**
+   * <p>
+   * Reads strings that have been written with {@link #writeStrings(DataOutput, String[])}.
+   * </p>
+   *
+   * @param input
+   *          the input
+   * @return the strings.
+   * @throws IOException
+   */
+  private static String[] readStrings(DataInput input) throws IOException {
+    String[] result = new String[input.readInt()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = readString(input);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,329 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * Decides whether a type is accessible according to an access restriction filter string (e.g.
+ * <code>+org/osgi/framework/*;-org/example/internal/*;-**&#47;*</code>). A filter consists of include (<code>+</code>)
+ * and exclude (<code>-</code>) rules, separated by <code>;</code>. A type is accessible if it matches an include rule
+ * or if it doesn't match any exclude rule. Within a rule, <code>*</code> and <code>**&#47;*</code> match any sequence
+ * of characters.
+ * </p>
+ * <p>
+ * The filter is compiled once: rules that only depend on the package of a type (rules like <code>+a/b/*</code> or
+ * <code>-**&#47;*</code>, which are the only ones generated for PDE projects) are stored in a package trie, all other
+ * rules are compiled to regular expressions. Packages that are included explicitly are answered directly, the verdicts
+ * for all other packages are cached as long as the filter consists of package rules only. Instances are thread safe.
+ * </p>
+ */
+public class AccessRuleMatcher {
+
+  /** the rule that matches all types */
+  private static final String        ALL_TYPES = "**/*";
+
+  /** the filter string */
+  private String                     _filter;
+
+  /** the root of the package trie */
+  private PackageNode                _root;
+
+  /** the packages that are included explicitly */
+  private Set<CompoundName>          _includedPackages;
+
+  /** the include rules that don't only depend on the package */
+  private List<Pattern>              _includes;
+
+  /** the exclude rules that don't only depend on the package */
+  private List<Pattern>              _excludes;
+
+  /** the cached verdicts (package -> accessible), only used if all rules are package rules */
+  private Map<CompoundName, Boolean> _verdicts;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link AccessRuleMatcher}.
+   * </p>
+   *
+   * @param filter
+   *          the filter string
+   */
+  public AccessRuleMatcher(String filter) {
+    Assure.nonEmpty("filter", filter);
+
+    this._filter = filter;
+    this._root = new PackageNode();
+    this._includedPackages = new HashSet<CompoundName>();
+    this._includes = new LinkedList<Pattern>();
+    this._excludes = new LinkedList<Pattern>();
+    this._verdicts = new ConcurrentHashMap<CompoundName, Boolean>();
+
+    for (String rule : filter.split(";")) {
+      if (rule.startsWith("+")) {
+        addRule(rule.substring(1), true);
+      } else if (rule.startsWith("-")) {
+        addRule(rule.substring(1), false);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the filter string.
+   * </p>
+   *
+   * @return the filter string.
+   */
+  public String getFilter() {
+    return this._filter;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given type is accessible.
+   * </p>
+   *
+   * @param packageName
+   *          the segments of the package name (maybe <code>null</code>)
+   * @param typeName
+   *          the name of the type
+   * @return <code>true</code> if the given type is accessible.
+   */
+  public boolean isAccessible(char[][] packageName, char[] typeName) {
+
+    // exact package fast path: includes always take precedence
+    CompoundName key = new CompoundName(packageName, null);
+    if (this._includedPackages.contains(key)) {
+      return true;
+    }
+
+    // the verdict only depends on the package
+    if (this._includes.isEmpty() && this._excludes.isEmpty()) {
+      Boolean result = this._verdicts.get(key);
+      if (result == null) {
+        result = Boolean.valueOf(match(packageName) != PackageNode.EXCLUDED);
+        this._verdicts.put(key.copy(), result);
+      }
+      return result.booleanValue();
+    }
+
+    int verdict = match(packageName);
+    if (verdict == PackageNode.INCLUDED) {
+      return true;
+    }
+    String classFileName = CompoundName.toFileName(packageName, typeName, '/', ".class");
+    for (Pattern include : this._includes) {
+      if (include.matcher(classFileName).matches()) {
+        return true;
+      }
+    }
+    if (verdict == PackageNode.EXCLUDED) {
+      return false;
+    }
+    for (Pattern exclude : this._excludes) {
+      if (exclude.matcher(classFileName).matches()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * <p>
+   * Returns the verdict of the package rules for the given package.
+   * </p>
+   *
+   * @param packageName
+   *          the segments of the package name (maybe <code>null</code>)
+   * @return {@link PackageNode#INCLUDED}, {@link PackageNode#EXCLUDED} or {@link PackageNode#NONE}.
+   */
+  private int match(char[][] packageName) {
+    PackageNode node = this._root;
+    int result = node._verdict;
+    int length = packageName != null ? packageName.length : 0;
+    for (int i = 0; (i < length) && (result != PackageNode.INCLUDED); i++) {
+      node = node._children != null ? node._children.get(new String(packageName[i])) : null;
+      if (node == null) {
+        break;
+      }
+      result = Math.max(result, node._verdict);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Adds the given rule.
+   * </p>
+   *
+   * @param pattern
+   *          the pattern of the rule (without the leading '+' or '-')
+   * @param include
+   *          <code>true</code> for an include rule, <code>false</code> for an exclude rule
+   */
+  private void addRule(String pattern, boolean include) {
+    int verdict = include ? PackageNode.INCLUDED : PackageNode.EXCLUDED;
+
+    // package rules: a package prefix followed by '*' or '**/*'
+    String prefix = getPackagePrefix(pattern);
+    if (prefix != null) {
+      PackageNode node = this._root;
+      for (String segment : prefix.split("/")) {
+        if (segment.length() > 0) {
+          node = node.getOrCreateChild(segment);
+        }
+      }
+      node._verdict = Math.max(node._verdict, verdict);
+      if (include && (pattern.length() == prefix.length() + 1) && (prefix.length() > 0)) {
+        this._includedPackages.add(CompoundName.fromQualifiedName(prefix.substring(0, prefix.length() - 1).replace(
+            '/', '.')));
+      }
+      return;
+    }
+
+    // all other rules
+    Pattern regex = Pattern.compile(toRegex(pattern));
+    if (include) {
+      this._includes.add(regex);
+    } else {
+      this._excludes.add(regex);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the package prefix (e.g. <code>a/b/</code>) if the given pattern matches all types of a package and its
+   * sub packages, <code>null</code> otherwise.
+   * </p>
+   *
+   * @param pattern
+   *          the pattern
+   * @return the package prefix or <code>null</code>.
+   */
+  private static String getPackagePrefix(String pattern) {
+    int index = pattern.indexOf('*');
+    if (index == -1) {
+      return null;
+    }
+    String rest = pattern.substring(index);
+    if (!rest.equals("*") && !rest.equals(ALL_TYPES)) {
+      return null;
+    }
+    String prefix = pattern.substring(0, index);
+    if ((prefix.length() > 0) && !prefix.endsWith("/")) {
+      return null;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      char c = prefix.charAt(i);
+      if ((c != '/') && !Character.isJavaIdentifierPart(c)) {
+        return null;
+      }
+    }
+    return prefix;
+  }
+
+  /**
+   * <p>
+   * Converts the given pattern into a regular expression that matches class file names (e.g.
+   * <code>a/b/Foo.class</code>).
+   * </p>
+   *
+   * @param pattern
+   *          the pattern
+   * @return the regular expression.
+   */
+  private static String toRegex(String pattern) {
+    // step 1: replace all occurrences of '**/*' with '###' (temporary step)
+    String result = pattern.replaceAll("\\*\\*/\\*", "###");
+
+    // step 2: replace all occurrences of '*' with '[^\.]*'
+    result = result.replaceAll("\\*", "[^\\\\.]*");
+
+    // step 3: replace all occurrences of '###' (formally '**/*') with '.*'
+    result = result.replaceAll("###", ".*");
+
+    // step 4: append '\.class'
+    return result.concat("\\.class");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[AccessRuleMatcher:");
+    buffer.append(" _filter: ");
+    buffer.append(this._filter);
+    buffer.append(" _includes: ");
+    buffer.append(this._includes);
+    buffer.append(" _excludes: ");
+    buffer.append(this._excludes);
+    buffer.append("]");
+    return buffer.toString();
+  }
+
+  /**
+   * <p>
+   * A node of the package trie.
+   * </p>
+   */
+  private static class PackageNode {
+
+    /** no package rule matches */
+    private static final int         NONE     = 0;
+
+    /** an exclude rule matches */
+    private static final int         EXCLUDED = 1;
+
+    /** an include rule matches (includes take precedence over excludes) */
+    private static final int         INCLUDED = 2;
+
+    /** the verdict of the rules for this package and its sub packages */
+    private int                      _verdict = NONE;
+
+    /** the sub packages, maybe <code>null</code> */
+    private Map<String, PackageNode> _children;
+
+    /**
+     * <p>
+     * Returns the child node for the given segment, creating it if necessary.
+     * </p>
+     *
+     * @param segment
+     *          the segment
+     * @return the child node.
+     */
+    private PackageNode getOrCreateChild(String segment) {
+      if (this._children == null) {
+        this._children = new HashMap<String, PackageNode>();
+      }
+      PackageNode result = this._children.get(segment);
+      if (result == null) {
+        result = new PackageNode();
+        this._children.put(segment, result);
+      }
+      return result;
+    }
+  }
+}
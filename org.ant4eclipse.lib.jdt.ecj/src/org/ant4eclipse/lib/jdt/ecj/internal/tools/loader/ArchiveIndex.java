@@ -0,0 +1,305 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * The {@link ArchiveIndex} contains the names of all packages of an archive together with the names of the class files
+ * contained in each package. The package list contains the packages that contain classes as well as all parent
+ * packages of those.
+ * </p>
+ * <p>
+ * An {@link ArchiveIndex} is identified by the canonical path, the size and the modification time of the archive, so
+ * it can be stored on disc and reused as long as the archive doesn't change.
+ * </p>
+ */
+public class ArchiveIndex {
+
+  /** the version of the binary format */
+  private static final int         FORMAT_VERSION = 1;
+
+  /** the postfix of class file entries */
+  private static final String      CLASS_POSTFIX  = ".class";
+
+  /** the canonical path of the archive */
+  private String                   _path;
+
+  /** the size of the archive */
+  private long                     _size;
+
+  /** the modification time of the archive */
+  private long                     _lastModified;
+
+  /** maps package names to the names of the contained class files (without the '.class' postfix) */
+  private Map<String, Set<String>> _classesByPackage;
+
+  /** the entry names of all class files (e.g. 'java/lang/Object.class'), derived from the classes by package */
+  private Set<String>              _classFileNames;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ArchiveIndex}.
+   * </p>
+   *
+   * @param path
+   *          the canonical path of the archive
+   * @param size
+   *          the size of the archive
+   * @param lastModified
+   *          the modification time of the archive
+   */
+  private ArchiveIndex(String path, long size, long lastModified) {
+    Assure.notNull("path", path);
+
+    this._path = path;
+    this._size = size;
+    this._lastModified = lastModified;
+    this._classesByPackage = new LinkedHashMap<String, Set<String>>();
+    this._classFileNames = new HashSet<String>();
+  }
+
+  /**
+   * <p>
+   * Returns the canonical path of the indexed archive.
+   * </p>
+   *
+   * @return the canonical path of the indexed archive.
+   */
+  public String getPath() {
+    return this._path;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if this index has been created for the archive with the given size and modification
+   * time.
+   * </p>
+   *
+   * @param size
+   *          the size of the archive
+   * @param lastModified
+   *          the modification time of the archive
+   * @return <code>true</code> if this index is up to date.
+   */
+  public boolean isUpToDate(long size, long lastModified) {
+    return (this._size == size) && (this._lastModified == lastModified);
+  }
+
+  /**
+   * <p>
+   * Returns the names of all packages contained in the archive.
+   * </p>
+   *
+   * @return the names of all packages contained in the archive.
+   */
+  public String[] getPackages() {
+    return this._classesByPackage.keySet().toArray(new String[this._classesByPackage.size()]);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the archive contains a class file with the given entry name.
+   * </p>
+   *
+   * @param classFileName
+   *          the entry name of the class file (e.g. <code>java/util/Map$Entry.class</code>)
+   * @return <code>true</code> if the archive contains the class file.
+   */
+  public boolean containsClassFile(String classFileName) {
+    return this._classFileNames.contains(classFileName);
+  }
+
+  /**
+   * <p>
+   * Writes this index to the given stream.
+   * </p>
+   *
+   * @param out
+   *          the stream to write to
+   * @throws IOException
+   */
+  public void write(DataOutputStream out) throws IOException {
+    out.writeInt(FORMAT_VERSION);
+    out.writeUTF(this._path);
+    out.writeLong(this._size);
+    out.writeLong(this._lastModified);
+    out.writeInt(this._classesByPackage.size());
+    for (Map.Entry<String, Set<String>> entry : this._classesByPackage.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue().size());
+      for (String className : entry.getValue()) {
+        out.writeUTF(className);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Reads an index from the given stream. Returns <code>null</code> if the stream has been written in an unknown
+   * format.
+   * </p>
+   *
+   * @param in
+   *          the stream to read from
+   * @return the index or <code>null</code>.
+   * @throws IOException
+   */
+  public static ArchiveIndex read(DataInputStream in) throws IOException {
+    if (in.readInt() != FORMAT_VERSION) {
+      return null;
+    }
+    ArchiveIndex result = new ArchiveIndex(in.readUTF(), in.readLong(), in.readLong());
+    int packageCount = in.readInt();
+    for (int i = 0; i < packageCount; i++) {
+      String packageName = in.readUTF();
+      int classCount = in.readInt();
+      Set<String> classes = classCount == 0 ? Collections.<String> emptySet() : new HashSet<String>(classCount * 2);
+      result._classesByPackage.put(packageName, classes);
+      for (int j = 0; j < classCount; j++) {
+        result.addClass(packageName, classes, in.readUTF());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Creates a new index by scanning all entries of the given jar file.
+   * </p>
+   *
+   * @param path
+   *          the canonical path of the archive
+   * @param size
+   *          the size of the archive
+   * @param lastModified
+   *          the modification time of the archive
+   * @param jarFile
+   *          the opened archive
+   * @return the index
+   */
+  public static ArchiveIndex create(String path, long size, long lastModified, JarFile jarFile) {
+    Assure.notNull("jarFile", jarFile);
+
+    ArchiveIndex result = new ArchiveIndex(path, size, lastModified);
+
+    // Iterate over entries...
+    Enumeration<JarEntry> enumeration = jarFile.entries();
+    while (enumeration.hasMoreElements()) {
+      JarEntry jarEntry = enumeration.nextElement();
+      String name = jarEntry.getName();
+
+      // if the jar entry is a directory, the directory name is the name of the jar entry...
+      if (jarEntry.isDirectory()) {
+        String directoryName = name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+        if (directoryName.length() > 0) {
+          result.addPackage(directoryName.replace('/', '.'));
+        }
+      }
+      // otherwise the directory name has to be computed (top level entries don't belong to a package)
+      else {
+        int splitIndex = name.lastIndexOf('/');
+        if (splitIndex != -1) {
+          String packageName = name.substring(0, splitIndex).replace('/', '.');
+          Set<String> classes = result.addPackage(packageName);
+          if (name.endsWith(CLASS_POSTFIX)) {
+            String className = name.substring(splitIndex + 1, name.length() - CLASS_POSTFIX.length());
+            result.addClass(packageName, classes, className);
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * <p>
+   * Adds the package with the given name and all its parent packages to this index.
+   * </p>
+   *
+   * @param packageName
+   *          the name of the package.
+   * @return the set of class names for the given package.
+   */
+  private Set<String> addPackage(String packageName) {
+    Set<String> result = this._classesByPackage.get(packageName);
+    if (result != null) {
+      return result;
+    }
+
+    result = new HashSet<String>();
+    this._classesByPackage.put(packageName, result);
+
+    // add the parent packages as well
+    int index = packageName.lastIndexOf('.');
+    while (index != -1) {
+      String parent = packageName.substring(0, index);
+      if (this._classesByPackage.containsKey(parent)) {
+        break;
+      }
+      this._classesByPackage.put(parent, new HashSet<String>());
+      index = parent.lastIndexOf('.');
+    }
+
+    return result;
+  }
+
+  /**
+   * <p>
+   * Adds the class with the given name to the given package.
+   * </p>
+   * 
+   * @param packageName
+   *          the name of the package.
+   * @param classes
+   *          the set of class names for the given package.
+   * @param className
+   *          the name of the class (without the '.class' postfix).
+   */
+  private void addClass(String packageName, Set<String> classes, String className) {
+    classes.add(className);
+    this._classFileNames.add(packageName.replace('.', '/') + '/' + className + CLASS_POSTFIX);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[ArchiveIndex:");
+    buffer.append(" _path: ");
+    buffer.append(this._path);
+    buffer.append(" _size: ");
+    buffer.append(this._size);
+    buffer.append(" _lastModified: ");
+    buffer.append(this._lastModified);
+    buffer.append(" packages: ");
+    buffer.append(this._classesByPackage.size());
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
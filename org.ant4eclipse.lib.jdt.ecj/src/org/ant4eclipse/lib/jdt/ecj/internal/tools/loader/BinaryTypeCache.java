@@ -0,0 +1,278 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.eclipse.jdt.internal.compiler.env.IBinaryType;
+
+/**
+ * <p>
+ * A size-bounded cache for parsed binary types. Parsing a class file is one of the most expensive operations of a
+ * build that compiles many projects against the same libraries, so each class file is parsed only once as long as it
+ * stays in this cache.
+ * </p>
+ * <p>
+ * Entries are identified by a key (the path of the archive plus the entry name or the path of the class file) and
+ * are only returned as long as the modification time and the size of the underlying file don't change. The cache is
+ * bounded by the sum of the sizes of the cached class files; once the limit is exceeded the least recently used
+ * entries are evicted. The limit can be specified using the system property {@link #MAX_BYTES_PROPERTY}, a limit of
+ * <code>0</code> disables the cache.
+ * </p>
+ */
+public class BinaryTypeCache {
+
+  /** System-Property that specifies the maximum size (in bytes of class files) of the cache */
+  public static final String      MAX_BYTES_PROPERTY = "ant4eclipse.binaryTypeCache.maxBytes";
+
+  /** the default maximum size (in bytes of class files) of the cache */
+  public static final long        DEFAULT_MAX_BYTES  = 64L * 1024 * 1024;
+
+  /** the maximum size of the cache */
+  private long                    _maxBytes;
+
+  /** the current size of the cache */
+  private long                    _bytes;
+
+  /** the cached entries (key -> entry), ordered by access */
+  private Map<String, CacheEntry> _entries;
+
+  /** the number of requests that have been served from the cache */
+  private long                    _hits;
+
+  /** the number of requests that couldn't be served from the cache */
+  private long                    _misses;
+
+  /** the number of entries that have been evicted */
+  private long                    _evictions;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link BinaryTypeCache}. The maximum size is read from the system property
+   * {@link #MAX_BYTES_PROPERTY}.
+   * </p>
+   */
+  public BinaryTypeCache() {
+    this(Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES).longValue());
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link BinaryTypeCache}.
+   * </p>
+   *
+   * @param maxBytes
+   *          the maximum size of the cache (in bytes of class files). <code>0</code> disables the cache.
+   */
+  public BinaryTypeCache(long maxBytes) {
+    Assure.assertTrue(maxBytes >= 0, "maxBytes must not be negative");
+
+    this._maxBytes = maxBytes;
+    this._entries = new LinkedHashMap<String, CacheEntry>(256, 0.75f, true);
+  }
+
+  /**
+   * <p>
+   * Returns the cached binary type for the given key or <code>null</code> if there's no such entry or if the entry
+   * has been created for another version of the underlying file.
+   * </p>
+   *
+   * @param key
+   *          the key of the binary type
+   * @param lastModified
+   *          the modification time of the underlying file
+   * @param length
+   *          the size of the underlying file
+   * @return the cached binary type or <code>null</code>.
+   */
+  public synchronized IBinaryType get(String key, long lastModified, long length) {
+    CacheEntry entry = this._entries.get(key);
+    if ((entry != null) && (entry._lastModified == lastModified) && (entry._length == length)) {
+      this._hits++;
+      return entry._binaryType;
+    }
+    this._misses++;
+    return null;
+  }
+
+  /**
+   * <p>
+   * Stores the given binary type.
+   * </p>
+   *
+   * @param key
+   *          the key of the binary type
+   * @param lastModified
+   *          the modification time of the underlying file
+   * @param length
+   *          the size of the underlying file
+   * @param binaryType
+   *          the binary type
+   * @param size
+   *          the size of the class file the binary type has been read from
+   */
+  public synchronized void put(String key, long lastModified, long length, IBinaryType binaryType, int size) {
+    Assure.notNull("key", key);
+    Assure.notNull("binaryType", binaryType);
+
+    if (size > this._maxBytes) {
+      return;
+    }
+
+    CacheEntry previous = this._entries.put(key, new CacheEntry(binaryType, lastModified, length, size));
+    if (previous != null) {
+      this._bytes -= previous._size;
+    }
+    this._bytes += size;
+
+    // evict the least recently used entries
+    Iterator<CacheEntry> iterator = this._entries.values().iterator();
+    while ((this._bytes > this._maxBytes) && iterator.hasNext()) {
+      CacheEntry entry = iterator.next();
+      iterator.remove();
+      this._bytes -= entry._size;
+      this._evictions++;
+    }
+  }
+
+  /**
+   * <p>
+   * Removes all entries from this cache.
+   * </p>
+   */
+  public synchronized void clear() {
+    this._entries.clear();
+    this._bytes = 0;
+  }
+
+  /**
+   * <p>
+   * Returns the number of requests that have been served from the cache.
+   * </p>
+   *
+   * @return the number of hits.
+   */
+  public synchronized long getHits() {
+    return this._hits;
+  }
+
+  /**
+   * <p>
+   * Returns the number of requests that couldn't be served from the cache.
+   * </p>
+   *
+   * @return the number of misses.
+   */
+  public synchronized long getMisses() {
+    return this._misses;
+  }
+
+  /**
+   * <p>
+   * Returns the number of entries that have been evicted because the cache exceeded its maximum size.
+   * </p>
+   *
+   * @return the number of evictions.
+   */
+  public synchronized long getEvictions() {
+    return this._evictions;
+  }
+
+  /**
+   * <p>
+   * Returns the number of cached binary types.
+   * </p>
+   *
+   * @return the number of cached binary types.
+   */
+  public synchronized int size() {
+    return this._entries.size();
+  }
+
+  /**
+   * <p>
+   * Returns the sum of the sizes of the class files of all cached binary types.
+   * </p>
+   *
+   * @return the sum of the sizes of the class files of all cached binary types.
+   */
+  public synchronized long getBytes() {
+    return this._bytes;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[BinaryTypeCache:");
+    buffer.append(" _maxBytes: ");
+    buffer.append(this._maxBytes);
+    buffer.append(" _bytes: ");
+    buffer.append(this._bytes);
+    buffer.append(" entries: ");
+    buffer.append(this._entries.size());
+    buffer.append(" _hits: ");
+    buffer.append(this._hits);
+    buffer.append(" _misses: ");
+    buffer.append(this._misses);
+    buffer.append(" _evictions: ");
+    buffer.append(this._evictions);
+    buffer.append("]");
+    return buffer.toString();
+  }
+
+  /**
+   * <p>
+   * A cached binary type together with the version of the file it has been read from.
+   * </p>
+   */
+  private static class CacheEntry {
+
+    /** the binary type */
+    private IBinaryType _binaryType;
+
+    /** the modification time of the underlying file */
+    private long        _lastModified;
+
+    /** the size of the underlying file */
+    private long        _length;
+
+    /** the size of the class file */
+    private int         _size;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link CacheEntry}.
+     * </p>
+     *
+     * @param binaryType
+     *          the binary type
+     * @param lastModified
+     *          the modification time of the underlying file
+     * @param length
+     *          the size of the underlying file
+     * @param size
+     *          the size of the class file
+     */
+    public CacheEntry(IBinaryType binaryType, long lastModified, long length, int size) {
+      this._binaryType = binaryType;
+      this._lastModified = lastModified;
+      this._length = length;
+      this._size = size;
+    }
+  }
+}
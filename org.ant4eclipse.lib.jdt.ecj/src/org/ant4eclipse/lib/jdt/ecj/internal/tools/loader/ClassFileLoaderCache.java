@@ -2,15 +2,32 @@ package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
 
 import java.util.Arrays;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.ant4eclipse.lib.core.Lifecycle;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.ConcurrencyHelper;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
 
 /**
  * <p>
+ * Caches class file loaders together with the infrastructure that is shared by all class file loaders (jar files,
+ * archive indices, parsed binary types and type lookups).
+ * </p>
+ * <p>
+ * The cache is enabled by default and can be disabled using the system property
+ * <code>ant4eclipse.enableClassFileLoaderCache=false</code>. Each cached class file loader is stored together with a
+ * {@link ClasspathStamp} of its class path entries: if an entry changes (e.g. because a compile run has written new
+ * classes to an output folder), the class file loader is discarded and will be created again. Checking a stamp
+ * requires to examine the class path entries, so the stamp of a class file loader is checked at most once per compile
+ * job (see {@link #beginCompileJob()}).
  * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
@@ -19,30 +36,58 @@ import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
 public class ClassFileLoaderCache implements Lifecycle {
 
   /**
-   * System-Property that enables the ClassFileLoaderCache
+   * System-Property that enables the ClassFileLoaderCache (enabled by default)
    */
-  private static final boolean         ENABLE_CACHE = Boolean.getBoolean("ant4eclipse.enableClassFileLoaderCache");
+  private static final boolean                  ENABLE_CACHE = !"false".equals(System
+                                                                     .getProperty("ant4eclipse.enableClassFileLoaderCache"));
 
   /**
    * System-Property that enables tracing of the cache. <b>This is very verbose!</b>
    */
-  private static final boolean         TRACE_CACHE  = Boolean.getBoolean("ant4eclipse.traceClassFileLoaderCache");
+  private static final boolean                  TRACE_CACHE  = Boolean
+                                                                     .getBoolean("ant4eclipse.traceClassFileLoaderCache");
 
   /** the class file loader map */
-  private Map<Object, ClassFileLoader> _classFileLoaderMap;
+  private Map<Object, CacheEntry>               _classFileLoaderMap;
 
   /**
    * Hit counter
    */
-  private int                          _hits        = 0;
+  private AtomicLong                            _hits;
 
   /**
    * Miss counter
    */
-  private int                          _missed      = 0;
+  private AtomicLong                            _missed;
+
+  /**
+   * Counter for class file loaders that have been discarded because their class path has changed
+   */
+  private AtomicLong                            _invalidated;
+
+  /** the number of the current compile job */
+  private AtomicInteger                         _compileJob;
 
   /** - */
-  private boolean                      _initialized;
+  private boolean                               _initialized;
+
+  /** the jar files shared by all class file loaders */
+  private JarFilePool                           _jarFilePool;
+
+  /** the archive indices shared by all class file loaders */
+  private PackageIndexCache                     _packageIndexCache;
+
+  /** the parsed binary types shared by all class file loaders */
+  private BinaryTypeCache                       _binaryTypeCache;
+
+  /** the decoded contents of referable source files shared by all compile jobs */
+  private SourceContentsCache                   _sourceContentsCache;
+
+  /** the type lookup caches (one per class file loader) */
+  private Map<ClassFileLoader, TypeLookupCache> _typeLookupCaches;
+
+  /** the executor shared by all class file loaders (created on demand) */
+  private ExecutorService                       _executorService;
 
   /**
    * <p>
@@ -50,7 +95,20 @@ public class ClassFileLoaderCache implements Lifecycle {
    * </p>
    */
   public ClassFileLoaderCache() {
-    this._classFileLoaderMap = new ConcurrentHashMap<Object, ClassFileLoader>();
+    this._classFileLoaderMap = new ConcurrentHashMap<Object, CacheEntry>();
+    this._hits = new AtomicLong();
+    this._missed = new AtomicLong();
+    this._invalidated = new AtomicLong();
+    this._compileJob = new AtomicInteger();
+    this._jarFilePool = new JarFilePool();
+    this._packageIndexCache = new PackageIndexCache(this._jarFilePool, new Executor() {
+      public void execute(Runnable command) {
+        getExecutorService().execute(command);
+      }
+    });
+    this._binaryTypeCache = new BinaryTypeCache();
+    this._sourceContentsCache = new SourceContentsCache();
+    this._typeLookupCaches = new WeakHashMap<ClassFileLoader, TypeLookupCache>();
   }
 
   /**
@@ -73,6 +131,97 @@ public class ClassFileLoaderCache implements Lifecycle {
   public void dispose() {
     this._initialized = false;
     dump();
+    this._jarFilePool.close();
+    this._binaryTypeCache.clear();
+    this._sourceContentsCache.clear();
+    synchronized (this) {
+      if (this._executorService != null) {
+        this._executorService.shutdown();
+        this._executorService = null;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the executor that is shared by all class file loaders (e.g. to index several archives in parallel). The
+   * executor is created on demand and uses daemon threads.
+   * </p>
+   * 
+   * @return the executor that is shared by all class file loaders.
+   */
+  public synchronized ExecutorService getExecutorService() {
+    if (this._executorService == null) {
+      this._executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+          ConcurrencyHelper.newDaemonThreadFactory("A4E-ClassFileLoader"));
+    }
+    return this._executorService;
+  }
+
+  /**
+   * <p>
+   * Returns the pool of jar files that is shared by all class file loaders.
+   * </p>
+   * 
+   * @return the pool of jar files that is shared by all class file loaders.
+   */
+  public JarFilePool getJarFilePool() {
+    return this._jarFilePool;
+  }
+
+  /**
+   * <p>
+   * Returns the archive indices that are shared by all class file loaders.
+   * </p>
+   * 
+   * @return the archive indices that are shared by all class file loaders.
+   */
+  public PackageIndexCache getPackageIndexCache() {
+    return this._packageIndexCache;
+  }
+
+  /**
+   * <p>
+   * Returns the cache for parsed binary types that is shared by all class file loaders.
+   * </p>
+   * 
+   * @return the cache for parsed binary types that is shared by all class file loaders.
+   */
+  public BinaryTypeCache getBinaryTypeCache() {
+    return this._binaryTypeCache;
+  }
+
+  /**
+   * <p>
+   * Returns the cache for the decoded contents of referable source files that is shared by all compile jobs.
+   * </p>
+   * 
+   * @return the cache for the decoded contents of referable source files.
+   */
+  public SourceContentsCache getSourceContentsCache() {
+    return this._sourceContentsCache;
+  }
+
+  /**
+   * <p>
+   * Returns the {@link TypeLookupCache} for the given class file loader. All callers that use the same class file
+   * loader instance share the same {@link TypeLookupCache}. The cache is discarded as soon as the class file loader is
+   * no longer referenced.
+   * </p>
+   * 
+   * @param classFileLoader
+   *          the class file loader
+   * @return the {@link TypeLookupCache} for the given class file loader.
+   */
+  public TypeLookupCache getTypeLookupCache(ClassFileLoader classFileLoader) {
+    synchronized (this._typeLookupCaches) {
+      TypeLookupCache result = this._typeLookupCaches.get(classFileLoader);
+      if (result == null) {
+        result = new TypeLookupCache();
+        this._typeLookupCaches.put(classFileLoader, result);
+      }
+      return result;
+    }
   }
 
   /**
@@ -81,49 +230,103 @@ public class ClassFileLoaderCache implements Lifecycle {
    */
   public void clear() {
     this._classFileLoaderMap.clear();
-    this._hits = 0;
-    this._missed = 0;
+    synchronized (this._typeLookupCaches) {
+      this._typeLookupCaches.clear();
+    }
+    this._hits.set(0);
+    this._missed.set(0);
+    this._invalidated.set(0);
+  }
 
+  /**
+   * <p>
+   * Notifies this cache that a new compile job begins. The class path entries might have been changed by a previous
+   * compile job, so the stamps of the cached class file loaders have to be checked again.
+   * </p>
+   */
+  public void beginCompileJob() {
+    this._compileJob.incrementAndGet();
   }
 
   /**
    * <p>
+   * Stores the given class file loader. The class file loader is never discarded, so it must not depend on class path
+   * entries that might change.
    * </p>
    * 
    * @param key
    * @param classFileLoader
    */
   public void storeClassFileLoader(Object key, ClassFileLoader classFileLoader) {
+    storeClassFileLoader(key, classFileLoader, null);
+  }
+
+  /**
+   * <p>
+   * Stores the given class file loader. The class file loader will be discarded as soon as the given stamp is no longer
+   * up to date.
+   * </p>
+   * 
+   * @param key
+   *          the key of the class file loader
+   * @param classFileLoader
+   *          the class file loader
+   * @param stamp
+   *          the stamp of the class path entries the class file loader has been created for (computed <b>before</b>
+   *          the class file loader has been created). Maybe <code>null</code>.
+   */
+  public void storeClassFileLoader(Object key, ClassFileLoader classFileLoader, ClasspathStamp stamp) {
     if (ENABLE_CACHE) {
       if (TRACE_CACHE) {
-        A4ELogging.debug("Store ClassFileLoader in cache for: '" + key + "' -> " + classFileLoader);
+        A4ELogging.debug("Store ClassFileLoader in cache for: '" + key + "' -> " + classFileLoader + " " + stamp);
         A4ELogging.debug("  Packages: " + Arrays.asList(classFileLoader.getAllPackages()));
       }
-      this._classFileLoaderMap.put(key, classFileLoader);
+      this._classFileLoaderMap.put(key, new CacheEntry(classFileLoader, stamp, this._compileJob.get()));
     }
   }
 
   /**
    * <p>
+   * Returns the cached class file loader for the given key or <code>null</code> if there's no such class file loader or
+   * if its class path has changed since it has been stored. The class path is only examined if it hasn't been checked
+   * during the current compile job.
    * </p>
    * 
    * @param key
    * @return
    */
   public ClassFileLoader getClassFileLoader(Object key) {
-    ClassFileLoader classFileLoader = this._classFileLoaderMap.get(key);
-    if (classFileLoader != null) {
-      this._hits++;
-      if (ENABLE_CACHE && TRACE_CACHE) {
-        A4ELogging.debug("Got ClassFileLoader from cache for: " + key);
+    CacheEntry entry = this._classFileLoaderMap.get(key);
+    int compileJob = this._compileJob.get();
+    if ((entry != null) && (entry._stamp != null) && (entry._checkedCompileJob != compileJob)) {
+      if (entry._stamp.isUpToDate()) {
+        entry._checkedCompileJob = compileJob;
+      } else {
+        // the class path has changed: discard the class file loader and the lookups performed on it
+        if (this._classFileLoaderMap.remove(key) != null) {
+          this._invalidated.incrementAndGet();
+        }
+        synchronized (this._typeLookupCaches) {
+          this._typeLookupCaches.remove(entry._classFileLoader);
+        }
+        if (TRACE_CACHE) {
+          A4ELogging.debug("Discarded outdated ClassFileLoader in cache for: " + key);
+        }
+        entry = null;
       }
-    } else {
-      this._missed++;
+    }
+    if (entry != null) {
+      this._hits.incrementAndGet();
       if (ENABLE_CACHE && TRACE_CACHE) {
-        A4ELogging.debug("Missed ClassFileLoader in cache for: " + key);
+        A4ELogging.debug("Got ClassFileLoader from cache for: " + key);
       }
+      return entry._classFileLoader;
+    }
+    this._missed.incrementAndGet();
+    if (ENABLE_CACHE && TRACE_CACHE) {
+      A4ELogging.debug("Missed ClassFileLoader in cache for: " + key);
     }
-    return classFileLoader;
+    return null;
   }
 
   /**
@@ -143,19 +346,86 @@ public class ClassFileLoaderCache implements Lifecycle {
   public void dump() {
 
     if (!ENABLE_CACHE) {
-      A4ELogging.info("ClassFileLoaderCache has been disabled. Anyway there have been " + (this._missed + this._hits)
-          + " calls to the cache.");
+      A4ELogging.info("ClassFileLoaderCache has been disabled. Anyway there have been "
+          + (this._missed.get() + this._hits.get()) + " calls to the cache.");
     } else {
       A4ELogging.info("ClassFileLoaderCache contains " + this._classFileLoaderMap.size() + " entries.");
-      A4ELogging.info("There has been " + this._hits + " hits and " + this._missed + " misses");
-      for (Map.Entry<Object, ClassFileLoader> entry : this._classFileLoaderMap.entrySet()) {
-        A4ELogging.info("  " + entry.getKey() + " -> " + entry.getValue());
-        A4ELogging.info("  Packages: " + Arrays.asList(entry.getValue().getAllPackages()));
+      A4ELogging.info("There has been " + this._hits.get() + " hits and " + this._missed.get() + " misses ("
+          + this._invalidated.get() + " outdated entries discarded)");
+      if (TRACE_CACHE) {
+        for (Map.Entry<Object, CacheEntry> entry : this._classFileLoaderMap.entrySet()) {
+          A4ELogging.info("  " + entry.getKey() + " -> " + entry.getValue()._classFileLoader);
+          A4ELogging.info("  Packages: " + Arrays.asList(entry.getValue()._classFileLoader.getAllPackages()));
+        }
+      }
+    }
+
+    A4ELogging.info("JarFilePool opened " + this._jarFilePool.getOpens() + " jar files (" + this._jarFilePool.getHits()
+        + " hits, " + this._jarFilePool.getEvictions() + " evictions, " + this._jarFilePool.getOpenCount()
+        + " currently open).");
+    A4ELogging.info("PackageIndexCache scanned " + this._packageIndexCache.getScanned() + " archives and loaded "
+        + this._packageIndexCache.getLoaded() + " archive indices from disc.");
+    long binaryTypeHits = this._binaryTypeCache.getHits();
+    long binaryTypeMisses = this._binaryTypeCache.getMisses();
+    long hitRate = (binaryTypeHits + binaryTypeMisses) > 0 ? binaryTypeHits * 100 / (binaryTypeHits + binaryTypeMisses)
+        : 0;
+    A4ELogging.info("BinaryTypeCache contains " + this._binaryTypeCache.size() + " binary types ("
+        + this._binaryTypeCache.getBytes() + " bytes). There have been " + binaryTypeHits + " hits and "
+        + binaryTypeMisses + " misses (hit rate: " + hitRate + " percent, " + this._binaryTypeCache.getEvictions()
+        + " evictions).");
+    A4ELogging.info("SourceContentsCache contains " + this._sourceContentsCache.size() + " source files ("
+        + this._sourceContentsCache.getChars() + " characters). There have been "
+        + this._sourceContentsCache.getHits() + " hits and " + this._sourceContentsCache.getMisses() + " misses ("
+        + this._sourceContentsCache.getEvictions() + " evictions).");
+    synchronized (this._typeLookupCaches) {
+      long hits = 0;
+      long misses = 0;
+      for (TypeLookupCache typeLookupCache : this._typeLookupCaches.values()) {
+        hits += typeLookupCache.getHits();
+        misses += typeLookupCache.getMisses();
       }
+      A4ELogging.info("TypeLookupCaches of " + this._typeLookupCaches.size() + " class file loaders: " + hits
+          + " hits and " + misses + " misses.");
     }
   }
 
   public static ClassFileLoaderCache getInstance() {
     return ServiceRegistryAccess.instance().getService(ClassFileLoaderCache.class);
   }
+
+  /**
+   * <p>
+   * A cached class file loader together with the stamp of its class path.
+   * </p>
+   */
+  private static class CacheEntry {
+
+    /** the class file loader */
+    private ClassFileLoader _classFileLoader;
+
+    /** the stamp of the class path entries, maybe <code>null</code> */
+    private ClasspathStamp  _stamp;
+
+    /** the compile job the stamp has been found to be up to date in */
+    private volatile int    _checkedCompileJob;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link CacheEntry}.
+     * </p>
+     * 
+     * @param classFileLoader
+     *          the class file loader
+     * @param stamp
+     *          the stamp of the class path entries, maybe <code>null</code>
+     * @param compileJob
+     *          the current compile job
+     */
+    public CacheEntry(ClassFileLoader classFileLoader, ClasspathStamp stamp, int compileJob) {
+      this._classFileLoader = classFileLoader;
+      this._stamp = stamp;
+      // an unreliable stamp is never up to date
+      this._checkedCompileJob = (stamp != null) && stamp.isReliable() ? compileJob : compileJob - 1;
+    }
+  }
 }
@@ -0,0 +1,176 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
+
+/**
+ * <p>
+ * Writes the structure of a class file loader (its class path entries, source path entries, filters and the way they
+ * are combined) to a stream and creates an equivalent class file loader from such a stream, e.g. in another virtual
+ * machine. Class file loaders are recreated through the {@link ClassFileLoaderFactory}, so they are taken from the
+ * {@link ClassFileLoaderCache} as long as their class path entries haven't changed.
+ * </p>
+ * <p>
+ * Only the class file loaders created by the {@link ClassFileLoaderFactory} can be written.
+ * </p>
+ */
+public class ClassFileLoaderCodec {
+
+  /** the tag of a {@link ClasspathClassFileLoaderImpl} */
+  private static final byte CLASSPATH = 1;
+
+  /** the tag of a {@link CompoundClassFileLoaderImpl} */
+  private static final byte COMPOUND  = 2;
+
+  /** the tag of a {@link FilteringClassFileLoader} */
+  private static final byte FILTERING = 3;
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given class file loader can be written.
+   * </p>
+   *
+   * @param classFileLoader
+   *          the class file loader
+   * @return <code>true</code> if the given class file loader can be written.
+   */
+  public static boolean canWrite(ClassFileLoader classFileLoader) {
+    if (classFileLoader instanceof CompoundClassFileLoaderImpl) {
+      for (ClassFileLoader child : ((CompoundClassFileLoaderImpl) classFileLoader).getClassFileLoaders()) {
+        if (!canWrite(child)) {
+          return false;
+        }
+      }
+      return true;
+    } else if (classFileLoader instanceof FilteringClassFileLoader) {
+      return canWrite(((FilteringClassFileLoader) classFileLoader).getClassFileLoader());
+    }
+    return (classFileLoader != null) && (classFileLoader.getClass() == ClasspathClassFileLoaderImpl.class);
+  }
+
+  /**
+   * <p>
+   * Writes the given class file loader.
+   * </p>
+   *
+   * @param output
+   *          the output
+   * @param classFileLoader
+   *          the class file loader
+   * @throws IOException
+   */
+  public static void write(DataOutput output, ClassFileLoader classFileLoader) throws IOException {
+    Assure.notNull("output", output);
+    Assure.assertTrue(canWrite(classFileLoader), "Unsupported class file loader: " + classFileLoader);
+
+    if (classFileLoader instanceof CompoundClassFileLoaderImpl) {
+      ClassFileLoader[] children = ((CompoundClassFileLoaderImpl) classFileLoader).getClassFileLoaders();
+      output.writeByte(COMPOUND);
+      output.writeInt(children.length);
+      for (ClassFileLoader child : children) {
+        write(output, child);
+      }
+    } else if (classFileLoader instanceof FilteringClassFileLoader) {
+      FilteringClassFileLoader filteringClassFileLoader = (FilteringClassFileLoader) classFileLoader;
+      output.writeByte(FILTERING);
+      output.writeUTF(filteringClassFileLoader.getFilter());
+      write(output, filteringClassFileLoader.getClassFileLoader());
+    } else {
+      ClasspathClassFileLoaderImpl classpathClassFileLoader = (ClasspathClassFileLoaderImpl) classFileLoader;
+      output.writeByte(CLASSPATH);
+      output.writeUTF(classpathClassFileLoader.getLocation().getPath());
+      output.writeByte(classpathClassFileLoader.getType());
+      writeFiles(output, classpathClassFileLoader.getClasspathEntries());
+      writeFiles(output, classpathClassFileLoader.getSourcepathEntries());
+    }
+  }
+
+  /**
+   * <p>
+   * Reads a class file loader that has been written with {@link #write(DataOutput, ClassFileLoader)}.
+   * </p>
+   *
+   * @param input
+   *          the input
+   * @return the class file loader.
+   * @throws IOException
+   */
+  public static ClassFileLoader read(DataInput input) throws IOException {
+    Assure.notNull("input", input);
+
+    byte tag = input.readByte();
+    switch (tag) {
+    case COMPOUND:
+      ClassFileLoader[] children = new ClassFileLoader[input.readInt()];
+      for (int i = 0; i < children.length; i++) {
+        children[i] = read(input);
+      }
+      return ClassFileLoaderFactory.createCompoundClassFileLoader(children);
+    case FILTERING:
+      String filter = input.readUTF();
+      return ClassFileLoaderFactory.createFilteringClassFileLoader(read(input), filter);
+    case CLASSPATH:
+      File location = new File(input.readUTF());
+      byte type = input.readByte();
+      File[] classpathEntries = readFiles(input);
+      File[] sourcepathEntries = readFiles(input);
+      return ClassFileLoaderFactory.createClasspathClassFileLoader(location, type, classpathEntries,
+          sourcepathEntries);
+    default:
+      throw new IOException("Unknown class file loader tag: " + tag);
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the given files.
+   * </p>
+   *
+   * @param output
+   *          the output
+   * @param files
+   *          the files
+   * @throws IOException
+   */
+  private static void writeFiles(DataOutput output, File[] files) throws IOException {
+    output.writeInt(files.length);
+    for (File file : files) {
+      output.writeUTF(file.getPath());
+    }
+  }
+
+  /**
+   * <p>
+   * Reads files that have been written with {@link #writeFiles(DataOutput, File[])}.
+   * </p>
+   *
+   * @param input
+   *          the input
+   * @return the files.
+   * @throws IOException
+   */
+  private static File[] readFiles(DataInput input) throws IOException {
+    File[] result = new File[input.readInt()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new File(input.readUTF());
+    }
+    return result;
+  }
+}
@@ -14,22 +14,19 @@ package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
-import java.util.Enumeration;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.ClassName;
-import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.jdt.ecj.ClassFile;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
-import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
 import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.ReferableSourceFileImpl;
 
@@ -44,19 +41,37 @@ import org.ant4eclipse.lib.jdt.ecj.internal.tools.ReferableSourceFileImpl;
 public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
 
   /** the class path entries */
-  private File[]                       _classpathEntries;
+  private File[]                             _classpathEntries;
 
   /** the class path entries */
-  private File[]                       _sourcepathEntries;
+  private File[]                             _sourcepathEntries;
 
   /** the source */
-  private File                         _location;
+  private File                               _location;
 
   /** the type of the associated bundle (PROJECT or LIBRARY) */
-  private byte                         _type;
+  private byte                               _type;
 
   /** maps packages to package providers */
-  private Map<String, PackageProvider> _allPackages;
+  private Map<String, PackageProvider>       _allPackages;
+
+  /** maps packages to package providers (same content as _allPackages, but keyed by compound names) */
+  private Map<CompoundName, PackageProvider> _packageProviders;
+
+  /** the pool that provides the open jar files */
+  private JarFilePool                        _jarFilePool;
+
+  /** provides the package indices of the class path archives */
+  private PackageIndexCache                  _packageIndexCache;
+
+  /** the cache for the parsed binary types */
+  private BinaryTypeCache                    _binaryTypeCache;
+
+  /** the package indices of the class path archives */
+  private Map<File, ArchiveIndex>            _archiveIndices;
+
+  /** the indices of the source path entries */
+  private Map<File, SourcepathIndex>         _sourcepathIndices;
 
   /**
    * <p>
@@ -69,10 +84,31 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
    *          type
    */
   public ClasspathClassFileLoaderImpl(File entry, byte type) {
+    this(entry, type, ClassFileLoaderCache.getInstance().getPackageIndexCache(), ClassFileLoaderCache.getInstance()
+        .getBinaryTypeCache());
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type ClasspathClassFileLoaderImpl.
+   * </p>
+   * 
+   * @param entry
+   *          the file entry
+   * @param type
+   *          type
+   * @param packageIndexCache
+   *          provides the package indices and the open jar files
+   * @param binaryTypeCache
+   *          the cache for the parsed binary types
+   */
+  public ClasspathClassFileLoaderImpl(File entry, byte type, PackageIndexCache packageIndexCache,
+      BinaryTypeCache binaryTypeCache) {
     Assure.notNull("entry", entry);
 
     this._location = entry;
     this._type = type;
+    setCaches(packageIndexCache, binaryTypeCache);
 
     // initialize
     initialize(new File[] { entry }, new File[] {});
@@ -84,6 +120,7 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
 
     this._location = classPathEntry;
     this._type = type;
+    setSharedCaches();
 
     // initialize
     initialize(new File[] { classPathEntry }, new File[] { sourcePathEntry });
@@ -103,16 +140,38 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
 
     this._location = location;
     this._type = type;
+    setSharedCaches();
 
     // initialize
     initialize(classpathEntries, new File[] {});
   }
 
   public ClasspathClassFileLoaderImpl(File location, byte type, File[] classpathEntries, File[] sourcePathEntries) {
+    this(location, type, classpathEntries, sourcePathEntries, ClassFileLoaderCache.getInstance()
+        .getPackageIndexCache(), ClassFileLoaderCache.getInstance().getBinaryTypeCache());
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type ClasspathClassFileLoaderImpl.
+   * </p>
+   * 
+   * @param location
+   * @param type
+   * @param classpathEntries
+   * @param sourcePathEntries
+   * @param packageIndexCache
+   *          provides the package indices and the open jar files
+   * @param binaryTypeCache
+   *          the cache for the parsed binary types
+   */
+  public ClasspathClassFileLoaderImpl(File location, byte type, File[] classpathEntries, File[] sourcePathEntries,
+      PackageIndexCache packageIndexCache, BinaryTypeCache binaryTypeCache) {
     Assure.notNull("location", location);
 
     this._location = location;
     this._type = type;
+    setCaches(packageIndexCache, binaryTypeCache);
 
     // initialize
     initialize(classpathEntries, sourcePathEntries);
@@ -124,7 +183,35 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
    * </p>
    */
   protected ClasspathClassFileLoaderImpl() {
-    // nothing to do here...
+    setSharedCaches();
+  }
+
+  /**
+   * <p>
+   * Uses the caches (and the pool of open jar files) that are shared by all class file loaders, so the jar files are
+   * closed when the {@link ClassFileLoaderCache} is disposed.
+   * </p>
+   */
+  private void setSharedCaches() {
+    ClassFileLoaderCache classFileLoaderCache = ClassFileLoaderCache.getInstance();
+    setCaches(classFileLoaderCache.getPackageIndexCache(), classFileLoaderCache.getBinaryTypeCache());
+  }
+
+  /**
+   * <p>
+   * Sets the {@link PackageIndexCache} (and the {@link JarFilePool} it is based on) and the {@link BinaryTypeCache}.
+   * </p>
+   * 
+   * @param packageIndexCache
+   * @param binaryTypeCache
+   */
+  private void setCaches(PackageIndexCache packageIndexCache, BinaryTypeCache binaryTypeCache) {
+    Assure.notNull("packageIndexCache", packageIndexCache);
+    Assure.notNull("binaryTypeCache", binaryTypeCache);
+
+    this._packageIndexCache = packageIndexCache;
+    this._jarFilePool = packageIndexCache.getJarFilePool();
+    this._binaryTypeCache = binaryTypeCache;
   }
 
   /**
@@ -134,6 +221,13 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
     return this._allPackages.containsKey(packageName);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public boolean hasPackage(char[][] parentPackageName, char[] packageName) {
+    return this._packageProviders.containsKey(new CompoundName(parentPackageName, packageName));
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -195,6 +289,17 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
     return this._classpathEntries;
   }
 
+  /**
+   * <p>
+   * Returns all source path entries of this {@link ClassFileLoader}.
+   * </p>
+   * 
+   * @return all source path entries of this {@link ClassFileLoader}.
+   */
+  protected File[] getSourcepathEntries() {
+    return this._sourcepathEntries;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -230,6 +335,20 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
 
     // create allPackages hash map
     this._allPackages = new HashMap<String, PackageProvider>();
+    this._packageProviders = new HashMap<CompoundName, PackageProvider>();
+
+    // fetch the indices of all archives (missing ones are created in parallel)
+    List<File> archives = new ArrayList<File>();
+    for (File file : this._classpathEntries) {
+      if (file.isFile()) {
+        archives.add(file);
+      }
+    }
+    ArchiveIndex[] indices = this._packageIndexCache.getIndices(archives.toArray(new File[archives.size()]));
+    this._archiveIndices = new HashMap<File, ArchiveIndex>();
+    for (int i = 0; i < indices.length; i++) {
+      this._archiveIndices.put(archives.get(i), indices[i]);
+    }
 
     // add all existing packages to the hash map
     for (File file : this._classpathEntries) {
@@ -237,16 +356,18 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
         String[] allPackages = getAllPackagesFromDirectory(file);
         addAllPackagesFromClassPathEntry(allPackages, file);
       } else if (file.isFile()) {
-        String[] allPackages = getAllPackagesFromJar(file);
+        String[] allPackages = this._archiveIndices.get(file).getPackages();
         addAllPackagesFromClassPathEntry(allPackages, file);
       }
     }
 
-    // add all existing packages to the hash map
+    // index the source path entries and add all existing packages to the hash map
+    this._sourcepathIndices = new HashMap<File, SourcepathIndex>();
     for (File file : this._sourcepathEntries) {
       if (file.isDirectory()) {
-        String[] allPackages = getAllPackagesFromDirectory(file);
-        addAllPackagesFromSourcePathEntry(allPackages, file);
+        SourcepathIndex sourcepathIndex = new SourcepathIndex(file);
+        this._sourcepathIndices.put(file, sourcepathIndex);
+        addAllPackagesFromSourcePathEntry(sourcepathIndex.getPackages(), file);
       }
       // we do not support source in jars or zips
     }
@@ -293,6 +414,7 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
         PackageProvider provider = newPackageProvider();
         provider.addClasspathEntry(classPathEntry);
         this._allPackages.put(aPackage, provider);
+        this._packageProviders.put(CompoundName.fromQualifiedName(aPackage), provider);
       }
     }
   }
@@ -314,112 +436,11 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
         PackageProvider provider = newPackageProvider();
         provider.addSourcepathEntry(sourcePathEntry);
         this._allPackages.put(aPackage, provider);
+        this._packageProviders.put(CompoundName.fromQualifiedName(aPackage), provider);
       }
     }
   }
 
-  /**
-   * <p>
-   * Returns all the names of the packages that are contained in the specified jar file. The package list contains the
-   * packages that contain classes as well as all parent packages of those.
-   * </p>
-   * 
-   * @param jar
-   * @return
-   * @throws IOException
-   */
-  private String[] getAllPackagesFromJar(File jar) {
-    Assure.isFile("jar", jar);
-
-    // prepare result...
-    List<String> result = new LinkedList<String>();
-
-    // create the jarFile wrapper...
-    JarFile jarFile = null;
-
-    try {
-      jarFile = new JarFile(jar);
-    } catch (IOException e) {
-      throw new Ant4EclipseException(EcjExceptionCodes.COULD_NOT_CREATE_JAR_FILE_FROM_FILE_EXCEPTION,
-          jar.getAbsolutePath());
-    }
-
-    // Iterate over entries...
-    Enumeration<?> enumeration = jarFile.entries();
-    while (enumeration.hasMoreElements()) {
-      JarEntry jarEntry = (JarEntry) enumeration.nextElement();
-
-      // add package for each found directory...
-      String directoryName = null;
-
-      // if the jar entry is a directory, the directory name is the name of the jar entry...
-      if (jarEntry.isDirectory()) {
-        directoryName = jarEntry.getName();
-      }
-      // otherwise the directory name has to be computed
-      else {
-        int splitIndex = jarEntry.getName().lastIndexOf('/');
-        if (splitIndex != -1) {
-          directoryName = jarEntry.getName().substring(0, splitIndex);
-        }
-      }
-
-      // directoryName can be null if a top level entry is processed
-      if (directoryName != null) {
-        // convert path to package name
-        String packageName = directoryName.replace('/', '.');
-        packageName = packageName.endsWith(".") ? packageName.substring(0, packageName.length() - 1) : packageName;
-
-        // at package with all the parent packages (!) to the result list
-        String[] packages = allPackages(packageName);
-        for (int i = 0; i < packages.length; i++) {
-          if (!result.contains(packages[i])) {
-            result.add(packages[i]);
-          }
-        }
-      }
-    }
-
-    // return result...
-    return result.toArray(new String[0]);
-
-  }
-
-  /**
-   * <p>
-   * Returns all package names (including parent package names) for the specified package.
-   * </p>
-   * <p>
-   * <b>Example:</b><br/>
-   * Given the package name <code>net.sf.ant4eclipse.tools</code> this method will return {"net", "net.sf",
-   * "net.sf.ant4eclipse", "net.sf.ant4eclipse.tools"}.
-   * </p>
-   * 
-   * @param packageName
-   *          the name of the package.
-   * @return all package names (including parent package names) for the specified package.
-   */
-  private String[] allPackages(String packageName) {
-
-    // split the package name
-    StringTokenizer tokenizer = new StringTokenizer(packageName, ".");
-
-    // declare result
-    String[] result = new String[tokenizer.countTokens()];
-
-    // compute result
-    for (int i = 0; i < result.length; i++) {
-      if (i == 0) {
-        result[i] = tokenizer.nextToken();
-      } else {
-        result[i] = result[i - 1] + "." + tokenizer.nextToken();
-      }
-    }
-
-    // return result
-    return result;
-  }
-
   /**
    * @param directory
    * @return
@@ -471,23 +492,40 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
    * {@inheritDoc}
    */
   public ClassFile loadClass(ClassName className) {
+    return loadClass(CompoundName.toSegments(className.getPackageName()), className.getClassName().toCharArray());
+  }
 
-    if (!hasPackage(className.getPackageName())) {
+  /**
+   * {@inheritDoc}
+   */
+  public ClassFile loadClass(char[][] packageName, char[] typeName) {
+
+    PackageProvider packageProvider = this._packageProviders.get(new CompoundName(packageName, null));
+    if (packageProvider == null) {
       return null;
     }
 
-    return getPackageProvider(className.getPackageName()).loadClassFile(className);
+    return packageProvider.loadClassFile(packageName, typeName);
   }
 
   /**
    * {@inheritDoc}
    */
   public ReferableSourceFile loadSource(ClassName className) {
-    if (!hasPackage(className.getPackageName())) {
+    return loadSource(CompoundName.toSegments(className.getPackageName()), className.getClassName().toCharArray());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ReferableSourceFile loadSource(char[][] packageName, char[] typeName) {
+
+    PackageProvider packageProvider = this._packageProviders.get(new CompoundName(packageName, null));
+    if (packageProvider == null) {
       return null;
     }
 
-    return getPackageProvider(className.getPackageName()).loadSourceFile(className);
+    return packageProvider.loadSourceFile(packageName, typeName);
   }
 
   /**
@@ -572,36 +610,65 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
      * @return
      */
     public ClassFile loadClassFile(ClassName className) {
+      return loadClassFile(CompoundName.toSegments(className.getPackageName()), className.getClassName()
+          .toCharArray());
+    }
+
+    /**
+     * <p>
+     * Returns the {@link ClassFile} for the given type or <code>null</code> if the type can't be found.
+     * </p>
+     * 
+     * @param packageName
+     *          the segments of the package name
+     * @param typeName
+     *          the name of the type
+     * @return the {@link ClassFile} for the given type or <code>null</code>.
+     */
+    public ClassFile loadClassFile(char[][] packageName, char[] typeName) {
+
+      String classFileName = CompoundName.toFileName(packageName, typeName, '/', ".class");
 
       for (File file : this._classpathEntries) {
         File classpathEntry = file;
 
         if (classpathEntry.isDirectory()) {
-          File result = new File(classpathEntry, className.asClassFileName());
+          File result = new File(classpathEntry, classFileName);
 
           if (result.exists()) {
 
             try {
               if (result.getName().equals(result.getCanonicalFile().getName())) {
-                return new FileClassFileImpl(result, classpathEntry.getAbsolutePath(),
-                    ClasspathClassFileLoaderImpl.this._type);
+                return new FileClassFileImpl(result, ClasspathClassFileLoaderImpl.this._binaryTypeCache,
+                    classpathEntry.getAbsolutePath(), ClasspathClassFileLoaderImpl.this._type);
               }
             } catch (IOException e) {
               // do nothing
             }
           }
         } else {
+          // the index tells us whether the archive contains the class at all
+          ArchiveIndex archiveIndex = ClasspathClassFileLoaderImpl.this._archiveIndices.get(classpathEntry);
+          if ((archiveIndex != null) && !archiveIndex.containsClassFile(classFileName)) {
+            continue;
+          }
+
+          JarFilePool jarFilePool = ClasspathClassFileLoaderImpl.this._jarFilePool;
+          JarFile jarFile = null;
           try {
-            JarFile jarFile = new JarFile(classpathEntry);
+            jarFile = jarFilePool.acquire(classpathEntry);
 
-            JarEntry entry = jarFile.getJarEntry(className.asClassFileName());
+            JarEntry entry = jarFile.getJarEntry(classFileName);
 
             if ((entry != null)) {
-              return new JarClassFileImpl(className.asClassFileName(), jarFile, classpathEntry.getAbsolutePath(),
+              return new JarClassFileImpl(classFileName, classpathEntry, jarFilePool,
+                  ClasspathClassFileLoaderImpl.this._binaryTypeCache, classpathEntry.getAbsolutePath(),
                   ClasspathClassFileLoaderImpl.this._type);
             }
           } catch (IOException e) {
             // nothing to do here...
+          } finally {
+            jarFilePool.release(jarFile);
           }
         }
       }
@@ -616,24 +683,32 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
      * @return
      */
     public ReferableSourceFile loadSourceFile(ClassName className) {
+      return loadSourceFile(CompoundName.toSegments(className.getPackageName()), className.getClassName()
+          .toCharArray());
+    }
 
-      String javaFileName = className.getClassName() + ".java";
+    /**
+     * <p>
+     * Returns the {@link ReferableSourceFile} for the given type or <code>null</code> if the source file can't be
+     * found. The source files are looked up in the indices of the source path entries, so the file system isn't
+     * accessed.
+     * </p>
+     * 
+     * @param packageName
+     *          the segments of the package name
+     * @param typeName
+     *          the name of the type
+     * @return the {@link ReferableSourceFile} for the given type or <code>null</code>.
+     */
+    public ReferableSourceFile loadSourceFile(char[][] packageName, char[] typeName) {
 
       for (File classpathEntry : this._sourcepathEntries) {
 
-        if (classpathEntry.isDirectory()) {
-          File packageDir = new File(classpathEntry, className.getPackageAsDirectoryName());
-          if (packageDir.isDirectory()) {
-            for (String name : packageDir.list()) {
-              if (javaFileName.equals(name)
-                  && new File(classpathEntry, className.asSourceFileName().replace('/', File.separatorChar)
-                      .replace('\\', File.separatorChar)).exists()) {
-                return new ReferableSourceFileImpl(classpathEntry, className.asSourceFileName()
-                    .replace('/', File.separatorChar).replace('\\', File.separatorChar),
-                    classpathEntry.getAbsolutePath(), ClasspathClassFileLoaderImpl.this._type);
-              }
-            }
-          }
+        SourcepathIndex sourcepathIndex = ClasspathClassFileLoaderImpl.this._sourcepathIndices.get(classpathEntry);
+        if ((sourcepathIndex != null) && sourcepathIndex.containsSourceFile(packageName, typeName)) {
+          String sourceFileName = CompoundName.toFileName(packageName, typeName, File.separatorChar, ".java");
+          return new ReferableSourceFileImpl(classpathEntry, sourceFileName, classpathEntry.getAbsolutePath(),
+              ClasspathClassFileLoaderImpl.this._type);
         }
 
         // we do not support source jars here...
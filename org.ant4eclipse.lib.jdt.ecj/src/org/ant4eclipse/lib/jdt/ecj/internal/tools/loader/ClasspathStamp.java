@@ -0,0 +1,217 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.File;
+import java.io.FileFilter;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * A cheap fingerprint of the state of a list of class path entries. It is used to detect whether a cached class file
+ * loader has been created for an older state of its class path (e.g. an output folder that has been written by a
+ * previous compile run).
+ * </p>
+ * <p>
+ * For archives the stamp contains the size and the modification time of the file. For directories it contains the
+ * modification times of the directory and of all its sub directories: adding, removing or renaming a class file or a
+ * package changes the modification time of the containing directory, so no single file has to be examined.
+ * </p>
+ * <p>
+ * File systems only store modification times with a limited resolution, so a modification that happens shortly after
+ * the stamp has been computed might not be detected. If any of the examined modification times is younger than
+ * {@link #TIMESTAMP_RESOLUTION} the stamp is considered to be unreliable and will never be up to date.
+ * </p>
+ * <p>
+ * {@link #isUpToDate()} examines the complete directory trees again, so callers should check a stamp only when the
+ * class path entries might have been changed (e.g. once per compile job).
+ * </p>
+ */
+public class ClasspathStamp {
+
+  /** the resolution (in milliseconds) of file modification times that is assumed */
+  public static final long        TIMESTAMP_RESOLUTION = 2000;
+
+  /** the filter used to list the sub directories of a directory */
+  private static final FileFilter DIRECTORY_FILTER     = new FileFilter() {
+                                                         public boolean accept(File file) {
+                                                           return file.isDirectory();
+                                                         }
+                                                       };
+
+  /** the class path entries */
+  private File[]                  _entries;
+
+  /** the fingerprint of the class path entries */
+  private long                    _value;
+
+  /** indicates whether the fingerprint reliably reflects the state of the class path entries */
+  private boolean                 _reliable;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ClasspathStamp}.
+   * </p>
+   *
+   * @param entries
+   *          the class path entries (directories or archives)
+   * @param value
+   *          the fingerprint of the class path entries
+   * @param reliable
+   *          indicates whether the fingerprint reliably reflects the state of the class path entries
+   */
+  private ClasspathStamp(File[] entries, long value, boolean reliable) {
+    this._entries = entries;
+    this._value = value;
+    this._reliable = reliable;
+  }
+
+  /**
+   * <p>
+   * Computes the stamp for the given class path entries.
+   * </p>
+   *
+   * @param entries
+   *          the class path entries (directories or archives)
+   * @return the stamp for the given class path entries.
+   */
+  public static ClasspathStamp create(File[] entries) {
+    Assure.notNull("entries", entries);
+
+    File[] copy = new File[entries.length];
+    System.arraycopy(entries, 0, copy, 0, entries.length);
+
+    long now = System.currentTimeMillis();
+    long[] state = compute(copy);
+    return new ClasspathStamp(copy, state[0], state[1] < now - TIMESTAMP_RESOLUTION);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the class path entries haven't changed since this stamp has been created.
+   * </p>
+   *
+   * @return <code>true</code> if the class path entries haven't changed since this stamp has been created.
+   */
+  public boolean isUpToDate() {
+    return this._reliable && (compute(this._entries)[0] == this._value);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if this stamp reliably reflects the state of the class path entries.
+   * </p>
+   *
+   * @return <code>true</code> if this stamp reliably reflects the state of the class path entries.
+   */
+  public boolean isReliable() {
+    return this._reliable;
+  }
+
+  /**
+   * <p>
+   * Computes the fingerprint of the given class path entries.
+   * </p>
+   *
+   * @param entries
+   *          the class path entries
+   * @return an array containing the fingerprint and the youngest modification time that has been examined.
+   */
+  private static long[] compute(File[] entries) {
+    long[] state = new long[] { 17, 0 };
+    for (File entry : entries) {
+      if (entry == null) {
+        continue;
+      }
+      mix(state, entry.getPath().hashCode());
+      if (entry.isDirectory()) {
+        computeDirectory(entry, state);
+      } else if (entry.isFile()) {
+        mix(state, entry.length());
+        mixTimestamp(state, entry.lastModified());
+      } else {
+        // the entry doesn't exist (yet)
+        mix(state, -1);
+      }
+    }
+    return state;
+  }
+
+  /**
+   * <p>
+   * Adds the modification times of the given directory and of all its sub directories to the given state.
+   * </p>
+   *
+   * @param directory
+   *          the directory
+   * @param state
+   *          the state
+   */
+  private static void computeDirectory(File directory, long[] state) {
+    mixTimestamp(state, directory.lastModified());
+    File[] children = directory.listFiles(DIRECTORY_FILTER);
+    if (children == null) {
+      return;
+    }
+    mix(state, children.length);
+    for (File child : children) {
+      computeDirectory(child, state);
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the given modification time to the given state.
+   * </p>
+   *
+   * @param state
+   *          the state
+   * @param timestamp
+   *          the modification time
+   */
+  private static void mixTimestamp(long[] state, long timestamp) {
+    mix(state, timestamp);
+    state[1] = Math.max(state[1], timestamp);
+  }
+
+  /**
+   * <p>
+   * Adds the given value to the fingerprint.
+   * </p>
+   *
+   * @param state
+   *          the state
+   * @param value
+   *          the value
+   */
+  private static void mix(long[] state, long value) {
+    state[0] = 31 * state[0] + value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[ClasspathStamp:");
+    buffer.append(" _entries: ");
+    buffer.append(this._entries.length);
+    buffer.append(" _value: ");
+    buffer.append(this._value);
+    buffer.append(" _reliable: ");
+    buffer.append(this._reliable);
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
@@ -17,79 +17,128 @@ import org.ant4eclipse.lib.core.util.Utilities;
 import org.ant4eclipse.lib.jdt.ecj.ClassFile;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
 import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
+import org.ant4eclipse.lib.jdt.ecj.ReferableType;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+/**
+ * <p>
+ * Class file loader that combines a list of class file loaders. Nested compound and filtering class file loaders are
+ * flattened when the compound class file loader is created: each package is mapped to the leaf class file loaders
+ * that provide it (in class path order), each of them together with the filters that apply to it. A lookup therefore
+ * needs a single map access, regardless of how deeply the class file loaders are nested. The index is built in linear
+ * time and is immutable afterwards.
+ * </p>
+ */
 public class CompoundClassFileLoaderImpl implements ClassFileLoader {
 
-  private ClassFileLoader[]                  _classFileLoaders;
+  /** the class file loaders */
+  private ClassFileLoader[]             _classFileLoaders;
 
-  /** maps packages to a package provider that contains a list of one or more class path entries */
-  private Map<String, List<ClassFileLoader>> _allPackages;
+  /** the flattened class file loaders (in class path order) */
+  private Provider[]                    _providers;
+
+  /** maps packages to the providers that contain the package */
+  private Map<CompoundName, Provider[]> _packageProviders;
+
+  /** the names of all packages */
+  private Set<String>                   _allPackages;
+
+  /** the class path (computed on demand) */
+  private volatile File[]               _classpath;
 
   public CompoundClassFileLoaderImpl(ClassFileLoader[] classFileLoaders) {
     Assure.notNull("classFileLoaders", classFileLoaders);
 
     this._classFileLoaders = classFileLoaders;
 
-    this._allPackages = new HashMap<String, List<ClassFileLoader>>();
-
     initialise();
   }
 
+  /**
+   * <p>
+   * Returns the class file loaders this compound class file loader has been created for.
+   * </p>
+   * 
+   * @return the class file loaders this compound class file loader has been created for.
+   */
+  public ClassFileLoader[] getClassFileLoaders() {
+    return this._classFileLoaders.clone();
+  }
+
   /**
    * {@inheritDoc}
    */
   public File[] getClasspath() {
-    List<File> files = new ArrayList<File>();
-    List<String> set = new ArrayList<String>();
-    for (ClassFileLoader loader : this._classFileLoaders) {
-      File[] entries = loader.getClasspath();
-      for (File entry : entries) {
-        entry = Utilities.getCanonicalFile(entry);
-        String path = entry.getAbsolutePath();
-        if (Utilities.isWindows()) {
-          // for windows the case makes no difference
-          path = path.toLowerCase();
-        }
-        if (!set.contains(path)) {
-          set.add(path);
-          files.add(entry);
+    File[] result = this._classpath;
+    if (result == null) {
+      List<File> files = new ArrayList<File>();
+      Set<String> set = new HashSet<String>();
+      for (ClassFileLoader loader : this._classFileLoaders) {
+        File[] entries = loader.getClasspath();
+        for (File entry : entries) {
+          entry = Utilities.getCanonicalFile(entry);
+          String path = entry.getAbsolutePath();
+          if (Utilities.isWindows()) {
+            // for windows the case makes no difference
+            path = path.toLowerCase();
+          }
+          if (set.add(path)) {
+            files.add(entry);
+          }
         }
       }
+      result = files.toArray(new File[files.size()]);
+      this._classpath = result;
     }
-    return files.toArray(new File[files.size()]);
+    return result.clone();
   }
 
   /**
    * {@inheritDoc}
    */
   public String[] getAllPackages() {
-    return this._allPackages.keySet().toArray(new String[0]);
+    return this._allPackages.toArray(new String[this._allPackages.size()]);
   }
 
   /**
    * {@inheritDoc}
    */
   public boolean hasPackage(String packageName) {
-    return this._allPackages.containsKey(packageName);
+    return this._allPackages.contains(packageName);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean hasPackage(char[][] parentPackageName, char[] packageName) {
+    return this._packageProviders.containsKey(new CompoundName(parentPackageName, packageName));
   }
 
   /**
    * {@inheritDoc}
    */
   public ClassFile loadClass(ClassName className) {
+    return loadClass(CompoundName.toSegments(className.getPackageName()), className.getClassName().toCharArray());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ClassFile loadClass(char[][] packageName, char[] typeName) {
 
-    // get the class file loader list
-    List<ClassFileLoader> classFileLoaderList = this._allPackages.get(className.getPackageName());
+    // get the providers
+    Provider[] providers = this._packageProviders.get(new CompoundName(packageName, null));
 
-    // return if class file loader list is null
-    if (classFileLoaderList == null) {
+    // return if there is no provider for the package
+    if (providers == null) {
       return null;
     }
 
@@ -97,14 +146,16 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
     ClassFile result = null;
 
     // try to find the class file...
-    for (ClassFileLoader classFileLoader : classFileLoaderList) {
+    for (Provider provider : providers) {
 
       // try to load class file...
-      ClassFile classFile = classFileLoader.loadClass(className);
+      ClassFile classFile = provider._classFileLoader.loadClass(packageName, typeName);
 
       // class file was found...
       if (classFile != null) {
 
+        provider.setAccessRestrictions(classFile, packageName, typeName);
+
         // if the class file has no access restrictions, return the class file...
         if (!classFile.hasAccessRestriction()) {
           return classFile;
@@ -124,19 +175,27 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
    * {@inheritDoc}
    */
   public ReferableSourceFile loadSource(ClassName className) {
+    return loadSource(CompoundName.toSegments(className.getPackageName()), className.getClassName().toCharArray());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ReferableSourceFile loadSource(char[][] packageName, char[] typeName) {
 
     // TODO: Access restrictions for source files!!
 
     // if the package name is not in the map of all packages, return immediately
-    List<ClassFileLoader> classFileLoaderList = this._allPackages.get(className.getPackageName());
-    if (classFileLoaderList == null) {
+    Provider[] providers = this._packageProviders.get(new CompoundName(packageName, null));
+    if (providers == null) {
       return null;
     }
 
     // search for the source file
-    for (ClassFileLoader classFileLoader : classFileLoaderList) {
-      ReferableSourceFile sourceFile = classFileLoader.loadSource(className);
+    for (Provider provider : providers) {
+      ReferableSourceFile sourceFile = provider._classFileLoader.loadSource(packageName, typeName);
       if (sourceFile != null) {
+        provider.setAccessRestrictions(sourceFile, packageName, typeName);
         return sourceFile;
       }
     }
@@ -164,23 +223,180 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
     return buffer.toString();
   }
 
+  /**
+   * <p>
+   * Flattens the class file loaders and builds the package index.
+   * </p>
+   */
   private void initialise() {
 
+    // step 1: flatten the class file loaders, skipping duplicates
+    List<Provider> providers = new ArrayList<Provider>();
+    Set<Provider> knownProviders = new HashSet<Provider>();
     for (ClassFileLoader classFileLoader : this._classFileLoaders) {
-      String[] packages = classFileLoader.getAllPackages();
+      flatten(classFileLoader, new FilteringClassFileLoader[0], providers, knownProviders);
+    }
+    this._providers = providers.toArray(new Provider[providers.size()]);
 
-      for (String aPackage : packages) {
-        if (this._allPackages.containsKey(aPackage)) {
-          List<ClassFileLoader> classFileLoaderList = this._allPackages.get(aPackage);
-          if (!classFileLoaderList.contains(classFileLoader)) {
-            classFileLoaderList.add(classFileLoader);
-          }
-        } else {
-          List<ClassFileLoader> classFileLoaderList = new LinkedList<ClassFileLoader>();
-          classFileLoaderList.add(classFileLoader);
-          this._allPackages.put(aPackage, classFileLoaderList);
+    // step 2: map each package to its providers
+    Map<String, List<Provider>> packageProviders = new HashMap<String, List<Provider>>();
+    for (Provider provider : this._providers) {
+      for (String aPackage : provider._classFileLoader.getAllPackages()) {
+        List<Provider> list = packageProviders.get(aPackage);
+        if (list == null) {
+          list = new ArrayList<Provider>(1);
+          packageProviders.put(aPackage, list);
+        }
+        // the providers are processed one after the other, so a duplicate can only be the last element
+        if (list.isEmpty() || (list.get(list.size() - 1) != provider)) {
+          list.add(provider);
         }
       }
     }
+
+    // step 3: create the immutable index
+    this._allPackages = new HashSet<String>(packageProviders.keySet());
+    this._packageProviders = new HashMap<CompoundName, Provider[]>(packageProviders.size() * 4 / 3 + 1);
+    for (Map.Entry<String, List<Provider>> entry : packageProviders.entrySet()) {
+      List<Provider> list = entry.getValue();
+      this._packageProviders.put(CompoundName.fromQualifiedName(entry.getKey()), list.toArray(new Provider[list
+          .size()]));
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the leaf class file loaders of the given class file loader to the given list of providers.
+   * </p>
+   * 
+   * @param classFileLoader
+   *          the class file loader
+   * @param filters
+   *          the filters that apply to the given class file loader (outermost first)
+   * @param providers
+   *          the list of providers
+   * @param knownProviders
+   *          the providers that have already been added
+   */
+  private static void flatten(ClassFileLoader classFileLoader, FilteringClassFileLoader[] filters,
+      List<Provider> providers, Set<Provider> knownProviders) {
+
+    if (classFileLoader instanceof CompoundClassFileLoaderImpl) {
+      for (Provider provider : ((CompoundClassFileLoaderImpl) classFileLoader)._providers) {
+        addProvider(new Provider(provider._classFileLoader, concat(filters, provider._filters)), providers,
+            knownProviders);
+      }
+    } else if (classFileLoader instanceof FilteringClassFileLoader) {
+      FilteringClassFileLoader filter = (FilteringClassFileLoader) classFileLoader;
+      flatten(filter.getClassFileLoader(), concat(filters, new FilteringClassFileLoader[] { filter }), providers,
+          knownProviders);
+    } else {
+      addProvider(new Provider(classFileLoader, filters), providers, knownProviders);
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the given provider unless an equal provider has already been added. A provider that occurs a second time
+   * would never be asked, since the first occurrence already answers all its lookups.
+   * </p>
+   */
+  private static void addProvider(Provider provider, List<Provider> providers, Set<Provider> knownProviders) {
+    if (knownProviders.add(provider)) {
+      providers.add(provider);
+    }
+  }
+
+  /**
+   * <p>
+   * Concatenates the given arrays.
+   * </p>
+   */
+  private static FilteringClassFileLoader[] concat(FilteringClassFileLoader[] first,
+      FilteringClassFileLoader[] second) {
+    if (first.length == 0) {
+      return second;
+    }
+    if (second.length == 0) {
+      return first;
+    }
+    FilteringClassFileLoader[] result = new FilteringClassFileLoader[first.length + second.length];
+    System.arraycopy(first, 0, result, 0, first.length);
+    System.arraycopy(second, 0, result, first.length, second.length);
+    return result;
+  }
+
+  /**
+   * <p>
+   * A leaf class file loader together with the filters that apply to it.
+   * </p>
+   */
+  private static class Provider {
+
+    /** the leaf class file loader */
+    private ClassFileLoader            _classFileLoader;
+
+    /** the filters that apply to the class file loader */
+    private FilteringClassFileLoader[] _filters;
+
+    /** the precomputed hash code */
+    private int                        _hashCode;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link Provider}.
+     * </p>
+     * 
+     * @param classFileLoader
+     *          the leaf class file loader
+     * @param filters
+     *          the filters that apply to the class file loader
+     */
+    public Provider(ClassFileLoader classFileLoader, FilteringClassFileLoader[] filters) {
+      this._classFileLoader = classFileLoader;
+      this._filters = filters;
+      this._hashCode = 31 * System.identityHashCode(classFileLoader) + Arrays.hashCode(filters);
+    }
+
+    /**
+     * <p>
+     * Sets the access restriction on the given type if one of the filters doesn't allow access.
+     * </p>
+     * 
+     * @param referableType
+     *          the type
+     * @param packageName
+     *          the segments of the package name
+     * @param typeName
+     *          the name of the type
+     */
+    private void setAccessRestrictions(ReferableType referableType, char[][] packageName, char[] typeName) {
+      for (FilteringClassFileLoader filter : this._filters) {
+        filter.setAccessRestrictions(referableType, packageName, typeName);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      return this._hashCode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if ((obj == null) || (obj.getClass() != getClass())) {
+        return false;
+      }
+      Provider other = (Provider) obj;
+      return (this._classFileLoader == other._classFileLoader) && Arrays.equals(this._filters, other._filters);
+    }
   }
 }
@@ -0,0 +1,197 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+
+/**
+ * <p>
+ * A compound name (e.g. a package name or a qualified type name) as it is used by the eclipse java compiler. Instances
+ * are used as keys in hash maps, so package and type names passed in by the compiler can be looked up without
+ * converting them to strings first.
+ * </p>
+ * <p>
+ * A compound name consists of leading segments and a last segment. The names <code>(['java', 'lang'], null)</code> and
+ * <code>(['java'], 'lang')</code> are equal. Instances created for a lookup share the arrays of the caller, instances
+ * that are stored in a map should be created using {@link #copy()}.
+ * </p>
+ */
+public class CompoundName {
+
+  /** the empty compound name (e.g. the default package) */
+  public static final CompoundName EMPTY = new CompoundName(null, null);
+
+  /** the leading segments (only the first <code>_length</code> segments are used) */
+  private char[][]                 _segments;
+
+  /** the number of leading segments */
+  private int                      _length;
+
+  /** the last segment, maybe <code>null</code> if this is the empty name */
+  private char[]                   _name;
+
+  /** the precomputed hash code */
+  private int                      _hashCode;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompoundName}. The given arrays are not copied.
+   * </p>
+   *
+   * @param segments
+   *          the leading segments (maybe <code>null</code>)
+   * @param name
+   *          the last segment (maybe <code>null</code>, in this case the last of the given segments is used)
+   */
+  public CompoundName(char[][] segments, char[] name) {
+    this._segments = segments;
+    this._length = segments != null ? segments.length : 0;
+    this._name = name;
+    if ((name == null) && (this._length > 0)) {
+      this._length--;
+      this._name = segments[this._length];
+    }
+
+    int result = 1;
+    for (int i = 0; i < this._length; i++) {
+      result = 31 * result + CharOperation.hashCode(this._segments[i]);
+    }
+    this._hashCode = 31 * result + (this._name != null ? CharOperation.hashCode(this._name) : 0);
+  }
+
+  /**
+   * <p>
+   * Returns a copy of this name that doesn't share the outer array with the caller.
+   * </p>
+   *
+   * @return a copy of this name.
+   */
+  public CompoundName copy() {
+    char[][] segments = new char[this._length][];
+    System.arraycopy(this._segments != null ? this._segments : CharOperation.NO_CHAR_CHAR, 0, segments, 0,
+        this._length);
+    return new CompoundName(segments, this._name);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return this._hashCode;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if ((obj == null) || (obj.getClass() != getClass())) {
+      return false;
+    }
+    CompoundName other = (CompoundName) obj;
+    if ((this._hashCode != other._hashCode) || (this._length != other._length)
+        || !CharOperation.equals(this._name, other._name)) {
+      return false;
+    }
+    for (int i = 0; i < this._length; i++) {
+      if (!CharOperation.equals(this._segments[i], other._segments[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * <p>
+   * Returns the dotted representation of this name (e.g. <code>java.lang</code>).
+   * </p>
+   *
+   * @return the dotted representation of this name.
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    for (int i = 0; i < this._length; i++) {
+      buffer.append(this._segments[i]).append('.');
+    }
+    if (this._name != null) {
+      buffer.append(this._name);
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * <p>
+   * Splits the given dotted name (e.g. <code>java.lang</code>) into its segments. The empty string results in an empty
+   * array.
+   * </p>
+   *
+   * @param qualifiedName
+   *          the dotted name
+   * @return the segments of the given name.
+   */
+  public static char[][] toSegments(String qualifiedName) {
+    return CharOperation.splitOn('.', qualifiedName.toCharArray());
+  }
+
+  /**
+   * <p>
+   * Creates a new {@link CompoundName} for the given dotted name (e.g. <code>java.lang</code>).
+   * </p>
+   *
+   * @param qualifiedName
+   *          the dotted name
+   * @return the {@link CompoundName} for the given dotted name.
+   */
+  public static CompoundName fromQualifiedName(String qualifiedName) {
+    return new CompoundName(toSegments(qualifiedName), null);
+  }
+
+  /**
+   * <p>
+   * Returns the name of the file for the given type relative to the root of a class path entry (e.g.
+   * <code>java/lang/Object.class</code>). The name is built within a single buffer.
+   * </p>
+   *
+   * @param packageName
+   *          the segments of the package name (maybe <code>null</code>)
+   * @param typeName
+   *          the name of the type
+   * @param separator
+   *          the separator that is used between the segments
+   * @param postfix
+   *          the postfix (e.g. <code>.class</code>)
+   * @return the name of the file
+   */
+  public static String toFileName(char[][] packageName, char[] typeName, char separator, String postfix) {
+    int size = typeName.length + postfix.length();
+    int length = packageName != null ? packageName.length : 0;
+    for (int i = 0; i < length; i++) {
+      size += packageName[i].length + 1;
+    }
+    char[] result = new char[size];
+    int index = 0;
+    for (int i = 0; i < length; i++) {
+      System.arraycopy(packageName[i], 0, result, index, packageName[i].length);
+      index += packageName[i].length;
+      result[index++] = separator;
+    }
+    System.arraycopy(typeName, 0, result, index, typeName.length);
+    index += typeName.length;
+    postfix.getChars(0, postfix.length(), result, index);
+    return new String(result);
+  }
+}
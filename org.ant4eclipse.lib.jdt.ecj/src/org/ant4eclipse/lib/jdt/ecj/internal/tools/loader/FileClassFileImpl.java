@@ -28,15 +28,28 @@ import org.eclipse.jdt.internal.compiler.util.Util;
 public class FileClassFileImpl extends DefaultReferableType implements ClassFile {
 
   /** the class file */
-  private File _classfile;
+  private File            _classfile;
+
+  /** the cache for the parsed binary type */
+  private BinaryTypeCache _binaryTypeCache;
 
   /**
    * @param classfile
    */
   public FileClassFileImpl(File classfile, String libraryLocation, byte libraryType) {
+    this(classfile, new BinaryTypeCache(0), libraryLocation, libraryType);
+  }
+
+  /**
+   * @param classfile
+   * @param binaryTypeCache
+   */
+  public FileClassFileImpl(File classfile, BinaryTypeCache binaryTypeCache, String libraryLocation, byte libraryType) {
     super(libraryLocation, libraryType);
     Assure.exists("classfile", classfile);
+    Assure.notNull("binaryTypeCache", binaryTypeCache);
     this._classfile = classfile;
+    this._binaryTypeCache = binaryTypeCache;
   }
 
   public byte[] getBytes() {
@@ -51,8 +64,21 @@ public class FileClassFileImpl extends DefaultReferableType implements ClassFile
    * {@inheritDoc}
    */
   public final IBinaryType getBinaryType() {
+
+    // try the cache first
+    String key = this._classfile.getAbsolutePath();
+    long lastModified = this._classfile.lastModified();
+    long length = this._classfile.length();
+    IBinaryType result = this._binaryTypeCache.get(key, lastModified, length);
+    if (result != null) {
+      return result;
+    }
+
     try {
-      return ClassFileReader.read(this._classfile, true);
+      byte[] bytes = Util.getFileByteContent(this._classfile);
+      result = new ClassFileReader(bytes, key.toCharArray(), true);
+      this._binaryTypeCache.put(key, lastModified, length, result, bytes.length);
+      return result;
     } catch (Exception e) {
       // return null if an exception occurs
       e.printStackTrace();
@@ -12,10 +12,8 @@
 package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
 
 import java.io.File;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.ClassName;
@@ -30,26 +28,26 @@ import org.eclipse.jdt.internal.compiler.env.AccessRule;
 
 /**
  * <p>
+ * Class file loader that sets an access restriction on all types of the underlying class file loader that are not
+ * accessible according to a filter string (see {@link AccessRuleMatcher}). The filter is compiled once when the
+ * class file loader is created.
  * </p>
  * 
  * @author Gerd Wuetherich (gerd@gerd-wuetherich.de)
  */
 public class FilteringClassFileLoader implements ClassFileLoader {
 
-  /** the class file loader that should be filtered */
-  private ClassFileLoader _classFileLoader;
-
-  /** the filter string */
-  private String          _filter;
+  /** the access rule of all restricted types */
+  private static final AccessRule        FORBIDDEN = new AccessRule("**".toCharArray(), IProblem.ForbiddenReference);
 
-  /** the include patterns */
-  private List<String>    _includes;
+  /** the class file loader that should be filtered */
+  private ClassFileLoader                _classFileLoader;
 
-  /** the exclude patterns */
-  private List<String>    _excludes;
+  /** the compiled filter */
+  private AccessRuleMatcher              _matcher;
 
-  /** - */
-  private Set<String>     _containedPackages;
+  /** the shared access restrictions (library type and location -> access restriction) */
+  private Map<String, AccessRestriction> _accessRestrictions;
 
   /**
    * <p>
@@ -64,12 +62,30 @@ public class FilteringClassFileLoader implements ClassFileLoader {
     Assure.nonEmpty("filter", filter);
 
     this._classFileLoader = classFileLoader;
-    this._filter = filter;
+    this._matcher = new AccessRuleMatcher(filter);
+    this._accessRestrictions = new ConcurrentHashMap<String, AccessRestriction>();
+  }
 
-    this._includes = new LinkedList<String>();
-    this._excludes = new LinkedList<String>();
+  /**
+   * <p>
+   * Returns the class file loader that is filtered.
+   * </p>
+   * 
+   * @return the class file loader that is filtered.
+   */
+  public ClassFileLoader getClassFileLoader() {
+    return this._classFileLoader;
+  }
 
-    init();
+  /**
+   * <p>
+   * Returns the filter string.
+   * </p>
+   * 
+   * @return the filter string.
+   */
+  public String getFilter() {
+    return this._matcher.getFilter();
   }
 
   /**
@@ -93,14 +109,28 @@ public class FilteringClassFileLoader implements ClassFileLoader {
     return this._classFileLoader.hasPackage(packageName);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public boolean hasPackage(char[][] parentPackageName, char[] packageName) {
+    return this._classFileLoader.hasPackage(parentPackageName, packageName);
+  }
+
   /**
    * {@inheritDoc}
    */
   public ClassFile loadClass(ClassName className) {
+    return loadClass(CompoundName.toSegments(className.getPackageName()), className.getClassName().toCharArray());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ClassFile loadClass(char[][] packageName, char[] typeName) {
 
-    ClassFile result = this._classFileLoader.loadClass(className);
+    ClassFile result = this._classFileLoader.loadClass(packageName, typeName);
 
-    setAccessRestrictions(result, className);
+    setAccessRestrictions(result, packageName, typeName);
 
     return result;
   }
@@ -109,56 +139,44 @@ public class FilteringClassFileLoader implements ClassFileLoader {
    * {@inheritDoc}
    */
   public ReferableSourceFile loadSource(ClassName className) {
+    return loadSource(CompoundName.toSegments(className.getPackageName()), className.getClassName().toCharArray());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ReferableSourceFile loadSource(char[][] packageName, char[] typeName) {
 
-    ReferableSourceFile result = this._classFileLoader.loadSource(className);
+    ReferableSourceFile result = this._classFileLoader.loadSource(packageName, typeName);
 
-    setAccessRestrictions(result, className);
+    setAccessRestrictions(result, packageName, typeName);
 
     return result;
   }
 
   /**
    * <p>
+   * Sets the access restriction on the given type if it is not accessible according to the filter. This method is
+   * also used by {@link CompoundClassFileLoaderImpl}, which queries the filtered class file loader directly.
    * </p>
    * 
    * @param referableType
-   * @return
+   *          the type (maybe <code>null</code>)
+   * @param packageName
+   *          the segments of the package name
+   * @param typeName
+   *          the name of the type
+   * @return the given type.
    */
-  private ReferableType setAccessRestrictions(ReferableType referableType, ClassName className) {
+  ReferableType setAccessRestrictions(ReferableType referableType, char[][] packageName, char[] typeName) {
 
     //
     if (referableType == null) {
       return referableType;
     }
 
-    // try 'shortcut'
-    if (this._containedPackages != null && this._containedPackages.contains(className.getPackageName())) {
-      return referableType;
-    }
-
-    //
-    String classFileName = className.asClassFileName();
-
-    //
-    for (String includePattern : this._includes) {
-      if (classFileName.matches(includePattern)) {
-        return referableType;
-      }
-    }
-
-    //
-    for (String exludePattern : this._excludes) {
-      if (classFileName.matches(exludePattern)) {
-
-        if (referableType instanceof DefaultReferableType) {
-
-          AccessRestriction accessRestriction = new AccessRestriction(new AccessRule("**".toCharArray(),
-              IProblem.ForbiddenReference), referableType.getLibraryType(), referableType.getLibraryLocation());
-
-          ((DefaultReferableType) referableType).setAccessRestriction(accessRestriction);
-        }
-        return referableType;
-      }
+    if (!this._matcher.isAccessible(packageName, typeName) && (referableType instanceof DefaultReferableType)) {
+      ((DefaultReferableType) referableType).setAccessRestriction(getAccessRestriction(referableType));
     }
 
     return referableType;
@@ -166,43 +184,22 @@ public class FilteringClassFileLoader implements ClassFileLoader {
 
   /**
    * <p>
+   * Returns the access restriction for restricted types of the library of the given type. Access restrictions are
+   * immutable, so a single instance is shared by all types of a library.
    * </p>
+   * 
+   * @param referableType
+   *          the referable type
+   * @return the access restriction for restricted types of the library of the given type.
    */
-  private void init() {
-
-    //
-    this._containedPackages = new HashSet<String>();
-
-    //
-    for (String part : this._filter.split(";")) {
-
-      // step 0:
-      if (part.matches("\\+.*/\\*")) {
-        this._containedPackages.add(part.substring(1, part.length() - 2).replace('/', '.'));
-      } else if (part.matches("\\-\\*\\*/\\*")) {
-        //
-      } else {
-        this._containedPackages = null;
-      }
-
-      // step 1: replace all occurrences of '**/*' with '###' (temporary step)
-      String transformedPart = part.substring(1).replaceAll("\\*\\*/\\*", "###");
-
-      // step 2: replace all occurrences of '*' with '[^\.]*'
-      transformedPart = transformedPart.replaceAll("\\*", "[^\\\\.]*");
-
-      // step 3: replace all occurrences of '###' (formally '**/*') with '.*'
-      transformedPart = transformedPart.replaceAll("###", ".*");
-
-      // step 4: append '\.class'
-      transformedPart = transformedPart.concat("\\.class");
-
-      if (part.startsWith("+")) {
-        this._includes.add(transformedPart);
-      }
-      if (part.startsWith("-")) {
-        this._excludes.add(transformedPart);
-      }
+  private AccessRestriction getAccessRestriction(ReferableType referableType) {
+    String key = referableType.getLibraryType() + ":" + referableType.getLibraryLocation();
+    AccessRestriction result = this._accessRestrictions.get(key);
+    if (result == null) {
+      result = new AccessRestriction(FORBIDDEN, referableType.getLibraryType(), referableType
+          .getLibraryLocation());
+      this._accessRestrictions.put(key, result);
     }
+    return result;
   }
 }
@@ -11,8 +11,10 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.zip.ZipFile;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
@@ -31,32 +33,49 @@ import org.eclipse.jdt.internal.compiler.util.Util;
  */
 public class JarClassFileImpl extends DefaultReferableType implements ClassFile {
 
-  /** the zip file */
-  private ZipFile _zipFile;
+  /** the jar file */
+  private File        _jarFile;
+
+  /** the pool that provides the open jar file */
+  private JarFilePool _jarFilePool;
 
   /** the zip entry name */
-  private String  _zipEntryName;
+  private String          _zipEntryName;
+
+  /** the cache for the parsed binary type */
+  private BinaryTypeCache _binaryTypeCache;
 
   /**
    * @param zipEntryName
-   * @param zipFile
+   * @param jarFile
+   * @param jarFilePool
+   * @param binaryTypeCache
    */
-  public JarClassFileImpl(String zipEntryName, ZipFile zipFile, String libraryLocation, byte libraryType) {
+  public JarClassFileImpl(String zipEntryName, File jarFile, JarFilePool jarFilePool, BinaryTypeCache binaryTypeCache,
+      String libraryLocation, byte libraryType) {
 
     super(libraryLocation, libraryType);
 
     Assure.nonEmpty("zipEntryName", zipEntryName);
-    Assure.notNull("zipFile", zipFile);
+    Assure.notNull("jarFile", jarFile);
+    Assure.notNull("jarFilePool", jarFilePool);
+    Assure.notNull("binaryTypeCache", binaryTypeCache);
 
     this._zipEntryName = zipEntryName;
-    this._zipFile = zipFile;
+    this._jarFile = jarFile;
+    this._jarFilePool = jarFilePool;
+    this._binaryTypeCache = binaryTypeCache;
   }
 
   public byte[] getBytes() {
+    JarFile zipFile = null;
     try {
-      return Util.getZipEntryByteContent(this._zipFile.getEntry(this._zipEntryName), this._zipFile);
+      zipFile = this._jarFilePool.acquire(this._jarFile);
+      return Util.getZipEntryByteContent(zipFile.getEntry(this._zipEntryName), zipFile);
     } catch (Exception e) {
       throw new RuntimeException(e.getMessage(), e);
+    } finally {
+      this._jarFilePool.release(zipFile);
     }
   }
 
@@ -64,17 +83,38 @@ public class JarClassFileImpl extends DefaultReferableType implements ClassFile
    * {@inheritDoc}
    */
   public final IBinaryType getBinaryType() {
+
+    // try the cache first
+    String key = this._jarFile.getPath() + "!/" + this._zipEntryName;
+    long lastModified = this._jarFile.lastModified();
+    long length = this._jarFile.length();
+    IBinaryType result = this._binaryTypeCache.get(key, lastModified, length);
+    if (result != null) {
+      return result;
+    }
+
+    JarFile zipFile = null;
     try {
-      return ClassFileReader.read(this._zipFile, this._zipEntryName, true);
+      zipFile = this._jarFilePool.acquire(this._jarFile);
+      ZipEntry entry = zipFile.getEntry(this._zipEntryName);
+      if (entry == null) {
+        return null;
+      }
+      byte[] bytes = Util.getZipEntryByteContent(entry, zipFile);
+      result = new ClassFileReader(bytes, this._zipEntryName.toCharArray(), true);
+      this._binaryTypeCache.put(key, lastModified, length, result, bytes.length);
+      return result;
     } catch (ClassFormatException e) {
       throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
-          this._zipFile.getName(), this._zipEntryName);
+          this._jarFile.getPath(), this._zipEntryName);
     } catch (IOException e) {
       throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
-          this._zipFile.getName(), this._zipEntryName);
+          this._jarFile.getPath(), this._zipEntryName);
     } catch (java.lang.SecurityException e) {
       throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
-          this._zipFile.getName(), this._zipEntryName);
+          this._jarFile.getPath(), this._zipEntryName);
+    } finally {
+      this._jarFilePool.release(zipFile);
     }
   }
 
@@ -91,8 +131,8 @@ public class JarClassFileImpl extends DefaultReferableType implements ClassFile
     buffer.append(getLibraryType());
     buffer.append(" accessRestriction: ");
     buffer.append(getAccessRestriction());
-    buffer.append(" zipFile: ");
-    buffer.append(this._zipFile);
+    buffer.append(" jarFile: ");
+    buffer.append(this._jarFile);
     buffer.append(" zipEntryName: ");
     buffer.append(this._zipEntryName);
     buffer.append("]");
@@ -0,0 +1,349 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+/**
+ * <p>
+ * A bounded pool of open {@link JarFile} instances. Each archive is opened (and therefore its central directory is
+ * parsed) only once as long as it stays in the pool. Pooled archives are identified by their canonical path and their
+ * modification time, so a jar file that has been replaced on disk will be reopened.
+ * </p>
+ * <p>
+ * Each call to {@link #acquire(File)} must be followed by a call to {@link #release(JarFile)}. Archives that are in use
+ * are never closed: if such an archive is evicted from the pool it will be closed as soon as it has been released.
+ * Archives that are not in use are evicted in least-recently-used order once the pool exceeds its capacity.
+ * </p>
+ */
+public class JarFilePool {
+
+  /** System-Property that specifies the maximum number of jar files that are kept open */
+  public static final String        MAX_OPEN_FILES_PROPERTY = "ant4eclipse.jarFilePool.maxOpenFiles";
+
+  /** the default maximum number of jar files that are kept open */
+  public static final int           DEFAULT_MAX_OPEN_FILES  = 256;
+
+  /** the maximum number of jar files that are kept open (if not in use) */
+  private int                       _maxOpenFiles;
+
+  /** the pooled entries (canonical path -> entry), ordered by access */
+  private Map<String, PooledJar>    _entries;
+
+  /** all open jar files (including evicted ones that are still in use) */
+  private Map<JarFile, PooledJar>   _openJarFiles;
+
+  /** caches the canonical path for each requested file */
+  private Map<File, String>         _canonicalPaths;
+
+  /** the number of requests that have been served from the pool */
+  private long                      _hits;
+
+  /** the number of jar files that have been opened */
+  private long                      _opens;
+
+  /** the number of jar files that have been closed due to eviction */
+  private long                      _evictions;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link JarFilePool}. The capacity is read from the system property
+   * {@link #MAX_OPEN_FILES_PROPERTY}.
+   * </p>
+   */
+  public JarFilePool() {
+    this(Integer.getInteger(MAX_OPEN_FILES_PROPERTY, DEFAULT_MAX_OPEN_FILES).intValue());
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link JarFilePool}.
+   * </p>
+   *
+   * @param maxOpenFiles
+   *          the maximum number of unused jar files that are kept open.
+   */
+  public JarFilePool(int maxOpenFiles) {
+    Assure.assertTrue(maxOpenFiles > 0, "maxOpenFiles must be greater than 0");
+
+    this._maxOpenFiles = maxOpenFiles;
+    this._entries = new LinkedHashMap<String, PooledJar>(16, 0.75f, true);
+    this._openJarFiles = new HashMap<JarFile, PooledJar>();
+    this._canonicalPaths = new HashMap<File, String>();
+  }
+
+  /**
+   * <p>
+   * Returns an open {@link JarFile} for the given archive. The returned instance must be handed back using
+   * {@link #release(JarFile)} and must not be closed by the caller.
+   * </p>
+   *
+   * @param archive
+   *          the archive to open
+   * @return the open {@link JarFile}
+   * @throws IOException
+   *           if the archive could not be opened
+   */
+  public synchronized JarFile acquire(File archive) throws IOException {
+    Assure.notNull("archive", archive);
+
+    String path = getCanonicalPath(archive);
+    long lastModified = archive.lastModified();
+
+    PooledJar pooledJar = this._entries.get(path);
+
+    // the archive has been modified since it has been opened
+    if ((pooledJar != null) && (pooledJar._lastModified != lastModified)) {
+      this._entries.remove(path);
+      retire(pooledJar);
+      pooledJar = null;
+    }
+
+    if (pooledJar != null) {
+      this._hits++;
+      pooledJar._references++;
+    } else {
+      pooledJar = new PooledJar(new JarFile(archive), lastModified);
+      this._opens++;
+      this._entries.put(path, pooledJar);
+      this._openJarFiles.put(pooledJar._jarFile, pooledJar);
+
+      // the new jar file is in use, so it can't be evicted itself
+      pooledJar._references++;
+      evict();
+    }
+
+    return pooledJar._jarFile;
+  }
+
+  /**
+   * <p>
+   * Hands back a {@link JarFile} that has been acquired using {@link #acquire(File)}.
+   * </p>
+   *
+   * @param jarFile
+   *          the jar file to release. Maybe <code>null</code>.
+   */
+  public synchronized void release(JarFile jarFile) {
+    if (jarFile == null) {
+      return;
+    }
+
+    PooledJar pooledJar = this._openJarFiles.get(jarFile);
+    if (pooledJar == null) {
+      // the pool has been closed in the meantime
+      return;
+    }
+
+    pooledJar._references--;
+    if ((pooledJar._references <= 0) && pooledJar._retired) {
+      close(pooledJar);
+    } else if (pooledJar._references <= 0) {
+      evict();
+    }
+  }
+
+  /**
+   * <p>
+   * Closes all jar files of this pool. The pool can be used afterwards, the archives will be reopened on demand.
+   * </p>
+   */
+  public synchronized void close() {
+    for (PooledJar pooledJar : this._openJarFiles.values()) {
+      try {
+        pooledJar._jarFile.close();
+      } catch (IOException ex) {
+        A4ELogging.debug("Could not close jar file '%s': %s", pooledJar._jarFile.getName(), ex.getMessage());
+      }
+    }
+    this._openJarFiles.clear();
+    this._entries.clear();
+    this._canonicalPaths.clear();
+  }
+
+  /**
+   * <p>
+   * Returns the number of requests that have been served with an already open jar file.
+   * </p>
+   *
+   * @return the number of hits.
+   */
+  public synchronized long getHits() {
+    return this._hits;
+  }
+
+  /**
+   * <p>
+   * Returns the number of jar files that have been opened.
+   * </p>
+   *
+   * @return the number of opened jar files.
+   */
+  public synchronized long getOpens() {
+    return this._opens;
+  }
+
+  /**
+   * <p>
+   * Returns the number of jar files that have been closed because the capacity of the pool has been exceeded.
+   * </p>
+   *
+   * @return the number of evictions.
+   */
+  public synchronized long getEvictions() {
+    return this._evictions;
+  }
+
+  /**
+   * <p>
+   * Returns the number of jar files that are currently open.
+   * </p>
+   *
+   * @return the number of jar files that are currently open.
+   */
+  public synchronized int getOpenCount() {
+    return this._openJarFiles.size();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[JarFilePool:");
+    buffer.append(" _maxOpenFiles: ");
+    buffer.append(this._maxOpenFiles);
+    buffer.append(" open: ");
+    buffer.append(this._openJarFiles.size());
+    buffer.append(" _hits: ");
+    buffer.append(this._hits);
+    buffer.append(" _opens: ");
+    buffer.append(this._opens);
+    buffer.append(" _evictions: ");
+    buffer.append(this._evictions);
+    buffer.append("]");
+    return buffer.toString();
+  }
+
+  /**
+   * <p>
+   * Removes the least recently used archives that are not in use until the capacity of the pool is respected.
+   * </p>
+   */
+  private void evict() {
+    Iterator<PooledJar> iterator = this._entries.values().iterator();
+    while ((this._entries.size() > this._maxOpenFiles) && iterator.hasNext()) {
+      PooledJar pooledJar = iterator.next();
+      if (pooledJar._references <= 0) {
+        iterator.remove();
+        this._evictions++;
+        close(pooledJar);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Marks the given entry as retired. The underlying jar file will be closed as soon as it's no longer in use.
+   * </p>
+   *
+   * @param pooledJar
+   *          the entry to retire.
+   */
+  private void retire(PooledJar pooledJar) {
+    pooledJar._retired = true;
+    if (pooledJar._references <= 0) {
+      close(pooledJar);
+    }
+  }
+
+  /**
+   * <p>
+   * Closes the jar file of the given entry.
+   * </p>
+   *
+   * @param pooledJar
+   *          the entry to close.
+   */
+  private void close(PooledJar pooledJar) {
+    this._openJarFiles.remove(pooledJar._jarFile);
+    try {
+      pooledJar._jarFile.close();
+    } catch (IOException ex) {
+      A4ELogging.debug("Could not close jar file '%s': %s", pooledJar._jarFile.getName(), ex.getMessage());
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the (cached) canonical path of the given file.
+   * </p>
+   *
+   * @param file
+   *          the file
+   * @return the canonical path of the given file.
+   */
+  private String getCanonicalPath(File file) {
+    String result = this._canonicalPaths.get(file);
+    if (result == null) {
+      result = Utilities.getCanonicalFile(file).getPath();
+      this._canonicalPaths.put(file, result);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * An open jar file together with its reference count.
+   * </p>
+   */
+  private static class PooledJar {
+
+    /** the open jar file */
+    private JarFile _jarFile;
+
+    /** the modification time of the archive when it has been opened */
+    private long    _lastModified;
+
+    /** the number of callers that currently use the jar file */
+    private int     _references;
+
+    /** <code>true</code> if the jar file has been removed from the pool */
+    private boolean _retired;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link PooledJar}.
+     * </p>
+     *
+     * @param jarFile
+     *          the open jar file
+     * @param lastModified
+     *          the modification time of the archive
+     */
+    public PooledJar(JarFile jarFile, long lastModified) {
+      this._jarFile = jarFile;
+      this._lastModified = lastModified;
+    }
+  }
+}
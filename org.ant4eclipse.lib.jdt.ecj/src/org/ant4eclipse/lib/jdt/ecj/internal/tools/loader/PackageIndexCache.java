@@ -0,0 +1,386 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarFile;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.ConcurrencyHelper;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
+
+/**
+ * <p>
+ * Provides the {@link ArchiveIndex} for class path archives. Indices are kept in memory and - if a cache directory has
+ * been specified - stored on disc, so that subsequent builds don't have to scan the archives again. An index is only
+ * reused as long as the size and the modification time of the archive don't change.
+ * </p>
+ * <p>
+ * The cache directory can be specified using the system property {@link #CACHE_DIRECTORY_PROPERTY}. If no directory
+ * has been specified, the indices will only be kept in memory.
+ * </p>
+ * <p>
+ * If an executor has been specified, the archives that have to be indexed are processed in parallel.
+ * </p>
+ */
+public class PackageIndexCache {
+
+  /** System-Property that specifies the directory where the archive indices are stored */
+  public static final String        CACHE_DIRECTORY_PROPERTY = "ant4eclipse.packageIndexCache.dir";
+
+  /** the postfix of the index files */
+  private static final String       INDEX_FILE_POSTFIX       = ".idx";
+
+  /** the pool used to open the archives */
+  private JarFilePool               _jarFilePool;
+
+  /** the directory containing the index files, maybe <code>null</code> */
+  private File                      _directory;
+
+  /** the in-memory indices (canonical path -> index) */
+  private Map<String, ArchiveIndex> _indices;
+
+  /** the number of indices that have been read from disc */
+  private AtomicLong                _loaded;
+
+  /** the number of archives that have been scanned */
+  private AtomicLong                _scanned;
+
+  /** the executor used to index several archives in parallel, maybe <code>null</code> */
+  private Executor                  _executor;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PackageIndexCache}. The cache directory is read from the system property
+   * {@link #CACHE_DIRECTORY_PROPERTY}.
+   * </p>
+   *
+   * @param jarFilePool
+   *          the pool used to open the archives
+   */
+  public PackageIndexCache(JarFilePool jarFilePool) {
+    this(jarFilePool, (Executor) null);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PackageIndexCache}. The cache directory is read from the system property
+   * {@link #CACHE_DIRECTORY_PROPERTY}.
+   * </p>
+   *
+   * @param jarFilePool
+   *          the pool used to open the archives
+   * @param executor
+   *          the executor used to index several archives in parallel. If <code>null</code> the archives are indexed
+   *          one after the other.
+   */
+  public PackageIndexCache(JarFilePool jarFilePool, Executor executor) {
+    this(jarFilePool, System.getProperty(CACHE_DIRECTORY_PROPERTY) != null ? new File(System
+        .getProperty(CACHE_DIRECTORY_PROPERTY)) : null, executor);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PackageIndexCache}.
+   * </p>
+   *
+   * @param jarFilePool
+   *          the pool used to open the archives
+   * @param directory
+   *          the directory containing the index files. If <code>null</code> the indices are only kept in memory.
+   */
+  public PackageIndexCache(JarFilePool jarFilePool, File directory) {
+    this(jarFilePool, directory, null);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PackageIndexCache}.
+   * </p>
+   *
+   * @param jarFilePool
+   *          the pool used to open the archives
+   * @param directory
+   *          the directory containing the index files. If <code>null</code> the indices are only kept in memory.
+   * @param executor
+   *          the executor used to index several archives in parallel. If <code>null</code> the archives are indexed
+   *          one after the other.
+   */
+  public PackageIndexCache(JarFilePool jarFilePool, File directory, Executor executor) {
+    Assure.notNull("jarFilePool", jarFilePool);
+
+    this._jarFilePool = jarFilePool;
+    this._directory = directory;
+    this._executor = executor;
+    this._indices = new ConcurrentHashMap<String, ArchiveIndex>();
+    this._loaded = new AtomicLong();
+    this._scanned = new AtomicLong();
+  }
+
+  /**
+   * <p>
+   * Returns the index for the given archive.
+   * </p>
+   *
+   * @param archive
+   *          the archive
+   * @return the index for the given archive.
+   */
+  public ArchiveIndex getIndex(File archive) {
+    Assure.isFile("archive", archive);
+
+    String path = Utilities.getCanonicalFile(archive).getPath();
+    long size = archive.length();
+    long lastModified = archive.lastModified();
+
+    // Step 1: try the in-memory cache
+    ArchiveIndex result = this._indices.get(path);
+    if ((result != null) && result.isUpToDate(size, lastModified)) {
+      return result;
+    }
+
+    // Step 2: try the index file
+    File indexFile = getIndexFile(archive.getName(), path);
+    if (indexFile != null) {
+      result = readIndex(indexFile);
+      if ((result != null) && path.equals(result.getPath()) && result.isUpToDate(size, lastModified)) {
+        this._loaded.incrementAndGet();
+        this._indices.put(path, result);
+        return result;
+      }
+    }
+
+    // Step 3: scan the archive
+    JarFile jarFile = null;
+    try {
+      jarFile = this._jarFilePool.acquire(archive);
+      result = ArchiveIndex.create(path, size, lastModified, jarFile);
+    } catch (IOException e) {
+      throw new Ant4EclipseException(EcjExceptionCodes.COULD_NOT_CREATE_JAR_FILE_FROM_FILE_EXCEPTION,
+          archive.getAbsolutePath());
+    } finally {
+      this._jarFilePool.release(jarFile);
+    }
+    this._scanned.incrementAndGet();
+    this._indices.put(path, result);
+
+    if (indexFile != null) {
+      writeIndex(indexFile, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the indices for the given archives. If several indices are not contained in memory, they are loaded or
+   * created in parallel (if an executor has been specified).
+   * </p>
+   *
+   * @param archives
+   *          the archives
+   * @return the indices for the given archives (in the same order).
+   */
+  public ArchiveIndex[] getIndices(File[] archives) {
+    Assure.notNull("archives", archives);
+
+    // Step 1: take the indices that are up to date from the in-memory cache
+    ArchiveIndex[] result = new ArchiveIndex[archives.length];
+    List<Integer> misses = new ArrayList<Integer>();
+    for (int i = 0; i < archives.length; i++) {
+      result[i] = getCachedIndex(archives[i]);
+      if (result[i] == null) {
+        misses.add(Integer.valueOf(i));
+      }
+    }
+
+    // Step 2: load or create the missing indices
+    if ((this._executor == null) || (misses.size() < 2)) {
+      for (Integer miss : misses) {
+        result[miss.intValue()] = getIndex(archives[miss.intValue()]);
+      }
+      return result;
+    }
+    List<FutureTask<ArchiveIndex>> tasks = new ArrayList<FutureTask<ArchiveIndex>>(misses.size());
+    for (Integer miss : misses) {
+      final File archive = archives[miss.intValue()];
+      FutureTask<ArchiveIndex> task = new FutureTask<ArchiveIndex>(new Callable<ArchiveIndex>() {
+        public ArchiveIndex call() {
+          return getIndex(archive);
+        }
+      });
+      this._executor.execute(task);
+      tasks.add(task);
+    }
+    for (int i = 0; i < tasks.size(); i++) {
+      result[misses.get(i).intValue()] = ConcurrencyHelper.get(tasks.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the in-memory index for the given archive or <code>null</code> if there's no such index or if the index is
+   * outdated.
+   * </p>
+   *
+   * @param archive
+   *          the archive
+   * @return the in-memory index for the given archive or <code>null</code>.
+   */
+  private ArchiveIndex getCachedIndex(File archive) {
+    Assure.isFile("archive", archive);
+
+    ArchiveIndex result = this._indices.get(Utilities.getCanonicalFile(archive).getPath());
+    return (result != null) && result.isUpToDate(archive.length(), archive.lastModified()) ? result : null;
+  }
+
+  /**
+   * <p>
+   * Returns the pool used to open the archives.
+   * </p>
+   *
+   * @return the pool used to open the archives.
+   */
+  public JarFilePool getJarFilePool() {
+    return this._jarFilePool;
+  }
+
+  /**
+   * <p>
+   * Returns the number of indices that have been read from disc.
+   * </p>
+   *
+   * @return the number of indices that have been read from disc.
+   */
+  public long getLoaded() {
+    return this._loaded.get();
+  }
+
+  /**
+   * <p>
+   * Returns the number of archives that have been scanned.
+   * </p>
+   *
+   * @return the number of archives that have been scanned.
+   */
+  public long getScanned() {
+    return this._scanned.get();
+  }
+
+  /**
+   * <p>
+   * Removes all in-memory indices.
+   * </p>
+   */
+  public void clear() {
+    this._indices.clear();
+  }
+
+  /**
+   * <p>
+   * Returns the index file for the archive with the given canonical path or <code>null</code> if no cache directory has
+   * been specified.
+   * </p>
+   *
+   * @param name
+   *          the name of the archive
+   * @param path
+   *          the canonical path of the archive
+   * @return the index file or <code>null</code>.
+   */
+  private File getIndexFile(String name, String path) {
+    if (this._directory == null) {
+      return null;
+    }
+    return new File(this._directory, name + "-" + Integer.toHexString(path.hashCode()) + INDEX_FILE_POSTFIX);
+  }
+
+  /**
+   * <p>
+   * Reads the index from the given file. Returns <code>null</code> if the file doesn't exist or can't be read.
+   * </p>
+   *
+   * @param indexFile
+   *          the index file
+   * @return the index or <code>null</code>.
+   */
+  private ArchiveIndex readIndex(File indexFile) {
+    if (!indexFile.isFile()) {
+      return null;
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+      return ArchiveIndex.read(in);
+    } catch (IOException e) {
+      A4ELogging.debug("Could not read archive index '%s': %s", indexFile, e.getMessage());
+      return null;
+    } finally {
+      Utilities.close((Closeable) in);
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the given index to the given file. The index is written to a temporary file first, so concurrent builds
+   * never see a partially written index.
+   * </p>
+   *
+   * @param indexFile
+   *          the index file
+   * @param index
+   *          the index
+   */
+  private void writeIndex(File indexFile, ArchiveIndex index) {
+    File tempFile = null;
+    DataOutputStream out = null;
+    try {
+      Utilities.mkdirs(indexFile.getParentFile());
+      // the temporary file is unique across all builds that share the cache directory
+      tempFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      index.write(out);
+      out.close();
+      out = null;
+      if (!Utilities.replaceFile(tempFile, indexFile)) {
+        A4ELogging.debug("Could not write archive index '%s': the file could not be replaced", indexFile);
+      }
+    } catch (Exception e) {
+      A4ELogging.debug("Could not write archive index '%s': %s", indexFile, e.getMessage());
+      if (tempFile != null) {
+        tempFile.delete();
+      }
+    } finally {
+      Utilities.close((Closeable) out);
+    }
+  }
+}
@@ -0,0 +1,291 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * A size-bounded cache for the decoded contents of source files. Source files that are found on the class path of a
+ * project (e.g. the source folders of a project the project depends on) are read each time a compile job references
+ * one of their types, so their contents are kept in this cache and shared by all compile jobs.
+ * </p>
+ * <p>
+ * Entries are identified by the path of the source file and its encoding, and are only returned as long as the
+ * modification time and the size of the source file don't change. The cache is bounded by the sum of the lengths of
+ * the cached contents (in characters); once the limit is exceeded the least recently used entries are evicted. The
+ * limit can be specified using the system property {@link #MAX_CHARS_PROPERTY}, a limit of <code>0</code> disables
+ * the cache.
+ * </p>
+ * <p>
+ * The cached arrays are shared, so callers must not modify them.
+ * </p>
+ */
+public class SourceContentsCache {
+
+  /** System-Property that specifies the maximum size (in characters) of the cache */
+  public static final String      MAX_CHARS_PROPERTY = "ant4eclipse.sourceContentsCache.maxChars";
+
+  /** the default maximum size (in characters) of the cache */
+  public static final long        DEFAULT_MAX_CHARS  = 16L * 1024 * 1024;
+
+  /** the maximum size of the cache */
+  private long                    _maxChars;
+
+  /** the current size of the cache */
+  private long                    _chars;
+
+  /** the cached entries (key -> entry), ordered by access */
+  private Map<String, CacheEntry> _entries;
+
+  /** the number of requests that have been served from the cache */
+  private long                    _hits;
+
+  /** the number of requests that couldn't be served from the cache */
+  private long                    _misses;
+
+  /** the number of entries that have been evicted */
+  private long                    _evictions;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link SourceContentsCache}. The maximum size is read from the system property
+   * {@link #MAX_CHARS_PROPERTY}.
+   * </p>
+   */
+  public SourceContentsCache() {
+    this(Long.getLong(MAX_CHARS_PROPERTY, DEFAULT_MAX_CHARS).longValue());
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link SourceContentsCache}.
+   * </p>
+   *
+   * @param maxChars
+   *          the maximum size of the cache (in characters). <code>0</code> disables the cache.
+   */
+  public SourceContentsCache(long maxChars) {
+    Assure.assertTrue(maxChars >= 0, "maxChars must not be negative");
+
+    this._maxChars = maxChars;
+    this._entries = new LinkedHashMap<String, CacheEntry>(256, 0.75f, true);
+  }
+
+  /**
+   * <p>
+   * Returns the cached contents of the given source file or <code>null</code> if there's no such entry or if the
+   * entry has been created for another version of the source file.
+   * </p>
+   *
+   * @param path
+   *          the path of the source file
+   * @param encoding
+   *          the encoding of the source file
+   * @param lastModified
+   *          the modification time of the source file
+   * @param length
+   *          the size of the source file
+   * @return the cached contents or <code>null</code>.
+   */
+  public synchronized char[] get(String path, String encoding, long lastModified, long length) {
+    CacheEntry entry = this._entries.get(getKey(path, encoding));
+    if ((entry != null) && (entry._lastModified == lastModified) && (entry._length == length)) {
+      this._hits++;
+      return entry._contents;
+    }
+    this._misses++;
+    return null;
+  }
+
+  /**
+   * <p>
+   * Stores the contents of the given source file.
+   * </p>
+   *
+   * @param path
+   *          the path of the source file
+   * @param encoding
+   *          the encoding of the source file
+   * @param lastModified
+   *          the modification time of the source file
+   * @param length
+   *          the size of the source file
+   * @param contents
+   *          the decoded contents of the source file
+   */
+  public synchronized void put(String path, String encoding, long lastModified, long length, char[] contents) {
+    Assure.notNull("path", path);
+    Assure.notNull("contents", contents);
+
+    if (contents.length > this._maxChars) {
+      return;
+    }
+
+    CacheEntry previous = this._entries.put(getKey(path, encoding), new CacheEntry(contents, lastModified, length));
+    if (previous != null) {
+      this._chars -= previous._contents.length;
+    }
+    this._chars += contents.length;
+
+    // evict the least recently used entries
+    Iterator<CacheEntry> iterator = this._entries.values().iterator();
+    while ((this._chars > this._maxChars) && iterator.hasNext()) {
+      CacheEntry entry = iterator.next();
+      iterator.remove();
+      this._chars -= entry._contents.length;
+      this._evictions++;
+    }
+  }
+
+  /**
+   * <p>
+   * Removes all entries from this cache.
+   * </p>
+   */
+  public synchronized void clear() {
+    this._entries.clear();
+    this._chars = 0;
+  }
+
+  /**
+   * <p>
+   * Returns the number of requests that have been served from the cache.
+   * </p>
+   *
+   * @return the number of hits.
+   */
+  public synchronized long getHits() {
+    return this._hits;
+  }
+
+  /**
+   * <p>
+   * Returns the number of requests that couldn't be served from the cache.
+   * </p>
+   *
+   * @return the number of misses.
+   */
+  public synchronized long getMisses() {
+    return this._misses;
+  }
+
+  /**
+   * <p>
+   * Returns the number of entries that have been evicted because the cache exceeded its maximum size.
+   * </p>
+   *
+   * @return the number of evictions.
+   */
+  public synchronized long getEvictions() {
+    return this._evictions;
+  }
+
+  /**
+   * <p>
+   * Returns the number of cached source files.
+   * </p>
+   *
+   * @return the number of cached source files.
+   */
+  public synchronized int size() {
+    return this._entries.size();
+  }
+
+  /**
+   * <p>
+   * Returns the sum of the lengths (in characters) of all cached contents.
+   * </p>
+   *
+   * @return the sum of the lengths of all cached contents.
+   */
+  public synchronized long getChars() {
+    return this._chars;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[SourceContentsCache:");
+    buffer.append(" _maxChars: ");
+    buffer.append(this._maxChars);
+    buffer.append(" _chars: ");
+    buffer.append(this._chars);
+    buffer.append(" entries: ");
+    buffer.append(this._entries.size());
+    buffer.append(" _hits: ");
+    buffer.append(this._hits);
+    buffer.append(" _misses: ");
+    buffer.append(this._misses);
+    buffer.append(" _evictions: ");
+    buffer.append(this._evictions);
+    buffer.append("]");
+    return buffer.toString();
+  }
+
+  /**
+   * <p>
+   * Returns the key for the given source file.
+   * </p>
+   *
+   * @param path
+   *          the path of the source file
+   * @param encoding
+   *          the encoding of the source file
+   * @return the key for the given source file.
+   */
+  private static String getKey(String path, String encoding) {
+    return path + '|' + encoding;
+  }
+
+  /**
+   * <p>
+   * The cached contents together with the version of the source file they have been read from.
+   * </p>
+   */
+  private static class CacheEntry {
+
+    /** the decoded contents */
+    private char[] _contents;
+
+    /** the modification time of the source file */
+    private long   _lastModified;
+
+    /** the size of the source file */
+    private long   _length;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link CacheEntry}.
+     * </p>
+     *
+     * @param contents
+     *          the decoded contents
+     * @param lastModified
+     *          the modification time of the source file
+     * @param length
+     *          the size of the source file
+     */
+    public CacheEntry(char[] contents, long lastModified, long length) {
+      this._contents = contents;
+      this._lastModified = lastModified;
+      this._length = length;
+    }
+  }
+}
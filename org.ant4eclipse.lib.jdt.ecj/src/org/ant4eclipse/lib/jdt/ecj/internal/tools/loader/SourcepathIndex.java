@@ -0,0 +1,275 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * An in-memory index of the java source files of a source path entry (a source folder). The index is created once by
+ * walking the source folder and contains the names of all packages and the names of the source files of each package,
+ * so looking up a source file doesn't require any file system access.
+ * </p>
+ * <p>
+ * Cached class file loaders are discarded as soon as their source folders change (see {@link ClasspathStamp}). If the
+ * system property {@link #REVALIDATE_PROPERTY} is set to <code>true</code>, the index additionally compares the
+ * modification time of a package directory with the one recorded in the index on each lookup and re-reads the
+ * directory if it has changed. This is only necessary if source files are added or removed while a class file loader
+ * is in use.
+ * </p>
+ */
+public class SourcepathIndex {
+
+  /** System-Property that enables the revalidation of the package directories on each lookup */
+  public static final String              REVALIDATE_PROPERTY = "ant4eclipse.sourcepathIndex.revalidate";
+
+  /** the postfix of java source files */
+  private static final String             JAVA_POSTFIX        = ".java";
+
+  /** the source folder */
+  private File                            _root;
+
+  /** indicates whether the package directories are revalidated on each lookup */
+  private boolean                         _revalidate;
+
+  /** the names of all packages, in the order they have been found */
+  private List<String>                    _packageNames;
+
+  /** maps package names to the source files of the package */
+  private Map<CompoundName, PackageEntry> _packages;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link SourcepathIndex}. Whether the package directories are revalidated is read
+   * from the system property {@link #REVALIDATE_PROPERTY}.
+   * </p>
+   *
+   * @param root
+   *          the source folder
+   */
+  public SourcepathIndex(File root) {
+    this(root, Boolean.getBoolean(REVALIDATE_PROPERTY));
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link SourcepathIndex}.
+   * </p>
+   *
+   * @param root
+   *          the source folder
+   * @param revalidate
+   *          indicates whether the package directories are revalidated on each lookup
+   */
+  public SourcepathIndex(File root, boolean revalidate) {
+    Assure.isDirectory("root", root);
+
+    this._root = root;
+    this._revalidate = revalidate;
+    this._packageNames = new ArrayList<String>();
+    this._packages = new HashMap<CompoundName, PackageEntry>();
+
+    // the source files in the root folder belong to the default package which is not supported
+    String[] children = root.list();
+    if (children != null) {
+      for (String child : children) {
+        if (!child.endsWith(JAVA_POSTFIX)) {
+          File directory = new File(root, child);
+          if (directory.isDirectory()) {
+            scan(child, directory);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the source folder.
+   * </p>
+   *
+   * @return the source folder.
+   */
+  public File getRoot() {
+    return this._root;
+  }
+
+  /**
+   * <p>
+   * Returns the (dot separated) names of all packages of the source folder.
+   * </p>
+   *
+   * @return the names of all packages of the source folder.
+   */
+  public String[] getPackages() {
+    return this._packageNames.toArray(new String[this._packageNames.size()]);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the source folder contains a source file for the given type.
+   * </p>
+   *
+   * @param packageName
+   *          the segments of the package name
+   * @param typeName
+   *          the name of the type
+   * @return <code>true</code> if the source folder contains a source file for the given type.
+   */
+  public boolean containsSourceFile(char[][] packageName, char[] typeName) {
+    PackageEntry entry = this._packages.get(new CompoundName(packageName, null));
+    if (entry == null) {
+      return false;
+    }
+    if (this._revalidate) {
+      entry.revalidate();
+    }
+    return entry.getTypeNames().contains(new String(typeName));
+  }
+
+  /**
+   * <p>
+   * Adds the given package directory and all its sub directories to the index.
+   * </p>
+   *
+   * @param packageName
+   *          the (dot separated) name of the package
+   * @param directory
+   *          the package directory
+   */
+  private void scan(String packageName, File directory) {
+    // the modification time has to be read before the directory is listed, so concurrent changes are detected later
+    long lastModified = directory.lastModified();
+    String[] children = directory.list();
+
+    Set<String> typeNames = new HashSet<String>();
+    List<String> subPackages = new ArrayList<String>();
+    if (children != null) {
+      for (String child : children) {
+        if (child.endsWith(JAVA_POSTFIX)) {
+          typeNames.add(child.substring(0, child.length() - JAVA_POSTFIX.length()));
+        } else {
+          subPackages.add(child);
+        }
+      }
+    }
+
+    this._packageNames.add(packageName);
+    this._packages.put(CompoundName.fromQualifiedName(packageName), new PackageEntry(directory, lastModified,
+        typeNames));
+
+    for (String subPackage : subPackages) {
+      File subDirectory = new File(directory, subPackage);
+      if (subDirectory.isDirectory()) {
+        scan(packageName + "." + subPackage, subDirectory);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[SourcepathIndex:");
+    buffer.append(" _root: ");
+    buffer.append(this._root);
+    buffer.append(" _revalidate: ");
+    buffer.append(this._revalidate);
+    buffer.append(" packages: ");
+    buffer.append(this._packageNames.size());
+    buffer.append("]");
+    return buffer.toString();
+  }
+
+  /**
+   * <p>
+   * The source files of a single package directory.
+   * </p>
+   */
+  private static class PackageEntry {
+
+    /** the package directory */
+    private File                 _directory;
+
+    /** the modification time of the package directory at the time it has been listed */
+    private volatile long        _lastModified;
+
+    /** the names of the types that have a source file in the package directory */
+    private volatile Set<String> _typeNames;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link PackageEntry}.
+     * </p>
+     *
+     * @param directory
+     *          the package directory
+     * @param lastModified
+     *          the modification time of the package directory
+     * @param typeNames
+     *          the names of the types that have a source file in the package directory
+     */
+    public PackageEntry(File directory, long lastModified, Set<String> typeNames) {
+      this._directory = directory;
+      this._lastModified = lastModified;
+      this._typeNames = typeNames;
+    }
+
+    /**
+     * <p>
+     * Returns the names of the types that have a source file in the package directory.
+     * </p>
+     *
+     * @return the names of the types that have a source file in the package directory.
+     */
+    public Set<String> getTypeNames() {
+      return this._typeNames;
+    }
+
+    /**
+     * <p>
+     * Re-reads the package directory if its modification time has changed since it has been listed. The modification
+     * times of recently changed directories can't be trusted (see {@link ClasspathStamp#TIMESTAMP_RESOLUTION}), so
+     * such directories are re-read as well.
+     * </p>
+     */
+    public synchronized void revalidate() {
+      long lastModified = this._directory.lastModified();
+      if ((lastModified == this._lastModified)
+          && (System.currentTimeMillis() - lastModified > ClasspathStamp.TIMESTAMP_RESOLUTION)) {
+        return;
+      }
+
+      Set<String> typeNames = new HashSet<String>();
+      String[] children = this._directory.list();
+      if (children != null) {
+        for (String child : children) {
+          if (child.endsWith(JAVA_POSTFIX)) {
+            typeNames.add(child.substring(0, child.length() - JAVA_POSTFIX.length()));
+          }
+        }
+      }
+      this._typeNames = typeNames;
+      this._lastModified = lastModified;
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+
+/**
+ * <p>
+ * Remembers the results of type and package lookups that have been performed on a single {@link ClassFileLoader}.
+ * Both successful and unsuccessful lookups are stored, so the underlying class file loader (and therefore the file
+ * system) is asked only once for each name.
+ * </p>
+ * <p>
+ * Names are represented as {@link CompoundName CompoundNames} that wrap the arrays passed in by the eclipse java
+ * compiler, so a lookup doesn't require any string conversion. Instances are thread safe and are shared by all name
+ * environments that use the same class file loader (see
+ * {@link ClassFileLoaderCache#getTypeLookupCache(ClassFileLoader)}).
+ * </p>
+ */
+public class TypeLookupCache {
+
+  /** the result for types that could not be found */
+  public static final Result         NOT_FOUND = new Result(null, null);
+
+  /** the results of the type lookups */
+  private Map<CompoundName, Result>  _types;
+
+  /** the results of the package lookups */
+  private Map<CompoundName, Boolean> _packages;
+
+  /** the number of lookups that have been answered from this cache */
+  private AtomicLong                 _hits;
+
+  /** the number of lookups that had to be delegated to the class file loader */
+  private AtomicLong                 _misses;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link TypeLookupCache}.
+   * </p>
+   */
+  public TypeLookupCache() {
+    this._types = new ConcurrentHashMap<CompoundName, Result>();
+    this._packages = new ConcurrentHashMap<CompoundName, Boolean>();
+    this._hits = new AtomicLong();
+    this._misses = new AtomicLong();
+  }
+
+  /**
+   * <p>
+   * Returns the cached result for the type with the given compound name. Returns {@link #NOT_FOUND} if the type is
+   * known to be missing and <code>null</code> if the type hasn't been looked up yet.
+   * </p>
+   *
+   * @param packageName
+   *          the compound name of the package (maybe <code>null</code>)
+   * @param typeName
+   *          the (simple) name of the type (maybe <code>null</code> if the package name contains the type name as its
+   *          last segment)
+   * @return the cached result or <code>null</code>.
+   */
+  public Result getType(char[][] packageName, char[] typeName) {
+    return count(this._types.get(new CompoundName(packageName, typeName)));
+  }
+
+  /**
+   * <p>
+   * Stores the result for the type with the given compound name.
+   * </p>
+   *
+   * @param packageName
+   *          the compound name of the package (maybe <code>null</code>)
+   * @param typeName
+   *          the (simple) name of the type (maybe <code>null</code>)
+   * @param result
+   *          the result of the lookup
+   */
+  public void putType(char[][] packageName, char[] typeName, Result result) {
+    Assure.notNull("result", result);
+    this._types.put(new CompoundName(packageName, typeName).copy(), result);
+  }
+
+  /**
+   * <p>
+   * Returns the cached result for the package with the given compound name or <code>null</code> if the package hasn't
+   * been looked up yet.
+   * </p>
+   *
+   * @param parentPackageName
+   *          the compound name of the parent package (maybe <code>null</code>)
+   * @param packageName
+   *          the (simple) name of the package
+   * @return the cached result or <code>null</code>.
+   */
+  public Boolean getPackage(char[][] parentPackageName, char[] packageName) {
+    return count(this._packages.get(new CompoundName(parentPackageName, packageName)));
+  }
+
+  /**
+   * <p>
+   * Stores the result for the package with the given compound name.
+   * </p>
+   *
+   * @param parentPackageName
+   *          the compound name of the parent package (maybe <code>null</code>)
+   * @param packageName
+   *          the (simple) name of the package
+   * @param found
+   *          <code>true</code> if the package exists
+   */
+  public void putPackage(char[][] parentPackageName, char[] packageName, boolean found) {
+    this._packages.put(new CompoundName(parentPackageName, packageName).copy(), Boolean.valueOf(found));
+  }
+
+  /**
+   * <p>
+   * Returns the number of lookups that have been answered from this cache.
+   * </p>
+   *
+   * @return the number of hits.
+   */
+  public long getHits() {
+    return this._hits.get();
+  }
+
+  /**
+   * <p>
+   * Returns the number of lookups that couldn't be answered from this cache.
+   * </p>
+   *
+   * @return the number of misses.
+   */
+  public long getMisses() {
+    return this._misses.get();
+  }
+
+  /**
+   * <p>
+   * Returns the number of cached type and package lookups.
+   * </p>
+   *
+   * @return the number of cached type and package lookups.
+   */
+  public int size() {
+    return this._types.size() + this._packages.size();
+  }
+
+  /**
+   * <p>
+   * Removes all cached lookups.
+   * </p>
+   */
+  public void clear() {
+    this._types.clear();
+    this._packages.clear();
+  }
+
+  /**
+   * <p>
+   * Updates the hit and miss counters.
+   * </p>
+   *
+   * @param value
+   *          the value that has been retrieved from the cache
+   * @return the given value
+   */
+  private <T> T count(T value) {
+    if (value != null) {
+      this._hits.incrementAndGet();
+    } else {
+      this._misses.incrementAndGet();
+    }
+    return value;
+  }
+
+  /**
+   * <p>
+   * The result of a type lookup: either a class file or a source file. If both are <code>null</code> the type could
+   * not be found.
+   * </p>
+   */
+  public static class Result {
+
+    /** the class file that has been found */
+    private ClassFile  _classFile;
+
+    /** the source file that has been found */
+    private SourceFile _sourceFile;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link Result}.
+     * </p>
+     *
+     * @param classFile
+     *          the class file that has been found (maybe <code>null</code>)
+     * @param sourceFile
+     *          the source file that has been found (maybe <code>null</code>)
+     */
+    public Result(ClassFile classFile, SourceFile sourceFile) {
+      this._classFile = classFile;
+      this._sourceFile = sourceFile;
+    }
+
+    /**
+     * <p>
+     * Returns the class file that has been found or <code>null</code>.
+     * </p>
+     *
+     * @return the class file that has been found or <code>null</code>.
+     */
+    public ClassFile getClassFile() {
+      return this._classFile;
+    }
+
+    /**
+     * <p>
+     * Returns the source file that has been found or <code>null</code>.
+     * </p>
+     *
+     * @return the source file that has been found or <code>null</code>.
+     */
+    public SourceFile getSourceFile() {
+      return this._sourceFile;
+    }
+  }
+}
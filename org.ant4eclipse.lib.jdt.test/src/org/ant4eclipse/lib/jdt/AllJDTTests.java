@@ -11,12 +11,38 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt;
 
+import org.ant4eclipse.lib.jdt.ecj.AbiDigestTest;
+import org.ant4eclipse.lib.jdt.ecj.DependencyDatabaseTest;
+import org.ant4eclipse.lib.jdt.ecj.PipelineConfigurationTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.ChunkNameEnvironmentTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.ClassFileWriterTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.EcjAdapterImplTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.SourceFileReaderTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon.CompileDaemonProtocolTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon.CompileDaemonTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.AccessRuleMatcherTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.BinaryTypeCacheTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCacheTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCodecTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.CompoundClassFileLoaderImplTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.CompoundNameTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.JarFilePoolTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.PackageIndexCacheTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.SourceContentsCacheTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.SourcepathIndexTest;
 import org.ant4eclipse.lib.jdt.internal.model.userlibrary.UserLibrariesFileParserImplTest;
 import org.ant4eclipse.lib.jdt.tools.BuildOrderResolverTest;
+import org.ant4eclipse.lib.jdt.tools.JdtResolverTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses( { BuildOrderResolverTest.class, UserLibrariesFileParserImplTest.class })
+@Suite.SuiteClasses( { BuildOrderResolverTest.class, JdtResolverTest.class, UserLibrariesFileParserImplTest.class,
+    AccessRuleMatcherTest.class, SourcepathIndexTest.class, JarFilePoolTest.class,
+    PackageIndexCacheTest.class, CompoundNameTest.class, BinaryTypeCacheTest.class, ClassFileLoaderCacheTest.class,
+    DependencyDatabaseTest.class, AbiDigestTest.class, EcjAdapterImplTest.class,
+    ClassFileWriterTest.class, SourceFileReaderTest.class, SourceContentsCacheTest.class,
+    CompoundClassFileLoaderImplTest.class, ClassFileLoaderCodecTest.class, CompileDaemonProtocolTest.class,
+    CompileDaemonTest.class, PipelineConfigurationTest.class, ChunkNameEnvironmentTest.class })
 public class AllJDTTests {
 } /* ENDCLASS */
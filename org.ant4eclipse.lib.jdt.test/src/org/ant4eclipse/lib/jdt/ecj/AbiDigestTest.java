@@ -0,0 +1,144 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.jdt.internal.compiler.batch.Main;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AbiDigestTest extends ConfigurableAnt4EclipseTestCase {
+
+  private static final String ORIGINAL = "package a; public class Foo { public static final int CONSTANT = 1; "
+                                           + "public String name; public void run(String arg) { } }";
+
+  private TestDirectory       _testDirectory;
+
+  @Before
+  public void createDirectory() {
+    this._testDirectory = new TestDirectory();
+  }
+
+  @After
+  public void disposeDirectory() {
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void privateChangesKeepTheDigest() throws IOException {
+    String digest = AbiDigest.compute(compile(ORIGINAL));
+
+    assertEquals(digest, AbiDigest.compute(compile(ORIGINAL)));
+    // changed method body
+    assertEquals(digest, AbiDigest.compute(compile(ORIGINAL.replace("String arg) { }",
+        "String arg) { System.out.println(arg); }"))));
+    // new private members
+    assertEquals(digest, AbiDigest.compute(compile(ORIGINAL.replace("public String name;",
+        "public String name; private int _count; private void count() { _count++; }"))));
+  }
+
+  @Test
+  public void publicChangesChangeTheDigest() throws IOException {
+    String digest = AbiDigest.compute(compile(ORIGINAL));
+
+    // changed method signature
+    assertFalse(digest.equals(AbiDigest.compute(compile(ORIGINAL.replace("run(String arg)", "run(Object arg)")))));
+    // changed field type
+    assertFalse(digest.equals(AbiDigest.compute(compile(ORIGINAL.replace("public String name",
+        "public Object name")))));
+    // changed constant (constants are inlined by the compiler)
+    assertFalse(digest.equals(AbiDigest.compute(compile(ORIGINAL.replace("CONSTANT = 1", "CONSTANT = 2")))));
+    // changed visibility
+    assertFalse(digest.equals(AbiDigest.compute(compile(ORIGINAL.replace("public void run", "void run")))));
+  }
+
+  @Test
+  public void invalidClassFiles() {
+    String digest = AbiDigest.compute(new byte[] { 1, 2, 3 });
+    assertEquals(32, digest.length());
+    assertFalse(digest.equals(AbiDigest.compute(new byte[] { 1, 2, 4 })));
+  }
+
+  @Test
+  public void folderDigest() {
+    Map<String, String> digests = new LinkedHashMap<String, String>();
+    digests.put("a/Foo.class", "1");
+    digests.put("a/Bar.class", "2");
+    Map<String, String> reversed = new LinkedHashMap<String, String>();
+    reversed.put("a/Bar.class", "2");
+    reversed.put("a/Foo.class", "1");
+    String digest = AbiDigest.compute(digests);
+
+    assertEquals(digest, AbiDigest.compute(reversed));
+    digests.put("a/Bar.class", "3");
+    assertFalse(digest.equals(AbiDigest.compute(digests)));
+    assertFalse(digest.equals(AbiDigest.compute(new HashMap<String, String>())));
+  }
+
+  @Test
+  public void storedDigest() {
+    File outputFolder = this._testDirectory.createSubDirectory("bin");
+    this._testDirectory.createFile("bin/Foo.class", "foo");
+    AbiDigest.write(outputFolder, "digest");
+    assertTrue(AbiDigest.getDigestFile(outputFolder).isFile());
+
+    assertEquals("digest", AbiDigest.read(outputFolder, AbiDigest.computeStamp(outputFolder)));
+
+    // the output folder has been modified after the digest has been written
+    this._testDirectory.createFile("bin/Bar.class", "bar");
+    assertNull(AbiDigest.read(outputFolder, AbiDigest.computeStamp(outputFolder)));
+  }
+
+  /**
+   * Compiles the given source of the type 'a.Foo' and returns the content of the class file.
+   */
+  private byte[] compile(String source) throws IOException {
+    File sourceFolder = new File(this._testDirectory.getRootDir(), "src/a");
+    File outputFolder = new File(this._testDirectory.getRootDir(), "classes");
+    Utilities.mkdirs(sourceFolder);
+    File sourceFile = new File(sourceFolder, "Foo.java");
+    Utilities.writeFile(sourceFile, source, "UTF-8");
+
+    StringWriter errors = new StringWriter();
+    Main compiler = new Main(new PrintWriter(new StringWriter()), new PrintWriter(errors), false, null, null);
+    boolean succeeded = compiler.compile(new String[] { "-1.5", "-nowarn", "-encoding", "UTF-8", "-d",
+        outputFolder.getPath(), sourceFile.getPath() });
+    assertTrue(errors.toString(), succeeded);
+    InputStream in = new FileInputStream(new File(outputFolder, "a/Foo.class"));
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      Utilities.copy(in, out, new byte[1024]);
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+}
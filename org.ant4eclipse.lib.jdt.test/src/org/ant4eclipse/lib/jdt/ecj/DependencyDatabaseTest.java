@@ -0,0 +1,224 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.CompileJobResultImpl;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DependencyDatabaseTest extends ConfigurableAnt4EclipseTestCase {
+
+  private static final String     FINGERPRINT = "fingerprint";
+
+  private TestDirectory           _testDirectory;
+
+  private File                    _sourceFolder;
+
+  private File                    _outputFolder;
+
+  /** the simulated references of the source files (name -> {root references, simple name references}) */
+  private Map<String, String[][]> _references;
+
+  @Before
+  public void createProject() {
+    this._testDirectory = new TestDirectory();
+    this._sourceFolder = this._testDirectory.createSubDirectory("src");
+    this._outputFolder = this._testDirectory.createSubDirectory("bin");
+    this._references = new HashMap<String, String[][]>();
+
+    // B extends a.A, C uses b.B, D is independent
+    addSource("a/A.java", "package a; public class A {}", new String[0], new String[0]);
+    addSource("b/B.java", "package b; public class B extends a.A {}", new String[] { "a" }, new String[] { "A" });
+    addSource("c/C.java", "package c; public class C { b.B b; }", new String[] { "b" }, new String[] { "B" });
+    addSource("d/D.java", "package d; public class D {}", new String[0], new String[0]);
+  }
+
+  @After
+  public void disposeProject() {
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void unchangedSources() {
+    DependencyDatabase database = compileAll();
+
+    assertEquals(4, database.size());
+    assertEquals(0, database.getSourceFilesToCompile(getSourceFiles(), FINGERPRINT).length);
+  }
+
+  @Test
+  public void changedSourceAndTransitiveDependents() {
+    DependencyDatabase database = compileAll();
+
+    createFile("src/a/A.java", "package a; public class A { public void foo() {} }");
+    SourceFile[] sourceFiles = database.getSourceFilesToCompile(getSourceFiles(), FINGERPRINT);
+
+    // B depends on A, C depends on B
+    assertSourceFiles(sourceFiles, "a/A.java", "b/B.java", "c/C.java");
+  }
+
+  @Test
+  public void changedSourceWithoutDependents() {
+    DependencyDatabase database = compileAll();
+
+    createFile("src/d/D.java", "package d; public class D { int i; }");
+
+    assertSourceFiles(database.getSourceFilesToCompile(getSourceFiles(), FINGERPRINT), "d/D.java");
+  }
+
+  @Test
+  public void removedSource() {
+    DependencyDatabase database = compileAll();
+    File classFile = new File(this._outputFolder, "b/B.class");
+    assertTrue(classFile.isFile());
+
+    assertTrue(new File(this._sourceFolder, "b/B.java").delete());
+    this._references.remove("b/B.java");
+    SourceFile[] sourceFiles = database.getSourceFilesToCompile(getSourceFiles(), FINGERPRINT);
+
+    // C refers to the removed type, its class files are deleted immediately
+    assertSourceFiles(sourceFiles, "c/C.java");
+    assertFalse(classFile.exists());
+    assertEquals(3, database.size() + sourceFiles.length);
+  }
+
+  @Test
+  public void changedFingerprint() {
+    DependencyDatabase database = compileAll();
+
+    SourceFile[] sourceFiles = database.getSourceFilesToCompile(getSourceFiles(), "other");
+    assertSourceFiles(sourceFiles, "a/A.java", "b/B.java", "c/C.java", "d/D.java");
+  }
+
+  @Test
+  public void failedSourcesAreCompiledAgain() {
+    DependencyDatabase database = compileAll();
+    createFile("src/c/C.java", "package c; public class C { b.B b; int i; }");
+    createFile("src/d/D.java", "package d; public class D { int i; }");
+    SourceFile[] sourceFiles = database.getSourceFilesToCompile(getSourceFiles(), FINGERPRINT);
+    assertSourceFiles(sourceFiles, "c/C.java", "d/D.java");
+
+    // only D has been compiled successfully, the class file of C is deleted
+    compile(database, new SourceFile[] { sourceFiles[1] });
+    assertFalse(new File(this._outputFolder, "c/C.class").exists());
+
+    assertSourceFiles(database.getSourceFilesToCompile(getSourceFiles(), FINGERPRINT), "c/C.java");
+  }
+
+  @Test
+  public void readAndWrite() {
+    DependencyDatabase database = compileAll();
+    File file = new File(this._testDirectory.getRootDir(), "dependencies.db");
+    database.write(file);
+
+    DependencyDatabase copy = DependencyDatabase.read(file);
+    assertEquals(4, copy.size());
+    assertEquals(database.getAbiDigest(this._outputFolder), copy.getAbiDigest(this._outputFolder));
+
+    createFile("src/b/B.java", "package b; public class B extends a.A { int i; }");
+    assertSourceFiles(copy.getSourceFilesToCompile(getSourceFiles(), FINGERPRINT), "b/B.java", "c/C.java");
+
+    // unreadable databases are empty
+    createFile("dependencies.db", "garbage");
+    assertEquals(0, DependencyDatabase.read(file).size());
+  }
+
+  @Test
+  public void fingerprint() {
+    File[] classpath = new File[] { this._sourceFolder, new File(this._testDirectory.getRootDir(), "missing.jar") };
+    Map<String, String> options = new HashMap<String, String>();
+    options.put("org.eclipse.jdt.core.compiler.source", "1.5");
+    String fingerprint = DependencyDatabase.computeFingerprint(options, classpath);
+
+    assertEquals(32, fingerprint.length());
+    assertEquals(fingerprint, DependencyDatabase.computeFingerprint(new HashMap<String, String>(options), classpath));
+
+    options.put("org.eclipse.jdt.core.compiler.source", "1.6");
+    assertFalse(fingerprint.equals(DependencyDatabase.computeFingerprint(options, classpath)));
+    options.put("org.eclipse.jdt.core.compiler.source", "1.5");
+    assertFalse(fingerprint.equals(DependencyDatabase.computeFingerprint(options, new File[] { classpath[1],
+        classpath[0] })));
+    assertFalse(fingerprint.equals(DependencyDatabase.computeFingerprint(options, new File[] { classpath[0] })));
+  }
+
+  private void addSource(String name, String content, String[] rootReferences, String[] simpleNameReferences) {
+    createFile("src/" + name, content);
+    this._references.put(name, new String[][] { rootReferences, simpleNameReferences });
+  }
+
+  private void createFile(String name, String content) {
+    File file = new File(this._testDirectory.getRootDir(), name);
+    file.getParentFile().mkdirs();
+    this._testDirectory.createFile(name, content);
+  }
+
+  private SourceFile[] getSourceFiles() {
+    List<SourceFile> result = new LinkedList<SourceFile>();
+    for (String name : new String[] { "a/A.java", "b/B.java", "c/C.java", "d/D.java" }) {
+      if (this._references.containsKey(name)) {
+        result.add(SourceFileFactory.createSourceFile(this._sourceFolder, name, this._outputFolder));
+      }
+    }
+    return result.toArray(new SourceFile[result.size()]);
+  }
+
+  private DependencyDatabase compileAll() {
+    DependencyDatabase database = new DependencyDatabase();
+    SourceFile[] sourceFiles = database.getSourceFilesToCompile(getSourceFiles(), FINGERPRINT);
+    assertEquals(4, sourceFiles.length);
+    compile(database, sourceFiles);
+    return database;
+  }
+
+  /**
+   * Simulates the compilation of the given source files: writes the class files and updates the database.
+   */
+  private void compile(DependencyDatabase database, SourceFile[] sourceFiles) {
+    List<SourceFileDependencies> dependencies = new ArrayList<SourceFileDependencies>();
+    for (SourceFile sourceFile : sourceFiles) {
+      String name = sourceFile.getSourceFileName();
+      String classFileName = name.substring(0, name.length() - ".java".length()) + ".class";
+      createFile("bin/" + classFileName, name);
+      String[][] references = this._references.get(name);
+      dependencies.add(new SourceFileDependencies(sourceFile.getSourceFile(), this._outputFolder,
+          new String[] { classFileName }, new String[] { name.hashCode() + "" }, new String[0], references[1],
+          references[0]));
+    }
+    CompileJobResultImpl result = new CompileJobResultImpl();
+    result.setSucceeded(true);
+    result.setSourceFileDependencies(dependencies.toArray(new SourceFileDependencies[dependencies.size()]));
+    database.update(result);
+  }
+
+  private static void assertSourceFiles(SourceFile[] sourceFiles, String... expected) {
+    List<String> names = new ArrayList<String>();
+    for (SourceFile sourceFile : sourceFiles) {
+      names.add(sourceFile.getSourceFileName());
+    }
+    assertEquals(Arrays.asList(expected), names);
+  }
+}
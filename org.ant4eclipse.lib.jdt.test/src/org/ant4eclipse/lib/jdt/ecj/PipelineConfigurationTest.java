@@ -0,0 +1,120 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.ant4eclipse.lib.core.CoreExceptionCode;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.junit.After;
+import org.junit.Test;
+
+public class PipelineConfigurationTest extends ConfigurableAnt4EclipseTestCase {
+
+  private static final String[] PROPERTIES = { PipelineConfiguration.PARALLEL_READ_PROPERTY,
+      PipelineConfiguration.PARALLEL_PROCESSING_PROPERTY, PipelineConfiguration.MAX_THREADS_PROPERTY,
+      PipelineConfiguration.CHUNK_SIZE_PROPERTY, "a4e.ecj.useMultiThreading" };
+
+  @After
+  public void clearProperties() {
+    for (String property : PROPERTIES) {
+      System.clearProperty(property);
+    }
+  }
+
+  @Test
+  public void defaults() {
+    PipelineConfiguration configuration = PipelineConfiguration.createDefault();
+    assertFalse(configuration.isParallelRead());
+    assertFalse(configuration.isParallelProcessing());
+    assertEquals(Runtime.getRuntime().availableProcessors(), configuration.getMaxThreads());
+    assertEquals(0, configuration.getChunkSize());
+  }
+
+  @Test
+  public void systemProperties() {
+    System.setProperty(PipelineConfiguration.PARALLEL_READ_PROPERTY, "true");
+    System.setProperty(PipelineConfiguration.PARALLEL_PROCESSING_PROPERTY, "true");
+    System.setProperty(PipelineConfiguration.MAX_THREADS_PROPERTY, "3");
+    System.setProperty(PipelineConfiguration.CHUNK_SIZE_PROPERTY, "50");
+    PipelineConfiguration configuration = PipelineConfiguration.createDefault();
+    assertTrue(configuration.isParallelRead());
+    assertTrue(configuration.isParallelProcessing());
+    assertEquals(3, configuration.getMaxThreads());
+    assertEquals(50, configuration.getChunkSize());
+  }
+
+  @Test
+  public void legacyMultiThreadingProperty() {
+    System.setProperty("a4e.ecj.useMultiThreading", "true");
+    PipelineConfiguration configuration = PipelineConfiguration.createDefault();
+    assertFalse(configuration.isParallelRead());
+    assertTrue(configuration.isParallelProcessing());
+  }
+
+  @Test
+  public void invalidSystemPropertiesAreCorrected() {
+    System.setProperty(PipelineConfiguration.MAX_THREADS_PROPERTY, "0");
+    System.setProperty(PipelineConfiguration.CHUNK_SIZE_PROPERTY, "-1");
+    PipelineConfiguration configuration = PipelineConfiguration.createDefault();
+    assertEquals(1, configuration.getMaxThreads());
+    assertEquals(0, configuration.getChunkSize());
+
+    // values that are not numbers are ignored
+    System.setProperty(PipelineConfiguration.MAX_THREADS_PROPERTY, "many");
+    System.setProperty(PipelineConfiguration.CHUNK_SIZE_PROPERTY, "big");
+    configuration = PipelineConfiguration.createDefault();
+    assertEquals(Runtime.getRuntime().availableProcessors(), configuration.getMaxThreads());
+    assertEquals(0, configuration.getChunkSize());
+  }
+
+  @Test
+  public void explicitConfiguration() {
+    PipelineConfiguration configuration = new PipelineConfiguration(true, false, 2, 10);
+    assertTrue(configuration.isParallelRead());
+    assertFalse(configuration.isParallelProcessing());
+    assertEquals(2, configuration.getMaxThreads());
+    assertEquals(10, configuration.getChunkSize());
+
+    configuration.setParallelRead(false);
+    configuration.setParallelProcessing(true);
+    configuration.setMaxThreads(1);
+    configuration.setChunkSize(0);
+    assertFalse(configuration.isParallelRead());
+    assertTrue(configuration.isParallelProcessing());
+    assertEquals(1, configuration.getMaxThreads());
+    assertEquals(0, configuration.getChunkSize());
+  }
+
+  @Test
+  public void invalidValuesAreRejected() {
+    PipelineConfiguration configuration = new PipelineConfiguration(false, false, 1, 0);
+    try {
+      configuration.setMaxThreads(0);
+      fail();
+    } catch (Ant4EclipseException ex) {
+      assertEquals(CoreExceptionCode.PRECONDITION_VIOLATION, ex.getExceptionCode());
+    }
+    try {
+      configuration.setChunkSize(-1);
+      fail();
+    } catch (Ant4EclipseException ex) {
+      assertEquals(CoreExceptionCode.PRECONDITION_VIOLATION, ex.getExceptionCode());
+    }
+    assertEquals(1, configuration.getMaxThreads());
+    assertEquals(0, configuration.getChunkSize());
+  }
+}
@@ -0,0 +1,187 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileFactory;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChunkNameEnvironmentTest {
+
+  private TestDirectory        _testDirectory;
+
+  private RecordingEnvironment _nameEnvironment;
+
+  private CompilationUnitImpl  _foo;
+
+  private CompilationUnitImpl  _bar;
+
+  private CompilationUnitImpl  _baz;
+
+  private ChunkNameEnvironment _chunkNameEnvironment;
+
+  @Before
+  public void setup() {
+    this._testDirectory = new TestDirectory();
+    this._nameEnvironment = new RecordingEnvironment();
+    this._foo = createCompilationUnit("a/b/Foo.java");
+    this._bar = createCompilationUnit("a/c/Bar.java");
+    this._baz = createCompilationUnit("Baz.java");
+    this._chunkNameEnvironment = new ChunkNameEnvironment(this._nameEnvironment, new CompilationUnitImpl[] {
+        this._foo, this._bar, this._baz });
+  }
+
+  @After
+  public void dispose() {
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void pendingUnitsAreAnsweredAsSource() {
+    NameEnvironmentAnswer answer = this._chunkNameEnvironment.findType(CharOperation.splitOn('.', "a.b.Foo"
+        .toCharArray()));
+    assertTrue(answer.isCompilationUnit());
+    assertSame(this._foo, answer.getCompilationUnit());
+
+    answer = this._chunkNameEnvironment.findType("Bar".toCharArray(), CharOperation.splitOn('.', "a.c".toCharArray()));
+    assertSame(this._bar, answer.getCompilationUnit());
+
+    answer = this._chunkNameEnvironment.findType("Baz".toCharArray(), null);
+    assertSame(this._baz, answer.getCompilationUnit());
+    assertEquals(0, this._nameEnvironment._requestedTypes.size());
+
+    // the compilation units have been compiled together with the current chunk, so the following chunks skip them
+    assertFalse(this._chunkNameEnvironment.claim(this._foo));
+    assertFalse(this._chunkNameEnvironment.claim(this._bar));
+    assertFalse(this._chunkNameEnvironment.claim(this._baz));
+
+    // ... and they are no longer answered as source
+    assertNull(this._chunkNameEnvironment.findType(CharOperation.splitOn('.', "a.b.Foo".toCharArray())));
+    assertEquals(1, this._nameEnvironment._requestedTypes.size());
+    assertEquals("a/b/Foo", this._nameEnvironment._requestedTypes.get(0));
+  }
+
+  @Test
+  public void claimedUnitsAreNotAnsweredAsSource() {
+    assertTrue(this._chunkNameEnvironment.claim(this._foo));
+    assertFalse(this._chunkNameEnvironment.claim(this._foo));
+
+    assertNull(this._chunkNameEnvironment.findType(CharOperation.splitOn('.', "a.b.Foo".toCharArray())));
+    assertEquals("a/b/Foo", this._nameEnvironment._requestedTypes.get(0));
+
+    // other units are not affected
+    assertTrue(this._chunkNameEnvironment.claim(this._bar));
+  }
+
+  @Test
+  public void compiledClassFiles() throws IOException {
+    byte[] content = readClassFile();
+    this._chunkNameEnvironment.addClassFile(CharOperation.splitOn('.', "a.b.Foo$Inner".toCharArray()), content);
+
+    NameEnvironmentAnswer answer = this._chunkNameEnvironment.findType(CharOperation.splitOn('.', "a.b.Foo$Inner"
+        .toCharArray()));
+    assertTrue(answer.isBinaryType());
+    answer = this._chunkNameEnvironment.findType("Foo$Inner".toCharArray(), CharOperation.splitOn('.', "a.b"
+        .toCharArray()));
+    assertTrue(answer.isBinaryType());
+    assertEquals(0, this._nameEnvironment._requestedTypes.size());
+
+    // invalid class files are ignored
+    this._chunkNameEnvironment.addClassFile(CharOperation.splitOn('.', "a.b.Broken".toCharArray()), new byte[] { 1,
+        2, 3 });
+    assertNull(this._chunkNameEnvironment.findType(CharOperation.splitOn('.', "a.b.Broken".toCharArray())));
+    assertEquals("a/b/Broken", this._nameEnvironment._requestedTypes.get(0));
+  }
+
+  @Test
+  public void unknownTypesAreDelegated() {
+    assertNull(this._chunkNameEnvironment.findType(CharOperation.splitOn('.', "a.b.Unknown".toCharArray())));
+    assertNull(this._chunkNameEnvironment.findType("Other".toCharArray(), CharOperation.splitOn('.', "x"
+        .toCharArray())));
+    assertEquals(2, this._nameEnvironment._requestedTypes.size());
+    assertEquals("a/b/Unknown", this._nameEnvironment._requestedTypes.get(0));
+    assertEquals("x/Other", this._nameEnvironment._requestedTypes.get(1));
+  }
+
+  @Test
+  public void packages() {
+    assertTrue(this._chunkNameEnvironment.isPackage(null, "a".toCharArray()));
+    assertTrue(this._chunkNameEnvironment.isPackage(new char[][] { "a".toCharArray() }, "b".toCharArray()));
+    assertTrue(this._chunkNameEnvironment.isPackage(new char[][] { "a".toCharArray() }, "c".toCharArray()));
+    assertFalse(this._chunkNameEnvironment.isPackage(new char[][] { "a".toCharArray() }, "d".toCharArray()));
+    assertFalse(this._chunkNameEnvironment.isPackage(null, "b".toCharArray()));
+
+    // packages of the underlying name environment
+    assertTrue(this._chunkNameEnvironment.isPackage(null, "java".toCharArray()));
+  }
+
+  @Test
+  public void cleanupKeepsTheUnderlyingNameEnvironment() {
+    this._chunkNameEnvironment.cleanup();
+    assertFalse(this._nameEnvironment._cleanedUp);
+  }
+
+  private CompilationUnitImpl createCompilationUnit(String sourceFileName) {
+    return new CompilationUnitImpl(SourceFileFactory.createSourceFile(this._testDirectory.getRootDir(),
+        sourceFileName, this._testDirectory.getRootDir()));
+  }
+
+  private byte[] readClassFile() throws IOException {
+    InputStream inputStream = getClass().getResourceAsStream("ChunkNameEnvironmentTest.class");
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    Utilities.copy(inputStream, outputStream, new byte[1024]);
+    return outputStream.toByteArray();
+  }
+
+  private static class RecordingEnvironment implements INameEnvironment {
+
+    private List<String> _requestedTypes = new ArrayList<String>();
+
+    private boolean      _cleanedUp;
+
+    public NameEnvironmentAnswer findType(char[][] compoundTypeName) {
+      this._requestedTypes.add(new String(CharOperation.concatWith(compoundTypeName, '/')));
+      return null;
+    }
+
+    public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
+      this._requestedTypes.add(new String(CharOperation.concatWith(packageName, typeName, '/')));
+      return null;
+    }
+
+    public boolean isPackage(char[][] parentPackageName, char[] packageName) {
+      return (parentPackageName == null) && "java".equals(new String(packageName));
+    }
+
+    public void cleanup() {
+      this._cleanedUp = true;
+    }
+  }
+}
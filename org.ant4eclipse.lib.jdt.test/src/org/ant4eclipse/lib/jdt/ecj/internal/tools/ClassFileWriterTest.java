@@ -0,0 +1,144 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClassFileWriterTest extends ConfigurableAnt4EclipseTestCase {
+
+  private static final byte[] CONTENT         = new byte[] { 1, 2, 3 };
+
+  private static final byte[] CHANGED_CONTENT = new byte[] { 1, 2, 4 };
+
+  /** a modification time in the past, so rewritten class files can be detected */
+  private static final long   MODIFIED        = 1000000000000L;
+
+  private TestDirectory       _testDirectory;
+
+  @Before
+  public void createDirectory() {
+    this._testDirectory = new TestDirectory();
+  }
+
+  @After
+  public void disposeDirectory() {
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void writeClassFiles() throws IOException {
+    File bin = new File(this._testDirectory.getRootDir(), "bin");
+    ClassFileWriter writer = new ClassFileWriter(2);
+    writer.write(bin, "a/A.class", CONTENT);
+    writer.write(bin, "a/b/B.class", CHANGED_CONTENT);
+    assertTrue(writer.close().isEmpty());
+
+    assertArrayEquals(CONTENT, readFile(new File(bin, "a/A.class")));
+    assertArrayEquals(CHANGED_CONTENT, readFile(new File(bin, "a/b/B.class")));
+    assertFalse(new File(bin, "a/A.class.tmp").exists());
+  }
+
+  @Test
+  public void unchangedClassFilesAreSkipped() throws IOException {
+    File bin = new File(this._testDirectory.getRootDir(), "bin");
+    File unchanged = new File(bin, "a/A.class");
+    File changed = new File(bin, "a/B.class");
+    ClassFileWriter writer = new ClassFileWriter(1);
+    writer.write(bin, "a/A.class", CONTENT);
+    writer.write(bin, "a/B.class", CONTENT);
+    assertTrue(writer.close().isEmpty());
+    assertTrue(unchanged.setLastModified(MODIFIED));
+    assertTrue(changed.setLastModified(MODIFIED));
+
+    writer = new ClassFileWriter(1);
+    writer.write(bin, "a/A.class", CONTENT);
+    writer.write(bin, "a/B.class", CHANGED_CONTENT);
+    assertTrue(writer.close().isEmpty());
+
+    // the unchanged class file keeps its modification time
+    assertEquals(MODIFIED, unchanged.lastModified());
+    assertArrayEquals(CONTENT, readFile(unchanged));
+    assertFalse(MODIFIED == changed.lastModified());
+    assertArrayEquals(CHANGED_CONTENT, readFile(changed));
+  }
+
+  @Test
+  public void failuresAreReported() throws IOException {
+    File bin = this._testDirectory.createSubDirectory("bin");
+    // a file blocks the package directory
+    Utilities.writeFile(new File(bin, "a"), CONTENT);
+
+    ClassFileWriter writer = new ClassFileWriter(2);
+    writer.write(bin, "a/A.class", CONTENT);
+    writer.write(bin, "b/B.class", CONTENT);
+    Map<File, String> failures = writer.close();
+
+    assertEquals(1, failures.size());
+    assertNotNull(failures.get(new File(bin, "a/A.class")));
+    assertArrayEquals(CONTENT, readFile(new File(bin, "b/B.class")));
+  }
+
+  @Test
+  public void archivesKeepExistingEntries() throws IOException {
+    File archive = new File(this._testDirectory.getRootDir(), "classes.jar");
+    ClassFileWriter writer = new ClassFileWriter(1);
+    writer.write(archive, "a/A.class", CONTENT);
+    writer.write(archive, "a/B.class", CONTENT);
+    assertTrue(writer.close().isEmpty());
+
+    writer = new ClassFileWriter(1);
+    writer.write(archive, "a/B.class", CHANGED_CONTENT);
+    assertTrue(writer.close().isEmpty());
+
+    ZipFile zipFile = new ZipFile(archive);
+    try {
+      assertEquals(2, zipFile.size());
+      assertArrayEquals(CONTENT, read(zipFile.getInputStream(zipFile.getEntry("a/A.class"))));
+      assertArrayEquals(CHANGED_CONTENT, read(zipFile.getInputStream(zipFile.getEntry("a/B.class"))));
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  private static byte[] readFile(File file) throws IOException {
+    return read(new FileInputStream(file));
+  }
+
+  private static byte[] read(InputStream in) throws IOException {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      Utilities.copy(in, out, new byte[1024]);
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+}
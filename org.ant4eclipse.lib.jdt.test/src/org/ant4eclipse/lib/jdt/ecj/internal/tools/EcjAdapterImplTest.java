@@ -0,0 +1,200 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.PerformanceLogging;
+import org.ant4eclipse.lib.core.util.StopWatchService;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.DefaultCompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileFactory;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EcjAdapterImplTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private File          _runtime;
+
+  @Before
+  public void createDirectory() {
+    this._runtime = new File(System.getProperty("java.home"), "lib/rt.jar");
+    Assume.assumeTrue(this._runtime.isFile());
+    this._testDirectory = new TestDirectory();
+  }
+
+  @After
+  public void disposeDirectory() {
+    if (this._testDirectory != null) {
+      this._testDirectory.dispose();
+    }
+  }
+
+  @Test
+  public void dependentJobsRunAfterTheirDependencies() {
+    createFile("a/src/a/A.java", "package a; public class A { public int value() { return 1; } }");
+    createFile("b/src/b/B.java", "package b; public class B extends a.A { public int value() { return 2; } }");
+    createFile("c/src/c/C.java", "package c; public class C extends b.B { }");
+
+    // the dependent jobs come first, so they can't simply be compiled in the given order
+    CompileJobDescription c = createDescription("c", "c/C.java", "a", "b");
+    CompileJobDescription b = createDescription("b", "b/B.java", "a");
+    CompileJobDescription a = createDescription("a", "a/A.java");
+    List<CompileJobResult> results = EcjAdapter.Factory.create().compile(Arrays.asList(c, b, a));
+
+    assertEquals(3, results.size());
+    assertSucceeded(results.get(0), "c/C");
+    assertSucceeded(results.get(1), "b/B");
+    assertSucceeded(results.get(2), "a/A");
+  }
+
+  @Test
+  public void independentJobs() {
+    createFile("a/src/a/A.java", "package a; public class A { }");
+    createFile("b/src/b/B.java", "package b; public class B { }");
+
+    List<CompileJobResult> results = EcjAdapter.Factory.create().compile(
+        Arrays.asList(createDescription("a", "a/A.java"), createDescription("b", "b/B.java")));
+
+    assertEquals(2, results.size());
+    assertSucceeded(results.get(0), "a/A");
+    assertSucceeded(results.get(1), "b/B");
+  }
+
+  @Test
+  public void failingJob() {
+    createFile("a/src/a/A.java", "package a; public class A { undefined.Type field; }");
+    createFile("b/src/b/B.java", "package b; public class B { }");
+
+    List<CompileJobResult> results = EcjAdapter.Factory.create().compile(
+        Arrays.asList(createDescription("a", "a/A.java"), createDescription("b", "b/B.java")));
+
+    assertFalse(results.get(0).succeeded());
+    assertTrue(results.get(0).getCategorizedProblems().length > 0);
+    assertSucceeded(results.get(1), "b/B");
+  }
+
+  @Test
+  public void cyclicJobs() {
+    createFile("a/src/a/A.java", "package a; public class A { }");
+    createFile("b/src/b/B.java", "package b; public class B { }");
+
+    // each job has the output folder of the other one on its class path
+    List<CompileJobResult> results = EcjAdapter.Factory.create().compile(
+        Arrays.asList(createDescription("a", "a/A.java", "b"), createDescription("b", "b/B.java", "a")));
+
+    assertSucceeded(results.get(0), "a/A");
+    assertSucceeded(results.get(1), "b/B");
+  }
+
+  @Test
+  public void unwritableClassFilesFailTheJob() {
+    createFile("a/src/a/A.java", "package a; public class A { }");
+    // a file blocks the package directory of the class file
+    createFile("a/bin/a", "");
+
+    CompileJobResult result = EcjAdapter.Factory.create().compile(createDescription("a", "a/A.java"));
+
+    assertFalse(result.succeeded());
+    assertTrue(result.getCompiledClassFiles().isEmpty());
+  }
+
+  @Test
+  public void typeLookupsAreCounted() {
+    createFile("a/src/a/A.java", "package a; public class A { java.util.List<String> field; }");
+
+    StopWatchService stopWatchService = ServiceRegistryAccess.instance().getService(StopWatchService.class);
+    String prefix = EcjAdapterImpl.class.getName() + "::typeLookupCache-";
+    CompileJobDescription description = createDescription("a", "a/A.java");
+    PerformanceLogging.setEnabled(true);
+    try {
+      // the first job fills the type lookup cache of the class file loader
+      assertSucceeded(EcjAdapter.Factory.create().compile(description), "a/A");
+      long misses = stopWatchService.getCounter(prefix + "misses");
+      assertTrue(misses > 0);
+      assertEquals(0, stopWatchService.getCounter(prefix + "hits"));
+
+      // the second job with the same class file loader is answered from the cache
+      assertSucceeded(EcjAdapter.Factory.create().compile(description), "a/A");
+      assertEquals(misses, stopWatchService.getCounter(prefix + "misses"));
+      assertTrue(stopWatchService.getCounter(prefix + "hits") > 0);
+    } finally {
+      PerformanceLogging.setEnabled(false);
+    }
+  }
+
+  private void assertSucceeded(CompileJobResult result, String className) {
+    assertTrue(result.succeeded());
+    assertEquals(1, result.getCompiledClassFiles().size());
+    assertTrue(result.getCompiledClassFiles().containsKey(className + ".class"));
+  }
+
+  /**
+   * Creates the description of a compile job for the project with the given name. The class path contains the runtime
+   * and the output folders of the given projects.
+   */
+  private CompileJobDescription createDescription(String project, String sourceFileName, String... classpath) {
+    ClassFileLoader[] classFileLoaders = new ClassFileLoader[classpath.length + 1];
+    classFileLoaders[0] = ClassFileLoaderFactory.createClasspathClassFileLoader(this._runtime, EcjAdapter.LIBRARY);
+    for (int i = 0; i < classpath.length; i++) {
+      classFileLoaders[i + 1] = ClassFileLoaderFactory.createClasspathClassFileLoader(getOutputFolder(classpath[i]),
+          EcjAdapter.PROJECT);
+    }
+
+    Map<String, String> compilerOptions = new HashMap<String, String>();
+    compilerOptions.put(CompilerOptions.OPTION_Source, CompilerOptions.VERSION_1_5);
+    compilerOptions.put(CompilerOptions.OPTION_Compliance, CompilerOptions.VERSION_1_5);
+    compilerOptions.put(CompilerOptions.OPTION_TargetPlatform, CompilerOptions.VERSION_1_5);
+
+    SourceFile sourceFile = SourceFileFactory.createSourceFile(new File(this._testDirectory.getRootDir(), project
+        + "/src"), sourceFileName, getOutputFolder(project));
+    DefaultCompileJobDescription description = new DefaultCompileJobDescription();
+    description.setClassFileLoader(ClassFileLoaderFactory.createCompoundClassFileLoader(classFileLoaders));
+    description.setCompilerOptions(compilerOptions);
+    description.setSourceFiles(new SourceFile[] { sourceFile });
+    return description;
+  }
+
+  private File getOutputFolder(String project) {
+    File result = new File(this._testDirectory.getRootDir(), project + "/bin");
+    Utilities.mkdirs(result);
+    return result;
+  }
+
+  private void createFile(String path, String content) {
+    File file = new File(this._testDirectory.getRootDir(), path);
+    Utilities.mkdirs(file.getParentFile());
+    Utilities.writeFile(file, content, "UTF-8");
+  }
+}
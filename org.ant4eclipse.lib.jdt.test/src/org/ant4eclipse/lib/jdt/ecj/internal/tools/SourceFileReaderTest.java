@@ -0,0 +1,76 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SourceFileReaderTest {
+
+  private static final String CONTENT = "package a;\r\n// \u00E4\u00F6\u00FC \u20AC\nclass A {}";
+
+  private TestDirectory       _testDirectory;
+
+  @Before
+  public void setup() {
+    this._testDirectory = new TestDirectory();
+  }
+
+  @After
+  public void dispose() {
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void encodings() throws IOException {
+    assertEquals(CONTENT, read(CONTENT.getBytes("UTF-8"), "UTF-8"));
+    assertEquals(CONTENT, read(CONTENT.getBytes("UTF-16BE"), "UTF-16BE"));
+    assertEquals("\u00E4", read("\u00E4".getBytes("ISO-8859-1"), "ISO-8859-1"));
+    assertEquals("\u00C3\u00A4", read("\u00E4".getBytes("UTF-8"), "ISO-8859-1"));
+    assertEquals("", read(new byte[0], "UTF-8"));
+  }
+
+  @Test
+  public void byteOrderMarks() throws IOException {
+    assertEquals(CONTENT, read(("\uFEFF" + CONTENT).getBytes("UTF-8"), "UTF-8"));
+    assertEquals(CONTENT, read(("\uFEFF" + CONTENT).getBytes("UTF-16BE"), "UTF-16BE"));
+    assertEquals(CONTENT, read(("\uFEFF" + CONTENT).getBytes("UTF-16LE"), "UTF-16LE"));
+    assertEquals("", read("\uFEFF".getBytes("UTF-8"), "UTF-8"));
+    // only a leading byte order mark is removed
+    assertEquals("a\uFEFF", read("a\uFEFF".getBytes("UTF-8"), "UTF-8"));
+  }
+
+  @Test
+  public void malformedInputIsReplaced() throws IOException {
+    assertEquals("a\uFFFDb", read(new byte[] { 'a', (byte) 0xFF, 'b' }, "UTF-8"));
+  }
+
+  @Test(expected = UnsupportedEncodingException.class)
+  public void unsupportedEncoding() throws IOException {
+    read(new byte[] { 'a' }, "NO-SUCH-ENCODING");
+  }
+
+  private String read(byte[] content, String encoding) throws IOException {
+    File sourceFile = new File(this._testDirectory.getRootDir(), "A.java");
+    Utilities.writeFile(sourceFile, content);
+    return new String(SourceFileReader.read(sourceFile, encoding));
+  }
+}
@@ -0,0 +1,196 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.CompileStatistics;
+import org.ant4eclipse.lib.jdt.ecj.DefaultCompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.lib.jdt.ecj.PipelineConfiguration;
+import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileDependencies;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileFactory;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.CompileJobResultImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClasspathClassFileLoaderImpl;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblem;
+import org.eclipse.jdt.internal.compiler.problem.ProblemSeverities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompileDaemonProtocolTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private File          _src;
+
+  private File          _bin;
+
+  @Before
+  public void createDirectory() {
+    this._testDirectory = new TestDirectory();
+    this._src = this._testDirectory.createSubDirectory("src");
+    this._bin = this._testDirectory.createSubDirectory("bin");
+  }
+
+  @After
+  public void disposeDirectory() {
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void description() throws IOException {
+    Map<String, String> compilerOptions = new HashMap<String, String>();
+    compilerOptions.put("org.eclipse.jdt.core.compiler.source", "1.5");
+    compilerOptions.put("org.eclipse.jdt.core.compiler.unset", null);
+    DefaultCompileJobDescription description = new DefaultCompileJobDescription();
+    description.setCompilerOptions(compilerOptions);
+    File archive = new File(this._testDirectory.getRootDir(), "classes.jar");
+    description.setSourceFiles(new SourceFile[] {
+        SourceFileFactory.createSourceFile(this._src, "a/A.java", this._bin, "UTF-8"),
+        SourceFileFactory.createSourceFile(this._src, "b/B.java", archive, "ISO-8859-1") });
+    description.setClassFileLoader(new ClasspathClassFileLoaderImpl(this._bin, EcjAdapter.PROJECT,
+        new File[] { this._bin }));
+    description.setRecordDependencies(true);
+    description.setPipelineConfiguration(new PipelineConfiguration(true, false, 3, 200));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    CompileDaemonProtocol.writeDescription(output, description);
+    output.flush();
+    CompileJobDescription result = CompileDaemonProtocol.readDescription(new DataInputStream(new ByteArrayInputStream(
+        bytes.toByteArray())));
+
+    assertEquals(compilerOptions, result.getCompilerOptions());
+    assertTrue(result.getCompilerOptions().containsKey("org.eclipse.jdt.core.compiler.unset"));
+    SourceFile[] sourceFiles = result.getSourceFiles();
+    assertEquals(2, sourceFiles.length);
+    assertEquals(this._src, sourceFiles[0].getSourceFolder());
+    assertEquals("a/A.java", sourceFiles[0].getSourceFileName());
+    assertEquals(this._bin, sourceFiles[0].getDestinationFolder());
+    assertEquals("UTF-8", sourceFiles[0].getEncoding());
+    assertEquals("b/B.java", sourceFiles[1].getSourceFileName());
+    assertEquals(archive, sourceFiles[1].getDestinationFolder());
+    assertEquals("ISO-8859-1", sourceFiles[1].getEncoding());
+    ClassFileLoader classFileLoader = result.getClassFileLoader();
+    assertArrayEquals(description.getClassFileLoader().getClasspath(), classFileLoader.getClasspath());
+    assertTrue(result.isRecordDependencies());
+    PipelineConfiguration pipeline = result.getPipelineConfiguration();
+    assertTrue(pipeline.isParallelRead());
+    assertFalse(pipeline.isParallelProcessing());
+    assertEquals(3, pipeline.getMaxThreads());
+    assertEquals(200, pipeline.getChunkSize());
+  }
+
+  @Test
+  public void result() throws IOException {
+    Map<String, File> compiledClassFiles = new LinkedHashMap<String, File>();
+    compiledClassFiles.put("a/A.class", new File(this._bin, "a/A.class"));
+    compiledClassFiles.put("a/A$1.class", new File(this._bin, "a/A$1.class"));
+    CompileJobResultImpl result = new CompileJobResultImpl();
+    result.setSucceeded(false);
+    result.setCategorizedProblems(new CategorizedProblem[] {
+        new DefaultProblem("A.java".toCharArray(), "error", 17, new String[] { "x", null }, ProblemSeverities.Error,
+            10, 20, 3, 5),
+        new DefaultProblem(null, "warning", 18, new String[0], ProblemSeverities.Warning, 0, 0, 0, 0) });
+    result.setCompiledClassFiles(compiledClassFiles);
+    result.setSourceFileDependencies(new SourceFileDependencies[] { new SourceFileDependencies(new File(this._src,
+        "a/A.java"), this._bin, new String[] { "a/A.class", "a/A$1.class" }, new String[] { "1234", "5678" },
+        new String[] { "java/lang" }, new String[] { "Object" }, new String[] { "java" }) });
+    result.setStatistics(new CompileStatistics(1, 2, 3, 4, 5, 6, 7, 8, 9));
+
+    CompileJobResult read = roundTrip(result);
+
+    assertFalse(read.succeeded());
+    CategorizedProblem[] problems = read.getCategorizedProblems();
+    assertEquals(2, problems.length);
+    assertEquals("A.java", new String(problems[0].getOriginatingFileName()));
+    assertEquals("error", problems[0].getMessage());
+    assertEquals(17, problems[0].getID());
+    assertArrayEquals(new String[] { "x", null }, problems[0].getArguments());
+    assertTrue(problems[0].isError());
+    assertEquals(10, problems[0].getSourceStart());
+    assertEquals(20, problems[0].getSourceEnd());
+    assertEquals(3, problems[0].getSourceLineNumber());
+    assertEquals(5, ((DefaultProblem) problems[0]).getSourceColumnNumber());
+    assertNull(problems[1].getOriginatingFileName());
+    assertTrue(problems[1].isWarning());
+
+    assertEquals(compiledClassFiles, read.getCompiledClassFiles());
+
+    SourceFileDependencies[] dependencies = read.getSourceFileDependencies();
+    assertEquals(1, dependencies.length);
+    assertEquals(new File(this._src, "a/A.java"), dependencies[0].getSourceFile());
+    assertEquals(this._bin, dependencies[0].getDestinationFolder());
+    assertArrayEquals(new String[] { "a/A.class", "a/A$1.class" }, dependencies[0].getClassFileNames());
+    assertArrayEquals(new String[] { "1234", "5678" }, dependencies[0].getAbiDigests());
+    assertArrayEquals(new String[] { "java/lang" }, dependencies[0].getQualifiedReferences());
+    assertArrayEquals(new String[] { "Object" }, dependencies[0].getSimpleNameReferences());
+    assertArrayEquals(new String[] { "java" }, dependencies[0].getRootReferences());
+
+    CompileStatistics statistics = read.getStatistics();
+    assertEquals(1, statistics.getParseTime());
+    assertEquals(2, statistics.getResolveTime());
+    assertEquals(3, statistics.getAnalyzeTime());
+    assertEquals(4, statistics.getGenerateTime());
+    assertEquals(5, statistics.getWriteTime());
+    assertEquals(6, statistics.getElapsedTime());
+    assertEquals(7, statistics.getCompilationUnits());
+    assertEquals(8, statistics.getLines());
+    assertEquals(9, statistics.getChunks());
+  }
+
+  @Test
+  public void resultWithoutDependencies() throws IOException {
+    CompileJobResultImpl result = new CompileJobResultImpl();
+    result.setSucceeded(true);
+    result.setCategorizedProblems(new CategorizedProblem[0]);
+    result.setCompiledClassFiles(new HashMap<String, File>());
+    result.setStatistics(new CompileStatistics(0, 0, 0, 0, 0, 0, 0, 0, 0));
+
+    CompileJobResult read = roundTrip(result);
+
+    assertTrue(read.succeeded());
+    assertEquals(0, read.getCategorizedProblems().length);
+    assertTrue(read.getCompiledClassFiles().isEmpty());
+    assertEquals(0, read.getSourceFileDependencies().length);
+  }
+
+  private static CompileJobResult roundTrip(CompileJobResult result) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    CompileDaemonProtocol.writeResult(output, result);
+    output.flush();
+    return CompileDaemonProtocol.readResult(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+  }
+}
@@ -0,0 +1,84 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompileDaemonTest {
+
+  private TestDirectory _testDirectory;
+
+  @Before
+  public void setup() {
+    Assume.assumeTrue(!Utilities.isWindows());
+    this._testDirectory = new TestDirectory();
+  }
+
+  @After
+  public void dispose() {
+    if (this._testDirectory != null) {
+      this._testDirectory.dispose();
+    }
+  }
+
+  @Test
+  public void stateDirectoryIsOnlyAccessibleByItsOwner() throws Exception {
+    File stateFile = new File(this._testDirectory.getRootDir(), "state/compile-daemon.properties");
+    CompileDaemon.createStateDirectory(stateFile);
+    assertTrue(stateFile.getParentFile().isDirectory());
+    assertEquals("rwx------", getPermissions(stateFile.getParentFile()));
+
+    // an existing directory is not changed
+    File existing = this._testDirectory.getRootDir();
+    String permissions = getPermissions(existing);
+    CompileDaemon.createStateDirectory(new File(existing, "compile-daemon.properties"));
+    assertEquals(permissions, getPermissions(existing));
+  }
+
+  @Test
+  public void restrictToOwner() throws Exception {
+    File file = this._testDirectory.createFile("compile-daemon.properties", "");
+    CompileDaemon.restrictToOwner(file, false);
+    assertEquals("rw-------", getPermissions(file));
+  }
+
+  @Test(expected = IOException.class)
+  public void restrictToOwnerFails() throws IOException {
+    CompileDaemon.restrictToOwner(new File(this._testDirectory.getRootDir(), "missing"), false);
+  }
+
+  private static String getPermissions(File file) throws Exception {
+    Process process = Runtime.getRuntime().exec(new String[] { "ls", "-ld", file.getAbsolutePath() });
+    BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+    try {
+      String line = reader.readLine();
+      assertEquals(0, process.waitFor());
+      // e.g. 'drwx------ 2 user group ...'
+      return line.substring(1, 10);
+    } finally {
+      reader.close();
+    }
+  }
+}
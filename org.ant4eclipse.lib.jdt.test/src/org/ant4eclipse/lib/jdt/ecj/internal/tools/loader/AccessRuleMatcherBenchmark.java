@@ -0,0 +1,101 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * Compares the {@link AccessRuleMatcher} with the regular expressions that have been used to evaluate access
+ * restrictions before. This benchmark is not part of the test suite.
+ * </p>
+ */
+public class AccessRuleMatcherBenchmark {
+
+  /**
+   * <p>
+   * Compares the compiled matcher with matching regular expressions for each lookup over the rule set of a typical
+   * PDE project.
+   * </p>
+   */
+  @Test
+  public void pdeRuleSet() {
+    String filter = AccessRuleMatcherTest.createPdeFilter();
+
+    List<char[][]> packageNames = new LinkedList<char[][]>();
+    List<String> allPackages = new LinkedList<String>();
+    addAll(allPackages, AccessRuleMatcherTest.PUBLIC_PACKAGES);
+    addAll(allPackages, AccessRuleMatcherTest.PRIVATE_PACKAGES);
+    addAll(allPackages, AccessRuleMatcherTest.OTHER_PACKAGES);
+    for (String packageName : allPackages) {
+      packageNames.add(CompoundName.toSegments(packageName));
+    }
+    char[][] typeNames = new char[50][];
+    for (int i = 0; i < typeNames.length; i++) {
+      typeNames[i] = ("Type" + i).toCharArray();
+    }
+
+    int rounds = 5;
+
+    // regular expressions (as used before)
+    List<String> patterns = new LinkedList<String>();
+    int regexAccessible = 0;
+    long start = System.nanoTime();
+    for (int round = 0; round < rounds; round++) {
+      for (char[][] packageName : packageNames) {
+        for (char[] typeName : typeNames) {
+          if (AccessRuleMatcherTest.isAccessibleRegex(filter, patterns, CompoundName.toFileName(packageName, typeName,
+              '/', ""))) {
+            regexAccessible++;
+          }
+        }
+      }
+    }
+    long regexTime = System.nanoTime() - start;
+
+    // compiled matcher
+    int matcherAccessible = 0;
+    start = System.nanoTime();
+    AccessRuleMatcher matcher = new AccessRuleMatcher(filter);
+    for (int round = 0; round < rounds; round++) {
+      for (char[][] packageName : packageNames) {
+        for (char[] typeName : typeNames) {
+          if (matcher.isAccessible(packageName, typeName)) {
+            matcherAccessible++;
+          }
+        }
+      }
+    }
+    long matcherTime = System.nanoTime() - start;
+
+    assertEquals(regexAccessible, matcherAccessible);
+
+    System.out.println("AccessRuleMatcher: " + (rounds * packageNames.size() * typeNames.length) + " lookups, "
+        + countRules(filter) + " rules: regular expressions " + (regexTime / 1000000) + " ms, compiled matcher "
+        + (matcherTime / 1000000) + " ms");
+  }
+
+  private static int countRules(String filter) {
+    return filter.split(";").length;
+  }
+
+  private static void addAll(List<String> list, String[] values) {
+    for (String value : values) {
+      list.add(value);
+    }
+  }
+}
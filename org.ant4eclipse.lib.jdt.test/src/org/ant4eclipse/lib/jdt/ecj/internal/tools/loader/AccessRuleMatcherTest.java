@@ -0,0 +1,175 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AccessRuleMatcherTest {
+
+  /** the packages exported by the bundles a typical PDE project imports */
+  static final String[] PUBLIC_PACKAGES  = { "org.osgi.framework", "org.osgi.util.tracker",
+      "org.osgi.service.event", "org.osgi.service.log", "org.osgi.service.packageadmin", "org.osgi.service.url",
+      "org.eclipse.core.runtime", "org.eclipse.core.runtime.jobs", "org.eclipse.core.runtime.content",
+      "org.eclipse.core.runtime.preferences", "org.eclipse.core.resources", "org.eclipse.core.resources.mapping",
+      "org.eclipse.core.commands", "org.eclipse.core.commands.common", "org.eclipse.core.expressions",
+      "org.eclipse.core.filesystem", "org.eclipse.equinox.app", "org.eclipse.equinox.common",
+      "org.eclipse.equinox.preferences", "org.eclipse.equinox.registry", "org.eclipse.jface.action",
+      "org.eclipse.jface.dialogs", "org.eclipse.jface.preference", "org.eclipse.jface.resource",
+      "org.eclipse.jface.text", "org.eclipse.jface.text.source", "org.eclipse.jface.viewers",
+      "org.eclipse.jface.window", "org.eclipse.jface.wizard", "org.eclipse.swt", "org.eclipse.swt.events",
+      "org.eclipse.swt.graphics", "org.eclipse.swt.layout", "org.eclipse.swt.widgets", "org.eclipse.ui",
+      "org.eclipse.ui.actions", "org.eclipse.ui.dialogs", "org.eclipse.ui.editors.text", "org.eclipse.ui.handlers",
+      "org.eclipse.ui.ide", "org.eclipse.ui.part", "org.eclipse.ui.plugin", "org.eclipse.ui.texteditor",
+      "org.eclipse.ui.views.properties", "org.eclipse.jdt.core", "org.eclipse.jdt.core.dom",
+      "org.eclipse.jdt.launching", "org.eclipse.debug.core", "org.eclipse.debug.ui", "org.eclipse.team.core" };
+
+  /** the packages that are not exported */
+  static final String[] PRIVATE_PACKAGES = { "org.eclipse.core.internal.runtime",
+      "org.eclipse.core.internal.resources", "org.eclipse.jface.internal.text", "org.eclipse.ui.internal",
+      "org.eclipse.ui.internal.ide", "org.eclipse.jdt.internal.core", "org.eclipse.jdt.internal.compiler",
+      "org.eclipse.debug.internal.core", "org.eclipse.swt.internal", "org.eclipse.osgi.framework.internal.core" };
+
+  /** packages that are neither exported nor private */
+  static final String[] OTHER_PACKAGES   = { "org.eclipse.osgi.baseadaptor", "org.eclipse.core.internal.jobs",
+      "org.eclipse.ui.internal.misc", "org.apache.commons.logging", "com.ibm.icu.text", "javax.xml.parsers", "org",
+      "org.eclipse", "" };
+
+  @Test
+  public void packageRules() {
+    AccessRuleMatcher matcher = new AccessRuleMatcher("+a/b/*;-a/*;-**/*");
+    assertTrue(isAccessible(matcher, "a.b", "Foo"));
+    assertTrue(isAccessible(matcher, "a.b.c", "Foo"));
+    assertFalse(isAccessible(matcher, "a", "Foo"));
+    assertFalse(isAccessible(matcher, "a.bc", "Foo"));
+    assertFalse(isAccessible(matcher, "x", "Foo"));
+    assertFalse(isAccessible(matcher, "", "Foo"));
+
+    matcher = new AccessRuleMatcher("-a/internal/*;+**/*");
+    assertTrue(isAccessible(matcher, "a.internal", "Foo"));
+    assertTrue(isAccessible(matcher, "b", "Foo"));
+
+    matcher = new AccessRuleMatcher("-a/internal/*");
+    assertFalse(isAccessible(matcher, "a.internal", "Foo"));
+    assertFalse(isAccessible(matcher, "a.internal.x", "Foo"));
+    assertTrue(isAccessible(matcher, "a", "Foo"));
+  }
+
+  @Test
+  public void typeRules() {
+    AccessRuleMatcher matcher = new AccessRuleMatcher("+a/Foo*;-a/*/Bar;-**/*");
+    assertTrue(isAccessible(matcher, "a", "Foo"));
+    assertTrue(isAccessible(matcher, "a", "FooBar"));
+    assertFalse(isAccessible(matcher, "a", "Bar"));
+    assertFalse(isAccessible(matcher, "b", "Foo"));
+
+    matcher = new AccessRuleMatcher("-a/*/Bar");
+    assertFalse(isAccessible(matcher, "a.b", "Bar"));
+    assertTrue(isAccessible(matcher, "a", "Bar"));
+    assertTrue(isAccessible(matcher, "a.b", "Foo"));
+  }
+
+  @Test
+  public void sameVerdictsAsRegularExpressions() {
+    String[] filters = { createPdeFilter(), "+a/b/*;-**/*", "-a/*;+a/b/Foo", "+a/**/*;-a/b/*", "+*;-**/*",
+        "-a/b/*;-c/*", "+a/b*;-**/*", "+a/*/c/*;-a/*" };
+    String[] packages = { "", "a", "a.b", "a.b.c", "a.bc", "c", "c.d", "org.eclipse.ui", "org.eclipse.ui.internal",
+        "org.osgi.framework" };
+    String[] types = { "Foo", "Bar", "Foo$Inner" };
+    for (String filter : filters) {
+      AccessRuleMatcher matcher = new AccessRuleMatcher(filter);
+      List<String> patterns = new LinkedList<String>();
+      for (String packageName : packages) {
+        for (String type : types) {
+          assertEquals(filter + " " + packageName + "." + type, isAccessibleRegex(filter, patterns, packageName,
+              type), isAccessible(matcher, packageName, type));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void pdeRuleSet() {
+    String filter = createPdeFilter();
+    AccessRuleMatcher matcher = new AccessRuleMatcher(filter);
+    assertTrue(isAccessible(matcher, "org.eclipse.ui", "Foo"));
+    assertFalse(isAccessible(matcher, "org.eclipse.core.internal.runtime", "Foo"));
+    assertFalse(isAccessible(matcher, "org.apache.commons.logging", "Foo"));
+
+    List<String> patterns = new LinkedList<String>();
+    for (String[] packages : new String[][] { PUBLIC_PACKAGES, PRIVATE_PACKAGES, OTHER_PACKAGES }) {
+      for (String packageName : packages) {
+        assertEquals(packageName, isAccessibleRegex(filter, patterns, packageName, "Foo"), isAccessible(matcher,
+            packageName, "Foo"));
+      }
+    }
+  }
+
+  private static boolean isAccessible(AccessRuleMatcher matcher, String packageName, String typeName) {
+    return matcher.isAccessible(CompoundName.toSegments(packageName), typeName.toCharArray());
+  }
+
+  private static boolean isAccessibleRegex(String filter, List<String> patterns, String packageName, String typeName) {
+    String path = packageName.length() > 0 ? packageName.replace('.', '/') + "/" + typeName : typeName;
+    return isAccessibleRegex(filter, patterns, path);
+  }
+
+  /**
+   * <p>
+   * Evaluates the filter the way it has been evaluated before it has been compiled: each rule is transformed into a
+   * regular expression that is matched against the class file name.
+   * </p>
+   */
+  static boolean isAccessibleRegex(String filter, List<String> patterns, String path) {
+    String classFileName = path + ".class";
+    for (String part : filter.split(";")) {
+      String transformedPart = part.substring(1).replaceAll("\\*\\*/\\*", "###");
+      transformedPart = transformedPart.replaceAll("\\*", "[^\\\\.]*");
+      transformedPart = transformedPart.replaceAll("###", ".*");
+      transformedPart = transformedPart.concat("\\.class");
+      if (part.startsWith("+") && classFileName.matches(transformedPart)) {
+        return true;
+      }
+      if (part.startsWith("-")) {
+        patterns.add(transformedPart);
+      }
+    }
+    try {
+      for (String pattern : patterns) {
+        if (classFileName.matches(pattern)) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      patterns.clear();
+    }
+  }
+
+  static String createPdeFilter() {
+    StringBuffer result = new StringBuffer();
+    for (String publicPackage : PUBLIC_PACKAGES) {
+      result.append("+").append(publicPackage.replace('.', '/')).append("/*;");
+    }
+    for (String privatePackage : PRIVATE_PACKAGES) {
+      result.append("-").append(privatePackage.replace('.', '/')).append("/*;");
+    }
+    result.append("-**/*");
+    return result.toString();
+  }
+}
@@ -0,0 +1,125 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.env.IBinaryType;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryTypeCacheTest {
+
+  private IBinaryType _binaryType;
+
+  @Before
+  public void setup() throws Exception {
+    InputStream in = BinaryTypeCacheTest.class.getResourceAsStream("BinaryTypeCacheTest.class");
+    assertNotNull(in);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    this._binaryType = new ClassFileReader(out.toByteArray(), "BinaryTypeCacheTest.class".toCharArray());
+  }
+
+  @Test
+  public void hitsAndMisses() {
+    BinaryTypeCache cache = new BinaryTypeCache(1000);
+
+    assertNull(cache.get("a.jar!a/A.class", 1, 100));
+    cache.put("a.jar!a/A.class", 1, 100, this._binaryType, 100);
+    assertSame(this._binaryType, cache.get("a.jar!a/A.class", 1, 100));
+    assertNull(cache.get("a.jar!a/B.class", 1, 100));
+
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertEquals(1, cache.size());
+    assertEquals(100, cache.getBytes());
+  }
+
+  @Test
+  public void modifiedFilesAreNotReturned() {
+    BinaryTypeCache cache = new BinaryTypeCache(1000);
+    cache.put("A.class", 1, 100, this._binaryType, 100);
+
+    assertNull(cache.get("A.class", 2, 100));
+    assertNull(cache.get("A.class", 1, 101));
+    assertSame(this._binaryType, cache.get("A.class", 1, 100));
+
+    // replacing an entry doesn't count its size twice
+    cache.put("A.class", 2, 120, this._binaryType, 120);
+    assertEquals(1, cache.size());
+    assertEquals(120, cache.getBytes());
+    assertNull(cache.get("A.class", 1, 100));
+    assertSame(this._binaryType, cache.get("A.class", 2, 120));
+  }
+
+  @Test
+  public void leastRecentlyUsedEviction() {
+    BinaryTypeCache cache = new BinaryTypeCache(300);
+    cache.put("A.class", 1, 100, this._binaryType, 100);
+    cache.put("B.class", 1, 100, this._binaryType, 100);
+    cache.put("C.class", 1, 100, this._binaryType, 100);
+
+    // 'A.class' has been used recently, so 'B.class' is evicted
+    assertSame(this._binaryType, cache.get("A.class", 1, 100));
+    cache.put("D.class", 1, 100, this._binaryType, 100);
+
+    assertEquals(1, cache.getEvictions());
+    assertEquals(3, cache.size());
+    assertEquals(300, cache.getBytes());
+    assertNull(cache.get("B.class", 1, 100));
+    assertSame(this._binaryType, cache.get("A.class", 1, 100));
+    assertSame(this._binaryType, cache.get("C.class", 1, 100));
+    assertSame(this._binaryType, cache.get("D.class", 1, 100));
+  }
+
+  @Test
+  public void limits() {
+    // class files that exceed the limit are not cached at all
+    BinaryTypeCache cache = new BinaryTypeCache(100);
+    cache.put("A.class", 1, 101, this._binaryType, 101);
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getEvictions());
+
+    // a limit of 0 disables the cache
+    cache = new BinaryTypeCache(0);
+    cache.put("A.class", 1, 1, this._binaryType, 1);
+    assertNull(cache.get("A.class", 1, 1));
+    assertEquals(0, cache.getBytes());
+  }
+
+  @Test
+  public void clear() {
+    BinaryTypeCache cache = new BinaryTypeCache(1000);
+    cache.put("A.class", 1, 100, this._binaryType, 100);
+    cache.clear();
+
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getBytes());
+    assertNull(cache.get("A.class", 1, 100));
+  }
+}
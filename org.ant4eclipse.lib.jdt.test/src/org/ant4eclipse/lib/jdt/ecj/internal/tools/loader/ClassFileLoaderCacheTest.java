@@ -0,0 +1,89 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClassFileLoaderCacheTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory        _testDirectory;
+
+  private File                 _outputFolder;
+
+  private ClassFileLoaderCache _cache;
+
+  private ClassFileLoader      _classFileLoader;
+
+  @Before
+  public void createCache() {
+    this._testDirectory = new TestDirectory();
+    this._outputFolder = this._testDirectory.createSubDirectory("bin");
+    this._cache = new ClassFileLoaderCache();
+    this._classFileLoader = new ClasspathClassFileLoaderImpl(this._outputFolder, EcjAdapter.PROJECT,
+        this._cache.getPackageIndexCache(), this._cache.getBinaryTypeCache());
+  }
+
+  @After
+  public void disposeCache() {
+    this._cache.dispose();
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void stampsAreCheckedOncePerCompileJob() {
+    setLastModified(this._outputFolder, 10000);
+    ClasspathStamp stamp = ClasspathStamp.create(new File[] { this._outputFolder });
+    assertTrue(stamp.isReliable());
+    this._cache.storeClassFileLoader("bin", this._classFileLoader, stamp);
+    assertSame(this._classFileLoader, this._cache.getClassFileLoader("bin"));
+
+    // a compile job writes a new package
+    File packageFolder = new File(this._outputFolder, "a");
+    assertTrue(packageFolder.mkdir());
+    setLastModified(packageFolder, 5000);
+    setLastModified(this._outputFolder, 5000);
+    assertFalse(stamp.isUpToDate());
+
+    // the stamp has already been checked during the current compile job
+    assertSame(this._classFileLoader, this._cache.getClassFileLoader("bin"));
+
+    this._cache.beginCompileJob();
+    assertNull(this._cache.getClassFileLoader("bin"));
+    assertFalse(this._cache.hasClassFileLoader("bin"));
+  }
+
+  @Test
+  public void unreliableStampsAreNeverReused() {
+    ClasspathStamp stamp = ClasspathStamp.create(new File[] { this._outputFolder });
+    assertFalse(stamp.isReliable());
+    this._cache.storeClassFileLoader("bin", this._classFileLoader, stamp);
+
+    assertNull(this._cache.getClassFileLoader("bin"));
+  }
+
+  private static void setLastModified(File file, long age) {
+    assertTrue(file.setLastModified(System.currentTimeMillis() - age));
+  }
+}
@@ -0,0 +1,114 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClassFileLoaderCodecTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private File          _bin;
+
+  private File          _src;
+
+  private File          _jar;
+
+  @Before
+  public void createDirectory() throws IOException {
+    this._testDirectory = new TestDirectory();
+    this._bin = this._testDirectory.createSubDirectory("bin");
+    this._src = this._testDirectory.createSubDirectory("src");
+    this._jar = JarFilePoolTest.createJar(this._testDirectory.getRootDir(), "lib.jar", "a/A.class");
+  }
+
+  @After
+  public void disposeDirectory() {
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    ClassFileLoader project = new ClasspathClassFileLoaderImpl(this._bin, EcjAdapter.PROJECT,
+        new File[] { this._bin }, new File[] { this._src });
+    ClassFileLoader library = new ClasspathClassFileLoaderImpl(this._jar, EcjAdapter.LIBRARY,
+        new File[] { this._jar });
+    ClassFileLoader classFileLoader = new CompoundClassFileLoaderImpl(new ClassFileLoader[] { project,
+        new FilteringClassFileLoader(library, "+a/*;-**/*") });
+
+    byte[] bytes = write(classFileLoader);
+    ClassFileLoader result = ClassFileLoaderCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+
+    // the structure is kept
+    ClassFileLoader[] children = ((CompoundClassFileLoaderImpl) result).getClassFileLoaders();
+    assertEquals(2, children.length);
+    ClasspathClassFileLoaderImpl projectResult = (ClasspathClassFileLoaderImpl) children[0];
+    assertEquals(this._bin, projectResult.getLocation());
+    assertEquals(EcjAdapter.PROJECT, projectResult.getType());
+    assertArrayEquals(new File[] { this._bin }, projectResult.getClasspathEntries());
+    assertArrayEquals(new File[] { this._src }, projectResult.getSourcepathEntries());
+    FilteringClassFileLoader filterResult = (FilteringClassFileLoader) children[1];
+    assertEquals("+a/*;-**/*", filterResult.getFilter());
+    ClasspathClassFileLoaderImpl libraryResult = (ClasspathClassFileLoaderImpl) filterResult.getClassFileLoader();
+    assertEquals(this._jar, libraryResult.getLocation());
+    assertEquals(EcjAdapter.LIBRARY, libraryResult.getType());
+    assertArrayEquals(new File[0], libraryResult.getSourcepathEntries());
+
+    // writing the result again gives the same bytes
+    assertArrayEquals(bytes, write(result));
+    assertTrue(result.hasPackage("a"));
+  }
+
+  @Test
+  public void unsupportedClassFileLoaders() {
+    ClassFileLoader subclass = new ClasspathClassFileLoaderImpl(this._bin, EcjAdapter.PROJECT,
+        new File[] { this._bin }) {
+    };
+    assertFalse(ClassFileLoaderCodec.canWrite(subclass));
+    assertFalse(ClassFileLoaderCodec.canWrite(new CompoundClassFileLoaderImpl(new ClassFileLoader[] { subclass })));
+    assertFalse(ClassFileLoaderCodec.canWrite(new FilteringClassFileLoader(subclass, "-**/*")));
+    assertFalse(ClassFileLoaderCodec.canWrite(null));
+    assertTrue(ClassFileLoaderCodec.canWrite(new ClasspathClassFileLoaderImpl(this._bin, EcjAdapter.PROJECT,
+        new File[] { this._bin })));
+  }
+
+  @Test(expected = IOException.class)
+  public void unknownTag() throws IOException {
+    ClassFileLoaderCodec.read(new DataInputStream(new ByteArrayInputStream(new byte[] { 42 })));
+  }
+
+  private static byte[] write(ClassFileLoader classFileLoader) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    ClassFileLoaderCodec.write(output, classFileLoader);
+    output.flush();
+    return bytes.toByteArray();
+  }
+}
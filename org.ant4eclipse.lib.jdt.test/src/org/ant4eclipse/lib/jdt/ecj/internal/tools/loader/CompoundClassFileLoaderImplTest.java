@@ -0,0 +1,155 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.ant4eclipse.lib.core.ClassName;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompoundClassFileLoaderImplTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory   _testDirectory;
+
+  private ClassFileLoader _a;
+
+  private ClassFileLoader _b;
+
+  private ClassFileLoader _c;
+
+  @Before
+  public void createClassFileLoaders() throws IOException {
+    this._testDirectory = new TestDirectory();
+    PackageIndexCache packageIndexCache = new PackageIndexCache(new JarFilePool());
+    BinaryTypeCache binaryTypeCache = new BinaryTypeCache();
+    File root = this._testDirectory.getRootDir();
+    this._a = new ClasspathClassFileLoaderImpl(JarFilePoolTest.createJar(root, "a.jar", "a/A.class",
+        "shared/S.class"), EcjAdapter.LIBRARY, packageIndexCache, binaryTypeCache);
+    this._b = new ClasspathClassFileLoaderImpl(JarFilePoolTest.createJar(root, "b.jar", "b/B.class",
+        "shared/S.class"), EcjAdapter.LIBRARY, packageIndexCache, binaryTypeCache);
+    this._c = new ClasspathClassFileLoaderImpl(JarFilePoolTest.createJar(root, "c.jar", "c/C.class",
+        "shared/S.class"), EcjAdapter.LIBRARY, packageIndexCache, binaryTypeCache);
+  }
+
+  @After
+  public void disposeClassFileLoaders() {
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void classpathOrder() {
+    assertLoadedFrom("b.jar", compound(this._b, this._a), "shared.S");
+    assertLoadedFrom("a.jar", compound(this._a, this._b), "shared.S");
+    assertLoadedFrom("b.jar", compound(this._a, this._b), "b.B");
+    assertNull(compound(this._a, this._b).loadClass(ClassName.fromQualifiedClassName("c.C")));
+    assertNull(compound(this._a, this._b).loadClass(ClassName.fromQualifiedClassName("shared.Missing")));
+  }
+
+  @Test
+  public void nestedClassFileLoadersAreFlattenedInOrder() {
+    ClassFileLoader[] loaders = { compound(compound(this._a, this._b), this._c),
+        compound(this._a, compound(this._b, this._c)),
+        compound(compound(this._a), compound(compound(this._b)), this._c) };
+    for (ClassFileLoader loader : loaders) {
+      assertLoadedFrom("a.jar", loader, "shared.S");
+      assertLoadedFrom("c.jar", loader, "c.C");
+      assertEquals(Arrays.asList("a.jar", "b.jar", "c.jar"), getNames(loader.getClasspath()));
+      assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c", "shared")), new HashSet<String>(Arrays
+          .asList(loader.getAllPackages())));
+    }
+
+    assertLoadedFrom("c.jar", compound(this._c, compound(this._a, this._b)), "shared.S");
+    assertLoadedFrom("b.jar", compound(compound(this._b, this._a), this._a, this._c), "shared.S");
+  }
+
+  @Test
+  public void duplicates() {
+    ClassFileLoader loader = compound(this._a, this._b, compound(this._a, this._b), this._a);
+    assertEquals(Arrays.asList("a.jar", "b.jar"), getNames(loader.getClasspath()));
+    assertLoadedFrom("a.jar", loader, "shared.S");
+    assertTrue(loader.hasPackage("b"));
+    assertTrue(loader.hasPackage(new char[0][], "shared".toCharArray()));
+    assertFalse(loader.hasPackage("c"));
+  }
+
+  @Test
+  public void restrictedTypesHaveLowerPrecedence() {
+    ClassFileLoader loader = compound(new FilteringClassFileLoader(this._a, "-shared/*"), this._b);
+
+    // the unrestricted type of the second class file loader wins
+    ClassFile classFile = assertLoadedFrom("b.jar", loader, "shared.S");
+    assertFalse(classFile.hasAccessRestriction());
+
+    // a restricted type is returned if there's no other one
+    classFile = assertLoadedFrom("a.jar", compound(new FilteringClassFileLoader(this._a, "-shared/*"),
+        new FilteringClassFileLoader(this._b, "-shared/*")), "shared.S");
+    assertTrue(classFile.hasAccessRestriction());
+  }
+
+  @Test
+  public void nestedFiltersApply() {
+    ClassFileLoader filtered = new FilteringClassFileLoader(compound(this._a, this._b), "-b/*;-shared/*");
+    ClassFileLoader loader = compound(filtered, compound(this._c));
+
+    assertFalse(assertLoadedFrom("a.jar", loader, "a.A").hasAccessRestriction());
+    assertTrue(assertLoadedFrom("b.jar", loader, "b.B").hasAccessRestriction());
+    assertFalse(assertLoadedFrom("c.jar", loader, "shared.S").hasAccessRestriction());
+
+    // the same class file loader with and without a filter
+    loader = compound(new FilteringClassFileLoader(this._b, "-b/*"), this._b);
+    assertFalse(assertLoadedFrom("b.jar", loader, "b.B").hasAccessRestriction());
+  }
+
+  private static CompoundClassFileLoaderImpl compound(ClassFileLoader... classFileLoaders) {
+    return new CompoundClassFileLoaderImpl(classFileLoaders);
+  }
+
+  private static ClassFile assertLoadedFrom(String jarName, ClassFileLoader loader, String className) {
+    ClassName name = ClassName.fromQualifiedClassName(className);
+    ClassFile result = loader.loadClass(name);
+    assertNotNull(className, result);
+    assertEquals(className, jarName, new File(result.getLibraryLocation()).getName());
+    // both lookups use the same index
+    ClassFile other = loader.loadClass(CompoundName.toSegments(name.getPackageName()), name.getClassName()
+        .toCharArray());
+    assertEquals(result.getLibraryLocation(), other.getLibraryLocation());
+    assertArrayEquals(result.getBytes(), other.getBytes());
+    return result;
+  }
+
+  private static List<String> getNames(File[] files) {
+    List<String> result = new ArrayList<String>();
+    for (File file : files) {
+      result.add(file.getName());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,152 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ant4eclipse.lib.core.ClassName;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Compares the memory that is allocated by package and type lookups using the compiler's <code>char[][]</code> names
+ * with lookups that build dotted strings first (as it has been done before). This benchmark is not part of the test
+ * suite. It requires a JVM that is able to report the allocated bytes per thread.
+ * </p>
+ */
+public class CompoundNameBenchmark {
+
+  private static final int ROUNDS   = 20;
+
+  private static final int PACKAGES = 200;
+
+  private TestDirectory    _testDirectory;
+
+  private JarFilePool      _jarFilePool;
+
+  private ClassFileLoader  _classFileLoader;
+
+  private List<char[][]>   _packageNames;
+
+  @Before
+  public void setup() throws IOException {
+    this._testDirectory = new TestDirectory();
+    String[] entries = new String[PACKAGES];
+    this._packageNames = new ArrayList<char[][]>();
+    for (int i = 0; i < PACKAGES; i++) {
+      entries[i] = "org/example/module" + i + "/impl/Type.class";
+      this._packageNames.add(CompoundName.toSegments("org.example.module" + i + ".impl"));
+      // packages the compiler probes while resolving names that don't exist in the archive
+      this._packageNames.add(CompoundName.toSegments("org.example.module" + i + ".impl.Type"));
+    }
+    File jar = JarFilePoolTest.createJar(this._testDirectory.getRootDir(), "benchmark.jar", entries);
+    this._jarFilePool = new JarFilePool();
+    this._classFileLoader = new ClasspathClassFileLoaderImpl(jar, EcjAdapter.LIBRARY, new PackageIndexCache(
+        this._jarFilePool), new BinaryTypeCache());
+  }
+
+  @After
+  public void dispose() {
+    // the pool keeps the jar file open, so it has to be closed before the directory can be removed
+    this._jarFilePool.close();
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void packageLookups() throws Exception {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    Method allocatedBytes = getAllocatedBytesMethod(threadMXBean);
+    Assume.assumeTrue(allocatedBytes != null);
+
+    // warm up
+    for (int i = 0; i < 10; i++) {
+      assertEquals(lookupStrings(ROUNDS), lookupCompoundNames(ROUNDS));
+    }
+
+    long before = getAllocatedBytes(threadMXBean, allocatedBytes);
+    lookupStrings(ROUNDS);
+    long stringBytes = getAllocatedBytes(threadMXBean, allocatedBytes) - before;
+
+    before = getAllocatedBytes(threadMXBean, allocatedBytes);
+    lookupCompoundNames(ROUNDS);
+    long compoundNameBytes = getAllocatedBytes(threadMXBean, allocatedBytes) - before;
+
+    long lookups = ROUNDS * this._packageNames.size() * 2;
+    System.out.println("CompoundName: " + lookups + " lookups: dotted strings " + (stringBytes / lookups)
+        + " bytes per lookup, char[][] names " + (compoundNameBytes / lookups) + " bytes per lookup");
+
+    // the char[][] path only builds the file name if the package exists
+    assertTrue(compoundNameBytes * 4 < stringBytes);
+  }
+
+  private int lookupStrings(int rounds) {
+    int result = 0;
+    for (int round = 0; round < rounds; round++) {
+      for (char[][] packageName : this._packageNames) {
+        if (this._classFileLoader.hasPackage(CharOperation.toString(packageName))) {
+          result++;
+        }
+        ClassName className = ClassName.fromQualifiedClassName(CharOperation.toString(packageName) + ".Missing");
+        if (this._classFileLoader.loadClass(className) == null) {
+          result++;
+        }
+      }
+    }
+    return result;
+  }
+
+  private int lookupCompoundNames(int rounds) {
+    char[] missing = "Missing".toCharArray();
+    int result = 0;
+    for (int round = 0; round < rounds; round++) {
+      for (char[][] packageName : this._packageNames) {
+        if (this._classFileLoader.hasPackage(packageName, null)) {
+          result++;
+        }
+        if (this._classFileLoader.loadClass(packageName, missing) == null) {
+          result++;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static Method getAllocatedBytesMethod(ThreadMXBean threadMXBean) {
+    try {
+      Method result = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes",
+          long.class);
+      return result.getDeclaringClass().isInstance(threadMXBean) ? result : null;
+    } catch (Exception ex) {
+      return null;
+    }
+  }
+
+  private static long getAllocatedBytes(ThreadMXBean threadMXBean, Method allocatedBytes) throws Exception {
+    return ((Long) allocatedBytes.invoke(threadMXBean, Long.valueOf(Thread.currentThread().getId()))).longValue();
+  }
+}
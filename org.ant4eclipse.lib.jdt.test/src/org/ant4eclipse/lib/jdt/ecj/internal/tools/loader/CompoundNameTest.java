@@ -0,0 +1,107 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class CompoundNameTest {
+
+  @Test
+  public void equalsDottedName() {
+    CompoundName dotted = CompoundName.fromQualifiedName("java.lang");
+
+    assertEqualNames(dotted, new CompoundName(segments("java", "lang"), null));
+    assertEqualNames(dotted, new CompoundName(segments("java"), "lang".toCharArray()));
+    assertEquals("java.lang", dotted.toString());
+
+    assertFalse(dotted.equals(CompoundName.fromQualifiedName("java.lang.reflect")));
+    assertFalse(dotted.equals(CompoundName.fromQualifiedName("java")));
+    assertFalse(dotted.equals(CompoundName.fromQualifiedName("lang.java")));
+    assertFalse(dotted.equals("java.lang"));
+  }
+
+  @Test
+  public void onlyLeadingSegmentsAreUsed() {
+    // the compiler passes the package name and the type name separately
+    char[][] packageName = segments("java", "lang");
+    CompoundName type = new CompoundName(packageName, "Object".toCharArray());
+
+    assertEqualNames(CompoundName.fromQualifiedName("java.lang.Object"), type);
+    assertEquals("java.lang.Object", type.toString());
+  }
+
+  @Test
+  public void innerTypes() {
+    CompoundName inner = CompoundName.fromQualifiedName("java.util.Map$Entry");
+
+    assertEqualNames(inner, new CompoundName(segments("java", "util"), "Map$Entry".toCharArray()));
+    assertFalse(inner.equals(CompoundName.fromQualifiedName("java.util.Map.Entry")));
+    assertEquals("java/util/Map$Entry.class", CompoundName.toFileName(segments("java", "util"), "Map$Entry"
+        .toCharArray(), '/', ".class"));
+  }
+
+  @Test
+  public void defaultPackage() {
+    assertEqualNames(CompoundName.EMPTY, new CompoundName(null, null));
+    assertEqualNames(CompoundName.EMPTY, new CompoundName(new char[0][], null));
+    assertEqualNames(CompoundName.EMPTY, CompoundName.fromQualifiedName(""));
+    assertEquals("", CompoundName.EMPTY.toString());
+    assertFalse(CompoundName.EMPTY.equals(CompoundName.fromQualifiedName("java")));
+
+    // types in the default package
+    assertEqualNames(CompoundName.fromQualifiedName("Foo"), new CompoundName(null, "Foo".toCharArray()));
+    assertEquals("Foo.java", CompoundName.toFileName(null, "Foo".toCharArray(), '/', ".java"));
+  }
+
+  @Test
+  public void copyDoesNotShareArrays() {
+    char[][] segments = segments("java", "lang");
+    CompoundName lookup = new CompoundName(segments, null);
+    CompoundName copy = lookup.copy();
+    assertEqualNames(lookup, copy);
+
+    // the compiler reuses its arrays, the copy must not be affected
+    segments[0] = "org".toCharArray();
+    assertEqualNames(CompoundName.fromQualifiedName("java.lang"), copy);
+  }
+
+  @Test
+  public void mapLookup() {
+    Map<CompoundName, String> map = new HashMap<CompoundName, String>();
+    map.put(CompoundName.fromQualifiedName("java.lang").copy(), "java.lang");
+    map.put(CompoundName.EMPTY, "");
+
+    assertEquals("java.lang", map.get(new CompoundName(segments("java"), "lang".toCharArray())));
+    assertEquals("", map.get(new CompoundName(null, null)));
+    assertFalse(map.containsKey(CompoundName.fromQualifiedName("java")));
+  }
+
+  private static void assertEqualNames(CompoundName expected, CompoundName actual) {
+    assertEquals(expected, actual);
+    assertEquals(actual, expected);
+    assertEquals(expected.hashCode(), actual.hashCode());
+  }
+
+  private static char[][] segments(String... segments) {
+    char[][] result = new char[segments.length][];
+    for (int i = 0; i < segments.length; i++) {
+      result[i] = segments[i].toCharArray();
+    }
+    return result;
+  }
+}
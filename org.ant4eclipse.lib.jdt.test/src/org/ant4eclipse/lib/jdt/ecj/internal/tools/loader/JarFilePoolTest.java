@@ -0,0 +1,153 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JarFilePoolTest {
+
+  private TestDirectory _testDirectory;
+
+  private File          _jarA;
+
+  private File          _jarB;
+
+  private File          _jarC;
+
+  @Before
+  public void setup() throws IOException {
+    this._testDirectory = new TestDirectory();
+    this._jarA = createJar(this._testDirectory.getRootDir(), "a.jar", "a/A.class");
+    this._jarB = createJar(this._testDirectory.getRootDir(), "b.jar", "b/B.class");
+    this._jarC = createJar(this._testDirectory.getRootDir(), "c.jar", "c/C.class");
+  }
+
+  @After
+  public void dispose() {
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void referenceCounting() throws IOException {
+    JarFilePool pool = new JarFilePool(1);
+
+    JarFile first = pool.acquire(this._jarA);
+    JarFile second = pool.acquire(this._jarA);
+    assertSame(first, second);
+    assertEquals(1, pool.getOpens());
+    assertEquals(1, pool.getHits());
+
+    // the jar file is still in use, so it's not closed although the capacity is exceeded
+    pool.release(first);
+    JarFile jarB = pool.acquire(this._jarB);
+    assertEquals(2, pool.getOpenCount());
+    assertNotNull(second.getEntry("a/A.class"));
+
+    // releasing the last reference evicts it
+    pool.release(second);
+    pool.release(jarB);
+    assertEquals(1, pool.getOpenCount());
+    assertEquals(1, pool.getEvictions());
+    assertClosed(first);
+
+    pool.close();
+    assertEquals(0, pool.getOpenCount());
+    assertClosed(jarB);
+  }
+
+  @Test
+  public void leastRecentlyUsedEviction() throws IOException {
+    JarFilePool pool = new JarFilePool(2);
+
+    pool.release(pool.acquire(this._jarA));
+    JarFile jarB = pool.acquire(this._jarB);
+    pool.release(jarB);
+
+    // a is used again, so b is the least recently used archive
+    pool.release(pool.acquire(this._jarA));
+    pool.release(pool.acquire(this._jarC));
+    assertEquals(2, pool.getOpenCount());
+    assertEquals(1, pool.getEvictions());
+    assertClosed(jarB);
+
+    // a is still open, b has to be reopened
+    pool.release(pool.acquire(this._jarA));
+    assertEquals(3, pool.getOpens());
+    pool.release(pool.acquire(this._jarB));
+    assertEquals(4, pool.getOpens());
+    pool.close();
+  }
+
+  @Test
+  public void reopenModifiedArchive() throws IOException {
+    JarFilePool pool = new JarFilePool(4);
+
+    JarFile inUse = pool.acquire(this._jarA);
+    createJar(this._testDirectory.getRootDir(), "a.jar", "a/Modified.class");
+    this._jarA.setLastModified(this._jarA.lastModified() + 10000);
+
+    // the modified archive is reopened, the outdated one stays open as long as it's in use
+    JarFile reopened = pool.acquire(this._jarA);
+    assertNotSame(inUse, reopened);
+    assertNotNull(reopened.getEntry("a/Modified.class"));
+    assertEquals(2, pool.getOpens());
+    assertEquals(2, pool.getOpenCount());
+
+    pool.release(inUse);
+    assertEquals(1, pool.getOpenCount());
+    assertClosed(inUse);
+
+    pool.release(reopened);
+    assertSame(reopened, pool.acquire(this._jarA));
+    pool.close();
+  }
+
+  private static void assertClosed(JarFile jarFile) {
+    try {
+      jarFile.getEntry("any");
+      fail("The jar file should have been closed: " + jarFile.getName());
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+  }
+
+  static File createJar(File directory, String name, String... entries) throws IOException {
+    File result = new File(directory, name);
+    JarOutputStream output = new JarOutputStream(new FileOutputStream(result));
+    try {
+      for (String entry : entries) {
+        output.putNextEntry(new JarEntry(entry));
+        output.write(new byte[] { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE });
+        output.closeEntry();
+      }
+    } finally {
+      output.close();
+    }
+    return result;
+  }
+}
@@ -0,0 +1,105 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PackageIndexCacheTest {
+
+  private TestDirectory _testDirectory;
+
+  private File[]        _archives;
+
+  private AtomicInteger _executed;
+
+  private Executor      _executor;
+
+  @Before
+  public void setup() throws IOException {
+    this._testDirectory = new TestDirectory();
+    File rootDir = this._testDirectory.getRootDir();
+    this._archives = new File[] { JarFilePoolTest.createJar(rootDir, "a.jar", "a/A.class"),
+        JarFilePoolTest.createJar(rootDir, "b.jar", "b/B.class", "b/c/C.class"),
+        JarFilePoolTest.createJar(rootDir, "c.jar", "c/C.class") };
+    this._executed = new AtomicInteger();
+    this._executor = new Executor() {
+      public void execute(Runnable command) {
+        PackageIndexCacheTest.this._executed.incrementAndGet();
+        command.run();
+      }
+    };
+  }
+
+  @After
+  public void dispose() {
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void indicesKeepOrder() {
+    PackageIndexCache cache = new PackageIndexCache(new JarFilePool(), null, this._executor);
+
+    ArchiveIndex[] indices = cache.getIndices(this._archives);
+    assertEquals(3, indices.length);
+    assertTrue(indices[0].containsClassFile("a/A.class"));
+    assertTrue(indices[1].containsClassFile("b/c/C.class"));
+    assertFalse(indices[1].containsClassFile("a/A.class"));
+    assertTrue(indices[2].containsClassFile("c/C.class"));
+    assertEquals(3, cache.getScanned());
+  }
+
+  @Test
+  public void forkOnlyOnMisses() {
+    PackageIndexCache cache = new PackageIndexCache(new JarFilePool(), null, this._executor);
+
+    // a single miss is indexed in the calling thread
+    ArchiveIndex first = cache.getIndices(new File[] { this._archives[0] })[0];
+    assertEquals(0, this._executed.get());
+
+    // only the two remaining misses are forked
+    ArchiveIndex[] indices = cache.getIndices(this._archives);
+    assertSame(first, indices[0]);
+    assertEquals(2, this._executed.get());
+    assertEquals(3, cache.getScanned());
+
+    // everything is served from memory now
+    cache.getIndices(this._archives);
+    assertEquals(2, this._executed.get());
+    assertEquals(3, cache.getScanned());
+  }
+
+  @Test
+  public void persistentIndices() {
+    File directory = this._testDirectory.createSubDirectory("indices");
+    new PackageIndexCache(new JarFilePool(), directory, this._executor).getIndices(this._archives);
+
+    PackageIndexCache cache = new PackageIndexCache(new JarFilePool(), directory, this._executor);
+    ArchiveIndex[] indices = cache.getIndices(this._archives);
+    assertTrue(indices[1].containsClassFile("b/B.class"));
+    assertEquals(0, cache.getScanned());
+    assertEquals(3, cache.getLoaded());
+  }
+
+}
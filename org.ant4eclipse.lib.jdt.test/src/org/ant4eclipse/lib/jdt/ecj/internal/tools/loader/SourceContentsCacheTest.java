@@ -0,0 +1,94 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class SourceContentsCacheTest {
+
+  private static final char[] CONTENTS = "class A {}".toCharArray();
+
+  @Test
+  public void hitsAndMisses() {
+    SourceContentsCache cache = new SourceContentsCache(1000);
+    assertNull(cache.get("A.java", "UTF-8", 1, 10));
+    cache.put("A.java", "UTF-8", 1, 10, CONTENTS);
+
+    assertSame(CONTENTS, cache.get("A.java", "UTF-8", 1, 10));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.size());
+    assertEquals(CONTENTS.length, cache.getChars());
+  }
+
+  @Test
+  public void encodings() {
+    SourceContentsCache cache = new SourceContentsCache(1000);
+    char[] latin1 = "class \u00C3\u00A4 {}".toCharArray();
+    char[] utf8 = "class \u00E4 {}".toCharArray();
+    cache.put("A.java", "ISO-8859-1", 1, 10, latin1);
+
+    // the contents depend on the encoding
+    assertNull(cache.get("A.java", "UTF-8", 1, 10));
+    cache.put("A.java", "UTF-8", 1, 10, utf8);
+    assertSame(latin1, cache.get("A.java", "ISO-8859-1", 1, 10));
+    assertSame(utf8, cache.get("A.java", "UTF-8", 1, 10));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void modifiedSourceFiles() {
+    SourceContentsCache cache = new SourceContentsCache(1000);
+    cache.put("A.java", "UTF-8", 1, 10, CONTENTS);
+
+    assertNull(cache.get("A.java", "UTF-8", 2, 10));
+    assertNull(cache.get("A.java", "UTF-8", 1, 11));
+
+    // a new version replaces the old one
+    char[] modified = "class A { }".toCharArray();
+    cache.put("A.java", "UTF-8", 2, 11, modified);
+    assertSame(modified, cache.get("A.java", "UTF-8", 2, 11));
+    assertEquals(1, cache.size());
+    assertEquals(modified.length, cache.getChars());
+  }
+
+  @Test
+  public void eviction() {
+    SourceContentsCache cache = new SourceContentsCache(2 * CONTENTS.length);
+    cache.put("A.java", "UTF-8", 1, 10, CONTENTS);
+    cache.put("B.java", "UTF-8", 1, 10, CONTENTS);
+    // makes A.java the most recently used entry
+    cache.get("A.java", "UTF-8", 1, 10);
+    cache.put("C.java", "UTF-8", 1, 10, CONTENTS);
+
+    assertEquals(1, cache.getEvictions());
+    assertNull(cache.get("B.java", "UTF-8", 1, 10));
+    assertSame(CONTENTS, cache.get("A.java", "UTF-8", 1, 10));
+    assertSame(CONTENTS, cache.get("C.java", "UTF-8", 1, 10));
+
+    // contents that are larger than the cache are not stored
+    cache.put("D.java", "UTF-8", 1, 10, new char[2 * CONTENTS.length + 1]);
+    assertNull(cache.get("D.java", "UTF-8", 1, 10));
+  }
+
+  @Test
+  public void disabled() {
+    SourceContentsCache cache = new SourceContentsCache(0);
+    cache.put("A.java", "UTF-8", 1, 10, CONTENTS);
+    assertNull(cache.get("A.java", "UTF-8", 1, 10));
+    assertEquals(0, cache.size());
+  }
+}
@@ -0,0 +1,81 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SourcepathIndexTest {
+
+  private TestDirectory _testDirectory;
+
+  private File          _root;
+
+  @Before
+  public void setup() {
+    this._testDirectory = new TestDirectory();
+    this._testDirectory.createSubDirectory("src/a/b");
+    this._testDirectory.createSubDirectory("src/a/empty");
+    this._testDirectory.createFile("src/Default.java", "class Default {}");
+    this._testDirectory.createFile("src/a/A.java", "package a; class A {}");
+    this._testDirectory.createFile("src/a/readme.txt", "");
+    this._testDirectory.createFile("src/a/b/B.java", "package a.b; class B {}");
+    this._root = new File(this._testDirectory.getRootDir(), "src");
+  }
+
+  @After
+  public void dispose() {
+    this._testDirectory.dispose();
+  }
+
+  @Test
+  public void lookup() {
+    SourcepathIndex index = new SourcepathIndex(this._root, false);
+
+    assertEquals(new HashSet<String>(Arrays.asList("a", "a.b", "a.empty")), new HashSet<String>(Arrays.asList(index
+        .getPackages())));
+
+    assertTrue(index.containsSourceFile(CompoundName.toSegments("a"), "A".toCharArray()));
+    assertTrue(index.containsSourceFile(CompoundName.toSegments("a.b"), "B".toCharArray()));
+    assertFalse(index.containsSourceFile(CompoundName.toSegments("a"), "B".toCharArray()));
+    assertFalse(index.containsSourceFile(CompoundName.toSegments("a"), "readme".toCharArray()));
+    assertFalse(index.containsSourceFile(CompoundName.toSegments("a.empty"), "A".toCharArray()));
+    assertFalse(index.containsSourceFile(CompoundName.toSegments("x"), "A".toCharArray()));
+    assertFalse(index.containsSourceFile(new char[0][], "Default".toCharArray()));
+  }
+
+  @Test
+  public void revalidate() {
+    SourcepathIndex index = new SourcepathIndex(this._root, false);
+    SourcepathIndex revalidatingIndex = new SourcepathIndex(this._root, true);
+
+    this._testDirectory.createFile("src/a/C.java", "package a; class C {}");
+    new File(this._root, "a/A.java").delete();
+
+    // the index reflects the state of the source folder at the time it has been created
+    assertTrue(index.containsSourceFile(CompoundName.toSegments("a"), "A".toCharArray()));
+    assertFalse(index.containsSourceFile(CompoundName.toSegments("a"), "C".toCharArray()));
+
+    assertFalse(revalidatingIndex.containsSourceFile(CompoundName.toSegments("a"), "A".toCharArray()));
+    assertTrue(revalidatingIndex.containsSourceFile(CompoundName.toSegments("a"), "C".toCharArray()));
+  }
+}
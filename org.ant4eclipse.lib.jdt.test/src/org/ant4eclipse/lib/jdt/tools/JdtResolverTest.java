@@ -0,0 +1,81 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.tools;
+
+import static org.junit.Assert.assertEquals;
+
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.tools.classpathelements.ClassPathElementsRegistry;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.DefaultEclipseWorkspaceDefinition;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceRegistry;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JdtProjectBuilder;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class JdtResolverTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testWorkspace;
+
+  @Override
+  public void setup() {
+    super.setup();
+
+    this._testWorkspace = new TestDirectory();
+
+    new JdtProjectBuilder("simpleproject").withSrcClasspathEntry("src", false).withOutputClasspathEntry("bin")
+        .withContainerClasspathEntry("MY_CONTAINER").createIn(this._testWorkspace.getRootDir());
+  }
+
+  @Override
+  public void dispose() {
+    this._testWorkspace.dispose();
+
+    super.dispose();
+  }
+
+  @Test
+  public void registeredClasspathContainer() {
+    WorkspaceRegistry workspaceRegistry = ServiceRegistryAccess.instance().getService(WorkspaceRegistry.class);
+    Workspace workspace = workspaceRegistry.registerWorkspace(this._testWorkspace.getRootDir().getAbsolutePath(),
+        new DefaultEclipseWorkspaceDefinition(this._testWorkspace.getRootDir()));
+    EclipseProject project = workspace.getProject("simpleproject");
+    ClassPathElementsRegistry classPathElementsRegistry = ServiceRegistryAccess.instance().getService(
+        ClassPathElementsRegistry.class);
+
+    File first = createFile("first.jar");
+    classPathElementsRegistry.registerClassPathContainer("MY_CONTAINER", new File[] { first });
+    assertContains(JdtResolver.resolveProjectClasspath(project, false, false, null), first);
+
+    // the class path is resolved again, since the container has been registered again
+    File second = createFile("second.jar");
+    classPathElementsRegistry.registerClassPathContainer("MY_CONTAINER", new File[] { second });
+    assertContains(JdtResolver.resolveProjectClasspath(project, false, false, null), second);
+  }
+
+  private void assertContains(ResolvedClasspath classpath, File file) {
+    assertEquals(Arrays.asList(file), Arrays.asList(classpath.getClasspathFiles()).subList(1,
+        classpath.getClasspathFiles().length));
+  }
+
+  private File createFile(String name) {
+    File result = new File(this._testWorkspace.getRootDir(), name);
+    Utilities.writeFile(result, "", "UTF-8");
+    return result;
+  }
+}
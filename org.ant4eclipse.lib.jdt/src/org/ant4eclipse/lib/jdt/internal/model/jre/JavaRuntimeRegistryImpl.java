@@ -17,6 +17,7 @@ import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
@@ -43,6 +44,9 @@ public class JavaRuntimeRegistryImpl implements JavaRuntimeRegistry {
   /** the java runtime cache */
   private Map<String, JavaRuntime> _javaRuntimeCache;
 
+  /** the number of modifications */
+  private AtomicLong               _modificationCount;
+
   /**
    * <p>
    * Creates a new instance of type {@link JavaRuntimeRegistryImpl}.
@@ -52,6 +56,7 @@ public class JavaRuntimeRegistryImpl implements JavaRuntimeRegistry {
 
     // create hash maps
     this._javaRuntimeCache = new HashMap<String, JavaRuntime>();
+    this._modificationCount = new AtomicLong();
   }
 
   /**
@@ -90,7 +95,17 @@ public class JavaRuntimeRegistryImpl implements JavaRuntimeRegistry {
     Assure.notNull("id", id);
     Assure.assertTrue(hasJavaRuntime(id), "No JavaRuntime with id '" + id + "' registered!");
 
-    this._defaultJavaRuntimeKey = id;
+    if (!id.equals(this._defaultJavaRuntimeKey)) {
+      this._defaultJavaRuntimeKey = id;
+      this._modificationCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public long getModificationCount() {
+    return this._modificationCount.get();
   }
 
   /**
@@ -295,6 +310,7 @@ public class JavaRuntimeRegistryImpl implements JavaRuntimeRegistry {
 
     // store java runtime
     this._javaRuntimeCache.put(id, javaRuntime);
+    this._modificationCount.incrementAndGet();
 
     // store default if necessary
     if (isDefault || (this._defaultJavaRuntimeKey == null)) {
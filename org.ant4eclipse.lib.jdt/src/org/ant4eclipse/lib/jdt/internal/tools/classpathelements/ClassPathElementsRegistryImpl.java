@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>
@@ -38,6 +39,9 @@ public class ClassPathElementsRegistryImpl implements ClassPathElementsRegistry
   /** the class path containers */
   private Map<String, ClassPathContainer> _classpathContainer;
 
+  /** the number of modifications */
+  private AtomicLong                      _modificationCount;
+
   /**
    * <p>
    * Creates a new instance of type ClasspathVariablesRegistryImpl.
@@ -51,6 +55,8 @@ public class ClassPathElementsRegistryImpl implements ClassPathElementsRegistry
 
     // create the class path container map
     this._classpathContainer = new HashMap<String, ClassPathContainer>();
+
+    this._modificationCount = new AtomicLong();
   }
 
   /**
@@ -78,7 +84,10 @@ public class ClassPathElementsRegistryImpl implements ClassPathElementsRegistry
    * {@inheritDoc}
    */
   public void registerClassPathContainer(String name, File[] pathEntries) {
-    this._classpathContainer.put(name, new ClassPathContainerImpl(name, pathEntries));
+    ClassPathContainer container = new ClassPathContainerImpl(name, pathEntries);
+    if (!container.equals(this._classpathContainer.put(name, container))) {
+      this._modificationCount.incrementAndGet();
+    }
   }
 
   /**
@@ -116,7 +125,9 @@ public class ClassPathElementsRegistryImpl implements ClassPathElementsRegistry
             .getPath());
       }
     }
-    this._classpathVariables.put(name, newvar);
+    if (this._classpathVariables.put(name, newvar) == null) {
+      this._modificationCount.incrementAndGet();
+    }
   }
 
   /**
@@ -127,4 +138,11 @@ public class ClassPathElementsRegistryImpl implements ClassPathElementsRegistry
       registerClassPathVariable(var.getKey(), var.getValue());
     }
   }
+
+  /**
+   * {@inheritDoc}
+   */
+  public long getModificationCount() {
+    return this._modificationCount.get();
+  }
 }
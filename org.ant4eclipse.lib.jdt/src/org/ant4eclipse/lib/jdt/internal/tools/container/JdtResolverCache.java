@@ -1,57 +1,207 @@
 package org.ant4eclipse.lib.jdt.internal.tools.container;
 
-import java.util.Hashtable;
+import java.io.File;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.jdt.model.jre.JavaRuntimeRegistry;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspath;
+import org.ant4eclipse.lib.jdt.tools.classpathelements.ClassPathElementsRegistry;
+import org.ant4eclipse.lib.jdt.tools.container.JdtClasspathContainerArgument;
 import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.WorkspaceChangeEvent;
+import org.ant4eclipse.lib.platform.model.resource.WorkspaceListener;
 
 /**
  * <p>
+ * Caches resolved class paths.
+ * </p>
+ * <p>
+ * A resolved class path is identified by the location of the project, the resolution flags, the class path container
+ * arguments and the modification counts of the {@link ClassPathElementsRegistry} and the {@link JavaRuntimeRegistry}
+ * (see {@link #getCacheKey(EclipseProject, boolean, boolean, List)}). So class path containers, class path variables,
+ * user libraries and java runtimes that are registered later on cause the class path to be resolved again.
+ * Furthermore a cached class path is only returned for the {@link EclipseProject} instance it has been resolved for: if
+ * a workspace is registered again, its projects (and therefore their class path definitions) are read again, so the
+ * class paths resolved for the old project instances are discarded.
+ * </p>
+ * <p>
+ * If a workspace is refreshed, the cache is notified about the changed projects: the class paths of the modified
+ * projects, the class paths that reference one of the modified projects and the class paths that contain files of the
+ * modified projects are removed. If projects have been added to or removed from the workspace, all class paths of the
+ * workspace are removed, since the resolution of project references might be affected.
  * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
-public class JdtResolverCache {
+public class JdtResolverCache implements WorkspaceListener {
 
   /** the class path cache */
-  private static final Map<String, ResolvedClasspath> _classpathCache = new Hashtable<String, ResolvedClasspath>();
+  private Map<String, CacheEntry> _classpathCache;
+
+  /** the number of class paths that have been served from the cache */
+  private AtomicLong              _hits;
+
+  /** the number of class paths that couldn't be served from the cache */
+  private AtomicLong              _misses;
+
+  /** the workspaces this cache listens to (identified by instance) */
+  private Map<Workspace, Boolean> _workspaces;
 
   /**
    * <p>
+   * Creates a new instance of type {@link JdtResolverCache}.
+   * </p>
+   */
+  public JdtResolverCache() {
+    this._classpathCache = new ConcurrentHashMap<String, CacheEntry>();
+    this._hits = new AtomicLong();
+    this._misses = new AtomicLong();
+    this._workspaces = new IdentityHashMap<Workspace, Boolean>();
+  }
+
+  /**
+   * <p>
+   * Returns the cached class path for the given key or <code>null</code> if there's no such class path or if it has
+   * been resolved for another instance of the given project.
    * </p>
    * 
    * @param key
-   * @return
+   *          the key of the class path (see {@link #getCacheKey(EclipseProject, boolean, boolean, List)})
+   * @param project
+   *          the project the class path is requested for
+   * @return the cached class path or <code>null</code>.
    */
-  public ResolvedClasspath getResolvedClasspath(String key) {
-    return _classpathCache.get(key);
+  public ResolvedClasspath getResolvedClasspath(String key, EclipseProject project) {
+    CacheEntry entry = this._classpathCache.get(key);
+    if ((entry != null) && (entry._project == project)) {
+      this._hits.incrementAndGet();
+      return entry._classpath;
+    }
+    this._misses.incrementAndGet();
+    return null;
   }
 
   /**
    * <p>
+   * Stores the given class path.
    * </p>
    * 
    * @param key
+   *          the key of the class path (see {@link #getCacheKey(EclipseProject, boolean, boolean, List)})
+   * @param project
+   *          the project the class path has been resolved for
    * @param classpath
+   *          the resolved class path
+   * @param referencedProjects
+   *          the projects (directly or indirectly) referenced while the class path has been resolved
+   */
+  public void storeResolvedClasspath(String key, EclipseProject project, ResolvedClasspath classpath,
+      List<EclipseProject> referencedProjects) {
+    this._classpathCache.put(key, new CacheEntry(project, classpath, referencedProjects
+        .toArray(new EclipseProject[referencedProjects.size()])));
+    Workspace workspace = project.getWorkspace();
+    if (workspace != null) {
+      synchronized (this._workspaces) {
+        if (!this._workspaces.containsKey(workspace)) {
+          this._workspaces.put(workspace, Boolean.TRUE);
+          workspace.addWorkspaceListener(this);
+        }
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void workspaceChanged(WorkspaceChangeEvent event) {
+    Workspace workspace = event.getWorkspace();
+    Iterator<CacheEntry> iterator = this._classpathCache.values().iterator();
+    while (iterator.hasNext()) {
+      CacheEntry entry = iterator.next();
+      if ((entry._project.getWorkspace() == workspace)
+          && (event.hasAddedOrRemovedProjects() || entry.dependsOn(event.getOutdatedProjects()))) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the number of class paths that have been served from the cache.
+   * </p>
+   * 
+   * @return the number of hits.
    */
-  public void storeResolvedClasspath(String key, ResolvedClasspath classpath) {
-    _classpathCache.put(key, classpath);
+  public long getHits() {
+    return this._hits.get();
   }
 
   /**
    * <p>
+   * Returns the number of class paths that couldn't be served from the cache.
+   * </p>
+   * 
+   * @return the number of misses.
+   */
+  public long getMisses() {
+    return this._misses.get();
+  }
+
+  /**
+   * <p>
+   * Removes all cached class paths.
+   * </p>
+   */
+  public void clear() {
+    this._classpathCache.clear();
+  }
+
+  /**
+   * <p>
+   * Returns the key for the class path of the given project. The key contains the modification counts of the
+   * registries the class path is resolved against, so registering a class path element changes the key.
    * </p>
    * 
    * @param project
+   *          the project
    * @param resolveRelative
+   *          indicates if the class path should be resolved relative to the workspace or not
    * @param runtimeClasspath
-   * @return
+   *          indicates if the class path is a runtime class path or not
+   * @param classpathContainerArguments
+   *          the class path container arguments (maybe <code>null</code>)
+   * @return the key for the class path of the given project.
    */
-  public static String getCacheKey(EclipseProject project, boolean resolveRelative, boolean runtimeClasspath) {
-    // TODO include classpathContainerArguments in key
-    return project.getSpecifiedName() + "." + resolveRelative + "." + runtimeClasspath;
+  public static String getCacheKey(EclipseProject project, boolean resolveRelative, boolean runtimeClasspath,
+      List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append(project.getSpecifiedName());
+    buffer.append("@");
+    buffer.append(project.getFolder().getAbsolutePath());
+    buffer.append(".");
+    buffer.append(resolveRelative);
+    buffer.append(".");
+    buffer.append(runtimeClasspath);
+    if (classpathContainerArguments != null) {
+      for (JdtClasspathContainerArgument argument : classpathContainerArguments) {
+        buffer.append(".");
+        buffer.append(argument.getKey());
+        buffer.append("=");
+        buffer.append(argument.getValue());
+      }
+    }
+    buffer.append("#");
+    buffer.append(ServiceRegistryAccess.instance().getService(ClassPathElementsRegistry.class).getModificationCount());
+    buffer.append("#");
+    buffer.append(ServiceRegistryAccess.instance().getService(JavaRuntimeRegistry.class).getModificationCount());
+    return buffer.toString();
   }
 
   /**
@@ -63,4 +213,78 @@ public class JdtResolverCache {
   public static JdtResolverCache getInstance() {
     return ServiceRegistryAccess.instance().getService(JdtResolverCache.class);
   }
+
+  /**
+   * <p>
+   * A resolved class path together with the project instance it has been resolved for.
+   * </p>
+   */
+  private static class CacheEntry {
+
+    /** the project */
+    private EclipseProject    _project;
+
+    /** the resolved class path */
+    private ResolvedClasspath _classpath;
+
+    /** the projects referenced by the class path */
+    private EclipseProject[]  _referencedProjects;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link CacheEntry}.
+     * </p>
+     * 
+     * @param project
+     *          the project
+     * @param classpath
+     *          the resolved class path
+     * @param referencedProjects
+     *          the projects referenced by the class path
+     */
+    public CacheEntry(EclipseProject project, ResolvedClasspath classpath, EclipseProject[] referencedProjects) {
+      this._project = project;
+      this._classpath = classpath;
+      this._referencedProjects = referencedProjects;
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the class path has been resolved for one of the given projects, if it references
+     * one of the given projects or if it contains a file of one of the given projects.
+     * </p>
+     * 
+     * @param projects
+     *          the projects
+     * @return <code>true</code> if the class path depends on one of the given projects.
+     */
+    public boolean dependsOn(EclipseProject[] projects) {
+      for (EclipseProject project : projects) {
+        if (this._project == project) {
+          return true;
+        }
+        for (EclipseProject referencedProject : this._referencedProjects) {
+          if (referencedProject == project) {
+            return true;
+          }
+        }
+      }
+      for (File file : this._classpath.getClasspathFiles()) {
+        for (EclipseProject project : projects) {
+          if (isLocatedIn(file, project)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    private static boolean isLocatedIn(File file, EclipseProject project) {
+      // relative class paths start with the name of the project folder
+      String folder = file.isAbsolute() ? project.getFolder().getPath() : project.getFolder(
+          EclipseProject.PathStyle.PROJECT_RELATIVE_WITH_LEADING_PROJECT_NAME).getPath();
+      String path = file.getPath();
+      return path.equals(folder) || path.startsWith(folder + File.separator);
+    }
+  }
 }
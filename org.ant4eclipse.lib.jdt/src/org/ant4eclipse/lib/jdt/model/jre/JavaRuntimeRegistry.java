@@ -139,4 +139,14 @@ public interface JavaRuntimeRegistry {
    */
   JavaProfile getJavaProfile(String id);
 
+  /**
+   * <p>
+   * Returns the number of modifications of this registry. The number is incremented whenever a java runtime is
+   * registered or the default java runtime is changed, so callers can detect that the registry has changed.
+   * </p>
+   * 
+   * @return the number of modifications of this registry.
+   */
+  long getModificationCount();
+
 }
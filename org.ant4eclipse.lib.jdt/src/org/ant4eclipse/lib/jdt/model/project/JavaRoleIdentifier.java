@@ -56,4 +56,11 @@ public final class JavaRoleIdentifier implements ProjectRoleIdentifier {
   public void postProcess(EclipseProject project) {
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public String[] getProjectFiles() {
+    return new String[] { ".classpath" };
+  }
+
 } /* ENDCLASS */
@@ -11,6 +11,7 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.tools;
 
+import java.util.LinkedList;
 import java.util.List;
 
 import org.ant4eclipse.lib.core.Assure;
@@ -39,8 +40,8 @@ import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
  */
 public class JdtResolver {
 
-  /** system property that enables the Jdt resolver cache */
-  private static final boolean ENABLE_CACHE = Boolean.getBoolean("ant4eclipse.enableJdtResolverCache");
+  /** system property that enables the Jdt resolver cache (enabled by default) */
+  private static final boolean ENABLE_CACHE = !"false".equals(System.getProperty("ant4eclipse.enableJdtResolverCache"));
 
   /**
    * <p>
@@ -64,19 +65,22 @@ public class JdtResolver {
     if (ENABLE_CACHE) {
 
       // determine the key for the cached classpath
-      String cacheKey = JdtResolverCache.getCacheKey(project, resolveRelative, isRuntimeClasspath);
+      String cacheKey = JdtResolverCache.getCacheKey(project, resolveRelative, isRuntimeClasspath,
+          classpathContainerArguments);
 
       // try to get ResolvedClasspath from the cache
-      ResolvedClasspath resolvedClasspath = JdtResolverCache.getInstance().getResolvedClasspath(cacheKey);
+      ResolvedClasspath resolvedClasspath = JdtResolverCache.getInstance().getResolvedClasspath(cacheKey, project);
 
       if (resolvedClasspath == null) {
 
         // Classpath has not been resolved yet -> resolve it now
+        List<EclipseProject> referencedProjects = new LinkedList<EclipseProject>();
         resolvedClasspath = doResolveProjectClasspath(project, resolveRelative, isRuntimeClasspath,
-            classpathContainerArguments);
+            classpathContainerArguments, referencedProjects);
 
         // add the resolved classpath to the cache
-        JdtResolverCache.getInstance().storeResolvedClasspath(cacheKey, resolvedClasspath);
+        JdtResolverCache.getInstance().storeResolvedClasspath(cacheKey, project, resolvedClasspath,
+            referencedProjects);
       }
 
       // return the classpath
@@ -85,7 +89,8 @@ public class JdtResolver {
     } else {
 
       // cache is disabled, always re-resolve classpath
-      return doResolveProjectClasspath(project, resolveRelative, isRuntimeClasspath, classpathContainerArguments);
+      return doResolveProjectClasspath(project, resolveRelative, isRuntimeClasspath, classpathContainerArguments,
+          null);
     }
   }
 
@@ -97,10 +102,13 @@ public class JdtResolver {
    * @param resolveRelative
    * @param isRuntimeClasspath
    * @param classpathContainerArguments
+   * @param referencedProjects
+   *          receives the projects that have been referenced while resolving the class path (maybe <code>null</code>)
    * @return
    */
   private static final ResolvedClasspath doResolveProjectClasspath(EclipseProject project, boolean resolveRelative,
-      boolean isRuntimeClasspath, List<JdtClasspathContainerArgument> classpathContainerArguments) {
+      boolean isRuntimeClasspath, List<JdtClasspathContainerArgument> classpathContainerArguments,
+      List<EclipseProject> referencedProjects) {
 
     Assure.notNull("project", project);
 
@@ -125,6 +133,9 @@ public class JdtResolver {
     // execute the job
     executor.resolve(job.getRootProject(), resolvers,
         new ClasspathResolverContextImpl(executor, job, resolvedClasspath));
+    if (referencedProjects != null) {
+      referencedProjects.addAll(executor.getReferencedProjects());
+    }
 
     // stop performance logging
     PerformanceLogging.stop(JdtResolver.class, "doResolveProjectClasspath");
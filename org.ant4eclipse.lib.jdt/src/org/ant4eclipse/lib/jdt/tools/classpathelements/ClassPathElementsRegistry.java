@@ -142,4 +142,14 @@ public interface ClassPathElementsRegistry {
    */
   List<ClassPathVariable> getClasspathVariables();
 
+  /**
+   * <p>
+   * Returns the number of modifications of this registry. The number is incremented whenever a class path container or
+   * a class path variable is registered or replaced, so callers can detect that the registry has changed.
+   * </p>
+   * 
+   * @return the number of modifications of this registry.
+   */
+  long getModificationCount();
+
 }
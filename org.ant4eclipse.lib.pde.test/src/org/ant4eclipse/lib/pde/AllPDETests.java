@@ -12,6 +12,7 @@
 package org.ant4eclipse.lib.pde;
 
 import org.ant4eclipse.lib.pde.model.buildproperties.BuildPropertiesParserTest;
+import org.ant4eclipse.lib.pde.model.featureproject.FeatureProjectRefreshTest;
 import org.ant4eclipse.lib.pde.model.launcher.SelectedLaunchConfigurationBundleParserTest;
 import org.ant4eclipse.lib.pde.model.launcher.SimpleConfiguratorBundlesTest;
 import org.junit.runner.RunWith;
@@ -19,6 +20,6 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ SelectedLaunchConfigurationBundleParserTest.class, SimpleConfiguratorBundlesTest.class,
-    BuildPropertiesParserTest.class })
+    BuildPropertiesParserTest.class, FeatureProjectRefreshTest.class })
 public class AllPDETests {
 } /* ENDCLASS */
@@ -0,0 +1,105 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.pde.model.featureproject;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry.WorkspaceRegistryImpl;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.WorkspaceChangeEvent;
+import org.ant4eclipse.lib.platform.model.resource.WorkspaceListener;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.DefaultEclipseWorkspaceDefinition;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.EclipseProjectBuilder;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FeatureProjectRefreshTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory         _testWorkspace;
+
+  private WorkspaceRegistryImpl _workspaceRegistry;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testWorkspace = new TestDirectory();
+    File featureFolder = new EclipseProjectBuilder("feature").withNature(FeatureProjectRole.FEATURE_NATURE).createIn(
+        this._testWorkspace.getRootDir());
+    writeFeatureManifest(new File(featureFolder, "feature.xml"), "1.0.0");
+    new EclipseProjectBuilder("other").createIn(this._testWorkspace.getRootDir());
+    this._workspaceRegistry = new WorkspaceRegistryImpl();
+    this._workspaceRegistry.initialize();
+  }
+
+  @Override
+  public void dispose() {
+    this._workspaceRegistry.dispose();
+    this._testWorkspace.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void modifiedFeatureManifest() {
+    Workspace workspace = this._workspaceRegistry.registerWorkspace("workspace", new DefaultEclipseWorkspaceDefinition(
+        this._testWorkspace.getRootDir()), 1);
+    final List<WorkspaceChangeEvent> events = new ArrayList<WorkspaceChangeEvent>();
+    workspace.addWorkspaceListener(new WorkspaceListener() {
+      public void workspaceChanged(WorkspaceChangeEvent event) {
+        events.add(event);
+      }
+    });
+    EclipseProject feature = workspace.getProject("feature");
+    EclipseProject other = workspace.getProject("other");
+    Assert.assertEquals("1.0.0", getVersion(feature));
+
+    // a refresh without changes keeps the project
+    this._workspaceRegistry.refreshWorkspace("workspace");
+    Assert.assertSame(feature, workspace.getProject("feature"));
+    Assert.assertTrue(events.isEmpty());
+
+    // only the feature manifest is modified, the .project file stays the same
+    File featureManifest = new File(feature.getFolder(), "feature.xml");
+    long lastModified = featureManifest.lastModified();
+    writeFeatureManifest(featureManifest, "2.0.0");
+    featureManifest.setLastModified(lastModified + 10000);
+
+    this._workspaceRegistry.refreshWorkspace("workspace");
+    EclipseProject refreshed = workspace.getProject("feature");
+    Assert.assertNotSame(feature, refreshed);
+    Assert.assertEquals("2.0.0", getVersion(refreshed));
+    Assert.assertSame(other, workspace.getProject("other"));
+
+    Assert.assertEquals(1, events.size());
+    WorkspaceChangeEvent event = events.get(0);
+    Assert.assertFalse(event.hasAddedOrRemovedProjects());
+    Assert.assertEquals(1, event.getModifiedProjects().length);
+    Assert.assertSame(refreshed, event.getModifiedProjects()[0]);
+    Assert.assertSame(feature, event.getOutdatedProjects()[0]);
+    Assert.assertTrue(event.affectsRole(FeatureProjectRole.class));
+  }
+
+  private void writeFeatureManifest(File file, String version) {
+    Utilities.writeFile(file, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<feature id=\"feature\" version=\""
+        + version + "\"/>\n", "UTF-8");
+  }
+
+  private String getVersion(EclipseProject project) {
+    return project.getRole(FeatureProjectRole.class).getFeatureManifest().getVersion().toString();
+  }
+
+} /* ENDCLASS */
@@ -264,7 +264,7 @@ public abstract class AbstractBundleAndFeatureSet implements BundleAndFeatureSet
     this._bundleDescriptionList.clear();
 
     // clear list of features...
-    this._bundleDescriptionList.clear();
+    this._featureDescriptionList.clear();
 
     // read all bundles and features...
     readBundlesAndFeatures();
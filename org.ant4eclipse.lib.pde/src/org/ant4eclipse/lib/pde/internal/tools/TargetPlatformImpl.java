@@ -179,6 +179,16 @@ public final class TargetPlatformImpl implements TargetPlatform {
     this._state = resolve();
   }
 
+  /**
+   * <p>
+   * Resolves this target platform again after the plug-in and feature projects of the workspace have been changed. In
+   * contrast to {@link #refresh()} the bundle and feature sets aren't read again.
+   * </p>
+   */
+  void resolveAgain() {
+    this._state = resolve();
+  }
+
   public List<File> getAllBundleFiles() {
     List<BundleDescription> allBundleDescriptions = getAllBundleDescriptions(true);
 
@@ -23,21 +23,30 @@ import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.pde.PdeExceptionCode;
+import org.ant4eclipse.lib.pde.model.featureproject.FeatureProjectRole;
+import org.ant4eclipse.lib.pde.model.pluginproject.PluginProjectRole;
 import org.ant4eclipse.lib.pde.tools.PlatformConfiguration;
 import org.ant4eclipse.lib.pde.tools.TargetPlatform;
 import org.ant4eclipse.lib.pde.tools.TargetPlatformDefinition;
 import org.ant4eclipse.lib.pde.tools.TargetPlatformRegistry;
 import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.WorkspaceChangeEvent;
+import org.ant4eclipse.lib.platform.model.resource.WorkspaceListener;
 
 /**
  * <p>
  * The {@link TargetPlatformRegistryImpl} can be used to retrieve instances of type {@link TargetPlatform}.
  * </p>
+ * <p>
+ * The registry listens to the workspaces of its target platforms: if plug-in or feature projects of a workspace are
+ * added, removed or modified by a refresh of the workspace, the plug-in and feature projects are read again and the
+ * target platforms of the workspace are resolved again.
+ * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  * @author Nils Hartmann (nils@nilshartmann.net)
  */
-public class TargetPlatformRegistryImpl implements TargetPlatformRegistry {
+public class TargetPlatformRegistryImpl implements TargetPlatformRegistry, WorkspaceListener {
 
   /** the current {@link TargetPlatform}, maybe null **/
   private TargetPlatform                         _currentTargetPlatform;
@@ -166,6 +175,33 @@ public class TargetPlatformRegistryImpl implements TargetPlatformRegistry {
     return this._targetPlatformDefnitionMap.containsKey(identifier);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized void workspaceChanged(WorkspaceChangeEvent event) {
+    Workspace workspace = event.getWorkspace();
+
+    if (!event.affectsRole(PluginProjectRole.class) && !event.affectsRole(FeatureProjectRole.class)) {
+      return;
+    }
+
+    A4ELogging.debug("Plug-in or feature projects have been changed: %s", event);
+
+    // read the plug-in and feature projects again...
+    BundleAndFeatureSet pluginProjectSet = this._bundleAndFeatureSetMap.get(workspace);
+    if (pluginProjectSet == null) {
+      return;
+    }
+    pluginProjectSet.refresh();
+
+    // ...and resolve the target platforms of the workspace again
+    for (Map.Entry<TargetPlatformKey, TargetPlatform> entry : this._targetPlatformMap.entrySet()) {
+      if (entry.getKey()._workspace == workspace) {
+        ((TargetPlatformImpl) entry.getValue()).resolveAgain();
+      }
+    }
+  }
+
   /**
    * <p>
    * </p>
@@ -177,6 +213,7 @@ public class TargetPlatformRegistryImpl implements TargetPlatformRegistry {
 
     if (!this._bundleAndFeatureSetMap.containsKey(workspace)) {
       this._bundleAndFeatureSetMap.put(workspace, new PluginAndFeatureProjectSet(workspace));
+      workspace.addWorkspaceListener(this);
     }
 
     return (PluginAndFeatureProjectSet) this._bundleAndFeatureSetMap.get(workspace);
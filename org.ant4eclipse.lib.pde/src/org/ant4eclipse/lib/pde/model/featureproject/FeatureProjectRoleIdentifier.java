@@ -17,6 +17,7 @@ import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.pde.PdeExceptionCode;
 import org.ant4eclipse.lib.pde.internal.model.featureproject.FeatureProjectRoleImpl;
 import org.ant4eclipse.lib.pde.model.buildproperties.BuildPropertiesParser;
+import org.ant4eclipse.lib.pde.model.pluginproject.Constants;
 import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 import org.ant4eclipse.lib.platform.model.resource.role.ProjectRole;
 import org.ant4eclipse.lib.platform.model.resource.role.ProjectRoleIdentifier;
@@ -71,4 +72,11 @@ public class FeatureProjectRoleIdentifier implements ProjectRoleIdentifier {
   public void postProcess(EclipseProject project) {
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public String[] getProjectFiles() {
+    return new String[] { Constants.FEATURE_MANIFEST, BuildPropertiesParser.BUILD_PROPERTIES };
+  }
+
 } /* ENDCLASS */
@@ -65,4 +65,11 @@ public class PluginProjectRoleIdentifier implements ProjectRoleIdentifier {
   public void postProcess(EclipseProject project) {
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public String[] getProjectFiles() {
+    return new String[] { Constants.OSGI_BUNDLE_MANIFEST, BuildPropertiesParser.BUILD_PROPERTIES };
+  }
+
 } /* ENDCLASS */
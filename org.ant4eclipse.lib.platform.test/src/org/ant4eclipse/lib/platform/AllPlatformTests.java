@@ -13,7 +13,10 @@ package org.ant4eclipse.lib.platform;
 
 import org.ant4eclipse.lib.platform.internal.model.launcher.LaunchConfigurationReaderImplTest;
 import org.ant4eclipse.lib.platform.internal.model.resource.variable.PropertyParserTest;
+import org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry.WorkspaceRegistryImplTest;
+import org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry.WorkspaceSnapshotTest;
 import org.ant4eclipse.lib.platform.model.resource.role.ProjectRoleIdentifierRegistryTest;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.DefaultEclipseWorkspaceDefinitionTest;
 import org.ant4eclipse.lib.platform.model.team.cvssupport.CvsRootTest;
 import org.ant4eclipse.lib.platform.model.team.projectset.internal.ProjectSetFileParserImplTest;
 import org.junit.runner.RunWith;
@@ -21,6 +24,7 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses( { LaunchConfigurationReaderImplTest.class, ProjectRoleIdentifierRegistryTest.class,
-    CvsRootTest.class, ProjectSetFileParserImplTest.class, PropertyParserTest.class })
+    CvsRootTest.class, ProjectSetFileParserImplTest.class, PropertyParserTest.class,
+    WorkspaceRegistryImplTest.class, WorkspaceSnapshotTest.class, DefaultEclipseWorkspaceDefinitionTest.class })
 public class AllPlatformTests {
 } /* ENDCLASS */
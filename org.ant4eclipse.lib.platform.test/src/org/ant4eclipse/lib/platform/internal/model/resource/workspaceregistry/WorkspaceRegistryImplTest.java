@@ -0,0 +1,206 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry;
+
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.platform.PlatformExceptionCode;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.WorkspaceChangeEvent;
+import org.ant4eclipse.lib.platform.model.resource.WorkspaceListener;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.DefaultEclipseWorkspaceDefinition;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.FilesetWorkspaceDefinition;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.RegistrationTimings;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.EclipseProjectBuilder;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class WorkspaceRegistryImplTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory         _testWorkspace;
+
+  private WorkspaceRegistryImpl _workspaceRegistry;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testWorkspace = new TestDirectory();
+    for (int i = 0; i < 20; i++) {
+      new EclipseProjectBuilder("project" + i).createIn(this._testWorkspace.getRootDir());
+    }
+    this._workspaceRegistry = new WorkspaceRegistryImpl();
+    this._workspaceRegistry.initialize();
+  }
+
+  @Override
+  public void dispose() {
+    this._workspaceRegistry.dispose();
+    this._testWorkspace.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void parallelRegistration() {
+    DefaultEclipseWorkspaceDefinition workspaceDefinition = new DefaultEclipseWorkspaceDefinition(this._testWorkspace
+        .getRootDir());
+    Workspace serial = this._workspaceRegistry.registerWorkspace("serial", workspaceDefinition, 1);
+    Workspace parallel = this._workspaceRegistry.registerWorkspace("parallel", workspaceDefinition, 4);
+
+    Assert.assertEquals(20, parallel.getAllProjects().length);
+    Assert.assertEquals(getProjectNames(serial), getProjectNames(parallel));
+
+    RegistrationTimings timings = this._workspaceRegistry.getRegistrationTimings("parallel");
+    Assert.assertEquals(20, timings.getProjectCount());
+    Assert.assertEquals(4, timings.getThreadCount());
+    Assert.assertNull(this._workspaceRegistry.getRegistrationTimings("unknown"));
+
+    // a refresh keeps the number of threads
+    this._workspaceRegistry.refreshWorkspace("parallel");
+    Assert.assertEquals(4, this._workspaceRegistry.getRegistrationTimings("parallel").getThreadCount());
+  }
+
+  @Test
+  public void sameProjectNames() {
+    File folder1 = new File(this._testWorkspace.getRootDir(), "project1");
+    File duplicate = new EclipseProjectBuilder("project1").createIn(this._testWorkspace.createSubDirectory("copy"));
+    File folder2 = new File(this._testWorkspace.getRootDir(), "project2");
+    FilesetWorkspaceDefinition workspaceDefinition = new FilesetWorkspaceDefinition(new File[] { folder1, folder2,
+        duplicate });
+
+    // the collision is always reported for the latter project folder
+    String expected = getFailure(workspaceDefinition, 1);
+    Assert.assertTrue(expected, expected.contains("copy"));
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals(expected, getFailure(workspaceDefinition, 3));
+    }
+  }
+
+  @Test
+  public void snapshot() {
+    File snapshotFile = new File(this._testWorkspace.getRootDir(), "snapshot/workspace.bin");
+    DefaultEclipseWorkspaceDefinition workspaceDefinition = new DefaultEclipseWorkspaceDefinition(this._testWorkspace
+        .getRootDir());
+    this._workspaceRegistry.registerWorkspace("workspace", workspaceDefinition, 2, snapshotFile);
+    Assert.assertTrue(snapshotFile.isFile());
+
+    // modify the description of project0 without changing its stamp, so the description of the snapshot is used
+    File projectFile0 = new File(this._testWorkspace.getRootDir(), "project0/.project");
+    long lastModified = projectFile0.lastModified();
+    replaceName(projectFile0, "project0", "projectX");
+    projectFile0.setLastModified(lastModified);
+
+    // project1 gets a new name and a new stamp
+    File projectFile1 = new File(this._testWorkspace.getRootDir(), "project1/.project");
+    replaceName(projectFile1, "project1", "renamedProject1");
+    projectFile1.setLastModified(projectFile1.lastModified() + 10000);
+
+    WorkspaceRegistryImpl workspaceRegistry = new WorkspaceRegistryImpl();
+    workspaceRegistry.initialize();
+    Workspace workspace = workspaceRegistry.registerWorkspace("workspace", workspaceDefinition, 1, snapshotFile);
+    Assert.assertTrue(workspace.hasProject("project0"));
+    Assert.assertTrue(workspace.hasProject("renamedProject1"));
+    Assert.assertFalse(workspace.hasProject("project1"));
+    Assert.assertEquals(20, workspace.getAllProjects().length);
+    workspaceRegistry.dispose();
+
+    // a refresh uses the snapshot of the previous registration
+    projectFile0.setLastModified(lastModified + 10000);
+    this._workspaceRegistry.refreshWorkspace("workspace");
+    workspace = this._workspaceRegistry.getWorkspace("workspace");
+    Assert.assertTrue(workspace.hasProject("projectX"));
+    Assert.assertTrue(workspace.hasProject("renamedProject1"));
+  }
+
+  @Test
+  public void refreshInPlace() {
+    DefaultEclipseWorkspaceDefinition workspaceDefinition = new DefaultEclipseWorkspaceDefinition(this._testWorkspace
+        .getRootDir());
+    Workspace workspace = this._workspaceRegistry.registerWorkspace("workspace", workspaceDefinition, 2);
+    final List<WorkspaceChangeEvent> events = new ArrayList<WorkspaceChangeEvent>();
+    workspace.addWorkspaceListener(new WorkspaceListener() {
+      public void workspaceChanged(WorkspaceChangeEvent event) {
+        events.add(event);
+      }
+    });
+    EclipseProject project1 = workspace.getProject("project1");
+    EclipseProject project2 = workspace.getProject("project2");
+    EclipseProject project3 = workspace.getProject("project3");
+
+    // a refresh without changes doesn't change anything
+    this._workspaceRegistry.refreshWorkspace("workspace");
+    Assert.assertSame(workspace, this._workspaceRegistry.getWorkspace("workspace"));
+    Assert.assertSame(project1, workspace.getProject("project1"));
+    Assert.assertTrue(events.isEmpty());
+
+    // modify project1, remove project3 and add project20
+    File projectFile1 = new File(this._testWorkspace.getRootDir(), "project1/.project");
+    replaceName(projectFile1, "project1", "renamedProject1");
+    projectFile1.setLastModified(projectFile1.lastModified() + 10000);
+    Utilities.delete(project3.getFolder());
+    new EclipseProjectBuilder("project20").createIn(this._testWorkspace.getRootDir());
+
+    this._workspaceRegistry.refreshWorkspace("workspace");
+    Assert.assertSame(workspace, this._workspaceRegistry.getWorkspace("workspace"));
+    Assert.assertEquals(20, workspace.getAllProjects().length);
+    Assert.assertSame(project2, workspace.getProject("project2"));
+    Assert.assertFalse(workspace.hasProject("project1"));
+    Assert.assertFalse(workspace.hasProject("project3"));
+    Assert.assertTrue(workspace.hasProject("renamedProject1"));
+    Assert.assertTrue(workspace.hasProject("project20"));
+
+    Assert.assertEquals(1, events.size());
+    WorkspaceChangeEvent event = events.get(0);
+    Assert.assertSame(workspace, event.getWorkspace());
+    Assert.assertEquals(1, event.getAddedProjects().length);
+    Assert.assertSame(workspace.getProject("project20"), event.getAddedProjects()[0]);
+    Assert.assertEquals(1, event.getRemovedProjects().length);
+    Assert.assertSame(project3, event.getRemovedProjects()[0]);
+    Assert.assertEquals(1, event.getModifiedProjects().length);
+    Assert.assertSame(workspace.getProject("renamedProject1"), event.getModifiedProjects()[0]);
+    Assert.assertSame(project1, event.getOutdatedProjects()[0]);
+  }
+
+  private void replaceName(File projectFile, String oldName, String newName) {
+    String content = Utilities.readTextContent(projectFile, "UTF-8", true).toString();
+    Utilities.writeFile(projectFile, content.replace("<name>" + oldName + "</name>", "<name>" + newName + "</name>"),
+        "UTF-8");
+  }
+
+  private String getFailure(FilesetWorkspaceDefinition workspaceDefinition, int threadCount) {
+    try {
+      this._workspaceRegistry.registerWorkspace("workspace", workspaceDefinition, threadCount);
+      Assert.fail();
+      return null;
+    } catch (Ant4EclipseException ex) {
+      Assert.assertEquals(PlatformExceptionCode.PROJECT_WITH_SAME_SPECIFIED_NAME_ALREADY_EXISTS, ex.getExceptionCode());
+      return ex.getMessage();
+    }
+  }
+
+  private Set<String> getProjectNames(Workspace workspace) {
+    Set<String> result = new TreeSet<String>();
+    for (EclipseProject project : workspace.getAllProjects()) {
+      result.add(project.getSpecifiedName());
+    }
+    return result;
+  }
+
+} /* ENDCLASS */
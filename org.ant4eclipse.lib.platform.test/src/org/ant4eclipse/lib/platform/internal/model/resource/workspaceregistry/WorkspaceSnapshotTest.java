@@ -0,0 +1,96 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.platform.internal.model.resource.EclipseProjectImpl;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.EclipseProjectBuilder;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class WorkspaceSnapshotTest extends ConfigurableAnt4EclipseTestCase {
+
+  private static final String[] PROJECT_FILES = new String[] { ".classpath" };
+
+  private TestDirectory         _testWorkspace;
+
+  private File                  _projectFolder;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testWorkspace = new TestDirectory();
+    new EclipseProjectBuilder("project").createIn(this._testWorkspace.getRootDir());
+    this._projectFolder = new File(this._testWorkspace.getRootDir(), "project");
+  }
+
+  @Override
+  public void dispose() {
+    this._testWorkspace.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void unchangedProject() {
+    Assert.assertEquals(WorkspaceSnapshot.createStamp(this._projectFolder, PROJECT_FILES), WorkspaceSnapshot
+        .createStamp(this._projectFolder, PROJECT_FILES));
+  }
+
+  @Test
+  public void modifiedProjectFile() {
+    // a later modification time combined with a shorter content must not result in the same stamp
+    File projectFile = new File(this._projectFolder, ".project");
+    Utilities.writeFile(projectFile, new byte[40000]);
+    projectFile.setLastModified(1000000000000L);
+    WorkspaceSnapshot.ProjectStamp stamp = WorkspaceSnapshot.createStamp(this._projectFolder, PROJECT_FILES);
+    Utilities.writeFile(projectFile, new byte[40000 - 31000]);
+    projectFile.setLastModified(1000000001000L);
+    Assert.assertFalse(stamp.equals(WorkspaceSnapshot.createStamp(this._projectFolder, PROJECT_FILES)));
+  }
+
+  @Test
+  public void renamedSettingsFile() {
+    // the names "Aa" and "BB" have the same hash code
+    File settings = new File(this._projectFolder, ".settings");
+    Utilities.mkdirs(settings);
+    File setting = new File(settings, "Aa");
+    Utilities.writeFile(setting, new byte[10]);
+    setting.setLastModified(1000000000000L);
+    WorkspaceSnapshot.ProjectStamp stamp = WorkspaceSnapshot.createStamp(this._projectFolder, PROJECT_FILES);
+    File renamed = new File(settings, "BB");
+    Assert.assertTrue(setting.renameTo(renamed));
+    renamed.setLastModified(1000000000000L);
+    Assert.assertFalse(stamp.equals(WorkspaceSnapshot.createStamp(this._projectFolder, PROJECT_FILES)));
+  }
+
+  @Test
+  public void readAndWrite() {
+    WorkspaceSnapshot.ProjectStamp stamp = WorkspaceSnapshot.createStamp(this._projectFolder, PROJECT_FILES);
+    EclipseProjectImpl project = new EclipseProjectImpl(null, this._projectFolder);
+    project.setSpecifiedName("project");
+    WorkspaceSnapshot snapshot = new WorkspaceSnapshot();
+    snapshot.addEntry(this._projectFolder, new WorkspaceSnapshot.ProjectEntry(stamp, project));
+    File snapshotFile = new File(this._testWorkspace.getRootDir(), "snapshot.bin");
+    snapshot.write(snapshotFile);
+
+    WorkspaceSnapshot result = WorkspaceSnapshot.read(snapshotFile);
+    Assert.assertEquals(1, result.size());
+    WorkspaceSnapshot.ProjectEntry entry = result.getEntry(this._projectFolder);
+    Assert.assertNotNull(entry);
+    Assert.assertTrue(entry.hasDescription());
+    Assert.assertEquals(stamp, entry.getStamp());
+  }
+}
@@ -63,6 +63,13 @@ public class ProjectRoleIdentifierRegistryTest extends ConfigurableAnt4EclipseTe
     public void postProcess(EclipseProject project) {
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public String[] getProjectFiles() {
+      return new String[0];
+    }
+
   } /* ENDCLASS */
 
 } /* ENDCLASS */
@@ -0,0 +1,128 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.platform.model.resource.workspaceregistry;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.EclipseProjectBuilder;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class DefaultEclipseWorkspaceDefinitionTest extends ConfigurableAnt4EclipseTestCase {
+
+  /** the directory of the location files */
+  static final String         METADATA_PROJECTS = ".metadata/.plugins/org.eclipse.core.resources/.projects";
+
+  private static final byte[] BEGIN_CHUNK       = { 64, -79, -117, -127, 35, -68, 0, 20, 26, 37, -106, -25, -93, -109,
+      -66, 30                                  };
+
+  private static final byte[] END_CHUNK         = { -64, 88, -5, -13, 35, -68, 0, 20, 26, 81, -13, -116, 123, -69, 119,
+      -58                                      };
+
+  private TestDirectory       _testDirectory;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+  }
+
+  @Override
+  public void dispose() {
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void projectFolders() {
+    File workspaceDirectory = this._testDirectory.createSubDirectory("workspace");
+    File externalDirectory = this._testDirectory.createSubDirectory("external");
+    Set<File> expected = new HashSet<File>();
+    for (int i = 0; i < 5; i++) {
+      expected.add(new EclipseProjectBuilder("project" + i).createIn(workspaceDirectory));
+    }
+    Utilities.mkdirs(new File(workspaceDirectory, "noproject"));
+    Utilities.writeFile(new File(workspaceDirectory, "file.txt"), "no directory", "UTF-8");
+
+    // projects outside of the workspace, a location of a project inside of the workspace and an invalid location
+    File metadataDirectory = new File(workspaceDirectory, METADATA_PROJECTS);
+    for (int i = 0; i < 5; i++) {
+      File projectDirectory = new EclipseProjectBuilder("external" + i).createIn(externalDirectory);
+      createLocationFile(metadataDirectory, "external" + i, projectDirectory);
+      expected.add(projectDirectory);
+    }
+    createLocationFile(metadataDirectory, "project0", new File(workspaceDirectory, "project0"));
+    createLocationFile(metadataDirectory, "missing", new File(externalDirectory, "missing"));
+
+    DefaultEclipseWorkspaceDefinition workspaceDefinition = new DefaultEclipseWorkspaceDefinition(workspaceDirectory);
+    File[] projectFolders = workspaceDefinition.getProjectFolders();
+    Assert.assertEquals(expected.size(), projectFolders.length);
+    Assert.assertEquals(expected, new HashSet<File>(Arrays.asList(projectFolders)));
+
+    // the location files are read by the supplied executor
+    for (int threadCount = 1; threadCount <= 4; threadCount++) {
+      ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+      try {
+        projectFolders = workspaceDefinition.getProjectFolders(executor);
+      } finally {
+        executor.shutdownNow();
+      }
+      Assert.assertEquals(expected.size(), projectFolders.length);
+      Assert.assertEquals(expected, new HashSet<File>(Arrays.asList(projectFolders)));
+    }
+  }
+
+  /**
+   * <p>
+   * Creates the <code>.location</code> file for the given project directory.
+   * </p>
+   * 
+   * @param metadataDirectory
+   *          the directory of the location files
+   * @param name
+   *          the name of the project
+   * @param projectDirectory
+   *          the project directory
+   */
+  static void createLocationFile(File metadataDirectory, String name, File projectDirectory) {
+    File directory = new File(metadataDirectory, name);
+    Utilities.mkdirs(directory);
+    OutputStream output = null;
+    try {
+      ByteArrayOutputStream location = new ByteArrayOutputStream();
+      new DataOutputStream(location).writeUTF("URI//" + projectDirectory.toURI());
+      output = new FileOutputStream(new File(directory, ".location"));
+      output.write(BEGIN_CHUNK);
+      output.write(location.toByteArray());
+      output.write(END_CHUNK);
+    } catch (IOException ex) {
+      throw new RuntimeException(ex.getMessage(), ex);
+    } finally {
+      Utilities.close((Closeable) output);
+    }
+  }
+
+} /* ENDCLASS */
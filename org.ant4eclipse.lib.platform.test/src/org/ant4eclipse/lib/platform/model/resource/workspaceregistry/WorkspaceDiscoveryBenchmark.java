@@ -0,0 +1,125 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.platform.model.resource.workspaceregistry;
+
+import org.ant4eclipse.lib.core.DefaultConfigurator;
+import org.ant4eclipse.lib.core.logging.Ant4EclipseLogger;
+import org.ant4eclipse.lib.core.logging.DefaultAnt4EclipseLogger;
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ * Measures the time needed to discover the project folders of a generated workspace with 10,000 directories: 9,000
+ * project directories and 1,000 other directories within the workspace directory and 1,000 projects outside of the
+ * workspace directory that are referenced by <code>.location</code> files. The discovery is measured with one and with
+ * four threads.
+ * </p>
+ * <p>
+ * Usage: <code>WorkspaceDiscoveryBenchmark [directories] [rounds]</code>
+ * </p>
+ */
+public class WorkspaceDiscoveryBenchmark {
+
+  /**
+   * Runs the benchmark.
+   * 
+   * @param args
+   *          The number of directories and the number of rounds (both optional).
+   */
+  public static final void main(String[] args) {
+    int directories = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    DefaultConfigurator.configureAnt4Eclipse();
+    Ant4EclipseLogger logger = ServiceRegistryAccess.instance().getService(Ant4EclipseLogger.class);
+    if (logger instanceof DefaultAnt4EclipseLogger) {
+      // the debug messages would dominate the measurement
+      ((DefaultAnt4EclipseLogger) logger).setLogLevel(DefaultAnt4EclipseLogger.Priority.info);
+    }
+    File root = Utilities.createTempDir();
+    try {
+      File workspace = new File(root, "workspace");
+      createWorkspace(workspace, new File(root, "external"), directories);
+      for (int round = 1; round <= rounds; round++) {
+        long serial = discover(workspace, 1);
+        long parallel = discover(workspace, 4);
+        System.out.println("round " + round + ": " + (serial / 1000000L) + " ms, with 4 threads: "
+            + (parallel / 1000000L) + " ms (" + directories + " directories)");
+      }
+    } finally {
+      Utilities.delete(root);
+      ServiceRegistryAccess.reset();
+    }
+  }
+
+  /**
+   * Discovers the project folders of the supplied workspace.
+   * 
+   * @param workspace
+   *          The workspace directory.
+   * @param threadCount
+   *          The number of threads used to read the location files.
+   * 
+   * @return The time needed in nanoseconds.
+   */
+  private static long discover(File workspace, int threadCount) {
+    ExecutorService executor = threadCount > 1 ? Executors.newFixedThreadPool(threadCount) : null;
+    try {
+      long start = System.nanoTime();
+      new DefaultEclipseWorkspaceDefinition(workspace).getProjectFolders(executor);
+      return System.nanoTime() - start;
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Creates the directories of the workspace. A tenth of the directories are project directories outside of the
+   * workspace and another tenth are directories without a <code>.project</code> file.
+   * 
+   * @param workspace
+   *          The workspace directory.
+   * @param external
+   *          The directory of the projects outside of the workspace.
+   * @param directories
+   *          The number of directories.
+   */
+  private static void createWorkspace(File workspace, File external, int directories) {
+    File metadataDirectory = new File(workspace, DefaultEclipseWorkspaceDefinitionTest.METADATA_PROJECTS);
+    for (int i = 0; i < directories; i++) {
+      String name = "project" + i;
+      if (i % 10 == 0) {
+        File projectDirectory = createProject(external, name);
+        DefaultEclipseWorkspaceDefinitionTest.createLocationFile(metadataDirectory, name, projectDirectory);
+      } else if (i % 10 == 1) {
+        Utilities.mkdirs(new File(workspace, name));
+      } else {
+        createProject(workspace, name);
+      }
+    }
+  }
+
+  private static File createProject(File parent, String name) {
+    File projectDirectory = new File(parent, name);
+    Utilities.mkdirs(projectDirectory);
+    Utilities.writeFile(new File(projectDirectory, ".project"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<projectDescription>\n\t<name>" + name + "</name>\n</projectDescription>\n", "UTF-8");
+    return projectDirectory;
+  }
+
+} /* ENDCLASS */
@@ -509,6 +509,15 @@ public final class EclipseProjectImpl implements EclipseProject {
     return this._linkedResources.get(idx);
   }
 
+  /**
+   * Returns true if this project contains linked resources.
+   * 
+   * @return true <=> This project contains linked resources.
+   */
+  public boolean hasLinkedResources() {
+    return !this._linkedResources.isEmpty();
+  }
+
   /**
    * Returns true if the supplied name refers to a linked resource.
    * 
@@ -17,6 +17,8 @@ import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.platform.PlatformExceptionCode;
 import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.WorkspaceChangeEvent;
+import org.ant4eclipse.lib.platform.model.resource.WorkspaceListener;
 import org.ant4eclipse.lib.platform.model.resource.role.ProjectRole;
 
 import java.util.Collection;
@@ -24,6 +26,7 @@ import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * <p>
@@ -35,7 +38,10 @@ import java.util.Map;
 public final class WorkspaceImpl implements Workspace {
 
   /** map with all the eclipse projects */
-  private Map<String, EclipseProject> _projects;
+  private Map<String, EclipseProject>             _projects;
+
+  /** the listeners that are notified about changes of the projects */
+  private CopyOnWriteArrayList<WorkspaceListener> _listeners;
 
   /**
    * {@inheritDoc}
@@ -121,6 +127,7 @@ public final class WorkspaceImpl implements Workspace {
    */
   public WorkspaceImpl() {
     this._projects = new Hashtable<String, EclipseProject>();
+    this._listeners = new CopyOnWriteArrayList<WorkspaceListener>();
   }
 
   public void registerEclipseProject(EclipseProject eclipseProject) {
@@ -138,39 +145,51 @@ public final class WorkspaceImpl implements Workspace {
     this._projects.put(key, eclipseProject);
   }
 
+  /**
+   * <p>
+   * Removes the given project from this workspace.
+   * </p>
+   * 
+   * @param eclipseProject
+   *          the project
+   */
+  public void removeEclipseProject(EclipseProject eclipseProject) {
+    Assure.notNull("eclipseProject", eclipseProject);
+
+    String key = eclipseProject.getSpecifiedName();
+    if (eclipseProject.equals(this._projects.get(key))) {
+      this._projects.remove(key);
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
-  @Override
-  public int hashCode() {
-    int prime = 31;
-    int result = 1;
-    result = prime * result + ((this._projects == null) ? 0 : this._projects.hashCode());
-    return result;
+  public void addWorkspaceListener(WorkspaceListener listener) {
+    Assure.notNull("listener", listener);
+    this._listeners.addIfAbsent(listener);
   }
 
   /**
    * {@inheritDoc}
    */
-  @Override
-  public boolean equals(Object obj) {
-    if (this == obj) {
-      return true;
-    }
-    if (obj == null) {
-      return false;
-    }
-    if (getClass() != obj.getClass()) {
-      return false;
-    }
-    WorkspaceImpl other = (WorkspaceImpl) obj;
-    if (this._projects == null) {
-      if (other._projects != null) {
-        return false;
-      }
-    } else if (!this._projects.equals(other._projects)) {
-      return false;
+  public void removeWorkspaceListener(WorkspaceListener listener) {
+    Assure.notNull("listener", listener);
+    this._listeners.remove(listener);
+  }
+
+  /**
+   * <p>
+   * Notifies all listeners about the given change of this workspace.
+   * </p>
+   * 
+   * @param event
+   *          the event describing the change
+   */
+  public void fireWorkspaceChanged(WorkspaceChangeEvent event) {
+    Assure.notNull("event", event);
+    for (WorkspaceListener listener : this._listeners) {
+      listener.workspaceChanged(event);
     }
-    return true;
   }
 } /* ENDCLASS */
\ No newline at end of file
@@ -21,8 +21,11 @@ import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 import org.ant4eclipse.lib.platform.model.resource.role.ProjectRole;
 import org.ant4eclipse.lib.platform.model.resource.role.ProjectRoleIdentifier;
 
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * The ProjectRoleIdentifierRegistry holds all known {@link ProjectRoleIdentifier}s. It can be used to apply roles to
@@ -42,6 +45,11 @@ public class ProjectRoleIdentifierRegistry {
    */
   private Iterable<ProjectRoleIdentifier> _projectRoleIdentifiers;
 
+  /**
+   * The files that are read by all known {@link ProjectRoleIdentifier}
+   */
+  private String[]                        _projectFiles;
+
   public ProjectRoleIdentifierRegistry() {
     init();
   }
@@ -81,6 +89,15 @@ public class ProjectRoleIdentifierRegistry {
     return this._projectRoleIdentifiers;
   }
 
+  /**
+   * Returns the files that are read by the registered RoleIdentifier instances (relative to the project folder).
+   * 
+   * @return The files that are read to create the roles of a project. Not <code>null</code>.
+   */
+  public String[] getProjectFiles() {
+    return this._projectFiles;
+  }
+
   /**
    * Loads the configured RoleIdentifiers
    */
@@ -100,6 +117,13 @@ public class ProjectRoleIdentifierRegistry {
     }
 
     this._projectRoleIdentifiers = roleIdentifiers;
+
+    // collect the files that are read by the RoleIdentifiers
+    Set<String> projectFiles = new LinkedHashSet<String>();
+    for (ProjectRoleIdentifier roleIdentifier : roleIdentifiers) {
+      projectFiles.addAll(Arrays.asList(roleIdentifier.getProjectFiles()));
+    }
+    this._projectFiles = projectFiles.toArray(new String[projectFiles.size()]);
   }
 
 }
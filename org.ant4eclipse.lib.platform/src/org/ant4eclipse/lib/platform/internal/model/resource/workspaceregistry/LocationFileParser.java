@@ -57,17 +57,15 @@ public class LocationFileParser {
       // read the location of the project directory
       File projectDir = readLocation(locationFile);
 
-      // check if projectDir is valid
+      // check if projectDir is valid (the directory only has to be checked if there's no '.project' file)
       if (projectDir != null) {
-        if (projectDir.isDirectory()) {
-          File projectfile = new File(projectDir, ".project");
-          if (projectfile.isFile()) {
-            return projectDir;
-          } else {
-            A4ELogging.debug(
-                "LocationFileParser.getProjectDirectory(): the project '%s' doesn't provide an Eclipse configuration",
-                projectDir.getAbsolutePath());
-          }
+        File projectfile = new File(projectDir, ".project");
+        if (projectfile.isFile()) {
+          return projectDir;
+        } else if (projectDir.isDirectory()) {
+          A4ELogging.debug(
+              "LocationFileParser.getProjectDirectory(): the project '%s' doesn't provide an Eclipse configuration",
+              projectDir.getAbsolutePath());
         } else {
           A4ELogging.debug("LocationFileParser.getProjectDirectory(): the stored location '%s' is not a directory",
               projectDir);
@@ -47,6 +47,23 @@ public class ProjectFactory {
    * @return a configured EclipseProject instance
    */
   public EclipseProject readProjectFromWorkspace(WorkspaceImpl workspace, File projectDirectory) {
+    return readProjectFromWorkspace(workspace, projectDirectory, null);
+  }
+
+  /**
+   * Reads the configuration for the given project and sets up a new EclipseProject for it. The project description is
+   * taken from the given snapshot entry instead of the '.project' file if possible.
+   * 
+   * @param workspace
+   *          The workspace that contains the project
+   * @param projectDirectory
+   *          The root directory of the project
+   * @param snapshotEntry
+   *          The snapshot entry of the unchanged project directory (might be <code>null</code>)
+   * @return a configured EclipseProject instance
+   */
+  public EclipseProjectImpl readProjectFromWorkspace(WorkspaceImpl workspace, File projectDirectory,
+      WorkspaceSnapshot.ProjectEntry snapshotEntry) {
 
     A4ELogging.trace("ProjectFactory: readProjectFromWorkspace(%s, %s)", workspace, projectDirectory.getAbsolutePath());
 
@@ -56,7 +73,11 @@ public class ProjectFactory {
     EclipseProjectImpl project = new EclipseProjectImpl(workspace, projectDirectory);
 
     // parses the project description
-    ProjectFileParser.parseProject(project);
+    if ((snapshotEntry != null) && snapshotEntry.hasDescription()) {
+      snapshotEntry.applyDescription(project);
+    } else {
+      ProjectFileParser.parseProject(project);
+    }
 
     // apply role specific information
     this._projectRoleIdentifierRegistry.applyRoles(project);
@@ -66,6 +87,15 @@ public class ProjectFactory {
 
   }
 
+  /**
+   * Returns the files that are read to create the roles of a project (relative to the project folder).
+   * 
+   * @return the files that are read to create the roles of a project. Not <code>null</code>.
+   */
+  public String[] getProjectFiles() {
+    return this._projectRoleIdentifierRegistry.getProjectFiles();
+  }
+
   /**
    * Performs a postprocessing for each registere project role. The project roles already have been setup but operations
    * that might require to have access to other projects can be performed now.
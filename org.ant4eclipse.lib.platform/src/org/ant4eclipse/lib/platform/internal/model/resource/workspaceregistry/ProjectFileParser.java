@@ -179,8 +179,8 @@ public class ProjectFileParser {
    * @return true, if the directory is an eclipse project directory
    */
   public static boolean isProjectDirectory(File directory) {
-    return directory != null && directory.exists() && directory.isDirectory()
-        && new File(directory, ".project").exists();
+    // a '.project' file can only exist within a directory
+    return directory != null && new File(directory, ".project").isFile();
   }
 
   /*
@@ -14,14 +14,24 @@ package org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.ConcurrencyHelper;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.platform.internal.model.resource.EclipseProjectImpl;
 import org.ant4eclipse.lib.platform.internal.model.resource.WorkspaceImpl;
 import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.WorkspaceChangeEvent;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.RegistrationTimings;
 import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceDefinition;
 import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceRegistry;
 
@@ -34,6 +44,13 @@ import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceRe
  */
 public class WorkspaceRegistryImpl implements WorkspaceRegistry {
 
+  /** the system property that specifies the default number of threads used to register a workspace */
+  public static final String                           THREADS_PROPERTY = "ant4eclipse.workspace.threads";
+
+  /** the default number of threads used to register a workspace */
+  private static final int                             DEFAULT_THREADS  = Math.max(1, Integer.getInteger(
+                                                                            THREADS_PROPERTY, 1).intValue());
+
   /** The factory used to build projects */
   private ProjectFactory                               _projectFactory;
 
@@ -89,56 +106,355 @@ public class WorkspaceRegistryImpl implements WorkspaceRegistry {
     return this._registry.containsKey(id);
   }
 
+  /**
+   * {@inheritDoc}
+   */
   public void refreshWorkspace(String id) {
     Assure.nonEmpty("id", id);
-    if (!this._registry.containsKey(id)) {
+
+    // Get original definition
+    WorkspaceDefinitionAndWorkspace previous = this._registry.get(id);
+    if (previous == null) {
       A4ELogging.warn("Attempt to refresh non-existing workspace with id '%s' ignored.", id);
+      return;
     }
 
-    // Get original definition
-    WorkspaceDefinitionAndWorkspace workspaceDefinitionAndWorkspace = this._registry.get(id);
+    WorkspaceImpl workspace = (WorkspaceImpl) previous.getWorkspace();
+    WorkspaceSnapshot previousSnapshot = previous.getSnapshot();
+    WorkspaceSnapshot snapshot = new WorkspaceSnapshot();
+    int threadCount = previous.getRegistrationTimings().getThreadCount();
 
-    // re-register workspace
-    registerWorkspace(id, workspaceDefinitionAndWorkspace.getWorkspaceDefinition());
+    // the projects of the previous registration (key: the project folder)
+    Map<File, EclipseProject> previousProjects = new LinkedHashMap<File, EclipseProject>();
+    for (EclipseProject project : workspace.getAllProjects()) {
+      previousProjects.put(project.getFolder(), project);
+    }
+
+    List<EclipseProject> addedProjects = new ArrayList<EclipseProject>();
+    List<EclipseProject> modifiedProjects = new ArrayList<EclipseProject>();
+    List<EclipseProject> replacedProjects = new ArrayList<EclipseProject>();
+    List<EclipseProject> removedProjects;
+
+    // the executor is used to discover, read and post process the project folders
+    ExecutorService executor = newExecutor(threadCount);
+    File[] projectFolders;
+    long discoveryTime;
+    long readTime;
+    long postProcessTime;
+    try {
+
+      long start = System.currentTimeMillis();
+      projectFolders = previous.getWorkspaceDefinition().getProjectFolders(executor);
+      discoveryTime = System.currentTimeMillis() - start;
+
+      // keep the projects whose folders haven't been changed. the descriptions of projects with linked resources
+      // aren't part of the snapshot, so these projects are always read again
+      start = System.currentTimeMillis();
+      EclipseProject[] projects = new EclipseProject[projectFolders.length];
+      EclipseProject[] outdatedProjects = new EclipseProject[projectFolders.length];
+      List<File> changedFolders = new ArrayList<File>();
+      String[] projectFiles = this._projectFactory.getProjectFiles();
+      for (int i = 0; i < projectFolders.length; i++) {
+        EclipseProject project = previousProjects.remove(Utilities.getCanonicalFile(projectFolders[i]));
+        WorkspaceSnapshot.ProjectEntry entry = previousSnapshot.getEntry(projectFolders[i]);
+        if ((project != null) && (entry != null) && entry.hasDescription()
+            && entry.getStamp().equals(WorkspaceSnapshot.createStamp(projectFolders[i], projectFiles))) {
+          projects[i] = project;
+          snapshot.addEntry(projectFolders[i], entry);
+        } else {
+          outdatedProjects[i] = project;
+          changedFolders.add(projectFolders[i]);
+        }
+      }
+      removedProjects = new ArrayList<EclipseProject>(previousProjects.values());
+
+      // read the changed and the new project folders
+      List<EclipseProject> changedProjects = readProjects(executor, workspace, changedFolders.toArray(new File[0]),
+          previousSnapshot, snapshot);
+      for (int i = 0, j = 0; i < projects.length; i++) {
+        if (projects[i] == null) {
+          projects[i] = changedProjects.get(j++);
+          if (outdatedProjects[i] == null) {
+            addedProjects.add(projects[i]);
+          } else {
+            modifiedProjects.add(projects[i]);
+            replacedProjects.add(outdatedProjects[i]);
+          }
+        }
+      }
+
+      // check for projects with the same name (in the order of the project folders) before the workspace is changed
+      WorkspaceImpl check = new WorkspaceImpl();
+      for (EclipseProject project : projects) {
+        check.registerEclipseProject(project);
+      }
+
+      // update the workspace
+      for (EclipseProject project : removedProjects) {
+        workspace.removeEclipseProject(project);
+      }
+      for (EclipseProject project : replacedProjects) {
+        workspace.removeEclipseProject(project);
+      }
+      for (EclipseProject project : changedProjects) {
+        workspace.registerEclipseProject(project);
+      }
+      readTime = System.currentTimeMillis() - start;
+
+      start = System.currentTimeMillis();
+      postProcessProjects(executor, changedProjects);
+      postProcessTime = System.currentTimeMillis() - start;
+
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+
+    RegistrationTimings timings = new RegistrationTimings(projectFolders.length, threadCount, discoveryTime, readTime,
+        postProcessTime);
+    WorkspaceChangeEvent event = new WorkspaceChangeEvent(workspace, addedProjects.toArray(new EclipseProject[0]),
+        removedProjects.toArray(new EclipseProject[0]), modifiedProjects.toArray(new EclipseProject[0]),
+        replacedProjects.toArray(new EclipseProject[0]));
+    if (A4ELogging.isDebuggingEnabled()) {
+      A4ELogging.debug("WorkspaceRegistry.refreshWorkspace: %s, %s.", event, timings);
+    }
+
+    if (previous.getSnapshotFile() != null) {
+      snapshot.write(previous.getSnapshotFile());
+    }
+    this._registry.put(id, new WorkspaceDefinitionAndWorkspace(previous.getWorkspaceDefinition(), workspace, timings,
+        snapshot, previous.getSnapshotFile()));
+
+    // notify the listeners
+    if (event.hasAddedOrRemovedProjects() || (event.getModifiedProjects().length > 0)) {
+      workspace.fireWorkspaceChanged(event);
+    }
   }
 
   /**
    * {@inheritDoc}
    */
   public Workspace registerWorkspace(String id, WorkspaceDefinition workspaceDefinition) {
+    return registerWorkspace(id, workspaceDefinition, DEFAULT_THREADS);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Workspace registerWorkspace(String id, WorkspaceDefinition workspaceDefinition, int threadCount) {
+    return registerWorkspace(id, workspaceDefinition, threadCount, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Workspace registerWorkspace(String id, WorkspaceDefinition workspaceDefinition, int threadCount,
+      File snapshotFile) {
     Assure.nonEmpty("id", id);
     Assure.notNull("workspaceDefinition", workspaceDefinition);
+    Assure.assertTrue(threadCount >= 0, "Parameter 'threadCount' must not be negative");
+    if (threadCount == 0) {
+      threadCount = DEFAULT_THREADS;
+    }
+
+    // the snapshot of the previous registration of this workspace (if any) tells which projects have been changed
+    WorkspaceSnapshot previousSnapshot;
+    WorkspaceDefinitionAndWorkspace previous = this._registry.get(id);
+    if (previous != null) {
+      previousSnapshot = previous.getSnapshot();
+    } else if (snapshotFile != null) {
+      previousSnapshot = WorkspaceSnapshot.read(snapshotFile);
+    } else {
+      previousSnapshot = new WorkspaceSnapshot();
+    }
+    WorkspaceSnapshot snapshot = new WorkspaceSnapshot();
 
     // create new workspace implementation
     WorkspaceImpl workspace = new WorkspaceImpl();
 
-    // retrieve all project folders from the workspace definition
-    File[] projectFolders = workspaceDefinition.getProjectFolders();
-
-    if (A4ELogging.isDebuggingEnabled()) {
-      A4ELogging.debug("WorkspaceRegistry.registerWorkspace: project directory count=%d.",
-          Integer.valueOf(projectFolders.length));
+    // the executor is used to discover, read and post process the project folders
+    ExecutorService executor = newExecutor(threadCount);
+    File[] projectFolders;
+    long discoveryTime;
+    long readTime;
+    long postProcessTime;
+    try {
+
+      // retrieve all project folders from the workspace definition
+      long start = System.currentTimeMillis();
+      projectFolders = workspaceDefinition.getProjectFolders(executor);
+      discoveryTime = System.currentTimeMillis() - start;
+
+      if (A4ELogging.isDebuggingEnabled()) {
+        A4ELogging.debug("WorkspaceRegistry.registerWorkspace: project directory count=%d.",
+            Integer.valueOf(projectFolders.length));
+      }
+
+      // read the projects and add them to the workspace. the projects are registered in the order of their folders, so
+      // the detection of projects with the same name doesn't depend on the order in which the threads finish
+      start = System.currentTimeMillis();
+      List<EclipseProject> projects = readProjects(executor, workspace, projectFolders, previousSnapshot, snapshot);
+      for (EclipseProject eclipseProject : projects) {
+        workspace.registerEclipseProject(eclipseProject);
+      }
+      readTime = System.currentTimeMillis() - start;
+
+      start = System.currentTimeMillis();
+      postProcessProjects(executor, projects);
+      postProcessTime = System.currentTimeMillis() - start;
+
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
     }
 
-    // read the projects and add them to the workspace
-    List<EclipseProject> projects = new ArrayList<EclipseProject>();
-    for (File projectFolder : projectFolders) {
-      EclipseProject eclipseProject = this._projectFactory.readProjectFromWorkspace(workspace, projectFolder);
-      projects.add(eclipseProject);
-      workspace.registerEclipseProject(eclipseProject);
+    RegistrationTimings timings = new RegistrationTimings(projectFolders.length, threadCount, discoveryTime, readTime,
+        postProcessTime);
+    if (A4ELogging.isDebuggingEnabled()) {
+      A4ELogging.debug("WorkspaceRegistry.registerWorkspace: %s.", timings);
     }
 
-    for (EclipseProject project : projects) {
-      this._projectFactory.postProcessRoleSetup(project);
+    if (snapshotFile != null) {
+      snapshot.write(snapshotFile);
     }
 
     // add the workspace to the registry
-    this._registry.put(id, new WorkspaceDefinitionAndWorkspace(workspaceDefinition, workspace));
+    this._registry.put(id, new WorkspaceDefinitionAndWorkspace(workspaceDefinition, workspace, timings, snapshot,
+        snapshotFile));
 
     // return the workspace
     return workspace;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public RegistrationTimings getRegistrationTimings(String id) {
+    WorkspaceDefinitionAndWorkspace workspaceDefinitionAndWorkspace = this._registry.get(id);
+    return workspaceDefinitionAndWorkspace != null ? workspaceDefinitionAndWorkspace.getRegistrationTimings() : null;
+  }
+
+  /**
+   * <p>
+   * Creates the executor used to discover, read and post process the projects of a workspace. The threads of the
+   * executor are only started when tasks are submitted, so there are no more threads than projects.
+   * </p>
+   * 
+   * @param threadCount
+   *          the number of threads
+   * @return the executor or <code>null</code> if the projects should be read by the current thread
+   */
+  private static ExecutorService newExecutor(int threadCount) {
+    return threadCount > 1 ? Executors.newFixedThreadPool(threadCount) : null;
+  }
+
+  /**
+   * <p>
+   * Reads the projects from the given folders.
+   * </p>
+   * 
+   * @param executor
+   *          the executor used to read the projects (<code>null</code> if the projects should be read by the current
+   *          thread)
+   * @param workspace
+   *          the workspace that contains the projects
+   * @param projectFolders
+   *          the project folders
+   * @param previousSnapshot
+   *          the snapshot of the previous registration
+   * @param snapshot
+   *          the snapshot that receives the entries of the projects
+   * @return the projects in the order of the project folders
+   */
+  private List<EclipseProject> readProjects(ExecutorService executor, final WorkspaceImpl workspace,
+      File[] projectFolders, final WorkspaceSnapshot previousSnapshot, final WorkspaceSnapshot snapshot) {
+    List<EclipseProject> projects = new ArrayList<EclipseProject>();
+    if (executor == null) {
+      for (File projectFolder : projectFolders) {
+        projects.add(readProject(workspace, projectFolder, previousSnapshot, snapshot));
+      }
+      return projects;
+    }
+    List<Future<EclipseProject>> futures = new ArrayList<Future<EclipseProject>>();
+    for (final File projectFolder : projectFolders) {
+      futures.add(executor.submit(new Callable<EclipseProject>() {
+        public EclipseProject call() {
+          return readProject(workspace, projectFolder, previousSnapshot, snapshot);
+        }
+      }));
+    }
+    for (Future<EclipseProject> future : futures) {
+      projects.add(ConcurrencyHelper.get(future));
+    }
+    return projects;
+  }
+
+  /**
+   * <p>
+   * Reads the project from the given folder. If the folder hasn't been changed since the previous snapshot, the project
+   * description is taken from the previous snapshot.
+   * </p>
+   * 
+   * @param workspace
+   *          the workspace that contains the project
+   * @param projectFolder
+   *          the project folder
+   * @param previousSnapshot
+   *          the snapshot of the previous registration
+   * @param snapshot
+   *          the snapshot that receives the entry of the project
+   * @return the project
+   */
+  private EclipseProject readProject(WorkspaceImpl workspace, File projectFolder, WorkspaceSnapshot previousSnapshot,
+      WorkspaceSnapshot snapshot) {
+    WorkspaceSnapshot.ProjectStamp stamp = WorkspaceSnapshot.createStamp(projectFolder, this._projectFactory
+        .getProjectFiles());
+    WorkspaceSnapshot.ProjectEntry entry = previousSnapshot.getEntry(projectFolder);
+    if ((entry != null) && entry.getStamp().equals(stamp) && entry.hasDescription()) {
+      A4ELogging.trace("WorkspaceRegistry: project folder '%s' is unchanged", projectFolder);
+      EclipseProject project = this._projectFactory.readProjectFromWorkspace(workspace, projectFolder, entry);
+      snapshot.addEntry(projectFolder, entry);
+      return project;
+    }
+    EclipseProjectImpl project = this._projectFactory.readProjectFromWorkspace(workspace, projectFolder, null);
+    snapshot.addEntry(projectFolder, new WorkspaceSnapshot.ProjectEntry(stamp, project));
+    return project;
+  }
+
+  /**
+   * <p>
+   * Performs the post processing of the project roles for the given projects.
+   * </p>
+   * 
+   * @param executor
+   *          the executor used to post process the projects (<code>null</code> if the projects should be post
+   *          processed by the current thread)
+   * @param projects
+   *          the projects
+   */
+  private void postProcessProjects(ExecutorService executor, List<EclipseProject> projects) {
+    if (executor == null) {
+      for (EclipseProject project : projects) {
+        this._projectFactory.postProcessRoleSetup(project);
+      }
+      return;
+    }
+    List<Future<Object>> futures = new ArrayList<Future<Object>>();
+    for (final EclipseProject project : projects) {
+      futures.add(executor.submit(new Callable<Object>() {
+        public Object call() {
+          WorkspaceRegistryImpl.this._projectFactory.postProcessRoleSetup(project);
+          return project;
+        }
+      }));
+    }
+    for (Future<Object> future : futures) {
+      ConcurrencyHelper.get(future);
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -168,10 +484,20 @@ public class WorkspaceRegistryImpl implements WorkspaceRegistry {
 
     private final Workspace           _workspace;
 
-    public WorkspaceDefinitionAndWorkspace(WorkspaceDefinition workspaceDefinition, Workspace workspace) {
+    private final RegistrationTimings _registrationTimings;
+
+    private final WorkspaceSnapshot   _snapshot;
+
+    private final File                _snapshotFile;
+
+    public WorkspaceDefinitionAndWorkspace(WorkspaceDefinition workspaceDefinition, Workspace workspace,
+        RegistrationTimings registrationTimings, WorkspaceSnapshot snapshot, File snapshotFile) {
       super();
       this._workspaceDefinition = workspaceDefinition;
       this._workspace = workspace;
+      this._registrationTimings = registrationTimings;
+      this._snapshot = snapshot;
+      this._snapshotFile = snapshotFile;
     }
 
     public WorkspaceDefinition getWorkspaceDefinition() {
@@ -182,6 +508,18 @@ public class WorkspaceRegistryImpl implements WorkspaceRegistry {
       return this._workspace;
     }
 
+    public RegistrationTimings getRegistrationTimings() {
+      return this._registrationTimings;
+    }
+
+    public WorkspaceSnapshot getSnapshot() {
+      return this._snapshot;
+    }
+
+    public File getSnapshotFile() {
+      return this._snapshotFile;
+    }
+
   }
 
 }
@@ -0,0 +1,456 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry;
+
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.platform.internal.model.resource.BuildCommandImpl;
+import org.ant4eclipse.lib.platform.internal.model.resource.EclipseProjectImpl;
+import org.ant4eclipse.lib.platform.internal.model.resource.ProjectNatureImpl;
+import org.ant4eclipse.lib.platform.model.resource.BuildCommand;
+import org.ant4eclipse.lib.platform.model.resource.ProjectNature;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * A snapshot of the projects of a workspace. For each project folder the snapshot contains a stamp of the files that
+ * describe the project (<code>.project</code>, the files within <code>.settings</code> and the files read by the
+ * project role identifiers, e.g. <code>.classpath</code> or <code>feature.xml</code>) and the project description
+ * read from the <code>.project</code> file. As long as the stamp of a project doesn't change, the project description can be
+ * taken from the snapshot instead of parsing the <code>.project</code> file again. Only the <code>.project</code>
+ * file is skipped: the roles of the project are always determined again by the registered project role identifiers.
+ * </p>
+ * <p>
+ * The descriptions of projects with linked resources are not contained, since the locations of linked resources depend
+ * on path variables.
+ * </p>
+ * <p>
+ * A snapshot can be stored in a compact binary file, so it can be reused by the next build.
+ * </p>
+ */
+public final class WorkspaceSnapshot {
+
+  /** the file (relative to the project folder) that is part of the stamp of every project */
+  private static final String       PROJECT_FILE    = ".project";
+
+  /** the folder (relative to the project folder) whose files are part of the stamp of a project */
+  private static final String       STAMPED_FOLDER  = ".settings";
+
+  /** the magic number of a snapshot file */
+  private static final int          MAGIC           = 0x41344557;
+
+  /** the version of the snapshot file format */
+  private static final int          VERSION         = 3;
+
+  /** the entries of the snapshot (key: the absolute path of the project folder) */
+  private Map<String, ProjectEntry> _entries;
+
+  /**
+   * <p>
+   * Creates a new, empty instance of type {@link WorkspaceSnapshot}.
+   * </p>
+   */
+  public WorkspaceSnapshot() {
+    this._entries = new HashMap<String, ProjectEntry>();
+  }
+
+  /**
+   * <p>
+   * Returns the entry for the given project folder.
+   * </p>
+   *
+   * @param projectFolder
+   *          the project folder
+   * @return the entry for the given project folder or <code>null</code> if the snapshot doesn't contain the folder
+   */
+  public synchronized ProjectEntry getEntry(File projectFolder) {
+    return this._entries.get(projectFolder.getAbsolutePath());
+  }
+
+  /**
+   * <p>
+   * Adds the entry for the given project folder.
+   * </p>
+   *
+   * @param projectFolder
+   *          the project folder
+   * @param entry
+   *          the entry
+   */
+  public synchronized void addEntry(File projectFolder, ProjectEntry entry) {
+    this._entries.put(projectFolder.getAbsolutePath(), entry);
+  }
+
+  /**
+   * <p>
+   * Returns the number of entries.
+   * </p>
+   *
+   * @return the number of entries
+   */
+  public synchronized int size() {
+    return this._entries.size();
+  }
+
+  /**
+   * <p>
+   * Calculates the stamp of the given project folder. The stamp changes whenever one of the files describing the project
+   * is added, removed or modified.
+   * </p>
+   *
+   * @param projectFolder
+   *          the project folder
+   * @param projectFiles
+   *          the files (relative to the project folder) that are read by the project role identifiers
+   * @return the stamp
+   */
+  public static ProjectStamp createStamp(File projectFolder, String[] projectFiles) {
+    List<String> names = new ArrayList<String>();
+    names.add(PROJECT_FILE);
+    names.addAll(Arrays.asList(projectFiles));
+    String[] settings = new File(projectFolder, STAMPED_FOLDER).list();
+    if (settings != null) {
+      Arrays.sort(settings);
+      for (String setting : settings) {
+        names.add(STAMPED_FOLDER + "/" + setting);
+      }
+    }
+    ProjectStamp result = new ProjectStamp(names.size());
+    for (int i = 0; i < result._names.length; i++) {
+      // a file that doesn't exist has neither a modification time nor a length
+      File file = new File(projectFolder, names.get(i));
+      result._names[i] = names.get(i);
+      result._lastModified[i] = file.lastModified();
+      result._lengths[i] = file.length();
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Reads a snapshot from the given file. If the file doesn't exist or can't be read an empty snapshot is returned.
+   * </p>
+   *
+   * @param file
+   *          the snapshot file
+   * @return the snapshot
+   */
+  public static WorkspaceSnapshot read(File file) {
+    WorkspaceSnapshot result = new WorkspaceSnapshot();
+    if (!file.isFile()) {
+      return result;
+    }
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if ((input.readInt() != MAGIC) || (input.readInt() != VERSION)) {
+        A4ELogging.debug("Ignoring workspace snapshot '%s' with an unknown format.", file);
+        return result;
+      }
+      int count = input.readInt();
+      for (int i = 0; i < count; i++) {
+        String projectFolder = input.readUTF();
+        ProjectStamp stamp = ProjectStamp.read(input);
+        String specifiedName = readString(input);
+        String comment = readString(input);
+        String[] referencedProjects = readStrings(input);
+        String[] natures = readStrings(input);
+        String[] buildCommands = readStrings(input);
+        result._entries.put(projectFolder, new ProjectEntry(stamp, specifiedName, comment, referencedProjects, natures,
+            buildCommands));
+      }
+    } catch (IOException ex) {
+      A4ELogging.warn("Failed to read the workspace snapshot '%s': %s", file, ex.getMessage());
+      return new WorkspaceSnapshot();
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Writes this snapshot to the given file. A failure is only logged since the snapshot is just an optimization.
+   * </p>
+   *
+   * @param file
+   *          the snapshot file
+   */
+  public synchronized void write(File file) {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      Utilities.mkdirs(parent);
+    }
+    DataOutputStream output = null;
+    boolean failed = false;
+    try {
+      output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(this._entries.size());
+      for (Map.Entry<String, ProjectEntry> entry : this._entries.entrySet()) {
+        ProjectEntry projectEntry = entry.getValue();
+        output.writeUTF(entry.getKey());
+        projectEntry._stamp.write(output);
+        writeString(output, projectEntry._specifiedName);
+        writeString(output, projectEntry._comment);
+        writeStrings(output, projectEntry._referencedProjects);
+        writeStrings(output, projectEntry._natures);
+        writeStrings(output, projectEntry._buildCommands);
+      }
+    } catch (IOException ex) {
+      A4ELogging.warn("Failed to write the workspace snapshot '%s': %s", file, ex.getMessage());
+      failed = true;
+    } finally {
+      Utilities.close((Closeable) output);
+    }
+    if (failed) {
+      Utilities.delete(file);
+    }
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    return input.readBoolean() ? input.readUTF() : null;
+  }
+
+  private static String[] readStrings(DataInputStream input) throws IOException {
+    int count = input.readInt();
+    if (count < 0) {
+      return null;
+    }
+    String[] result = new String[count];
+    for (int i = 0; i < count; i++) {
+      result[i] = input.readUTF();
+    }
+    return result;
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    output.writeBoolean(value != null);
+    if (value != null) {
+      output.writeUTF(value);
+    }
+  }
+
+  private static void writeStrings(DataOutputStream output, String[] values) throws IOException {
+    if (values == null) {
+      output.writeInt(-1);
+      return;
+    }
+    output.writeInt(values.length);
+    for (String value : values) {
+      output.writeUTF(value);
+    }
+  }
+
+  /**
+   * <p>
+   * The stamp of a single project folder: the name, the modification time and the length of each file describing the
+   * project. Two stamps are only equal if all of these values are equal.
+   * </p>
+   */
+  public static final class ProjectStamp {
+
+    /** the names of the files (relative to the project folder) */
+    private String[] _names;
+
+    /** the modification times of the files (<code>0</code> if a file doesn't exist) */
+    private long[]   _lastModified;
+
+    /** the lengths of the files (<code>0</code> if a file doesn't exist) */
+    private long[]   _lengths;
+
+    private ProjectStamp(int count) {
+      this._names = new String[count];
+      this._lastModified = new long[count];
+      this._lengths = new long[count];
+    }
+
+    private static ProjectStamp read(DataInputStream input) throws IOException {
+      ProjectStamp result = new ProjectStamp(input.readInt());
+      for (int i = 0; i < result._names.length; i++) {
+        result._names[i] = input.readUTF();
+        result._lastModified[i] = input.readLong();
+        result._lengths[i] = input.readLong();
+      }
+      return result;
+    }
+
+    private void write(DataOutputStream output) throws IOException {
+      output.writeInt(this._names.length);
+      for (int i = 0; i < this._names.length; i++) {
+        output.writeUTF(this._names[i]);
+        output.writeLong(this._lastModified[i]);
+        output.writeLong(this._lengths[i]);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null) {
+        return false;
+      }
+      if (obj.getClass() != getClass()) {
+        return false;
+      }
+      ProjectStamp other = (ProjectStamp) obj;
+      return Arrays.equals(this._names, other._names) && Arrays.equals(this._lastModified, other._lastModified)
+          && Arrays.equals(this._lengths, other._lengths);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      int hashCode = Arrays.hashCode(this._names);
+      hashCode = 31 * hashCode + Arrays.hashCode(this._lastModified);
+      hashCode = 31 * hashCode + Arrays.hashCode(this._lengths);
+      return hashCode;
+    }
+
+  } /* ENDCLASS */
+
+  /**
+   * <p>
+   * The entry of a single project: the stamp and (if it can be reused) the project description.
+   * </p>
+   */
+  public static final class ProjectEntry {
+
+    /** the stamp of the project folder */
+    private ProjectStamp _stamp;
+
+    /** the specified name of the project (<code>null</code> if the description can't be reused) */
+    private String       _specifiedName;
+
+    /** the comment */
+    private String       _comment;
+
+    /** the names of the referenced projects */
+    private String[]     _referencedProjects;
+
+    /** the names of the natures */
+    private String[]     _natures;
+
+    /** the names of the build commands */
+    private String[]     _buildCommands;
+
+    private ProjectEntry(ProjectStamp stamp, String specifiedName, String comment, String[] referencedProjects,
+        String[] natures, String[] buildCommands) {
+      this._stamp = stamp;
+      this._specifiedName = specifiedName;
+      this._comment = comment;
+      this._referencedProjects = referencedProjects;
+      this._natures = natures;
+      this._buildCommands = buildCommands;
+    }
+
+    /**
+     * <p>
+     * Creates the entry for the given project.
+     * </p>
+     *
+     * @param stamp
+     *          the stamp of the project folder
+     * @param project
+     *          the project
+     */
+    public ProjectEntry(ProjectStamp stamp, EclipseProjectImpl project) {
+      this._stamp = stamp;
+      if (project.hasLinkedResources()) {
+        // the description can't be reused
+        return;
+      }
+      this._specifiedName = project.getSpecifiedName();
+      this._comment = project.getComment();
+      this._referencedProjects = project.getReferencedProjects();
+      ProjectNature[] natures = project.getNatures();
+      this._natures = new String[natures.length];
+      for (int i = 0; i < natures.length; i++) {
+        this._natures[i] = natures[i].getName();
+      }
+      BuildCommand[] buildCommands = project.getBuildCommands();
+      this._buildCommands = new String[buildCommands.length];
+      for (int i = 0; i < buildCommands.length; i++) {
+        this._buildCommands[i] = buildCommands[i].getName();
+      }
+    }
+
+    /**
+     * <p>
+     * Returns the stamp of the project folder.
+     * </p>
+     *
+     * @return the stamp of the project folder
+     */
+    public ProjectStamp getStamp() {
+      return this._stamp;
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the project description can be taken from this entry.
+     * </p>
+     *
+     * @return <code>true</code> if the project description can be taken from this entry
+     */
+    public boolean hasDescription() {
+      return this._specifiedName != null;
+    }
+
+    /**
+     * <p>
+     * Applies the project description of this entry to the given project (instead of parsing the <code>.project</code>
+     * file).
+     * </p>
+     *
+     * @param project
+     *          the project
+     */
+    public void applyDescription(EclipseProjectImpl project) {
+      project.setSpecifiedName(this._specifiedName);
+      project.setComment(this._comment);
+      for (String referencedProject : this._referencedProjects) {
+        project.addReferencedProject(referencedProject);
+      }
+      for (String nature : this._natures) {
+        project.addNature(new ProjectNatureImpl(nature));
+      }
+      for (String buildCommand : this._buildCommands) {
+        project.addBuildCommand(new BuildCommandImpl(buildCommand));
+      }
+    }
+
+  } /* ENDCLASS */
+
+} /* ENDCLASS */
@@ -88,4 +88,25 @@ public interface Workspace {
    */
   EclipseProject[] getAllProjects(Class<? extends ProjectRole> projectRole);
 
+  /**
+   * <p>
+   * Adds a {@link WorkspaceListener} that is notified whenever the projects of this {@link Workspace} are changed by a
+   * refresh. Adding a listener that has already been added has no effect.
+   * </p>
+   * 
+   * @param listener
+   *          the listener
+   */
+  void addWorkspaceListener(WorkspaceListener listener);
+
+  /**
+   * <p>
+   * Removes the given {@link WorkspaceListener}.
+   * </p>
+   * 
+   * @param listener
+   *          the listener
+   */
+  void removeWorkspaceListener(WorkspaceListener listener);
+
 } /* ENDCLASS */
\ No newline at end of file
@@ -0,0 +1,185 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.platform.model.resource;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.platform.model.resource.role.ProjectRole;
+
+/**
+ * <p>
+ * Describes the changes of a {@link Workspace} caused by a refresh: the projects that have been added, the projects
+ * that have been removed and the projects that have been modified.
+ * </p>
+ * <p>
+ * A modified project is read again, so the workspace contains a new {@link EclipseProject} instance for it. The new
+ * instances are returned by {@link #getModifiedProjects()}, the replaced instances by {@link #getOutdatedProjects()}
+ * (both arrays have the same order).
+ * </p>
+ */
+public final class WorkspaceChangeEvent {
+
+  /** the changed workspace */
+  private Workspace        _workspace;
+
+  /** the added projects */
+  private EclipseProject[] _addedProjects;
+
+  /** the removed projects */
+  private EclipseProject[] _removedProjects;
+
+  /** the new instances of the modified projects */
+  private EclipseProject[] _modifiedProjects;
+
+  /** the replaced instances of the modified projects */
+  private EclipseProject[] _outdatedProjects;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link WorkspaceChangeEvent}.
+   * </p>
+   * 
+   * @param workspace
+   *          the changed workspace
+   * @param addedProjects
+   *          the added projects
+   * @param removedProjects
+   *          the removed projects
+   * @param modifiedProjects
+   *          the new instances of the modified projects
+   * @param outdatedProjects
+   *          the replaced instances of the modified projects
+   */
+  public WorkspaceChangeEvent(Workspace workspace, EclipseProject[] addedProjects, EclipseProject[] removedProjects,
+      EclipseProject[] modifiedProjects, EclipseProject[] outdatedProjects) {
+    Assure.notNull("workspace", workspace);
+    Assure.notNull("addedProjects", addedProjects);
+    Assure.notNull("removedProjects", removedProjects);
+    Assure.notNull("modifiedProjects", modifiedProjects);
+    Assure.notNull("outdatedProjects", outdatedProjects);
+    Assure.assertTrue(modifiedProjects.length == outdatedProjects.length,
+        "Parameters 'modifiedProjects' and 'outdatedProjects' must have the same length");
+    this._workspace = workspace;
+    this._addedProjects = addedProjects;
+    this._removedProjects = removedProjects;
+    this._modifiedProjects = modifiedProjects;
+    this._outdatedProjects = outdatedProjects;
+  }
+
+  /**
+   * <p>
+   * Returns the changed workspace.
+   * </p>
+   * 
+   * @return the changed workspace.
+   */
+  public Workspace getWorkspace() {
+    return this._workspace;
+  }
+
+  /**
+   * <p>
+   * Returns the projects that have been added to the workspace.
+   * </p>
+   * 
+   * @return the added projects.
+   */
+  public EclipseProject[] getAddedProjects() {
+    return this._addedProjects;
+  }
+
+  /**
+   * <p>
+   * Returns the projects that have been removed from the workspace.
+   * </p>
+   * 
+   * @return the removed projects.
+   */
+  public EclipseProject[] getRemovedProjects() {
+    return this._removedProjects;
+  }
+
+  /**
+   * <p>
+   * Returns the new instances of the projects that have been modified.
+   * </p>
+   * 
+   * @return the new instances of the modified projects.
+   */
+  public EclipseProject[] getModifiedProjects() {
+    return this._modifiedProjects;
+  }
+
+  /**
+   * <p>
+   * Returns the replaced instances of the projects that have been modified.
+   * </p>
+   * 
+   * @return the replaced instances of the modified projects.
+   */
+  public EclipseProject[] getOutdatedProjects() {
+    return this._outdatedProjects;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if projects have been added to or removed from the workspace.
+   * </p>
+   * 
+   * @return <code>true</code> if projects have been added to or removed from the workspace.
+   */
+  public boolean hasAddedOrRemovedProjects() {
+    return (this._addedProjects.length > 0) || (this._removedProjects.length > 0);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if at least one of the added, removed or modified projects (old or new instance) has the
+   * given role.
+   * </p>
+   * 
+   * @param projectRole
+   *          the class of the project role
+   * @return <code>true</code> if a changed project has the given role.
+   */
+  public boolean affectsRole(Class<? extends ProjectRole> projectRole) {
+    Assure.notNull("projectRole", projectRole);
+    return hasRole(this._addedProjects, projectRole) || hasRole(this._removedProjects, projectRole)
+        || hasRole(this._modifiedProjects, projectRole) || hasRole(this._outdatedProjects, projectRole);
+  }
+
+  private static boolean hasRole(EclipseProject[] projects, Class<? extends ProjectRole> projectRole) {
+    for (EclipseProject project : projects) {
+      if (project.hasRole(projectRole)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[WorkspaceChangeEvent:");
+    buffer.append(" added: ");
+    buffer.append(this._addedProjects.length);
+    buffer.append(" removed: ");
+    buffer.append(this._removedProjects.length);
+    buffer.append(" modified: ");
+    buffer.append(this._modifiedProjects.length);
+    buffer.append("]");
+    return buffer.toString();
+  }
+
+} /* ENDCLASS */
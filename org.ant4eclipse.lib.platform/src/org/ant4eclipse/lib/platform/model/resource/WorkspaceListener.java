@@ -0,0 +1,32 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.platform.model.resource;
+
+/**
+ * <p>
+ * A {@link WorkspaceListener} is notified whenever the projects of a {@link Workspace} have been changed by a refresh of
+ * the workspace.
+ * </p>
+ */
+public interface WorkspaceListener {
+
+  /**
+   * <p>
+   * Called after the projects of a {@link Workspace} have been changed.
+   * </p>
+   * 
+   * @param event
+   *          the event describing the added, removed and modified projects
+   */
+  void workspaceChanged(WorkspaceChangeEvent event);
+
+} /* ENDCLASS */
@@ -57,4 +57,15 @@ public interface ProjectRoleIdentifier {
    */
   void postProcess(EclipseProject project);
 
+  /**
+   * <p>
+   * Returns the files that are read to create the role (e.g. <code>.classpath</code>). The paths are relative to the
+   * project folder and use '/' as separator. A project is read again when its workspace is refreshed if one of these
+   * files has been added, removed or modified.
+   * </p>
+   * 
+   * @return the files that are read to create the role. Not <code>null</code>.
+   */
+  String[] getProjectFiles();
+
 } /* ENDINTERFACE */
\ No newline at end of file
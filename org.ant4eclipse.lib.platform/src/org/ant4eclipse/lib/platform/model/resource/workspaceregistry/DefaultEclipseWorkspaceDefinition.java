@@ -13,19 +13,29 @@ package org.ant4eclipse.lib.platform.model.resource.workspaceregistry;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.ConcurrencyHelper;
 import org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry.LocationFileParser;
 import org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry.ProjectFileParser;
 
 import java.io.File;
-import java.io.FileFilter;
-import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * <p>
  * Implements a {@link WorkspaceDefinition} for the 'standard' eclipse workspace.
  * </p>
+ * <p>
+ * The project directories are discovered with a single listing of the workspace directory and a single file system
+ * access per entry (the check for the <code>.project</code> file). The <code>.location</code> files of the projects
+ * that are located outside of the workspace directory are read in parallel if an executor is supplied (see
+ * {@link #getProjectFolders(ExecutorService)}).
+ * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
@@ -34,6 +44,10 @@ public class DefaultEclipseWorkspaceDefinition implements WorkspaceDefinition {
   /** path to the projects directory in the meta data */
   private static final String METADATA_PROJECTS = ".metadata/.plugins/org.eclipse.core.resources/.projects";
 
+  /** the debug message for each directory */
+  private static final String ACCEPT_MESSAGE    = "DefaultEclipseWorkspaceDefinition.getProjectFolders(): directory '%s'"
+                                                    + " - accept as project directory: '%s'";
+
   /** the workspace directory */
   private File                _workspaceDirectory;
 
@@ -58,84 +72,104 @@ public class DefaultEclipseWorkspaceDefinition implements WorkspaceDefinition {
    * {@inheritDoc}
    */
   public File[] getProjectFolders() {
+    return getProjectFolders(null);
+  }
 
-    // define the result
-    List<File> result = new LinkedList<File>();
-
-    // read all directories in the workspace directory
-    File[] directories = this._workspaceDirectory.listFiles(new FileFilter() {
-      public boolean accept(File file) {
-        boolean accepted = file.isDirectory() && !".metadata".equals(file.getName()) && isProjectDirectory(file);
-        String message = String
-            .format(
-                "DefaultEclipseWorkspaceDefinition.getProjectFolders(): directory '%s' - accept as project directory: '%s'",
-                file.getAbsolutePath(), Boolean.valueOf(accepted));
-        A4ELogging.debug(message);
-        return accepted;
-      }
-    });
-
-    // add all project directories to the result
-    result.addAll(Arrays.asList(directories));
-
-    // check the METADATA_PROJECTS directory
-    if (isDirectory(this._metadataLocationDirectory)) {
-
-      // read all directories in the METADATA_PROJECTS directory
-      directories = this._metadataLocationDirectory.listFiles(new FileFilter() {
-        public boolean accept(File file) {
-          boolean accepted = file.isDirectory() && isLocationDirectory(file);
-          String message = String
-              .format(
-                  "DefaultEclipseWorkspaceDefinition.getProjectFolders(): directory '%s' - accept as project directory: '%s'",
-                  file.getAbsolutePath(), Boolean.valueOf(accepted));
-          A4ELogging.debug(message);
-          return accepted;
-        }
-      });
+  /**
+   * {@inheritDoc}
+   */
+  public File[] getProjectFolders(ExecutorService executor) {
+
+    // define the result (a project directory might be found in the workspace directory and in the meta data)
+    Set<File> result = new LinkedHashSet<File>();
+
+    boolean debug = A4ELogging.isDebuggingEnabled();
 
-      // add the resolved linked directories to the result
-      for (File directorie : directories) {
-        File linkedProject = LocationFileParser.getProjectDirectory(new File(directorie, ".location"));
-        if ((linkedProject != null) && !result.contains(linkedProject)) {
-          result.add(linkedProject);
+    // read all directories in the workspace directory. a directory is a project directory if it contains a '.project'
+    // file, so there's no need to check whether an entry is a directory
+    File[] children = this._workspaceDirectory.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        boolean accepted = !".metadata".equals(child.getName()) && ProjectFileParser.isProjectDirectory(child);
+        if (debug) {
+          A4ELogging.debug(ACCEPT_MESSAGE, child.getAbsolutePath(), Boolean.valueOf(accepted));
         }
+        if (accepted) {
+          result.add(child);
+        }
+      }
+    }
+
+    // add the resolved linked directories from the METADATA_PROJECTS directory to the result
+    File[] locationFiles = getLocationFiles();
+    for (File linkedProject : readLocationFiles(locationFiles, executor)) {
+      if (linkedProject != null) {
+        result.add(linkedProject);
       }
     }
 
     // return the result
-    return result.toArray(new File[0]);
+    return result.toArray(new File[result.size()]);
   }
 
   /**
    * <p>
-   * Returns <code>true</code>, if the specified directory is an eclipse project directory.
+   * Returns the <code>.location</code> files of the METADATA_PROJECTS directory.
    * </p>
    * 
-   * @param directory
-   *          the directory
-   * @return <code>true</code>, if the specified directory is an eclipse project directory.
+   * @return the <code>.location</code> files (not <code>null</code>)
    */
-  private boolean isProjectDirectory(File directory) {
-    return ProjectFileParser.isProjectDirectory(directory);
+  private File[] getLocationFiles() {
+    File[] directories = this._metadataLocationDirectory.listFiles();
+    if (directories == null) {
+      return new File[0];
+    }
+    List<File> result = new ArrayList<File>(directories.length);
+    boolean debug = A4ELogging.isDebuggingEnabled();
+    for (File directory : directories) {
+      File locationFile = new File(directory, ".location");
+      boolean accepted = locationFile.isFile();
+      if (debug) {
+        A4ELogging.debug(ACCEPT_MESSAGE, directory.getAbsolutePath(), Boolean.valueOf(accepted));
+      }
+      if (accepted) {
+        result.add(locationFile);
+      }
+    }
+    return result.toArray(new File[result.size()]);
   }
 
   /**
    * <p>
+   * Reads the given <code>.location</code> files.
    * </p>
    * 
-   * @param directory
-   * @return
-   */
-  private boolean isLocationDirectory(File directory) {
-    return isDirectory(directory) && new File(directory, ".location").exists();
-  }
-
-  /**
-   * @param directory
-   * @return
+   * @param locationFiles
+   *          the <code>.location</code> files
+   * @param executor
+   *          the executor used to read the files in parallel (maybe <code>null</code>)
+   * @return the project directories in the order of the location files (<code>null</code> for location files that
+   *         don't point to a valid project directory)
    */
-  private boolean isDirectory(File directory) {
-    return (directory != null) && directory.exists();
+  private List<File> readLocationFiles(File[] locationFiles, ExecutorService executor) {
+    List<File> result = new ArrayList<File>(locationFiles.length);
+    if ((executor == null) || (locationFiles.length <= 1)) {
+      for (File locationFile : locationFiles) {
+        result.add(LocationFileParser.getProjectDirectory(locationFile));
+      }
+      return result;
+    }
+    List<Future<File>> futures = new ArrayList<Future<File>>(locationFiles.length);
+    for (final File locationFile : locationFiles) {
+      futures.add(executor.submit(new Callable<File>() {
+        public File call() {
+          return LocationFileParser.getProjectDirectory(locationFile);
+        }
+      }));
+    }
+    for (Future<File> future : futures) {
+      result.add(ConcurrencyHelper.get(future));
+    }
+    return result;
   }
 } /* ENDCLASS */
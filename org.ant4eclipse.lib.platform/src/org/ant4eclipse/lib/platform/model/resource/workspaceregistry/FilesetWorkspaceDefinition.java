@@ -3,6 +3,7 @@ package org.ant4eclipse.lib.platform.model.resource.workspaceregistry;
 import org.ant4eclipse.lib.core.Assure;
 
 import java.io.File;
+import java.util.concurrent.ExecutorService;
 
 /**
  * <p>
@@ -36,4 +37,11 @@ public class FilesetWorkspaceDefinition implements WorkspaceDefinition {
   public File[] getProjectFolders() {
     return this.directories;
   }
+
+  /**
+   * {@inheritDoc}
+   */
+  public File[] getProjectFolders(ExecutorService executor) {
+    return getProjectFolders();
+  }
 }
@@ -0,0 +1,138 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.platform.model.resource.workspaceregistry;
+
+/**
+ * <p>
+ * The times needed by the phases of a workspace registration: the discovery of the project folders, the reading of the
+ * projects (project description and roles) and the post processing of the project roles.
+ * </p>
+ */
+public final class RegistrationTimings {
+
+  /** the number of registered projects */
+  private int  _projectCount;
+
+  /** the number of threads used to read and post process the projects */
+  private int  _threadCount;
+
+  /** the time needed to discover the project folders (in milliseconds) */
+  private long _discoveryTime;
+
+  /** the time needed to read the projects (in milliseconds) */
+  private long _readTime;
+
+  /** the time needed to post process the projects (in milliseconds) */
+  private long _postProcessTime;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link RegistrationTimings}.
+   * </p>
+   *
+   * @param projectCount
+   *          the number of registered projects
+   * @param threadCount
+   *          the number of threads used to read and post process the projects
+   * @param discoveryTime
+   *          the time needed to discover the project folders (in milliseconds)
+   * @param readTime
+   *          the time needed to read the projects (in milliseconds)
+   * @param postProcessTime
+   *          the time needed to post process the projects (in milliseconds)
+   */
+  public RegistrationTimings(int projectCount, int threadCount, long discoveryTime, long readTime,
+      long postProcessTime) {
+    this._projectCount = projectCount;
+    this._threadCount = threadCount;
+    this._discoveryTime = discoveryTime;
+    this._readTime = readTime;
+    this._postProcessTime = postProcessTime;
+  }
+
+  /**
+   * <p>
+   * Returns the number of registered projects.
+   * </p>
+   *
+   * @return the number of registered projects.
+   */
+  public int getProjectCount() {
+    return this._projectCount;
+  }
+
+  /**
+   * <p>
+   * Returns the number of threads used to read and post process the projects.
+   * </p>
+   *
+   * @return the number of threads used to read and post process the projects.
+   */
+  public int getThreadCount() {
+    return this._threadCount;
+  }
+
+  /**
+   * <p>
+   * Returns the time needed to discover the project folders (in milliseconds).
+   * </p>
+   *
+   * @return the time needed to discover the project folders.
+   */
+  public long getDiscoveryTime() {
+    return this._discoveryTime;
+  }
+
+  /**
+   * <p>
+   * Returns the time needed to read the projects (in milliseconds).
+   * </p>
+   *
+   * @return the time needed to read the projects.
+   */
+  public long getReadTime() {
+    return this._readTime;
+  }
+
+  /**
+   * <p>
+   * Returns the time needed to post process the projects (in milliseconds).
+   * </p>
+   *
+   * @return the time needed to post process the projects.
+   */
+  public long getPostProcessTime() {
+    return this._postProcessTime;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[RegistrationTimings:");
+    buffer.append(" projectCount: ");
+    buffer.append(this._projectCount);
+    buffer.append(" threadCount: ");
+    buffer.append(this._threadCount);
+    buffer.append(" discoveryTime: ");
+    buffer.append(this._discoveryTime);
+    buffer.append(" readTime: ");
+    buffer.append(this._readTime);
+    buffer.append(" postProcessTime: ");
+    buffer.append(this._postProcessTime);
+    buffer.append("]");
+    return buffer.toString();
+  }
+
+} /* ENDCLASS */
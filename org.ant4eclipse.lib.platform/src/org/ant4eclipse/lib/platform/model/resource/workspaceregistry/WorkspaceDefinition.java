@@ -12,6 +12,7 @@
 package org.ant4eclipse.lib.platform.model.resource.workspaceregistry;
 
 import java.io.File;
+import java.util.concurrent.ExecutorService;
 
 /**
  * <p>
@@ -32,4 +33,16 @@ public interface WorkspaceDefinition {
    */
   File[] getProjectFolders();
 
+  /**
+   * <p>
+   * Returns an array of folders that should be treated as eclipse projects for a workspace. The supplied executor may
+   * be used to examine the file system in parallel.
+   * </p>
+   * 
+   * @param executor
+   *          the executor that may be used to examine the file system in parallel (maybe <code>null</code>)
+   * @return an array of folders that should be treated as eclipse projects for a workspace.
+   */
+  File[] getProjectFolders(ExecutorService executor);
+
 } /* ENDINTERFACE */
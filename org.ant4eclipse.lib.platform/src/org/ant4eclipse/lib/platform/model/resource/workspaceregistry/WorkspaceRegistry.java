@@ -14,6 +14,8 @@ package org.ant4eclipse.lib.platform.model.resource.workspaceregistry;
 import org.ant4eclipse.lib.core.Lifecycle;
 import org.ant4eclipse.lib.platform.model.resource.Workspace;
 
+import java.io.File;
+
 /**
  * <p>
  * The {@link WorkspaceRegistry} is used to maintain workspaces.
@@ -35,6 +37,59 @@ public interface WorkspaceRegistry extends Lifecycle {
    */
   Workspace registerWorkspace(String id, WorkspaceDefinition workspaceDefinition);
 
+  /**
+   * <p>
+   * Registers a new instance of type {@link Workspace} that is described by the given {@link WorkspaceDefinition} under
+   * the specified id. The projects are read and post processed by the given number of threads.
+   * </p>
+   * 
+   * @param id
+   *          the identifier under which the new {@link Workspace} instance is stored.
+   * @param WorkspaceDefinition
+   *          the workspace definition
+   * @param threadCount
+   *          the number of threads used to read and post process the projects (0 for the default)
+   * @return the new {@link Workspace} instance
+   */
+  Workspace registerWorkspace(String id, WorkspaceDefinition workspaceDefinition, int threadCount);
+
+  /**
+   * <p>
+   * Registers a new instance of type {@link Workspace} that is described by the given {@link WorkspaceDefinition} under
+   * the specified id. The projects are read and post processed by the given number of threads.
+   * </p>
+   * <p>
+   * After the registration a snapshot of the workspace is written to the given snapshot file. It contains a stamp of
+   * the files describing each project (<code>.project</code>, <code>.classpath</code>,
+   * <code>META-INF/MANIFEST.MF</code>, <code>build.properties</code> and <code>.settings/*</code>). The next
+   * registration using the same snapshot file only parses the project descriptions of projects whose stamps have been
+   * changed.
+   * </p>
+   * 
+   * @param id
+   *          the identifier under which the new {@link Workspace} instance is stored.
+   * @param WorkspaceDefinition
+   *          the workspace definition
+   * @param threadCount
+   *          the number of threads used to read and post process the projects (0 for the default)
+   * @param snapshotFile
+   *          the file that stores the snapshot of the workspace (might be <code>null</code>)
+   * @return the new {@link Workspace} instance
+   */
+  Workspace registerWorkspace(String id, WorkspaceDefinition workspaceDefinition, int threadCount, File snapshotFile);
+
+  /**
+   * <p>
+   * Returns the timings of the registration of the {@link Workspace} that is registered under the given identifier. If
+   * no {@link Workspace} is registered under the given identifier, <code>null</code> will be returned instead.
+   * </p>
+   * 
+   * @param id
+   *          the identifier.
+   * @return the timings of the registration of the {@link Workspace} that is registered under the given identifier.
+   */
+  RegistrationTimings getRegistrationTimings(String id);
+
   /**
    * <p>
    * Returns <code>true</code> if the registry contains a {@link Workspace} that is registered under the specified
@@ -61,7 +116,14 @@ public interface WorkspaceRegistry extends Lifecycle {
   Workspace getWorkspace(String id);
 
   /**
-   * Refreshes the specified workspace, i.e. re-reads all project definitions
+   * Refreshes the specified workspace, i.e. re-reads the project definitions that have been changed since the last
+   * registration.
+   * 
+   * <p>
+   * The {@link Workspace} instance is updated in place: the projects whose folders haven't been changed are kept, the
+   * changed and new project folders are read again and the projects whose folders have disappeared are removed.
+   * Afterwards the {@link org.ant4eclipse.lib.platform.model.resource.WorkspaceListener WorkspaceListeners} of the
+   * workspace are notified about the added, removed and modified projects.
    * 
    * <p>
    * This can be helpful in cases where project-relevant artifacts, like build.properties or .classpath are
@@ -51,4 +51,11 @@ public class CvsRoleIdentifier implements ProjectRoleIdentifier {
   public void postProcess(final EclipseProject project) {
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public String[] getProjectFiles() {
+    return new String[] { "CVS/Root", "CVS/Repository", "CVS/Tag" };
+  }
+
 } /* ENDCLASS */
@@ -46,6 +46,42 @@ public class BuildOrderResolver {
   public static final List<EclipseProject> resolveBuildOrder(Workspace workspace, String[] projectNames,
       String[] referenceTypes, List<Object> additionalElements) {
 
+    // calculate the order
+    List<EclipseProject> orderProjects = createDependencyGraph(workspace, projectNames, referenceTypes,
+        additionalElements).calculateOrder();
+
+    // filter result - only the requested projects should be listed
+    return filter(orderProjects, projectNames);
+  }
+
+  /**
+   * <p>
+   * Resolves the dependency graph of the projects with the given names. The graph only contains the requested
+   * projects, dependencies via other projects are preserved. Each project can be built as soon as all its children
+   * have been built.
+   * </p>
+   * 
+   * @param workspace
+   *          the workspace
+   * @param projectNames
+   *          an array with the names of all projects that should be contained.
+   * @param referenceTypes
+   * @param additionalElements
+   * @return the dependency graph of the projects with the given names
+   */
+  public static final DependencyGraph<EclipseProject> resolveBuildGraph(Workspace workspace, String[] projectNames,
+      String[] referenceTypes, List<Object> additionalElements) {
+
+    DependencyGraph<EclipseProject> dependencyGraph = createDependencyGraph(workspace, projectNames, referenceTypes,
+        additionalElements);
+
+    // the requested projects in build order (this also makes sure that the graph doesn't contain cycles)
+    return dependencyGraph.createSubgraph(filter(dependencyGraph.calculateOrder(), projectNames));
+  }
+
+  private static DependencyGraph<EclipseProject> createDependencyGraph(Workspace workspace, String[] projectNames,
+      String[] referenceTypes, List<Object> additionalElements) {
+
     // retrieve all eclipse projects from the workspace
     EclipseProject[] eclipseProjects = workspace.getProjects(projectNames, true);
 
@@ -84,10 +120,10 @@ public class BuildOrderResolver {
       }
     }
 
-    // calculate the order
-    List<EclipseProject> orderProjects = dependencyGraph.calculateOrder();
+    return dependencyGraph;
+  }
 
-    // filter result - only the requested projects should be listed
+  private static List<EclipseProject> filter(List<EclipseProject> orderProjects, String[] projectNames) {
     List<EclipseProject> result = new LinkedList<EclipseProject>();
     List<String> names = Arrays.asList(projectNames);
     for (EclipseProject eclipseProject : orderProjects) {
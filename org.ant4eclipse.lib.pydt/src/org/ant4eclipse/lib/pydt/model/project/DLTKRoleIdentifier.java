@@ -56,4 +56,11 @@ public final class DLTKRoleIdentifier implements ProjectRoleIdentifier {
   public void postProcess(EclipseProject project) {
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public String[] getProjectFiles() {
+    return new String[] { ".buildpath" };
+  }
+
 } /* ENDCLASS */
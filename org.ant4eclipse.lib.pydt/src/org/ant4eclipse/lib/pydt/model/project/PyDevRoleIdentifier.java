@@ -56,4 +56,11 @@ public final class PyDevRoleIdentifier implements ProjectRoleIdentifier {
   public void postProcess(EclipseProject project) {
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public String[] getProjectFiles() {
+    return new String[] { ".pydevproject" };
+  }
+
 } /* ENDCLASS */